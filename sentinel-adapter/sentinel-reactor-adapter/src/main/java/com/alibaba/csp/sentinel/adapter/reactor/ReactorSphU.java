@@ -15,6 +15,7 @@
  */
 package com.alibaba.csp.sentinel.adapter.reactor;
 
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.alibaba.csp.sentinel.AsyncEntry;
@@ -42,9 +43,12 @@ public final class ReactorSphU {
         final AtomicReference<AsyncEntry> entryWrapper = new AtomicReference<>(null);
         return Mono.defer(() -> {
             try {
-                AsyncEntry entry = SphU.asyncEntry(resourceName, entryType);
+                AsyncEntry entry = SphU.asyncEntryNonBlocking(resourceName, entryType);
                 entryWrapper.set(entry);
-                return actual.subscriberContext(context -> {
+                // Queued by rate limiting rules, delay the subscription without blocking current thread.
+                long waitMs = entry.getPermitWaitMs();
+                Mono<R> source = waitMs > 0 ? actual.delaySubscription(Duration.ofMillis(waitMs)) : actual;
+                return source.subscriberContext(context -> {
                     if (entry == null) {
                         return context;
                     }
@@ -16,6 +16,7 @@
 package com.alibaba.csp.sentinel.adapter.reactor;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.alibaba.csp.sentinel.AsyncEntry;
@@ -27,6 +28,7 @@ import com.alibaba.csp.sentinel.util.function.Supplier;
 
 import org.reactivestreams.Subscription;
 import reactor.core.CoreSubscriber;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.context.Context;
 
 /**
@@ -88,9 +90,17 @@ public class SentinelReactorSubscriber<T> extends InheritableBaseSubscriber<T> {
             ContextUtil.enter(sentinelContextConfig.getContextName(), sentinelContextConfig.getOrigin());
         }
         try {
-            AsyncEntry entry = SphU.asyncEntry(entryConfig.getResourceName());
+            // Non-blocking mode: the subscribing thread (maybe an event loop) won't be blocked by queueing.
+            AsyncEntry entry = SphU.asyncEntryNonBlocking(entryConfig.getResourceName(),
+                entryConfig.getEntryType());
             this.currentEntry = entry;
-            actual.onSubscribe(this);
+            long waitMs = entry.getPermitWaitMs();
+            if (waitMs > 0) {
+                // Delay the downstream subscription, so that nothing is emitted before the permit time.
+                Schedulers.parallel().schedule(() -> actual.onSubscribe(this), waitMs, TimeUnit.MILLISECONDS);
+            } else {
+                actual.onSubscribe(this);
+            }
         } catch (BlockException ex) {
             // Mark as completed (exited) explicitly.
             entryExited.set(true);
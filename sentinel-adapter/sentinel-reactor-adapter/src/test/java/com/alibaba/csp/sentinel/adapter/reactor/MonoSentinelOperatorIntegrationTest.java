@@ -3,12 +3,16 @@ package com.alibaba.csp.sentinel.adapter.reactor;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import com.alibaba.csp.sentinel.Constants;
 import com.alibaba.csp.sentinel.EntryType;
 import com.alibaba.csp.sentinel.node.ClusterNode;
 import com.alibaba.csp.sentinel.node.EntranceNode;
 import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
 import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
 import com.alibaba.csp.sentinel.slots.block.flow.FlowRuleManager;
 import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
@@ -162,6 +166,37 @@ public class MonoSentinelOperatorIntegrationTest {
         assertEquals(1, cn.totalException());
     }
 
+    @Test
+    public void testRateLimiterDelaysEmissionWithoutBlocking() throws Exception {
+        String resourceName = createResourceName("testRateLimiterDelaysEmissionWithoutBlocking");
+        FlowRuleManager.loadRules(Collections.singletonList(
+            new FlowRule(resourceName).setCount(10)
+                .setControlBehavior(RuleConstant.CONTROL_BEHAVIOR_RATE_LIMITER)
+                .setMaxQueueingTimeMs(1000)
+        ));
+        List<Long> emitTimes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(3);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            Mono.just(i)
+                .transform(new SentinelReactorTransformer<>(resourceName))
+                .subscribe(v -> {
+                    emitTimes.add(System.currentTimeMillis());
+                    latch.countDown();
+                });
+        }
+        // Subscribing thread is not blocked by queueing (2 requests wait for 100 ms and 200 ms).
+        assertTrue(System.currentTimeMillis() - start < 150);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(Collections.max(emitTimes) - start >= 180);
+
+        ClusterNode cn = ClusterBuilderSlot.getClusterNode(resourceName);
+        assertNotNull(cn);
+        assertEquals(0, cn.blockRequest());
+
+        FlowRuleManager.loadRules(new ArrayList<>());
+    }
+
     private String createResourceName(String resourceName) {
         return "reactor_test_mono_" + resourceName;
     }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.node.metric.MetricNode;
+import com.alibaba.csp.sentinel.node.metric.MetricSearcher;
+import com.alibaba.csp.sentinel.node.metric.MetricWriter;
+import com.alibaba.csp.sentinel.util.PidUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmark for the query latency of text metric files, with closed files compressed or not.</p>
+ *
+ * <p>
+ * Metrics of {@code resourceCount} resources are written for {@code seconds} seconds into files of 4 MB before
+ * measurement (and closed files are compressed if {@code compressed}). {@code testQueryResource} queries a
+ * 60-second window of a single resource, and {@code testQueryAllInSecond} queries all resources in one second.
+ * </p>
+ */
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CompressedMetricSearchBenchmark {
+
+    @Param({"false", "true"})
+    private boolean compressed;
+
+    @Param({"1000"})
+    private int resourceCount;
+
+    @Param({"600"})
+    private int seconds;
+
+    private File baseDir;
+    private MetricSearcher searcher;
+    private List<String> resources;
+
+    private long beginTime;
+    private int queryCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        baseDir = File.createTempFile("sentinel-compressed-benchmark", "");
+        baseDir.delete();
+        baseDir.mkdirs();
+        String dir = baseDir.getAbsolutePath();
+        SentinelConfig.setConfig(SentinelConfig.METRIC_FILE_COMPRESS, String.valueOf(compressed));
+        MetricWriter writer = new MetricWriter(dir, 4 * 1024 * 1024, 10000);
+        SentinelConfig.setConfig(SentinelConfig.METRIC_FILE_COMPRESS, "false");
+
+        resources = new ArrayList<String>(resourceCount);
+        List<MetricNode> nodes = new ArrayList<MetricNode>(resourceCount);
+        for (int i = 0; i < resourceCount; i++) {
+            MetricNode node = new MetricNode();
+            node.setResource("com.alibaba.csp.sentinel.benchmark.Service:method" + i + "(java.lang.String)");
+            node.setPassQps(100 + i % 50);
+            node.setSuccessQps(100 + i % 50);
+            node.setBlockQps(i % 3);
+            node.setRt(5 + i % 20);
+            nodes.add(node);
+            resources.add(node.getResource());
+        }
+        // The writer ignores metrics earlier than its creation.
+        beginTime = (System.currentTimeMillis() / 1000 + 1) * 1000;
+        for (int i = 0; i < seconds; i++) {
+            writer.write(beginTime + i * 1000L, nodes);
+        }
+        writer.close();
+        if (compressed) {
+            // Wait until all closed files are compressed in the background.
+            while (uncompressedFileCount() > 1) {
+                Thread.sleep(10);
+            }
+        }
+        searcher = new MetricSearcher(dir,
+            MetricWriter.formMetricFileName(SentinelConfig.getAppName(), PidUtil.getPid()));
+    }
+
+    private int uncompressedFileCount() {
+        int count = 0;
+        for (File file : baseDir.listFiles()) {
+            if (file.getName().matches(".*\\.[0-9]{4}-[0-9]{2}-[0-9]{2}(\\.[0-9]*)?")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = baseDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        baseDir.delete();
+    }
+
+    @Benchmark
+    public List<MetricNode> testQueryResource() throws Exception {
+        int n = queryCount++;
+        long windowStart = beginTime + (n % Math.max(1, seconds - 60)) * 1000L;
+        return searcher.findByTimeAndResource(windowStart, windowStart + 59999, resources.get(n % resourceCount));
+    }
+
+    @Benchmark
+    public List<MetricNode> testQueryAllInSecond() throws Exception {
+        long second = beginTime + (queryCount++ % seconds) * 1000L;
+        return searcher.findByTimeAndResource(second, second + 999, null);
+    }
+}
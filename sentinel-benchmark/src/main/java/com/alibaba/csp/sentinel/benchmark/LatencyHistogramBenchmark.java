@@ -0,0 +1,77 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.slots.statistic.data.LatencyHistogram;
+import com.alibaba.csp.sentinel.slots.statistic.metric.LatencyHistogramLeapArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the per-record cost of latency histograms. Recording into the sliding window
+ * ({@link LatencyHistogramLeapArray}) is what {@code StatisticSlot} does for each completed entry.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LatencyHistogramBenchmark {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LatencyHistogramLeapArray leapArray = new LatencyHistogramLeapArray(2, 1000);
+
+    private static long nextLatency() {
+        return ThreadLocalRandom.current().nextInt(200000);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void testSingleThreadRecord() {
+        histogram.record(nextLatency());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void testSingleThreadWindowRecord() {
+        leapArray.record(nextLatency());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void test8ThreadsWindowRecord() {
+        leapArray.record(nextLatency());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long testPercentile() {
+        return leapArray.valueAtPercentile(99);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.alibaba.csp.sentinel.slots.statistic.base.LeapArray;
+import com.alibaba.csp.sentinel.slots.statistic.base.WindowWrap;
+import com.alibaba.csp.sentinel.slots.statistic.data.MetricBucket;
+import com.alibaba.csp.sentinel.slots.statistic.metric.BucketLeapArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Stress benchmark for the window rotation of {@link LeapArray} at window boundaries.</p>
+ *
+ * <p>
+ * Each thread drives a logical clock that moves to the next window every {@code opsPerWindow} operations,
+ * so all threads cross the boundaries together and race to rotate the same deprecated bucket.
+ * Sample time mode reports the tail latency (p99, p99.99) of {@code currentWindow}. The {@code lock} type
+ * reproduces the former rotation which resets the deprecated bucket under a lock and yields on contention.
+ * </p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LeapArrayBoundaryBenchmark {
+
+    private static final int SAMPLE_COUNT = 2;
+    private static final int INTERVAL_IN_MS = 1000;
+
+    @Param({"cas", "lock"})
+    private String type;
+
+    @Param({"64", "1024"})
+    private int opsPerWindow;
+
+    private LeapArray<MetricBucket> leapArray;
+
+    @Setup
+    public void prepare() {
+        if ("lock".equals(type)) {
+            leapArray = new LockedBucketLeapArray(SAMPLE_COUNT, INTERVAL_IN_MS);
+        } else {
+            leapArray = new BucketLeapArray(SAMPLE_COUNT, INTERVAL_IN_MS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LogicalClock {
+        private long ops;
+
+        long next(int opsPerWindow) {
+            return (ops++ / opsPerWindow) * (INTERVAL_IN_MS / SAMPLE_COUNT);
+        }
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void test32ThreadsCrossBoundary(LogicalClock clock) {
+        leapArray.currentWindow(clock.next(opsPerWindow)).value().addPass(1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void test8ThreadsCrossBoundary(LogicalClock clock) {
+        leapArray.currentWindow(clock.next(opsPerWindow)).value().addPass(1);
+    }
+
+    /**
+     * The former rotation: the deprecated bucket is reset in place under a lock,
+     * and threads failing to get the lock yield and retry.
+     */
+    private static class LockedBucketLeapArray extends BucketLeapArray {
+
+        private final ReentrantLock updateLock = new ReentrantLock();
+
+        LockedBucketLeapArray(int sampleCount, int intervalInMs) {
+            super(sampleCount, intervalInMs);
+        }
+
+        @Override
+        public WindowWrap<MetricBucket> currentWindow(long timeMillis) {
+            int idx = (int)((timeMillis / windowLengthInMs) % array.length());
+            long windowStart = calculateWindowStart(timeMillis);
+            while (true) {
+                WindowWrap<MetricBucket> old = array.get(idx);
+                if (old == null) {
+                    WindowWrap<MetricBucket> window = new WindowWrap<MetricBucket>(windowLengthInMs, windowStart,
+                        newEmptyBucket(timeMillis));
+                    if (array.compareAndSet(idx, null, window)) {
+                        return window;
+                    }
+                    Thread.yield();
+                } else if (windowStart == old.windowStart()) {
+                    return old;
+                } else if (windowStart > old.windowStart()) {
+                    if (updateLock.tryLock()) {
+                        try {
+                            return resetWindowTo(old, windowStart);
+                        } finally {
+                            updateLock.unlock();
+                        }
+                    }
+                    Thread.yield();
+                } else {
+                    return new WindowWrap<MetricBucket>(windowLengthInMs, windowStart, newEmptyBucket(timeMillis));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.slots.statistic.data.MetricBucket;
+import com.alibaba.csp.sentinel.slots.statistic.data.StripedMetricBucket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmark for the write throughput of the default {@link MetricBucket} and {@link StripedMetricBucket}.</p>
+ *
+ * <p>
+ * Each operation records a passed and completed invocation, as {@code StatisticSlot} does.
+ * All threads write the same bucket, which is the case of a hot resource in one sliding window bucket.
+ * </p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MetricBucketBenchmark {
+
+    @Param({"adder", "striped"})
+    private String type;
+
+    private MetricBucket bucket;
+
+    @Setup
+    public void prepare() {
+        if ("striped".equals(type)) {
+            int stripes = 1;
+            while (stripes < Runtime.getRuntime().availableProcessors()) {
+                stripes <<= 1;
+            }
+            bucket = new StripedMetricBucket(Math.min(stripes, 32));
+        } else {
+            bucket = new MetricBucket();
+        }
+    }
+
+    private void record() {
+        bucket.addPass(1);
+        bucket.addSuccess(1);
+        bucket.addRT(5);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void testSingleThreadWrite() {
+        record();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void test8ThreadsWrite() {
+        record();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void test16ThreadsWrite() {
+        record();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void test32ThreadsWrite() {
+        record();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long test8ThreadsWriteAndRead() {
+        record();
+        return bucket.pass();
+    }
+}
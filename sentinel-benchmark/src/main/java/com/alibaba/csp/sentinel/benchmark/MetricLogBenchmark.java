@@ -0,0 +1,146 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.node.metric.BinaryMetricSearcher;
+import com.alibaba.csp.sentinel.node.metric.BinaryMetricWriter;
+import com.alibaba.csp.sentinel.node.metric.MetricNode;
+import com.alibaba.csp.sentinel.node.metric.MetricSearcher;
+import com.alibaba.csp.sentinel.node.metric.MetricWriter;
+import com.alibaba.csp.sentinel.util.PidUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmark for the write cost and query latency of the text and binary metric log formats.</p>
+ *
+ * <p>
+ * Metrics of {@code resourceCount} resources are written for {@code seconds} seconds before measurement.
+ * The default is kept small so that a run finishes quickly; use {@code -p seconds=86400} to prepare a full day.
+ * {@code testWriteSecond} writes metrics of all resources for one more second, and {@code testQueryResource}
+ * queries a 60-second window of a single resource, as the dashboard does.
+ * </p>
+ */
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MetricLogBenchmark {
+
+    @Param({SentinelConfig.METRIC_FILE_FORMAT_TEXT, SentinelConfig.METRIC_FILE_FORMAT_BINARY})
+    private String format;
+
+    @Param({"5000"})
+    private int resourceCount;
+
+    @Param({"120"})
+    private int seconds;
+
+    private File baseDir;
+    private MetricWriter writer;
+    private MetricSearcher searcher;
+    private List<MetricNode> nodes;
+
+    private long beginTime;
+    private long nextTime;
+    private int queryCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        baseDir = File.createTempFile("sentinel-metric-benchmark", "");
+        baseDir.delete();
+        baseDir.mkdirs();
+        String dir = baseDir.getAbsolutePath();
+        String appName = SentinelConfig.getAppName();
+        int pid = PidUtil.getPid();
+        if (SentinelConfig.METRIC_FILE_FORMAT_BINARY.equals(format)) {
+            writer = new BinaryMetricWriter(dir, 1024 * 1024 * 1024, 100);
+            searcher = new BinaryMetricSearcher(dir, BinaryMetricWriter.formBinaryMetricFileName(appName, pid));
+        } else {
+            writer = new MetricWriter(dir, 1024 * 1024 * 1024, 100);
+            searcher = new MetricSearcher(dir, MetricWriter.formMetricFileName(appName, pid));
+        }
+
+        nodes = new ArrayList<MetricNode>(resourceCount);
+        for (int i = 0; i < resourceCount; i++) {
+            MetricNode node = new MetricNode();
+            node.setResource("com.alibaba.csp.sentinel.benchmark.Service:method" + i + "(java.lang.String)");
+            node.setPassQps(100 + i % 50);
+            node.setSuccessQps(100 + i % 50);
+            node.setBlockQps(i % 3);
+            node.setRt(5 + i % 20);
+            nodes.add(node);
+        }
+
+        // The text writer ignores metrics earlier than its creation.
+        beginTime = (System.currentTimeMillis() / 1000 + 1) * 1000;
+        nextTime = beginTime;
+        for (int i = 0; i < seconds; i++) {
+            writeSecond();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        writer.close();
+        File[] files = baseDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        baseDir.delete();
+    }
+
+    private void writeSecond() throws Exception {
+        writer.write(nextTime, nodes);
+        nextTime += 1000;
+    }
+
+    @Benchmark
+    public long testWriteSecond() throws Exception {
+        writeSecond();
+        return nextTime;
+    }
+
+    @Benchmark
+    public List<MetricNode> testQueryResource() throws Exception {
+        int n = queryCount++;
+        long windowStart = beginTime + (n % Math.max(1, seconds - 60)) * 1000L;
+        String resource = nodes.get(n % resourceCount).getResource();
+        return searcher.findByTimeAndResource(windowStart, windowStart + 59999, resource);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.Locale;
+import java.util.Random;
+
+import com.alibaba.csp.sentinel.slots.statistic.metric.ArrayMetric;
+import com.alibaba.csp.sentinel.slots.statistic.metric.DecayingMetric;
+import com.alibaba.csp.sentinel.slots.statistic.metric.Metric;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+import com.alibaba.csp.sentinel.util.clock.ManualClock;
+
+/**
+ * <p>Accuracy comparison of the second-level rate estimators under synthetic traffic.</p>
+ *
+ * <p>
+ * Requests are generated on a manual clock with millisecond resolution, and admitted the same way
+ * as {@code DefaultController} does for a QPS threshold: a request passes if the current pass QPS plus one
+ * doesn't exceed the threshold. For each estimator and traffic pattern it reports:
+ * </p>
+ * <ul>
+ * <li>the average admitted QPS</li>
+ * <li>the peak admitted count in any sliding second, relative to the threshold (burst ratio)</li>
+ * <li>the mean absolute error of the QPS reading against the exact count of the last second</li>
+ * </ul>
+ *
+ * <p>
+ * Run with {@code java -cp target/benchmarks.jar com.alibaba.csp.sentinel.benchmark.RateEstimatorAccuracy}.
+ * See {@link RateEstimatorBenchmark} for the throughput comparison.
+ * </p>
+ */
+public final class RateEstimatorAccuracy {
+
+    private static final int THRESHOLD = 100;
+    private static final int DURATION_MS = 120 * 1000;
+    private static final long START = 3600 * 1000L;
+
+    private static final String[] ESTIMATORS = {"window-2", "window-10", "decaying"};
+    private static final String[] PATTERNS = {"steady", "burst", "on-off"};
+
+    public static void main(String[] args) {
+        ManualClock clock = new ManualClock(START);
+        TimeUtil.setClock(clock);
+        try {
+            System.out.println(String.format(Locale.ROOT, "%-10s %-10s %12s %12s %12s", "pattern", "estimator",
+                "avgQps", "burstRatio", "readingErr"));
+            for (String pattern : PATTERNS) {
+                for (String estimator : ESTIMATORS) {
+                    clock.setCurrentTimeMillis(START);
+                    run(clock, pattern, estimator);
+                }
+            }
+        } finally {
+            TimeUtil.resetClock();
+        }
+    }
+
+    private static Metric newMetric(String estimator) {
+        if ("window-10".equals(estimator)) {
+            return new ArrayMetric(10, 1000);
+        } else if ("decaying".equals(estimator)) {
+            return new DecayingMetric(2, 1000);
+        }
+        return new ArrayMetric(2, 1000);
+    }
+
+    /**
+     * Get the count of arrivals in given millisecond.
+     */
+    private static int arrivals(String pattern, int ms, Random random) {
+        int inSecond = ms % 1000;
+        double rate;
+        if ("burst".equals(pattern)) {
+            // 400 requests in the first 50 ms of every second, plus 20 QPS in background.
+            rate = (inSecond < 50 ? 8 : 0) + 0.02;
+        } else if ("on-off".equals(pattern)) {
+            // 1000 QPS for 300 ms, then idle for 700 ms.
+            rate = inSecond < 300 ? 1 : 0;
+        } else {
+            rate = 0.15;
+        }
+        // Poisson arrivals.
+        int count = 0;
+        double p = Math.exp(-rate);
+        double product = random.nextDouble();
+        while (product > p) {
+            count++;
+            product *= random.nextDouble();
+        }
+        return count;
+    }
+
+    private static void run(ManualClock clock, String pattern, String estimator) {
+        Metric metric = newMetric(estimator);
+        Random random = new Random(17);
+        int[] admitted = new int[DURATION_MS];
+        long lastSecondCount = 0;
+        long readings = 0;
+        double error = 0;
+        long total = 0;
+        for (int ms = 0; ms < DURATION_MS; ms++) {
+            clock.setCurrentTimeMillis(START + ms);
+            if (ms >= 1000) {
+                lastSecondCount -= admitted[ms - 1000];
+            }
+            int count = arrivals(pattern, ms, random);
+            for (int i = 0; i < count; i++) {
+                double qps = metric.pass() / metric.getWindowIntervalInSec();
+                error += Math.abs(qps - lastSecondCount);
+                readings++;
+                if ((int)qps + 1 > THRESHOLD) {
+                    metric.addBlock(1);
+                } else {
+                    metric.addPass(1);
+                    admitted[ms]++;
+                    lastSecondCount++;
+                    total++;
+                }
+            }
+        }
+        long peak = 0;
+        long sliding = 0;
+        for (int ms = 0; ms < DURATION_MS; ms++) {
+            sliding += admitted[ms];
+            if (ms >= 1000) {
+                sliding -= admitted[ms - 1000];
+            }
+            peak = Math.max(peak, sliding);
+        }
+        System.out.println(String.format(Locale.ROOT, "%-10s %-10s %12.1f %12.2f %12.1f", pattern, estimator,
+            total * 1000.0 / DURATION_MS, peak * 1.0 / THRESHOLD, readings == 0 ? 0 : error / readings));
+    }
+
+    private RateEstimatorAccuracy() {}
+}
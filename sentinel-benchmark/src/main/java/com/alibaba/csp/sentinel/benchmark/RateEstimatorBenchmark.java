@@ -0,0 +1,112 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.node.StatisticNode;
+import com.alibaba.csp.sentinel.slots.statistic.metric.ArrayMetric;
+import com.alibaba.csp.sentinel.slots.statistic.metric.DecayingMetric;
+import com.alibaba.csp.sentinel.slots.statistic.metric.Metric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmark for the throughput of the sliding window {@link ArrayMetric} and the {@link DecayingMetric},
+ * both as a bare metric and behind a {@link StatisticNode}.</p>
+ *
+ * <p>
+ * Each operation reads the pass count and then records a passed request, as {@code DefaultController}
+ * and {@code StatisticSlot} do. A node with the decaying estimator records to both the sliding window
+ * (for the minute-level statistics) and the decaying metric, so the node target shows the real cost of
+ * switching the estimator. See {@link RateEstimatorAccuracy} for the accuracy comparison.
+ * </p>
+ *
+ * <p>
+ * The estimator of {@link StatisticNode} is read once when the class is loaded, which works here as
+ * JMH runs every combination of parameters in a new fork.
+ * </p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RateEstimatorBenchmark {
+
+    @Param({"window", "decaying"})
+    private String estimator;
+
+    @Param({"metric", "node"})
+    private String target;
+
+    private Metric metric;
+    private StatisticNode node;
+
+    @Setup
+    public void prepare() {
+        if ("node".equals(target)) {
+            SentinelConfig.setConfig(SentinelConfig.STATISTIC_RATE_ESTIMATOR, estimator);
+            node = new StatisticNode();
+        } else if ("decaying".equals(estimator)) {
+            metric = new DecayingMetric(2, 1000);
+        } else {
+            metric = new ArrayMetric(2, 1000);
+        }
+    }
+
+    private double checkAndRecord() {
+        if (node != null) {
+            double passQps = node.passQps();
+            node.addPassRequest(1);
+            return passQps;
+        }
+        long pass = metric.pass();
+        metric.addPass(1);
+        return pass;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public double testSingleThread() {
+        return checkAndRecord();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public double test8Threads() {
+        return checkAndRecord();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public double test32Threads() {
+        return checkAndRecord();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.Entry;
+import com.alibaba.csp.sentinel.EntryType;
+import com.alibaba.csp.sentinel.ResourceHandle;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for entering the same resource via {@link SphU#entry(String)} and via {@link ResourceHandle}.
+ * The protected block is empty, so the result reflects the overhead of entry/exit only.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ResourceHandleBenchmark {
+
+    private static final String RESOURCE_NAME = "benchmark-handle";
+
+    private final ResourceHandle handle = SphU.handle(RESOURCE_NAME, EntryType.OUT);
+
+    private void entryByName() throws BlockException {
+        Entry e = SphU.entry(RESOURCE_NAME);
+        e.exit();
+    }
+
+    private void entryByHandle() throws BlockException {
+        Entry e = handle.entry();
+        e.exit();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void testSingleThreadEntry() throws BlockException {
+        entryByName();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void testSingleThreadHandleEntry() throws BlockException {
+        entryByHandle();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void test4ThreadsEntry() throws BlockException {
+        entryByName();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void test4ThreadsHandleEntry() throws BlockException {
+        entryByHandle();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void test8ThreadsEntry() throws BlockException {
+        entryByName();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void test8ThreadsHandleEntry() throws BlockException {
+        entryByHandle();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.EntryType;
+import com.alibaba.csp.sentinel.slotchain.ProcessorSlotChain;
+import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
+import com.alibaba.csp.sentinel.slotchain.SlotChainProvider;
+import com.alibaba.csp.sentinel.slotchain.SlotChainRegistry;
+import com.alibaba.csp.sentinel.slotchain.StringResourceWrapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the cold-start time of registering slot chains of many resources from many threads,
+ * comparing {@link SlotChainRegistry} with the former copy-on-write {@code HashMap} under a global lock.
+ */
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SlotChainRegistryBenchmark {
+
+    @Param({"10000"})
+    private int resourceCount;
+
+    @Param({"32"})
+    private int threadCount;
+
+    private ResourceWrapper[] resources;
+    private ExecutorService executor;
+
+    private SlotChainRegistry registry;
+    private CopyOnWriteChainMap copyOnWriteMap;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        resources = new ResourceWrapper[resourceCount];
+        for (int i = 0; i < resourceCount; i++) {
+            resources[i] = new StringResourceWrapper("/api/benchmark/url-" + i, EntryType.IN);
+        }
+        executor = Executors.newFixedThreadPool(threadCount);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        registry = new SlotChainRegistry(resourceCount);
+        copyOnWriteMap = new CopyOnWriteChainMap(resourceCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int testSlotChainRegistry() throws InterruptedException {
+        registerConcurrently(new ChainLookup() {
+            @Override
+            public ProcessorSlotChain lookup(ResourceWrapper resource) {
+                return registry.getOrCreate(resource);
+            }
+        });
+        return registry.size();
+    }
+
+    @Benchmark
+    public int testCopyOnWriteHashMap() throws InterruptedException {
+        registerConcurrently(new ChainLookup() {
+            @Override
+            public ProcessorSlotChain lookup(ResourceWrapper resource) {
+                return copyOnWriteMap.getOrCreate(resource);
+            }
+        });
+        return copyOnWriteMap.size();
+    }
+
+    private void registerConcurrently(final ChainLookup lookup) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // Threads register interleaved resources, and every resource is looked up twice
+                        // to simulate the hot lookup after registration.
+                        for (int i = offset; i < resourceCount; i += threadCount) {
+                            lookup.lookup(resources[i]);
+                            lookup.lookup(resources[i]);
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        latch.await();
+    }
+
+    private interface ChainLookup {
+        ProcessorSlotChain lookup(ResourceWrapper resource);
+    }
+
+    /**
+     * The former strategy of {@code CtSph}: copying the whole map under a global lock for each new resource.
+     */
+    private static class CopyOnWriteChainMap {
+        private final int maxSize;
+        private final Object lock = new Object();
+        private volatile Map<ResourceWrapper, ProcessorSlotChain> chainMap
+            = new HashMap<ResourceWrapper, ProcessorSlotChain>();
+
+        CopyOnWriteChainMap(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        ProcessorSlotChain getOrCreate(ResourceWrapper resourceWrapper) {
+            ProcessorSlotChain chain = chainMap.get(resourceWrapper);
+            if (chain == null) {
+                synchronized (lock) {
+                    chain = chainMap.get(resourceWrapper);
+                    if (chain == null) {
+                        if (chainMap.size() >= maxSize) {
+                            return null;
+                        }
+                        chain = SlotChainProvider.newSlotChain();
+                        Map<ResourceWrapper, ProcessorSlotChain> newMap
+                            = new HashMap<ResourceWrapper, ProcessorSlotChain>(chainMap.size() + 1);
+                        newMap.putAll(chainMap);
+                        newMap.put(resourceWrapper, chain);
+                        chainMap = newMap;
+                    }
+                }
+            }
+            return chain;
+        }
+
+        int size() {
+            return chainMap.size();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.node.StatisticNode;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+import com.alibaba.csp.sentinel.util.clock.ManualClock;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmark for the retained heap of {@link StatisticNode}s with eager and lazy minute-level metrics.</p>
+ *
+ * <p>
+ * Each operation builds the nodes of 10k resources and records requests for each of 60 (simulated) seconds,
+ * so that all buckets of the windows are created. The retained heap per node is reported as the
+ * {@code retainedBytesPerNode} secondary result.
+ * </p>
+ */
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class StatisticNodeFootprintBenchmark {
+
+    private static final int RESOURCE_COUNT = 10000;
+
+    @Param({"false", "true"})
+    private boolean lazyMinuteMetric;
+
+    private ManualClock clock;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytesPerNode;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        clock = new ManualClock(System.currentTimeMillis());
+        TimeUtil.setClock(clock);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        TimeUtil.resetClock();
+    }
+
+    @Benchmark
+    public List<StatisticNode> testBuildAndRecord(Footprint footprint) {
+        long before = usedHeap();
+        List<StatisticNode> nodes = new ArrayList<StatisticNode>(RESOURCE_COUNT);
+        for (int i = 0; i < RESOURCE_COUNT; i++) {
+            nodes.add(new StatisticNode(lazyMinuteMetric));
+        }
+        for (int second = 0; second < 60; second++) {
+            for (StatisticNode node : nodes) {
+                node.addPassRequest(1);
+                node.addRtAndSuccess(5, 1);
+            }
+            clock.advance(1000);
+        }
+        footprint.retainedBytesPerNode = (usedHeap() - before) / RESOURCE_COUNT;
+        return nodes;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.concurrent.timer.HashedWheelTimer;
+import com.alibaba.csp.sentinel.concurrent.timer.Timeout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for scheduling and cancelling delayed tasks with {@link HashedWheelTimer},
+ * compared with {@link java.util.concurrent.ScheduledThreadPoolExecutor}. The timers are pre-filled with
+ * pending tasks to show the cost of scheduling when a large number of tasks are waiting (e.g. many resources
+ * are degraded at the same time).
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+
+    private static final Runnable TASK = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Param({"0", "100000"})
+    private int pendingTasks;
+
+    private HashedWheelTimer timer;
+    private ScheduledThreadPoolExecutor executor;
+
+    @Setup
+    public void prepare() {
+        timer = new HashedWheelTimer("benchmark-timer", 10, TimeUnit.MILLISECONDS, 512);
+        executor = new ScheduledThreadPoolExecutor(1);
+        // Otherwise cancelled tasks are kept in the queue until their deadline.
+        executor.setRemoveOnCancelPolicy(true);
+        for (int i = 0; i < pendingTasks; i++) {
+            timer.newTimeout(TASK, 1, TimeUnit.HOURS);
+            executor.schedule(TASK, 1, TimeUnit.HOURS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        timer.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean testWheelTimerScheduleAndCancel() {
+        Timeout timeout = timer.newTimeout(TASK, 10, TimeUnit.SECONDS);
+        return timeout.cancel();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean testScheduledExecutorScheduleAndCancel() {
+        ScheduledFuture<?> future = executor.schedule(TASK, 10, TimeUnit.SECONDS);
+        return future.cancel(false);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean test4ThreadsWheelTimerScheduleAndCancel() {
+        Timeout timeout = timer.newTimeout(TASK, 10, TimeUnit.SECONDS);
+        return timeout.cancel();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean test4ThreadsScheduledExecutorScheduleAndCancel() {
+        ScheduledFuture<?> future = executor.schedule(TASK, 10, TimeUnit.SECONDS);
+        return future.cancel(false);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.Constants;
+import com.alibaba.csp.sentinel.Entry;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmark for the allocation of entry/exit with and without zero-garbage mode.</p>
+ *
+ * <p>
+ * Run with the GC profiler to see the allocation rate per operation, e.g.
+ * {@code java -jar target/benchmarks.jar ZeroGarbageEntryBenchmark -prof gc}.
+ * In zero-garbage mode, {@code gc.alloc.rate.norm} of entry/exit should only count the entry itself
+ * in steady state, as entries are handed to callers and never recycled.
+ * </p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ZeroGarbageEntryBenchmark {
+
+    @Param({"false", "true"})
+    private boolean zeroGarbage;
+
+    @Setup
+    public void prepare() {
+        Constants.ZERO_GARBAGE = zeroGarbage;
+    }
+
+    @TearDown
+    public void tearDown() {
+        Constants.ZERO_GARBAGE = false;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void testDefaultContextEntry() throws BlockException {
+        Entry e = SphU.entry("benchmark-zero-garbage");
+        e.exit();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void testNestedDefaultContextEntry() throws BlockException {
+        Entry e1 = SphU.entry("benchmark-zero-garbage-outer");
+        Entry e2 = SphU.entry("benchmark-zero-garbage-inner");
+        e2.exit();
+        e1.exit();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void testCustomContextEntry() throws BlockException {
+        ContextUtil.enter("benchmark-zero-garbage-context", "app-a");
+        Entry e = SphU.entry("benchmark-zero-garbage");
+        e.exit();
+        ContextUtil.exit();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void test4ThreadsDefaultContextEntry() throws BlockException {
+        Entry e = SphU.entry("benchmark-zero-garbage");
+        e.exit();
+    }
+}
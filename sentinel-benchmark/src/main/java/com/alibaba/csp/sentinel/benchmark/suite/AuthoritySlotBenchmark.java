@@ -0,0 +1,67 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.slotchain.AbstractLinkedProcessorSlot;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.authority.AuthorityRule;
+import com.alibaba.csp.sentinel.slots.block.authority.AuthorityRuleManager;
+import com.alibaba.csp.sentinel.slots.block.authority.AuthoritySlot;
+
+/**
+ * Benchmark of {@link AuthoritySlot}. A resource has at most one authority rule, so every resource has a
+ * white list rule of all the origins of the suite padded with {@code ruleCount} unknown apps, and the origin
+ * is matched against the whole list.
+ *
+ * @since 1.5.0
+ */
+public class AuthoritySlotBenchmark extends SlotBenchmarkFixture {
+
+    @Override
+    protected AbstractLinkedProcessorSlot<DefaultNode> newSlot() {
+        return new AuthoritySlot();
+    }
+
+    @Override
+    protected void loadRules() {
+        StringBuilder whiteList = new StringBuilder();
+        for (int j = 0; j < ruleCount; j++) {
+            whiteList.append("suite-unknown-app-").append(j).append(',');
+        }
+        for (int k = 0; k < originCount; k++) {
+            whiteList.append(originName(k)).append(',');
+        }
+        String limitApp = whiteList.substring(0, whiteList.length() - 1);
+
+        List<AuthorityRule> rules = new ArrayList<AuthorityRule>(resourceCount);
+        for (int i = 0; i < resourceCount; i++) {
+            AuthorityRule rule = new AuthorityRule().setStrategy(RuleConstant.AUTHORITY_WHITE);
+            rule.setResource(resourceName(i));
+            rule.setLimitApp(limitApp);
+            rules.add(rule);
+        }
+        AuthorityRuleManager.loadRules(rules);
+    }
+
+    @Override
+    protected void clearRules() {
+        AuthorityRuleManager.loadRules(new ArrayList<AuthorityRule>());
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * One result of the suite, stored as a line of CSV. The parameters are joined as {@code key=value} pairs
+ * separated by {@code ;} in key order, so a result is identified by its benchmark, parameters, thread count
+ * and mode across runs. Sample time results also keep the p99 and p99.99 of the samples, which are
+ * {@code NaN} for other modes (and for records of older files without these columns).
+ *
+ * @since 1.5.0
+ */
+final class BenchmarkRecord {
+
+    static final String HEADER = "benchmark,params,threads,mode,unit,score,error,alloc_bytes_per_op,p99,p99_99";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String ALLOC_RATE_NORM = "gc.alloc.rate.norm";
+    private static final String MODE_SAMPLE = "sample";
+
+    private final String benchmark;
+    private final String params;
+    private final int threads;
+    private final String mode;
+    private final String unit;
+    private final double score;
+    private final double error;
+    /**
+     * Allocated bytes per operation, or {@code NaN} if the result was not profiled.
+     */
+    private final double allocBytesPerOp;
+    private final double p99;
+    private final double p9999;
+
+    BenchmarkRecord(String benchmark, String params, int threads, String mode, String unit, double score,
+                    double error, double allocBytesPerOp, double p99, double p9999) {
+        this.benchmark = benchmark;
+        this.params = params;
+        this.threads = threads;
+        this.mode = mode;
+        this.unit = unit;
+        this.score = score;
+        this.error = error;
+        this.allocBytesPerOp = allocBytesPerOp;
+        this.p99 = p99;
+        this.p9999 = p9999;
+    }
+
+    static BenchmarkRecord of(RunResult runResult) {
+        BenchmarkParams benchmarkParams = runResult.getParams();
+        List<String> keys = new ArrayList<String>(benchmarkParams.getParamsKeys());
+        Collections.sort(keys);
+        StringBuilder params = new StringBuilder();
+        for (String key : keys) {
+            if (params.length() > 0) {
+                params.append(';');
+            }
+            params.append(key).append('=').append(benchmarkParams.getParam(key));
+        }
+        double alloc = Double.NaN;
+        for (Map.Entry<String, Result> e : runResult.getSecondaryResults().entrySet()) {
+            if (e.getKey().endsWith(ALLOC_RATE_NORM)) {
+                alloc = e.getValue().getScore();
+            }
+        }
+        Result primary = runResult.getPrimaryResult();
+        String mode = benchmarkParams.getMode().shortLabel();
+        double p99 = Double.NaN;
+        double p9999 = Double.NaN;
+        if (MODE_SAMPLE.equals(mode)) {
+            p99 = primary.getStatistics().getPercentile(99);
+            p9999 = primary.getStatistics().getPercentile(99.99);
+        }
+        return new BenchmarkRecord(benchmarkParams.getBenchmark(), params.toString(), benchmarkParams.getThreads(),
+            mode, primary.getScoreUnit(), primary.getScore(), primary.getScoreError(), alloc, p99, p9999);
+    }
+
+    static BenchmarkRecord parse(String line) {
+        String[] columns = line.split(",", -1);
+        if (columns.length != 8 && columns.length != 10) {
+            throw new IllegalArgumentException("Invalid benchmark record: " + line);
+        }
+        boolean hasPercentiles = columns.length == 10;
+        return new BenchmarkRecord(columns[0], columns[1], Integer.parseInt(columns[2]), columns[3], columns[4],
+            Double.parseDouble(columns[5]), Double.parseDouble(columns[6]), Double.parseDouble(columns[7]),
+            hasPercentiles ? Double.parseDouble(columns[8]) : Double.NaN,
+            hasPercentiles ? Double.parseDouble(columns[9]) : Double.NaN);
+    }
+
+    static List<BenchmarkRecord> read(File file) throws IOException {
+        List<BenchmarkRecord> records = new ArrayList<BenchmarkRecord>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("benchmark,")) {
+                    records.add(parse(line));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+
+    static void write(File file, List<BenchmarkRecord> records) throws IOException {
+        PrintWriter writer = newWriter(file);
+        try {
+            writer.println(HEADER);
+            for (BenchmarkRecord record : records) {
+                writer.println(record.toCsv());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    static PrintWriter newWriter(File file) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8));
+    }
+
+    static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    String key() {
+        return benchmark + '|' + params + '|' + threads + '|' + mode;
+    }
+
+    /**
+     * @return whether a higher score is better, as in throughput mode
+     */
+    boolean higherIsBetter() {
+        return "thrpt".equals(mode);
+    }
+
+    String toCsv() {
+        return benchmark + ',' + params + ',' + threads + ',' + mode + ',' + unit + ',' + format(score) + ','
+            + format(error) + ',' + format(allocBytesPerOp) + ',' + format(p99) + ',' + format(p9999);
+    }
+
+    String getBenchmark() {
+        return benchmark;
+    }
+
+    String getParams() {
+        return params;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    String getMode() {
+        return mode;
+    }
+
+    String getUnit() {
+        return unit;
+    }
+
+    double getScore() {
+        return score;
+    }
+
+    double getError() {
+        return error;
+    }
+
+    double getAllocBytesPerOp() {
+        return allocBytesPerOp;
+    }
+
+    double getP99() {
+        return p99;
+    }
+
+    double getP9999() {
+        return p9999;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Comparison of the results of a run with the baseline results, written as CSV with one line per result.
+ * <p>
+ * A result regresses if its score is worse than the baseline by more than the threshold (in percent)
+ * and by more than the combined error of both scores, or if it allocates more bytes per operation than
+ * the baseline by more than the threshold and one byte. Likewise, a score only improves if it's better by more
+ * than both the threshold and the error. The error of a score is unknown (NaN) if it is measured in less than
+ * three iterations, in which case only the threshold applies.
+ * The allocation is mostly independent of the machine, while the score is only comparable with a baseline
+ * of the same machine. The p99 and p99.99 of sample time results are listed for reference only,
+ * as the tail of a single run is too noisy to tell a regression.
+ *
+ * @since 1.5.0
+ */
+final class BenchmarkReport {
+
+    static final String HEADER = "benchmark,params,threads,mode,unit,baseline_score,baseline_error,score,error,"
+        + "score_change_pct,baseline_alloc_bytes_per_op,alloc_bytes_per_op,baseline_p99,p99,baseline_p99_99,p99_99,"
+        + "status";
+
+    static final String STATUS_REGRESSION = "REGRESSION";
+    static final String STATUS_IMPROVEMENT = "IMPROVEMENT";
+    static final String STATUS_UNCHANGED = "UNCHANGED";
+    static final String STATUS_NEW = "NEW";
+    static final String STATUS_MISSING = "MISSING";
+
+    private final StringBuilder lines = new StringBuilder();
+    private int regressionCount;
+    private int improvementCount;
+
+    BenchmarkReport(List<BenchmarkRecord> baseline, List<BenchmarkRecord> current, double thresholdPercent) {
+        Map<String, BenchmarkRecord> baselineMap = new LinkedHashMap<String, BenchmarkRecord>();
+        for (BenchmarkRecord record : baseline) {
+            baselineMap.put(record.key(), record);
+        }
+        for (BenchmarkRecord record : current) {
+            BenchmarkRecord base = baselineMap.remove(record.key());
+            if (base == null) {
+                appendLine(record, null, Double.NaN, STATUS_NEW);
+                continue;
+            }
+            double change = (record.getScore() - base.getScore()) / base.getScore() * 100;
+            double worse = record.higherIsBetter() ? -change : change;
+            // The change is within the noise of the measurements.
+            boolean withinError = Math.abs(record.getScore() - base.getScore())
+                <= combinedError(record.getError(), base.getError());
+            double allowedAlloc = base.getAllocBytesPerOp() * (1 + thresholdPercent / 100) + 1;
+            String status;
+            if ((worse > thresholdPercent && !withinError) || record.getAllocBytesPerOp() > allowedAlloc) {
+                status = STATUS_REGRESSION;
+                regressionCount++;
+            } else if (-worse > thresholdPercent && !withinError) {
+                status = STATUS_IMPROVEMENT;
+                improvementCount++;
+            } else {
+                status = STATUS_UNCHANGED;
+            }
+            appendLine(record, base, change, status);
+        }
+        for (BenchmarkRecord base : baselineMap.values()) {
+            appendLine(base, base, Double.NaN, STATUS_MISSING);
+        }
+    }
+
+    /**
+     * @return the error of the difference of two scores, treating an unknown error as zero
+     */
+    static double combinedError(double error, double baseError) {
+        double e1 = Double.isNaN(error) ? 0 : error;
+        double e2 = Double.isNaN(baseError) ? 0 : baseError;
+        return Math.sqrt(e1 * e1 + e2 * e2);
+    }
+
+    private void appendLine(BenchmarkRecord record, BenchmarkRecord base, double change, String status) {
+        boolean missing = STATUS_MISSING.equals(status);
+        lines.append(record.getBenchmark()).append(',')
+            .append(record.getParams()).append(',')
+            .append(record.getThreads()).append(',')
+            .append(record.getMode()).append(',')
+            .append(record.getUnit()).append(',')
+            .append(base == null ? "" : BenchmarkRecord.format(base.getScore())).append(',')
+            .append(base == null ? "" : BenchmarkRecord.format(base.getError())).append(',')
+            .append(missing ? "" : BenchmarkRecord.format(record.getScore())).append(',')
+            .append(missing ? "" : BenchmarkRecord.format(record.getError())).append(',')
+            .append(Double.isNaN(change) ? "" : BenchmarkRecord.format(change)).append(',')
+            .append(base == null ? "" : BenchmarkRecord.format(base.getAllocBytesPerOp())).append(',')
+            .append(missing ? "" : BenchmarkRecord.format(record.getAllocBytesPerOp())).append(',')
+            .append(base == null ? "" : BenchmarkRecord.format(base.getP99())).append(',')
+            .append(missing ? "" : BenchmarkRecord.format(record.getP99())).append(',')
+            .append(base == null ? "" : BenchmarkRecord.format(base.getP9999())).append(',')
+            .append(missing ? "" : BenchmarkRecord.format(record.getP9999())).append(',')
+            .append(status).append('\n');
+    }
+
+    void write(File file) throws IOException {
+        PrintWriter writer = BenchmarkRecord.newWriter(file);
+        try {
+            writer.println(HEADER);
+            writer.print(lines);
+        } finally {
+            writer.close();
+        }
+    }
+
+    int getRegressionCount() {
+        return regressionCount;
+    }
+
+    int getImprovementCount() {
+        return improvementCount;
+    }
+}
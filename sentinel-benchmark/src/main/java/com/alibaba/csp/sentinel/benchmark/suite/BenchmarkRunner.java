@@ -0,0 +1,181 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmark suite with the GC profiler and compares the results with a baseline.
+ * <p>
+ * Usage (from the {@code sentinel-benchmark} directory, after {@code mvn package}):
+ * <pre>
+ * java -cp target/benchmarks.jar com.alibaba.csp.sentinel.benchmark.suite.BenchmarkRunner \
+ *     [--include regex] [--threads 1,4] [--quick] [--baseline baseline/suite-quick.csv] \
+ *     [--output target/benchmark-results] [--threshold 10] [--fail-on-regression]
+ * </pre>
+ * Without {@code --threads}, every benchmark runs with its own thread count (one thread unless annotated);
+ * otherwise the suite is run once for every given thread count, except the stress benchmarks whose thread count
+ * is what they measure (see {@link #DECLARED_THREADS}), which always run with their own thread count.
+ * The output directory gets the raw JMH results ({@code jmh.json}, or {@code jmh-<threads>-threads.json} and
+ * {@code jmh-declared-threads.json}), the results of the suite ({@code results.csv}, which can be checked in
+ * as a new baseline, with the p99 and p99.99 of sample time results) and, if a baseline is given,
+ * the comparison ({@code comparison.csv}).
+ * The {@code --quick} option runs every benchmark with a single, middle value of each cardinality and short
+ * iterations (enough of them for the error of the score), which is how the checked-in baseline was produced
+ * (with {@code --threads 1,4}, so compare with the same thread counts).
+ *
+ * @since 1.5.0
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * The suite: the benchmarks of this package and the window rotation of {@code LeapArray}.
+     */
+    static final String SUITE = "\\.suite\\.|LeapArrayBoundaryBenchmark";
+    /**
+     * Stress benchmarks that are always run with the thread count they are annotated with,
+     * e.g. {@code @Threads(32)} of the window rotation of {@code LeapArray}, even with {@code --threads}.
+     */
+    static final String DECLARED_THREADS = "LeapArrayBoundaryBenchmark";
+
+    private String include = SUITE;
+    /**
+     * Thread counts to run the suite with, or {@code null} to use the thread count of each benchmark.
+     */
+    private int[] threadCounts;
+    private boolean quick;
+    private File baseline;
+    private File outputDir = new File("target/benchmark-results");
+    private double thresholdPercent = 10;
+    private boolean failOnRegression;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        runner.parseArgs(args);
+        System.exit(runner.run());
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--quick".equals(arg)) {
+                quick = true;
+            } else if ("--fail-on-regression".equals(arg)) {
+                failOnRegression = true;
+            } else if (i + 1 < args.length) {
+                String value = args[++i];
+                if ("--include".equals(arg)) {
+                    include = value;
+                } else if ("--threads".equals(arg)) {
+                    String[] parts = value.split(",");
+                    threadCounts = new int[parts.length];
+                    for (int j = 0; j < parts.length; j++) {
+                        threadCounts[j] = Integer.parseInt(parts[j].trim());
+                    }
+                } else if ("--baseline".equals(arg)) {
+                    baseline = new File(value);
+                } else if ("--output".equals(arg)) {
+                    outputDir = new File(value);
+                } else if ("--threshold".equals(arg)) {
+                    thresholdPercent = Double.parseDouble(value);
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown option or missing value: " + arg);
+            }
+        }
+    }
+
+    /**
+     * @return exit code of the process
+     */
+    private int run() throws Exception {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IllegalStateException("Cannot create output directory: " + outputDir);
+        }
+        List<BenchmarkRecord> records = new ArrayList<BenchmarkRecord>();
+        if (threadCounts == null) {
+            runSuite(newOptions(new File(outputDir, "jmh.json")), records);
+        } else {
+            for (int threads : threadCounts) {
+                runSuite(newOptions(new File(outputDir, "jmh-" + threads + "-threads.json")).threads(threads)
+                    .exclude(DECLARED_THREADS), records);
+            }
+            // Exclude everything else.
+            runSuite(newOptions(new File(outputDir, "jmh-declared-threads.json"))
+                .exclude("^(?!.*(?:" + DECLARED_THREADS + "))"), records);
+        }
+        File resultFile = new File(outputDir, "results.csv");
+        BenchmarkRecord.write(resultFile, records);
+        System.out.println("Results: " + resultFile);
+
+        if (baseline == null) {
+            return 0;
+        }
+        BenchmarkReport report = new BenchmarkReport(BenchmarkRecord.read(baseline), records, thresholdPercent);
+        File reportFile = new File(outputDir, "comparison.csv");
+        report.write(reportFile);
+        System.out.println("Comparison with " + baseline + ": " + reportFile + " (" + report.getRegressionCount()
+            + " regressions, " + report.getImprovementCount() + " improvements)");
+        return failOnRegression && report.getRegressionCount() > 0 ? 1 : 0;
+    }
+
+    private ChainedOptionsBuilder newOptions(File jmhResult) {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .include(include)
+            .addProfiler(GCProfiler.class)
+            .shouldFailOnError(true)
+            .resultFormat(ResultFormatType.JSON)
+            .result(jmhResult.getPath());
+        if (quick) {
+            options.forks(1)
+                .warmupIterations(1).warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5).measurementTime(TimeValue.seconds(1))
+                .param("resourceCount", "100")
+                .param("originCount", "10")
+                .param("contextCount", "10")
+                .param("ruleCount", "10")
+                .param("valueCount", "1000")
+                .param("flowCount", "100")
+                .param("opsPerWindow", "1024");
+        }
+        return options;
+    }
+
+    private static void runSuite(ChainedOptionsBuilder options, List<BenchmarkRecord> records) throws Exception {
+        try {
+            for (RunResult result : new Runner(options.build()).run()) {
+                records.add(BenchmarkRecord.of(result));
+            }
+        } catch (NoBenchmarksException e) {
+            // None of the included benchmarks is in this run.
+        }
+    }
+
+    private BenchmarkRunner() {}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.cluster.TokenResult;
+import com.alibaba.csp.sentinel.cluster.TokenResultStatus;
+import com.alibaba.csp.sentinel.cluster.client.ClientConstants;
+import com.alibaba.csp.sentinel.cluster.client.DefaultClusterTokenClient;
+import com.alibaba.csp.sentinel.cluster.client.TokenResultFuture;
+import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientAssignConfig;
+import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientConfig;
+import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientConfigManager;
+import com.alibaba.csp.sentinel.cluster.flow.rule.ClusterFlowRuleManager;
+import com.alibaba.csp.sentinel.cluster.server.NettyTransportServer;
+import com.alibaba.csp.sentinel.cluster.server.config.ClusterServerConfigManager;
+import com.alibaba.csp.sentinel.cluster.server.config.ServerFlowConfig;
+import com.alibaba.csp.sentinel.init.InitExecutor;
+import com.alibaba.csp.sentinel.slots.block.ClusterRuleConstant;
+import com.alibaba.csp.sentinel.slots.block.flow.ClusterFlowConfig;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of requesting flow tokens with {@link DefaultClusterTokenClient} from a token server started in
+ * the same process on the loopback interface, including the encoding, the round trip and the server-side
+ * check. All the threads share the client, and the requests are spread over {@code flowCount} global
+ * cluster rules, which never block.
+ * <p>
+ * {@code pipelined} switches the client between flushing every request and batching the requests sent
+ * in the same event loop tick. {@code requestTokenAsync} keeps {@value #ASYNC_BATCH} requests in flight
+ * per thread, which shows the cost per token when the caller doesn't wait for each round trip.
+ *
+ * @since 1.5.0
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ClusterTokenClientBenchmark {
+
+    private static final String NAMESPACE = "suite-cluster-namespace";
+    private static final String HOST = "127.0.0.1";
+    private static final long READY_TIMEOUT_MS = 10000;
+    private static final int ASYNC_BATCH = 16;
+
+    @Param({"1", "100"})
+    private int flowCount;
+
+    @Param({"false", "true"})
+    private boolean pipelined;
+
+    private NettyTransportServer server;
+    private DefaultClusterTokenClient client;
+
+    @Setup
+    public void setUp() throws Exception {
+        InitExecutor.doInit();
+        ClusterServerConfigManager.loadGlobalFlowConfig(new ServerFlowConfig().setMaxAllowedQps(Integer.MAX_VALUE));
+        ClusterFlowRuleManager.register2Property(NAMESPACE);
+        List<FlowRule> rules = new ArrayList<FlowRule>(flowCount);
+        for (int i = 0; i < flowCount; i++) {
+            ClusterFlowConfig clusterConfig = new ClusterFlowConfig().setFlowId(flowId(i))
+                .setThresholdType(ClusterRuleConstant.FLOW_THRESHOLD_GLOBAL);
+            rules.add(new FlowRule(SlotBenchmarkFixture.resourceName(i)).setCount(Integer.MAX_VALUE)
+                .setClusterMode(true).setClusterConfig(clusterConfig));
+        }
+        ClusterFlowRuleManager.loadRules(NAMESPACE, rules);
+
+        int port = freePort();
+        server = new NettyTransportServer(port);
+        server.start();
+
+        ClusterClientConfigManager.applyNewConfig(new ClusterClientConfig().setRequestTimeout(1000)
+            .setPipelined(pipelined));
+        client = new DefaultClusterTokenClient();
+        ClusterClientConfigManager.applyNewAssignConfig(new ClusterClientAssignConfig(HOST, port));
+        client.start();
+        awaitReady();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.stop();
+        server.stop();
+        ClusterFlowRuleManager.removeProperty(NAMESPACE);
+    }
+
+    @Benchmark
+    public int requestToken() {
+        return client.requestToken(flowId(ThreadLocalRandom.current().nextInt(flowCount)), 1, false).getStatus();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ASYNC_BATCH)
+    public int requestTokenAsync() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        TokenResultFuture[] futures = new TokenResultFuture[ASYNC_BATCH];
+        for (int i = 0; i < ASYNC_BATCH; i++) {
+            futures[i] = client.requestTokenAsync(flowId(random.nextInt(flowCount)), 1, false);
+        }
+        int status = 0;
+        for (TokenResultFuture future : futures) {
+            status += future.get().getStatus();
+        }
+        return status;
+    }
+
+    /**
+     * Waits for the connection, then checks that a token is granted, so that failures are not measured.
+     */
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + READY_TIMEOUT_MS;
+        while (client.getState() != ClientConstants.CLIENT_STATUS_STARTED) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Token client not connected to " + HOST + " in time");
+            }
+            Thread.sleep(10);
+        }
+        TokenResult result = client.requestToken(flowId(0), 1, false);
+        if (result.getStatus() != TokenResultStatus.OK) {
+            throw new IllegalStateException("Unexpected token result: " + result);
+        }
+    }
+
+    private static long flowId(int index) {
+        return 1000L + index;
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+}
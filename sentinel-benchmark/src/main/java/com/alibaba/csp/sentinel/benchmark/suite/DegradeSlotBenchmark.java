@@ -0,0 +1,70 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.Constants;
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.slotchain.AbstractLinkedProcessorSlot;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.degrade.DegradeRule;
+import com.alibaba.csp.sentinel.slots.block.degrade.DegradeRuleManager;
+import com.alibaba.csp.sentinel.slots.block.degrade.DegradeSlot;
+
+/**
+ * Benchmark of {@link DegradeSlot}. Every resource has {@code ruleCount} rules, which take turns in the
+ * average RT, exception ratio, exception count and percentile RT grades. None of them is triggered.
+ *
+ * @since 1.5.0
+ */
+public class DegradeSlotBenchmark extends SlotBenchmarkFixture {
+
+    private static final int[] GRADES = {RuleConstant.DEGRADE_GRADE_RT, RuleConstant.DEGRADE_GRADE_EXCEPTION_RATIO,
+        RuleConstant.DEGRADE_GRADE_EXCEPTION_COUNT, RuleConstant.DEGRADE_GRADE_RT_PERCENTILE};
+
+    @Override
+    protected AbstractLinkedProcessorSlot<DefaultNode> newSlot() {
+        return new DegradeSlot();
+    }
+
+    @Override
+    protected void loadRules() {
+        List<DegradeRule> rules = new ArrayList<DegradeRule>(resourceCount * ruleCount);
+        for (int i = 0; i < resourceCount; i++) {
+            for (int j = 0; j < ruleCount; j++) {
+                // Thresholds differ in every rule, so that they are not deduplicated.
+                int grade = GRADES[j % GRADES.length];
+                double count;
+                if (grade == RuleConstant.DEGRADE_GRADE_EXCEPTION_RATIO) {
+                    count = 1 - j * 0.001;
+                } else if (grade == RuleConstant.DEGRADE_GRADE_EXCEPTION_COUNT) {
+                    count = Integer.MAX_VALUE - j;
+                } else {
+                    count = Constants.TIME_DROP_VALVE - j;
+                }
+                rules.add(new DegradeRule(resourceName(i)).setGrade(grade).setCount(count).setTimeWindow(10));
+            }
+        }
+        DegradeRuleManager.loadRules(rules);
+    }
+
+    @Override
+    protected void clearRules() {
+        DegradeRuleManager.loadRules(new ArrayList<DegradeRule>());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.Entry;
+import com.alibaba.csp.sentinel.EntryType;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRuleManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a whole invocation through the slot chain: entering a context with an origin, entering and
+ * exiting a resource with a flow rule, and exiting the context. The invocations take turns in
+ * {@code contextCount} context names, {@code resourceCount} resources and {@code originCount} origins,
+ * so the invocation tree holds up to {@code contextCount * resourceCount} nodes.
+ *
+ * @since 1.5.0
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class EntryChainBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int contextCount;
+
+    @Param({"1", "100", "1000"})
+    private int resourceCount;
+
+    @Param({"1", "10", "100"})
+    private int originCount;
+
+    private String[] contextNames;
+    private String[] resourceNames;
+    private String[] origins;
+    private int contextCursor;
+    private int resourceCursor;
+    private int originCursor;
+
+    @Setup
+    public void setUp() {
+        contextNames = new String[contextCount];
+        for (int i = 0; i < contextCount; i++) {
+            contextNames[i] = "suite-chain-context-" + i;
+        }
+        origins = new String[originCount];
+        for (int i = 0; i < originCount; i++) {
+            origins[i] = SlotBenchmarkFixture.originName(i);
+        }
+        resourceNames = new String[resourceCount];
+        List<FlowRule> rules = new ArrayList<FlowRule>(resourceCount);
+        for (int i = 0; i < resourceCount; i++) {
+            resourceNames[i] = SlotBenchmarkFixture.resourceName(i);
+            rules.add(new FlowRule(resourceNames[i]).setCount(Integer.MAX_VALUE).as(FlowRule.class));
+        }
+        FlowRuleManager.loadRules(rules);
+    }
+
+    @TearDown
+    public void tearDown() {
+        FlowRuleManager.loadRules(new ArrayList<FlowRule>());
+    }
+
+    @Benchmark
+    public void entryAndExit() throws BlockException {
+        int c = contextCursor;
+        contextCursor = c + 1 == contextCount ? 0 : c + 1;
+        int r = resourceCursor;
+        resourceCursor = r + 1 == resourceCount ? 0 : r + 1;
+        int o = originCursor;
+        originCursor = o + 1 == originCount ? 0 : o + 1;
+
+        ContextUtil.enter(contextNames[c], origins[o]);
+        try {
+            Entry entry = SphU.entry(resourceNames[r], EntryType.IN);
+            entry.exit();
+        } finally {
+            ContextUtil.exit();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.node.ClusterNode;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.flow.TrafficShapingController;
+import com.alibaba.csp.sentinel.slots.block.flow.controller.DefaultController;
+import com.alibaba.csp.sentinel.slots.block.flow.controller.GcraController;
+import com.alibaba.csp.sentinel.slots.block.flow.controller.RateLimiterController;
+import com.alibaba.csp.sentinel.slots.block.flow.controller.WarmUpController;
+import com.alibaba.csp.sentinel.slots.block.flow.controller.WarmUpRateLimiterController;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the {@link TrafficShapingController}s. All the threads share one controller of a resource
+ * (as they share a flow rule), and the passed requests are recorded in the node, which the warm-up
+ * controllers read. The threshold is high enough that the requests are never queued.
+ *
+ * @since 1.5.0
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class FlowControllerBenchmark {
+
+    private static final double COUNT = 1e9;
+
+    @Param({"default", "rateLimiter", "warmUp", "warmUpRateLimiter", "gcra"})
+    private String controller;
+
+    private TrafficShapingController trafficShapingController;
+    private ClusterNode node;
+
+    @Setup
+    public void setUp() {
+        node = new ClusterNode();
+        if ("rateLimiter".equals(controller)) {
+            trafficShapingController = new RateLimiterController(0, COUNT);
+        } else if ("warmUp".equals(controller)) {
+            trafficShapingController = new WarmUpController(COUNT, 10, 3);
+        } else if ("warmUpRateLimiter".equals(controller)) {
+            trafficShapingController = new WarmUpRateLimiterController(COUNT, 10, 0, 3);
+        } else if ("gcra".equals(controller)) {
+            trafficShapingController = new GcraController(COUNT, 1000);
+        } else {
+            trafficShapingController = new DefaultController(COUNT, RuleConstant.FLOW_GRADE_QPS);
+        }
+    }
+
+    @Benchmark
+    public boolean canPass() {
+        if (trafficShapingController.canPass(node, 1)) {
+            node.addPassRequest(1);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.slotchain.AbstractLinkedProcessorSlot;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRuleManager;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowSlot;
+
+/**
+ * Benchmark of {@link FlowSlot}. Every resource has {@code ruleCount} QPS rules: a default rule and
+ * rules limiting the origins of the suite one by one, so some of the contexts match an origin-specific rule.
+ *
+ * @since 1.5.0
+ */
+public class FlowSlotBenchmark extends SlotBenchmarkFixture {
+
+    @Override
+    protected AbstractLinkedProcessorSlot<DefaultNode> newSlot() {
+        return new FlowSlot();
+    }
+
+    @Override
+    protected void loadRules() {
+        List<FlowRule> rules = new ArrayList<FlowRule>(resourceCount * ruleCount);
+        for (int i = 0; i < resourceCount; i++) {
+            for (int j = 0; j < ruleCount; j++) {
+                String limitApp = j == 0 ? RuleConstant.LIMIT_APP_DEFAULT : originName(j - 1);
+                rules.add(new FlowRule(resourceName(i)).setCount(Integer.MAX_VALUE).setLimitApp(limitApp)
+                    .as(FlowRule.class));
+            }
+        }
+        FlowRuleManager.loadRules(rules);
+    }
+
+    @Override
+    protected void clearRules() {
+        FlowRuleManager.loadRules(new ArrayList<FlowRule>());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.slotchain.AbstractLinkedProcessorSlot;
+import com.alibaba.csp.sentinel.slots.block.flow.param.ParamFlowRule;
+import com.alibaba.csp.sentinel.slots.block.flow.param.ParamFlowRuleManager;
+import com.alibaba.csp.sentinel.slots.block.flow.param.ParamFlowSlot;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmark of {@link ParamFlowSlot}. Every invocation carries {@code ruleCount} arguments and every resource
+ * has a rule for each of them, and the arguments take turns in {@code valueCount} distinct values,
+ * which is the number of hot values tracked per parameter.
+ *
+ * @since 1.5.0
+ */
+public class ParamFlowSlotBenchmark extends SlotBenchmarkFixture {
+
+    @Param({"1", "1000"})
+    private int valueCount;
+
+    private Object[][] values;
+    private int valueCursor;
+
+    @Override
+    protected AbstractLinkedProcessorSlot<DefaultNode> newSlot() {
+        return new ParamFlowSlot();
+    }
+
+    @Override
+    protected void loadRules() {
+        values = new Object[valueCount][ruleCount];
+        for (int v = 0; v < valueCount; v++) {
+            for (int j = 0; j < ruleCount; j++) {
+                values[v][j] = "suite-value-" + v;
+            }
+        }
+        List<ParamFlowRule> rules = new ArrayList<ParamFlowRule>(resourceCount * ruleCount);
+        for (int i = 0; i < resourceCount; i++) {
+            for (int j = 0; j < ruleCount; j++) {
+                rules.add(new ParamFlowRule(resourceName(i)).setParamIdx(j).setCount(Integer.MAX_VALUE));
+            }
+        }
+        ParamFlowRuleManager.loadRules(rules);
+    }
+
+    @Override
+    protected void clearRules() {
+        ParamFlowRuleManager.loadRules(new ArrayList<ParamFlowRule>());
+    }
+
+    @Override
+    protected Object[] argsOf(int resourceIndex) {
+        int v = valueCursor;
+        valueCursor = v + 1 == valueCount ? 0 : v + 1;
+        return values[v];
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.Entry;
+import com.alibaba.csp.sentinel.EntryType;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.context.Context;
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.slotchain.AbstractLinkedProcessorSlot;
+import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
+import com.alibaba.csp.sentinel.slotchain.StringResourceWrapper;
+import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base of the per-slot benchmarks of the suite. Every thread owns {@code resourceCount} resources (each with
+ * its own cluster node) and {@code originCount} contexts of distinct origins, and each invocation enters and
+ * exits the slot under test with the next resource and the next context. So rule lookup and origin statistics
+ * are measured across the configured cardinality rather than on a single hot entry.
+ * <p>
+ * The slot is invoked standalone (it has no successor), and subclasses load rules which always pass, so a
+ * {@link com.alibaba.csp.sentinel.slots.block.BlockException} fails the benchmark instead of being measured.
+ * How {@code ruleCount} is applied is described by each subclass.
+ *
+ * @since 1.5.0
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public abstract class SlotBenchmarkFixture {
+
+    private static final String RESOURCE_PREFIX = "suite-resource-";
+    private static final String ORIGIN_PREFIX = "suite-app-";
+    private static final String CONTEXT_PREFIX = "suite-context-";
+    private static final String ORIGIN_ENTRY_NAME = "suite-origin-entry";
+    private static final Object[] NO_ARGS = new Object[0];
+
+    @Param({"1", "100", "1000"})
+    protected int resourceCount;
+
+    @Param({"1", "10", "100"})
+    protected int originCount;
+
+    @Param({"1", "10"})
+    protected int ruleCount;
+
+    protected ResourceWrapper[] resources;
+    protected DefaultNode[] nodes;
+    protected Context[] contexts;
+
+    private AbstractLinkedProcessorSlot<DefaultNode> slot;
+    private int resourceCursor;
+    private int originCursor;
+
+    @Setup
+    public void setUpFixture() throws Throwable {
+        resources = new ResourceWrapper[resourceCount];
+        nodes = new DefaultNode[resourceCount];
+        for (int i = 0; i < resourceCount; i++) {
+            String name = resourceName(i);
+            resources[i] = new StringResourceWrapper(name, EntryType.IN);
+            // Pass through the chain once so that the resource owns a cluster node.
+            ContextUtil.enter(CONTEXT_PREFIX + "setup");
+            SphU.entry(name, EntryType.IN).exit();
+            ContextUtil.exit();
+            nodes[i] = new DefaultNode(resources[i], ClusterBuilderSlot.getClusterNode(name));
+        }
+        contexts = new Context[originCount];
+        for (int i = 0; i < originCount; i++) {
+            Context context = ContextUtil.enter(CONTEXT_PREFIX + i, originName(i));
+            Entry originEntry = SphU.entry(ORIGIN_ENTRY_NAME);
+            originEntry.exit();
+            ContextUtil.exit();
+            // Keep the exited entry as the current one, which carries the origin node of the context.
+            contexts[i] = context.setCurEntry(originEntry);
+        }
+        loadRules();
+        slot = newSlot();
+    }
+
+    @TearDown
+    public void tearDownFixture() {
+        clearRules();
+    }
+
+    /**
+     * Enters and exits the slot with the next resource and the next context. The current node of the context
+     * is pointed at the resource, as {@code NodeSelectorSlot} would do.
+     */
+    @Benchmark
+    public void entryAndExit() throws Throwable {
+        int r = resourceCursor;
+        resourceCursor = r + 1 == resourceCount ? 0 : r + 1;
+        int o = originCursor;
+        originCursor = o + 1 == originCount ? 0 : o + 1;
+
+        Context context = contexts[o];
+        context.setCurNode(nodes[r]);
+        Object[] args = argsOf(r);
+        slot.entry(context, resources[r], nodes[r], 1, false, args);
+        slot.exit(context, resources[r], 1, args);
+    }
+
+    protected abstract AbstractLinkedProcessorSlot<DefaultNode> newSlot();
+
+    protected abstract void loadRules();
+
+    protected abstract void clearRules();
+
+    /**
+     * @param resourceIndex index of the resource being entered
+     * @return arguments of the invocation
+     */
+    protected Object[] argsOf(int resourceIndex) {
+        return NO_ARGS;
+    }
+
+    static String resourceName(int index) {
+        return RESOURCE_PREFIX + index;
+    }
+
+    static String originName(int index) {
+        return ORIGIN_PREFIX + index;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.benchmark.suite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.slotchain.AbstractLinkedProcessorSlot;
+import com.alibaba.csp.sentinel.slots.system.SystemRule;
+import com.alibaba.csp.sentinel.slots.system.SystemRuleManager;
+import com.alibaba.csp.sentinel.slots.system.SystemSlot;
+
+/**
+ * Benchmark of {@link SystemSlot}. System rules are global, so {@code ruleCount} rules are loaded,
+ * each setting the QPS, thread, RT and load thresholds, and the effective thresholds are the minimums.
+ * The resources are inbound, so every entry is checked.
+ *
+ * @since 1.5.0
+ */
+public class SystemSlotBenchmark extends SlotBenchmarkFixture {
+
+    @Override
+    protected AbstractLinkedProcessorSlot<DefaultNode> newSlot() {
+        return new SystemSlot();
+    }
+
+    @Override
+    protected void loadRules() {
+        List<SystemRule> rules = new ArrayList<SystemRule>(ruleCount);
+        for (int j = 0; j < ruleCount; j++) {
+            SystemRule rule = new SystemRule();
+            rule.setQps(Integer.MAX_VALUE - j);
+            rule.setMaxThread(Integer.MAX_VALUE - j);
+            rule.setAvgRt(Integer.MAX_VALUE - j);
+            rule.setHighestSystemLoad(Integer.MAX_VALUE - j);
+            rules.add(rule);
+        }
+        SystemRuleManager.loadRules(rules);
+    }
+
+    @Override
+    protected void clearRules() {
+        SystemRuleManager.loadRules(Collections.<SystemRule>emptyList());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.Entry;
+import com.alibaba.csp.sentinel.EntryType;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.context.Context;
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.node.ClusterNode;
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
+import com.alibaba.csp.sentinel.slotchain.StringResourceWrapper;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for checking the flow rules of a resource, comparing the compiled {@link FlowRulePlan}
+ * with the former evaluation of the rule list (which matches the limit app of every rule with the origin).
+ * It's placed in the package of {@link FlowSlot} to access the package-private checkers.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FlowRulePlanBenchmark {
+
+    private static final String RESOURCE_NAME = "flowRulePlanBenchmark";
+
+    /**
+     * Rules of the resource: a default rule, an `other` rule and rules of other origins.
+     */
+    @Param({"1", "10", "50"})
+    private int ruleCount;
+
+    private final FlowSlot flowSlot = new FlowSlot();
+    private ResourceWrapper resource;
+    private Context context;
+    private Entry originEntry;
+    private DefaultNode node;
+
+    @Setup
+    public void setUp() throws BlockException {
+        List<FlowRule> rules = new ArrayList<FlowRule>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            String limitApp = i == 0 ? RuleConstant.LIMIT_APP_DEFAULT
+                : i == 1 ? RuleConstant.LIMIT_APP_OTHER : "app-" + i;
+            rules.add(new FlowRule(RESOURCE_NAME).setCount(Integer.MAX_VALUE).setLimitApp(limitApp)
+                .as(FlowRule.class));
+        }
+        FlowRuleManager.loadRules(rules);
+
+        resource = new StringResourceWrapper(RESOURCE_NAME, EntryType.IN);
+        node = new DefaultNode(resource, new ClusterNode());
+        // The origin does not have specific rules, so it's regarded as `other`.
+        context = ContextUtil.enter("flow_rule_plan_benchmark_context", "app-0");
+        originEntry = SphU.entry("flowRulePlanBenchmarkOrigin");
+    }
+
+    @TearDown
+    public void tearDown() {
+        originEntry.exit();
+        ContextUtil.exit();
+        FlowRuleManager.loadRules(new ArrayList<FlowRule>());
+    }
+
+    @Benchmark
+    public void testCompiledPlan() throws BlockException {
+        flowSlot.checkFlow(resource, context, node, 1, false);
+    }
+
+    @Benchmark
+    public void testRuleList() throws BlockException {
+        List<FlowRule> rules = FlowRuleManager.getFlowRuleMap().get(resource.getName());
+        if (rules != null) {
+            for (FlowRule rule : rules) {
+                if (!FlowRuleChecker.passCheck(rule, context, node, 1, false)) {
+                    throw new FlowException(rule.getLimitApp(), rule);
+                }
+            }
+        }
+    }
+}
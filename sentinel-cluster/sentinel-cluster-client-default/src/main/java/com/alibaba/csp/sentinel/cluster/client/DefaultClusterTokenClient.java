@@ -16,17 +16,19 @@
 package com.alibaba.csp.sentinel.cluster.client;
 
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.alibaba.csp.sentinel.cluster.ClusterConstants;
 import com.alibaba.csp.sentinel.cluster.ClusterErrorMessages;
-import com.alibaba.csp.sentinel.cluster.ClusterTransportClient;
 import com.alibaba.csp.sentinel.cluster.TokenResult;
 import com.alibaba.csp.sentinel.cluster.TokenResultStatus;
 import com.alibaba.csp.sentinel.cluster.TokenServerDescriptor;
 import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientAssignConfig;
 import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientConfigManager;
 import com.alibaba.csp.sentinel.cluster.client.config.ServerChangeObserver;
+import com.alibaba.csp.sentinel.cluster.client.handler.PendingResponse;
 import com.alibaba.csp.sentinel.cluster.log.ClusterClientStatLogUtil;
 import com.alibaba.csp.sentinel.cluster.request.ClusterRequest;
 import com.alibaba.csp.sentinel.cluster.request.data.FlowRequestData;
@@ -37,14 +39,15 @@ import com.alibaba.csp.sentinel.log.RecordLog;
 import com.alibaba.csp.sentinel.util.StringUtil;
 
 /**
- * Default implementation of {@link ClusterTokenClient}.
+ * Default implementation of {@link ClusterTokenClient}. The synchronous requests wait for the result of
+ * the asynchronous ones, which don't block the caller.
  *
  * @author Eric Zhao
  * @since 1.4.0
  */
-public class DefaultClusterTokenClient implements ClusterTokenClient {
+public class DefaultClusterTokenClient implements AsyncClusterTokenClient {
 
-    private ClusterTransportClient transportClient;
+    private volatile NettyTransportClient transportClient;
     private TokenServerDescriptor serverDescriptor;
 
     private final AtomicBoolean shouldStart = new AtomicBoolean(false);
@@ -148,41 +151,37 @@ public class DefaultClusterTokenClient implements ClusterTokenClient {
 
     @Override
     public TokenResult requestToken(Long flowId, int acquireCount, boolean prioritized) {
+        return awaitResult(requestTokenAsync(flowId, acquireCount, prioritized));
+    }
+
+    @Override
+    public TokenResult requestParamToken(Long flowId, int acquireCount, Collection<Object> params) {
+        return awaitResult(requestParamTokenAsync(flowId, acquireCount, params));
+    }
+
+    @Override
+    public TokenResultFuture requestTokenAsync(Long flowId, int acquireCount, boolean prioritized) {
         if (notValidRequest(flowId, acquireCount)) {
-            return badRequest();
+            return TokenResultFuture.completed(badRequest());
         }
         FlowRequestData data = new FlowRequestData().setCount(acquireCount)
             .setFlowId(flowId).setPriority(prioritized);
         ClusterRequest<FlowRequestData> request = new ClusterRequest<>(ClusterConstants.MSG_TYPE_FLOW, data);
-        try {
-            TokenResult result = sendTokenRequest(request);
-            logForResult(result);
-            return result;
-        } catch (Exception ex) {
-            ClusterClientStatLogUtil.log(ex.getMessage());
-            return new TokenResult(TokenResultStatus.FAIL);
-        }
+        return sendTokenRequest(request);
     }
 
     @Override
-    public TokenResult requestParamToken(Long flowId, int acquireCount, Collection<Object> params) {
+    public TokenResultFuture requestParamTokenAsync(Long flowId, int acquireCount, Collection<Object> params) {
         if (notValidRequest(flowId, acquireCount) || params == null || params.isEmpty()) {
-            return badRequest();
+            return TokenResultFuture.completed(badRequest());
         }
         ParamFlowRequestData data = new ParamFlowRequestData().setCount(acquireCount)
             .setFlowId(flowId).setParams(params);
         ClusterRequest<ParamFlowRequestData> request = new ClusterRequest<>(ClusterConstants.MSG_TYPE_PARAM_FLOW, data);
-        try {
-            TokenResult result = sendTokenRequest(request);
-            logForResult(result);
-            return result;
-        } catch (Exception ex) {
-            ClusterClientStatLogUtil.log(ex.getMessage());
-            return new TokenResult(TokenResultStatus.FAIL);
-        }
+        return sendTokenRequest(request);
     }
 
-    private void logForResult(TokenResult result) {
+    private static void logForResult(TokenResult result) {
         switch (result.getStatus()) {
             case TokenResultStatus.NO_RULE_EXISTS:
                 ClusterClientStatLogUtil.log(ClusterErrorMessages.NO_RULES_IN_SERVER);
@@ -194,31 +193,70 @@ public class DefaultClusterTokenClient implements ClusterTokenClient {
         }
     }
 
-    private TokenResult sendTokenRequest(ClusterRequest request) throws Exception {
+    private TokenResultFuture sendTokenRequest(ClusterRequest request) {
+        NettyTransportClient transportClient = this.transportClient;
         if (transportClient == null) {
             RecordLog.warn(
                 "[DefaultClusterTokenClient] Client not created, please check your config for cluster client");
+            return TokenResultFuture.completed(clientFail());
+        }
+        TokenResultFuture future = new TokenResultFuture();
+        transportClient.sendRequestAsync(request, new TokenResponse(future));
+        return future;
+    }
+
+    private TokenResult awaitResult(TokenResultFuture future) {
+        try {
+            return future.get(ClusterClientConfigManager.getRequestTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            // The request will be expired by the transport client.
+            ClusterClientStatLogUtil.log(ClusterErrorMessages.REQUEST_TIME_OUT);
+            return clientFail();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             return clientFail();
         }
-        ClusterResponse response = transportClient.sendRequest(request);
-        TokenResult result = new TokenResult(response.getStatus());
-        if (response.getData() != null) {
-            FlowTokenResponseData responseData = (FlowTokenResponseData)response.getData();
-            result.setRemaining(responseData.getRemainingCount())
-                .setWaitInMs(responseData.getWaitInMs());
+    }
+
+    /**
+     * Completes the token result future with the response of the token request.
+     */
+    private static final class TokenResponse extends PendingResponse {
+
+        private final TokenResultFuture future;
+
+        TokenResponse(TokenResultFuture future) {
+            this.future = future;
+        }
+
+        @Override
+        public void onResponse(ClusterResponse response) {
+            TokenResult result = new TokenResult(response.getStatus());
+            if (response.getData() != null) {
+                FlowTokenResponseData responseData = (FlowTokenResponseData)response.getData();
+                result.setRemaining(responseData.getRemainingCount())
+                    .setWaitInMs(responseData.getWaitInMs());
+            }
+            logForResult(result);
+            future.complete(result);
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            ClusterClientStatLogUtil.log(errorMessage);
+            future.complete(clientFail());
         }
-        return result;
     }
 
     private boolean notValidRequest(Long id, int count) {
         return id == null || id <= 0 || count <= 0;
     }
 
-    private TokenResult badRequest() {
+    private static TokenResult badRequest() {
         return new TokenResult(TokenResultStatus.BAD_REQUEST);
     }
 
-    private TokenResult clientFail() {
+    private static TokenResult clientFail() {
         return new TokenResult(TokenResultStatus.FAIL);
     }
 }
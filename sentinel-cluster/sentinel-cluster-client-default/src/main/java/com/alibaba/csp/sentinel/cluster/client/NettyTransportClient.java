@@ -15,9 +15,10 @@
  */
 package com.alibaba.csp.sentinel.cluster.client;
 
-import java.util.AbstractMap.SimpleEntry;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -27,13 +28,14 @@ import com.alibaba.csp.sentinel.cluster.ClusterTransportClient;
 import com.alibaba.csp.sentinel.cluster.client.codec.netty.NettyRequestEncoder;
 import com.alibaba.csp.sentinel.cluster.client.codec.netty.NettyResponseDecoder;
 import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientConfigManager;
+import com.alibaba.csp.sentinel.cluster.client.handler.PendingResponse;
+import com.alibaba.csp.sentinel.cluster.client.handler.PendingResponseTable;
 import com.alibaba.csp.sentinel.cluster.client.handler.TokenClientHandler;
-import com.alibaba.csp.sentinel.cluster.client.handler.TokenClientPromiseHolder;
 import com.alibaba.csp.sentinel.cluster.exception.SentinelClusterException;
 import com.alibaba.csp.sentinel.cluster.request.ClusterRequest;
 import com.alibaba.csp.sentinel.cluster.request.Request;
 import com.alibaba.csp.sentinel.cluster.response.ClusterResponse;
-import com.alibaba.csp.sentinel.concurrent.NamedThreadFactory;
+import com.alibaba.csp.sentinel.concurrent.timer.SentinelTimer;
 import com.alibaba.csp.sentinel.log.RecordLog;
 import com.alibaba.csp.sentinel.util.AssertUtil;
 
@@ -44,7 +46,6 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.ChannelPromise;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -54,25 +55,40 @@ import io.netty.util.concurrent.GenericFutureListener;
 
 /**
  * Netty transport client implementation for Sentinel cluster transport.
+ * <p>
+ * Requests wait for their responses in a {@link PendingResponseTable}, so any number of requests can be
+ * in flight on the connection. By default every request is flushed as soon as it's written. In pipelined mode
+ * (see {@link ClusterClientConfigManager#isPipelined()}), requests are queued and the I/O thread writes
+ * all the queued requests with a single flush, so concurrent requests are coalesced into one batch
+ * per event loop tick. Pipelining only coalesces the writes: responses are matched to requests by xid
+ * in both modes, and the wire format is the same. A request of which the write fails is failed at once.
  *
  * @author Eric Zhao
  * @since 1.4.0
  */
 public class NettyTransportClient implements ClusterTransportClient {
 
-    private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(1,
-        new NamedThreadFactory("sentinel-cluster-transport-client-scheduler"));
-
     public static final int RECONNECT_DELAY_MS = 2000;
+    /**
+     * Interval of failing the expired requests.
+     */
+    public static final int TIMEOUT_SWEEP_INTERVAL_MS = 5;
 
     private final String host;
     private final int port;
 
-    private Channel channel;
+    private volatile Channel channel;
     private NioEventLoopGroup eventLoopGroup;
     private TokenClientHandler clientHandler;
 
-    private final AtomicInteger idGenerator = new AtomicInteger(0);
+    private final PendingResponseTable pendingResponses = new PendingResponseTable();
+    /**
+     * Requests waiting for the next flush in pipelined mode.
+     */
+    private final Queue<OutboundRequest> outboundQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean sweepScheduled = new AtomicBoolean(false);
+
     private final AtomicInteger currentState = new AtomicInteger(ClientConstants.CLIENT_STATUS_OFF);
     private final AtomicInteger failConnectedTime = new AtomicInteger(0);
 
@@ -96,7 +112,7 @@ public class NettyTransportClient implements ClusterTransportClient {
             .handler(new ChannelInitializer<SocketChannel>() {
                 @Override
                 public void initChannel(SocketChannel ch) throws Exception {
-                    clientHandler = new TokenClientHandler(currentState, disconnectCallback);
+                    clientHandler = new TokenClientHandler(currentState, disconnectCallback, pendingResponses);
 
                     ChannelPipeline pipeline = ch.pipeline();
                     pipeline.addLast(new LengthFieldBasedFrameDecoder(1024, 0, 2, 0, 2));
@@ -139,7 +155,7 @@ public class NettyTransportClient implements ClusterTransportClient {
             if (!shouldRetry.get()) {
                 return;
             }
-            SCHEDULER.schedule(new Runnable() {
+            SentinelTimer.newTimeout(new Runnable() {
                 @Override
                 public void run() {
                     if (shouldRetry.get()) {
@@ -156,9 +172,35 @@ public class NettyTransportClient implements ClusterTransportClient {
         }
     };
 
+    private final Runnable timeoutSweepTask = new Runnable() {
+        @Override
+        public void run() {
+            if (!shouldRetry.get()) {
+                // Stopped: nothing will be received any more.
+                sweepScheduled.set(false);
+                pendingResponses.failAll(ClusterErrorMessages.CLIENT_NOT_READY);
+                return;
+            }
+            pendingResponses.expire(System.nanoTime());
+            SentinelTimer.newTimeout(this, TIMEOUT_SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    };
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            // Reset before draining, so that a request queued during the drain schedules another flush.
+            flushScheduled.set(false);
+            flushOutboundQueue();
+        }
+    };
+
     @Override
     public void start() throws Exception {
         shouldRetry.set(true);
+        if (sweepScheduled.compareAndSet(false, true)) {
+            SentinelTimer.newTimeout(timeoutSweepTask, TIMEOUT_SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
         startInternal();
     }
 
@@ -195,6 +237,13 @@ public class NettyTransportClient implements ClusterTransportClient {
         RecordLog.info("[NettyTransportClient] Cluster transport client stopped");
     }
 
+    /**
+     * The current channel, only for test.
+     */
+    Channel getChannel() {
+        return channel;
+    }
+
     private boolean validRequest(Request request) {
         return request != null && request.getType() >= 0;
     }
@@ -212,58 +261,131 @@ public class NettyTransportClient implements ClusterTransportClient {
         if (!validRequest(request)) {
             throw new SentinelClusterException(ClusterErrorMessages.BAD_REQUEST);
         }
-        int xid = getCurrentId();
-        try {
-            request.setId(xid);
+        BlockingResponse pending = new BlockingResponse();
+        sendRequestAsync(request, pending);
+        return pending.await();
+    }
 
-            channel.writeAndFlush(request);
+    /**
+     * Send request to remote server without waiting for the response. The pending response is completed
+     * in the I/O thread when the response arrives, or failed if the client is not ready, there are too many
+     * pending requests, the request times out or the connection is lost.
+     *
+     * @param request Sentinel cluster request
+     * @param pending a new pending response of the request
+     */
+    public void sendRequestAsync(ClusterRequest request, PendingResponse pending) {
+        Channel channel = this.channel;
+        if (channel == null || !isReady()) {
+            pending.onFailure(ClusterErrorMessages.CLIENT_NOT_READY);
+            return;
+        }
+        if (!validRequest(request)) {
+            pending.onFailure(ClusterErrorMessages.BAD_REQUEST);
+            return;
+        }
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(ClusterClientConfigManager.getRequestTimeout());
+        int xid = pendingResponses.register(pending, timeoutNanos);
+        if (xid < 0) {
+            pending.onFailure(ClusterErrorMessages.TOO_MANY_REQUESTS);
+            return;
+        }
+        request.setId(xid);
+        OutboundRequest outbound = new OutboundRequest(request, pending);
+        if (ClusterClientConfigManager.isPipelined()) {
+            outboundQueue.offer(outbound);
+            if (flushScheduled.compareAndSet(false, true)) {
+                try {
+                    channel.eventLoop().execute(flushTask);
+                } catch (RejectedExecutionException ex) {
+                    // The event loop is shutting down.
+                    flushScheduled.set(false);
+                }
+            }
+        } else {
+            channel.writeAndFlush(request).addListener(outbound);
+        }
+    }
+
+    private void flushOutboundQueue() {
+        Channel channel = this.channel;
+        int count = 0;
+        OutboundRequest outbound;
+        while ((outbound = outboundQueue.poll()) != null) {
+            if (channel != null) {
+                channel.write(outbound.request).addListener(outbound);
+                count++;
+            } else {
+                outbound.fail(ClusterErrorMessages.CLIENT_NOT_READY);
+            }
+        }
+        if (count > 0) {
+            channel.flush();
+        }
+    }
 
-            ChannelPromise promise = channel.newPromise();
-            TokenClientPromiseHolder.putPromise(xid, promise);
+    /**
+     * A request to write, which fails its pending response at once if the write fails,
+     * rather than waiting for the request to expire.
+     */
+    private final class OutboundRequest implements GenericFutureListener<ChannelFuture> {
 
-            if (!promise.await(ClusterClientConfigManager.getRequestTimeout())) {
-                throw new SentinelClusterException(ClusterErrorMessages.REQUEST_TIME_OUT);
+        private final ClusterRequest request;
+        private final PendingResponse pending;
+
+        OutboundRequest(ClusterRequest request, PendingResponse pending) {
+            this.request = request;
+            this.pending = pending;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            if (!future.isSuccess()) {
+                fail(ClusterErrorMessages.REQUEST_WRITE_FAILED);
             }
+        }
 
-            SimpleEntry<ChannelPromise, ClusterResponse> entry = TokenClientPromiseHolder.getEntry(xid);
-            if (entry == null || entry.getValue() == null) {
-                // Should not go through here.
-                throw new SentinelClusterException(ClusterErrorMessages.UNEXPECTED_STATUS);
+        void fail(String errorMessage) {
+            // The response may have been completed or expired concurrently.
+            if (pendingResponses.remove(pending)) {
+                pending.onFailure(errorMessage);
             }
-            return entry.getValue();
-        } finally {
-            TokenClientPromiseHolder.remove(xid);
         }
     }
 
-    private int getCurrentId() {
-        if (idGenerator.get() > MAX_ID) {
-            idGenerator.set(0);
+    /**
+     * Pending response of a caller waiting in {@link #sendRequest(ClusterRequest)}.
+     */
+    private final class BlockingResponse extends PendingResponse {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile ClusterResponse response;
+        private volatile String errorMessage;
+
+        @Override
+        public void onResponse(ClusterResponse response) {
+            this.response = response;
+            latch.countDown();
         }
-        return idGenerator.incrementAndGet();
-    }
 
-    /*public CompletableFuture<ClusterResponse> sendRequestAsync(ClusterRequest request) {
-        // Uncomment this when min target JDK is 1.8.
-        if (!validRequest(request)) {
-            return CompletableFuture.failedFuture(new IllegalArgumentException("Bad request"));
+        @Override
+        public void onFailure(String errorMessage) {
+            this.errorMessage = errorMessage;
+            latch.countDown();
         }
-        int xid = getCurrentId();
-        request.setId(xid);
 
-        CompletableFuture<ClusterResponse> future = new CompletableFuture<>();
-        channel.writeAndFlush(request)
-            .addListener(f -> {
-                if (f.isSuccess()) {
-                    future.complete(someResult);
-                } else if (f.cause() != null) {
-                    future.completeExceptionally(f.cause());
-                } else {
-                    future.cancel(false);
+        ClusterResponse await() throws Exception {
+            if (!latch.await(ClusterClientConfigManager.getRequestTimeout(), TimeUnit.MILLISECONDS)) {
+                if (pendingResponses.remove(this)) {
+                    throw new SentinelClusterException(ClusterErrorMessages.REQUEST_TIME_OUT);
                 }
-            });
-        return future;
-    }*/
-
-    private static final int MAX_ID = 999_999_999;
+                // Completed concurrently.
+                latch.await();
+            }
+            if (response == null) {
+                throw new SentinelClusterException(errorMessage);
+            }
+            return response;
+        }
+    }
 }
@@ -22,6 +22,12 @@ package com.alibaba.csp.sentinel.cluster.client.config;
 public class ClusterClientConfig {
 
     private Integer requestTimeout;
+    /**
+     * Whether to coalesce the writes of concurrent requests into batches with a single flush,
+     * see {@code NettyTransportClient}. It only affects how requests are written: concurrent requests
+     * are in flight on the connection at the same time, and matched to responses by xid, in both modes.
+     */
+    private Boolean pipelined;
 
     public Integer getRequestTimeout() {
         return requestTimeout;
@@ -32,10 +38,20 @@ public class ClusterClientConfig {
         return this;
     }
 
+    public Boolean getPipelined() {
+        return pipelined;
+    }
+
+    public ClusterClientConfig setPipelined(Boolean pipelined) {
+        this.pipelined = pipelined;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "ClusterClientConfig{" +
             "requestTimeout=" + requestTimeout +
+            ", pipelined=" + pipelined +
             '}';
     }
 }
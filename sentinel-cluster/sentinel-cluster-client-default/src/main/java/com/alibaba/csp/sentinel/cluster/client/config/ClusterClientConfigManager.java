@@ -40,6 +40,7 @@ public final class ClusterClientConfigManager {
 
     private static volatile int requestTimeout = ClusterConstants.DEFAULT_REQUEST_TIMEOUT;
     private static volatile int connectTimeout = ClusterConstants.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private static volatile boolean pipelined = false;
 
     private static final PropertyListener<ClusterClientConfig> CONFIG_PROPERTY_LISTENER
         = new ClientConfigPropertyListener();
@@ -170,6 +171,10 @@ public final class ClusterClientConfigManager {
         if (config.getRequestTimeout() != requestTimeout) {
             requestTimeout = config.getRequestTimeout();
         }
+        // Absent means unchanged.
+        if (config.getPipelined() != null) {
+            pipelined = config.getPipelined();
+        }
     }
 
     private static void updateServerAssignment(/*@Valid*/ ClusterClientAssignConfig config) {
@@ -210,5 +215,9 @@ public final class ClusterClientConfigManager {
         return connectTimeout;
     }
 
+    public static boolean isPipelined() {
+        return pipelined;
+    }
+
     private ClusterClientConfigManager() {}
 }
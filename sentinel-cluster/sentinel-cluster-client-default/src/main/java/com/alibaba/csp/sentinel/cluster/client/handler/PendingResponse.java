@@ -0,0 +1,48 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.cluster.client.handler;
+
+import com.alibaba.csp.sentinel.cluster.response.ClusterResponse;
+
+/**
+ * A request waiting for its response in a {@link PendingResponseTable}. Exactly one of
+ * {@link #onResponse(ClusterResponse)} and {@link #onFailure(String)} is invoked, normally in the I/O thread,
+ * so the implementations must not block.
+ *
+ * @since 1.5.0
+ */
+public abstract class PendingResponse {
+
+    /**
+     * Assigned by the table before the pending response is published, and never changed afterwards.
+     */
+    int xid;
+    long deadlineNanos;
+
+    /**
+     * @param response the response of the request
+     */
+    public abstract void onResponse(ClusterResponse response);
+
+    /**
+     * @param errorMessage why there's no response, see {@link com.alibaba.csp.sentinel.cluster.ClusterErrorMessages}
+     */
+    public abstract void onFailure(String errorMessage);
+
+    public int getXid() {
+        return xid;
+    }
+}
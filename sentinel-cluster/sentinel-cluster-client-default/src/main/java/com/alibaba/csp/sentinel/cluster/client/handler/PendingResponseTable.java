@@ -0,0 +1,182 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.cluster.client.handler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.alibaba.csp.sentinel.cluster.ClusterErrorMessages;
+import com.alibaba.csp.sentinel.cluster.response.ClusterResponse;
+import com.alibaba.csp.sentinel.util.AssertUtil;
+
+/**
+ * Requests of a token client waiting for their responses, indexed by xid.
+ * <p>
+ * A pending response occupies the slot {@code xid & (capacity - 1)} of an array, which is claimed and released
+ * by CAS, so registering and demultiplexing a response take no lock and no map lookup. A new request takes
+ * the next xid whose slot is free, and a response is only taken by the request of the same xid, so
+ * a late response of an expired request never completes another request of the same slot.
+ * Xid {@code 0} is never assigned, as it's used by the ping request.
+ *
+ * @since 1.5.0
+ */
+public final class PendingResponseTable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final AtomicReferenceArray<PendingResponse> slots;
+    private final int capacity;
+    private final int mask;
+
+    private final AtomicInteger idGenerator = new AtomicInteger(0);
+    /**
+     * Count of occupied and reserved slots. A request reserves a slot before claiming one, so it always finds
+     * a free slot if the reservation succeeds.
+     */
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+    public PendingResponseTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity max count of pending requests, which must be a power of 2
+     */
+    public PendingResponseTable(int capacity) {
+        AssertUtil.isTrue(capacity > 0 && (capacity & (capacity - 1)) == 0, "capacity should be a power of 2");
+        this.slots = new AtomicReferenceArray<PendingResponse>(capacity);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Registers a pending response and assigns the xid of its request.
+     *
+     * @param pending      a pending response which is not registered yet
+     * @param timeoutNanos timeout of the request in nanoseconds
+     * @return the xid of the request, or -1 if there are too many pending requests
+     */
+    public int register(PendingResponse pending, long timeoutNanos) {
+        if (pendingCount.incrementAndGet() > capacity) {
+            pendingCount.decrementAndGet();
+            return -1;
+        }
+        long deadlineNanos = System.nanoTime() + timeoutNanos;
+        while (true) {
+            int xid = nextXid();
+            int idx = xid & mask;
+            if (slots.get(idx) == null) {
+                pending.xid = xid;
+                pending.deadlineNanos = deadlineNanos;
+                if (slots.compareAndSet(idx, null, pending)) {
+                    return xid;
+                }
+            }
+        }
+    }
+
+    private int nextXid() {
+        while (true) {
+            int xid = idGenerator.incrementAndGet() & Integer.MAX_VALUE;
+            if (xid != 0) {
+                return xid;
+            }
+        }
+    }
+
+    /**
+     * Completes the pending response of the response's xid.
+     *
+     * @param response a response from the token server
+     * @return true if a pending response is completed, false if the request has expired or is unknown
+     */
+    public boolean complete(ClusterResponse response) {
+        int xid = response.getId();
+        if (xid <= 0) {
+            return false;
+        }
+        int idx = xid & mask;
+        PendingResponse pending = slots.get(idx);
+        if (pending == null || pending.xid != xid || !release(idx, pending)) {
+            return false;
+        }
+        pending.onResponse(response);
+        return true;
+    }
+
+    /**
+     * Removes a pending response without completing it, e.g. when the caller gives up waiting.
+     *
+     * @param pending a registered pending response
+     * @return true if removed, false if it has been completed or removed already
+     */
+    public boolean remove(PendingResponse pending) {
+        return release(pending.xid & mask, pending);
+    }
+
+    /**
+     * Fails the pending responses whose deadline has passed.
+     *
+     * @param nowNanos current value of {@link System#nanoTime()}
+     * @return count of the expired requests
+     */
+    public int expire(long nowNanos) {
+        if (pendingCount.get() == 0) {
+            return 0;
+        }
+        int expired = 0;
+        for (int i = 0; i < capacity; i++) {
+            PendingResponse pending = slots.get(i);
+            if (pending != null && nowNanos - pending.deadlineNanos >= 0 && release(i, pending)) {
+                pending.onFailure(ClusterErrorMessages.REQUEST_TIME_OUT);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Fails all the pending responses, e.g. when the connection is lost.
+     *
+     * @param errorMessage the failure reason
+     */
+    public void failAll(String errorMessage) {
+        if (pendingCount.get() == 0) {
+            return;
+        }
+        for (int i = 0; i < capacity; i++) {
+            PendingResponse pending = slots.get(i);
+            if (pending != null && release(i, pending)) {
+                pending.onFailure(errorMessage);
+            }
+        }
+    }
+
+    private boolean release(int idx, PendingResponse pending) {
+        if (slots.compareAndSet(idx, pending, null)) {
+            pendingCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return count of pending requests
+     */
+    public int size() {
+        return pendingCount.get();
+    }
+}
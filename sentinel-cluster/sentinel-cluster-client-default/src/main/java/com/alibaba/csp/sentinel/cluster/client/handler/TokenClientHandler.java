@@ -19,6 +19,7 @@ import java.net.InetSocketAddress;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.alibaba.csp.sentinel.cluster.ClusterConstants;
+import com.alibaba.csp.sentinel.cluster.ClusterErrorMessages;
 import com.alibaba.csp.sentinel.cluster.client.ClientConstants;
 import com.alibaba.csp.sentinel.cluster.registry.ConfigSupplierRegistry;
 import com.alibaba.csp.sentinel.cluster.request.ClusterRequest;
@@ -38,10 +39,13 @@ public class TokenClientHandler extends ChannelInboundHandlerAdapter {
 
     private final AtomicInteger currentState;
     private final Runnable disconnectCallback;
+    private final PendingResponseTable pendingResponses;
 
-    public TokenClientHandler(AtomicInteger currentState, Runnable disconnectCallback) {
+    public TokenClientHandler(AtomicInteger currentState, Runnable disconnectCallback,
+                              PendingResponseTable pendingResponses) {
         this.currentState = currentState;
         this.disconnectCallback = disconnectCallback;
+        this.pendingResponses = pendingResponses;
     }
 
     @Override
@@ -61,7 +65,7 @@ public class TokenClientHandler extends ChannelInboundHandlerAdapter {
                 return;
             }
 
-            TokenClientPromiseHolder.completePromise(response.getId(), response);
+            pendingResponses.complete(response);
         }
     }
 
@@ -91,6 +95,8 @@ public class TokenClientHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         RecordLog.info("[TokenClientHandler] Client handler inactive, remote address: " + getRemoteAddress(ctx));
+        // The responses of the in-flight requests will never arrive.
+        pendingResponses.failAll(ClusterErrorMessages.CLIENT_NOT_READY);
     }
 
     @Override
@@ -26,7 +26,10 @@ import io.netty.channel.ChannelPromise;
 /**
  * @author Eric Zhao
  * @since 1.4.0
+ * @deprecated since 1.5.0, responses are matched to requests by {@link PendingResponseTable} of each client,
+ * and promises held here are never completed by the client any more. Kept only for compatibility.
  */
+@Deprecated
 public final class TokenClientPromiseHolder {
 
     private static final Map<Integer, SimpleEntry<ChannelPromise, ClusterResponse>> PROMISE_MAP = new ConcurrentHashMap<>();
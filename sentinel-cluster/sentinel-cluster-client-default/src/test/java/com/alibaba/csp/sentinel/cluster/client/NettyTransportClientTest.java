@@ -0,0 +1,332 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.cluster.client;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.csp.sentinel.cluster.ClusterConstants;
+import com.alibaba.csp.sentinel.cluster.ClusterErrorMessages;
+import com.alibaba.csp.sentinel.cluster.client.codec.registry.RequestDataWriterRegistry;
+import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientConfig;
+import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientConfigManager;
+import com.alibaba.csp.sentinel.cluster.client.handler.PendingResponse;
+import com.alibaba.csp.sentinel.cluster.client.init.DefaultClusterClientInitFunc;
+import com.alibaba.csp.sentinel.cluster.codec.EntityWriter;
+import com.alibaba.csp.sentinel.cluster.request.ClusterRequest;
+import com.alibaba.csp.sentinel.cluster.request.data.FlowRequestData;
+import com.alibaba.csp.sentinel.cluster.response.ClusterResponse;
+import com.alibaba.csp.sentinel.cluster.response.data.FlowTokenResponseData;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link NettyTransportClient}, against a loopback server which speaks the wire format
+ * of the token server, and answers flow requests only when told to.
+ */
+public class NettyTransportClientTest {
+
+    private static final int TYPE_WRITE_FAILURE = 99;
+
+    private NioEventLoopGroup serverGroup;
+    private Channel serverChannel;
+    private final BlockingQueue<Integer> receivedXids = new LinkedBlockingQueue<>();
+    private volatile Channel serverConnection;
+
+    private NettyTransportClient client;
+
+    @BeforeClass
+    public static void initCodec() throws Exception {
+        new DefaultClusterClientInitFunc().init();
+        RequestDataWriterRegistry.addWriter(TYPE_WRITE_FAILURE, new EntityWriter<Object, ByteBuf>() {
+            @Override
+            public void writeTo(Object entity, ByteBuf target) {
+                throw new IllegalStateException("expected");
+            }
+        });
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        applyConfig(10000, false);
+        serverGroup = new NioEventLoopGroup(1);
+        serverChannel = new ServerBootstrap()
+            .group(serverGroup)
+            .channel(NioServerSocketChannel.class)
+            .childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                public void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(1024, 0, 2, 0, 2));
+                    ch.pipeline().addLast(new LengthFieldPrepender(2));
+                    ch.pipeline().addLast(new LoopbackServerHandler());
+                }
+            })
+            .bind("127.0.0.1", 0).sync().channel();
+        int port = ((InetSocketAddress)serverChannel.localAddress()).getPort();
+
+        client = new NettyTransportClient("127.0.0.1", port);
+        client.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!client.isReady() || serverConnection == null) {
+            assertTrue("client not connected", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.stop();
+        serverChannel.close().sync();
+        serverGroup.shutdownGracefully().sync();
+        applyConfig(ClusterConstants.DEFAULT_REQUEST_TIMEOUT, false);
+    }
+
+    @Test
+    public void testOutOfOrderResponses() throws Exception {
+        List<RecordingResponse> pendings = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            RecordingResponse pending = new RecordingResponse();
+            client.sendRequestAsync(flowRequest(), pending);
+            pendings.add(pending);
+        }
+        List<Integer> xids = takeXids(5);
+        Collections.reverse(xids);
+        for (int xid : xids) {
+            respond(xid);
+        }
+        for (RecordingResponse pending : pendings) {
+            assertTrue(pending.await());
+            assertNull(pending.errorMessage);
+            // The server echoes the xid as the remaining count, so each response goes to its own request.
+            FlowTokenResponseData data = (FlowTokenResponseData)pending.response.getData();
+            assertEquals(pending.getXid(), pending.response.getId());
+            assertEquals(pending.getXid(), data.getRemainingCount());
+        }
+    }
+
+    @Test
+    public void testWriteFailure() throws Exception {
+        RecordingResponse pending = new RecordingResponse();
+        long start = System.nanoTime();
+        client.sendRequestAsync(new ClusterRequest<>(TYPE_WRITE_FAILURE, new Object()), pending);
+        assertTrue(pending.await());
+        assertEquals(ClusterErrorMessages.REQUEST_WRITE_FAILED, pending.errorMessage);
+        // Failed at once rather than expired.
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+
+        // The connection is still usable.
+        RecordingResponse next = new RecordingResponse();
+        client.sendRequestAsync(flowRequest(), next);
+        respond(takeXids(1).get(0));
+        assertTrue(next.await());
+        assertNotNull(next.response);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        int timeoutMs = 50;
+        applyConfig(timeoutMs, false);
+        RecordingResponse pending = new RecordingResponse();
+        long start = System.nanoTime();
+        client.sendRequestAsync(flowRequest(), pending);
+        int xid = takeXids(1).get(0);
+        assertTrue(pending.await());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(ClusterErrorMessages.REQUEST_TIME_OUT, pending.errorMessage);
+        // Expired by the sweep (every 5 ms), not long after the deadline.
+        assertTrue(elapsedMs >= timeoutMs);
+        assertTrue("expired after " + elapsedMs + " ms", elapsedMs < timeoutMs + 1000);
+
+        // The late response is ignored.
+        respond(xid);
+        Thread.sleep(50);
+        assertNull(pending.response);
+    }
+
+    @Test
+    public void testDisconnectFailsPendingRequests() throws Exception {
+        List<RecordingResponse> pendings = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RecordingResponse pending = new RecordingResponse();
+            client.sendRequestAsync(flowRequest(), pending);
+            pendings.add(pending);
+        }
+        takeXids(3);
+        long start = System.nanoTime();
+        serverConnection.close().sync();
+        for (RecordingResponse pending : pendings) {
+            assertTrue(pending.await());
+            assertEquals(ClusterErrorMessages.CLIENT_NOT_READY, pending.errorMessage);
+        }
+        // Failed when the connection is lost, long before the requests time out.
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+    }
+
+    @Test
+    public void testPipelinedFlushCoalescing() throws Exception {
+        // Each request is flushed by default.
+        assertEquals(10, countFlushes(10));
+        // Requests of the same event loop tick are flushed together in pipelined mode.
+        applyConfig(10000, true);
+        assertEquals(1, countFlushes(10));
+    }
+
+    /**
+     * Send requests in a single task of the I/O thread, and count the flushes of the requests.
+     */
+    private int countFlushes(final int requests) throws Exception {
+        Channel channel = client.getChannel();
+        final AtomicInteger flushes = new AtomicInteger();
+        ChannelOutboundHandlerAdapter flushCounter = new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(ChannelHandlerContext ctx) throws Exception {
+                flushes.incrementAndGet();
+                ctx.flush();
+            }
+        };
+        channel.pipeline().addFirst(flushCounter);
+        final List<RecordingResponse> pendings = new ArrayList<>();
+        try {
+            channel.eventLoop().submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < requests; i++) {
+                        RecordingResponse pending = new RecordingResponse();
+                        client.sendRequestAsync(flowRequest(), pending);
+                        pendings.add(pending);
+                    }
+                }
+            }).sync();
+            for (int xid : takeXids(requests)) {
+                respond(xid);
+            }
+            for (RecordingResponse pending : pendings) {
+                assertTrue(pending.await());
+                assertNotNull(pending.response);
+            }
+        } finally {
+            channel.pipeline().remove(flushCounter);
+        }
+        return flushes.get();
+    }
+
+    private static void applyConfig(int requestTimeout, boolean pipelined) {
+        ClusterClientConfigManager.applyNewConfig(new ClusterClientConfig()
+            .setRequestTimeout(requestTimeout)
+            .setPipelined(pipelined));
+    }
+
+    private static ClusterRequest<FlowRequestData> flowRequest() {
+        return new ClusterRequest<>(ClusterConstants.MSG_TYPE_FLOW,
+            new FlowRequestData().setFlowId(1).setCount(1).setPriority(false));
+    }
+
+    private List<Integer> takeXids(int count) throws InterruptedException {
+        List<Integer> xids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Integer xid = receivedXids.poll(5, TimeUnit.SECONDS);
+            assertNotNull("request not received", xid);
+            xids.add(xid);
+        }
+        return xids;
+    }
+
+    /**
+     * Respond to the flow request of the xid, with the xid as the remaining count.
+     */
+    private void respond(int xid) {
+        Channel connection = serverConnection;
+        ByteBuf buf = connection.alloc().buffer();
+        buf.writeInt(xid);
+        buf.writeByte(ClusterConstants.MSG_TYPE_FLOW);
+        buf.writeByte(ClusterConstants.RESPONSE_STATUS_OK);
+        buf.writeInt(xid);
+        buf.writeInt(0);
+        connection.writeAndFlush(buf);
+    }
+
+    private class LoopbackServerHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf)msg;
+            try {
+                int xid = buf.readInt();
+                int type = buf.readByte();
+                if (type == ClusterConstants.MSG_TYPE_PING) {
+                    ByteBuf response = ctx.alloc().buffer();
+                    response.writeInt(xid);
+                    response.writeByte(type);
+                    response.writeByte(ClusterConstants.RESPONSE_STATUS_OK);
+                    response.writeByte(1);
+                    ctx.writeAndFlush(response);
+                    serverConnection = ctx.channel();
+                } else {
+                    receivedXids.offer(xid);
+                }
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    private static class RecordingResponse extends PendingResponse {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile ClusterResponse response;
+        private volatile String errorMessage;
+
+        @Override
+        public void onResponse(ClusterResponse response) {
+            this.response = response;
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            this.errorMessage = errorMessage;
+            latch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.cluster.client.handler;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.cluster.ClusterConstants;
+import com.alibaba.csp.sentinel.cluster.ClusterErrorMessages;
+import com.alibaba.csp.sentinel.cluster.response.ClusterResponse;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link PendingResponseTable}.
+ */
+public class PendingResponseTableTest {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    public void testCompleteWithMatchedXid() {
+        PendingResponseTable table = new PendingResponseTable(4);
+        RecordingResponse pending = new RecordingResponse();
+        int xid = table.register(pending, TIMEOUT_NANOS);
+        assertTrue(xid > 0);
+        assertEquals(xid, pending.getXid());
+        assertEquals(1, table.size());
+
+        ClusterResponse response = responseOf(xid);
+        assertTrue(table.complete(response));
+        assertSame(response, pending.response);
+        assertEquals(0, table.size());
+        // Completed only once.
+        assertFalse(table.complete(response));
+    }
+
+    @Test
+    public void testLateResponseDoesNotCompleteRequestOfSameSlot() {
+        PendingResponseTable table = new PendingResponseTable(1);
+        RecordingResponse first = new RecordingResponse();
+        int firstXid = table.register(first, TIMEOUT_NANOS);
+        assertTrue(table.remove(first));
+
+        RecordingResponse second = new RecordingResponse();
+        int secondXid = table.register(second, TIMEOUT_NANOS);
+        assertNotEquals(firstXid, secondXid);
+
+        assertFalse(table.complete(responseOf(firstXid)));
+        assertNull(second.response);
+        assertTrue(table.complete(responseOf(secondXid)));
+        assertNotNull(second.response);
+    }
+
+    @Test
+    public void testRegisterWhenFull() {
+        PendingResponseTable table = new PendingResponseTable(2);
+        assertTrue(table.register(new RecordingResponse(), TIMEOUT_NANOS) > 0);
+        assertTrue(table.register(new RecordingResponse(), TIMEOUT_NANOS) > 0);
+        assertEquals(-1, table.register(new RecordingResponse(), TIMEOUT_NANOS));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void testExpire() {
+        PendingResponseTable table = new PendingResponseTable(4);
+        RecordingResponse expiring = new RecordingResponse();
+        RecordingResponse waiting = new RecordingResponse();
+        table.register(expiring, 0);
+        table.register(waiting, TIMEOUT_NANOS);
+
+        assertEquals(1, table.expire(System.nanoTime()));
+        assertEquals(ClusterErrorMessages.REQUEST_TIME_OUT, expiring.errorMessage);
+        assertNull(waiting.errorMessage);
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testFailAll() {
+        PendingResponseTable table = new PendingResponseTable(4);
+        RecordingResponse r1 = new RecordingResponse();
+        RecordingResponse r2 = new RecordingResponse();
+        table.register(r1, TIMEOUT_NANOS);
+        table.register(r2, TIMEOUT_NANOS);
+
+        table.failAll(ClusterErrorMessages.CLIENT_NOT_READY);
+        assertEquals(ClusterErrorMessages.CLIENT_NOT_READY, r1.errorMessage);
+        assertEquals(ClusterErrorMessages.CLIENT_NOT_READY, r2.errorMessage);
+        assertEquals(0, table.size());
+    }
+
+    private static ClusterResponse responseOf(int xid) {
+        return new ClusterResponse<>(xid, ClusterConstants.MSG_TYPE_FLOW, ClusterConstants.RESPONSE_STATUS_OK, null);
+    }
+
+    private static class RecordingResponse extends PendingResponse {
+
+        private ClusterResponse response;
+        private String errorMessage;
+
+        @Override
+        public void onResponse(ClusterResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            this.errorMessage = errorMessage;
+        }
+    }
+}
@@ -82,6 +82,12 @@ public class TokenServerHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        // Flush the responses of all requests decoded from one read at once.
+        ctx.flush();
+    }
+
     private void writeBadResponse(ChannelHandlerContext ctx, ClusterRequest request) {
         ClusterResponse<?> response = new ClusterResponse<>(request.getId(), request.getType(),
             ClusterConstants.RESPONSE_STATUS_BAD, null);
@@ -89,7 +95,7 @@ public class TokenServerHandler extends ChannelInboundHandlerAdapter {
     }
 
     private void writeResponse(ChannelHandlerContext ctx, ClusterResponse response) {
-        ctx.writeAndFlush(response);
+        ctx.write(response);
     }
 
     private void handlePingRequest(ChannelHandlerContext ctx, ClusterRequest request) {
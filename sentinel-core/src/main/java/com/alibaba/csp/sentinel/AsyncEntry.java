@@ -20,6 +20,7 @@ import com.alibaba.csp.sentinel.context.NullContext;
 import com.alibaba.csp.sentinel.log.RecordLog;
 import com.alibaba.csp.sentinel.slotchain.ProcessorSlot;
 import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
+import com.alibaba.csp.sentinel.util.TimeUtil;
 
 /**
  * The entry for asynchronous resources.
@@ -31,8 +32,72 @@ public class AsyncEntry extends CtEntry {
 
     private Context asyncContext;
 
+    /**
+     * Whether the entry is created in non-blocking mode, in which queueing traffic shaping controllers
+     * won't block the caller thread, but defer the permit time of the entry instead.
+     */
+    private final boolean nonBlocking;
+
+    /**
+     * The time (in milliseconds) before which the request should not proceed (only for non-blocking mode).
+     */
+    private volatile long permitTime;
+
     AsyncEntry(ResourceWrapper resourceWrapper, ProcessorSlot<Object> chain, Context context) {
+        this(resourceWrapper, chain, context, false);
+    }
+
+    AsyncEntry(ResourceWrapper resourceWrapper, ProcessorSlot<Object> chain, Context context, boolean nonBlocking) {
         super(resourceWrapper, chain, context);
+        this.nonBlocking = nonBlocking;
+    }
+
+    /**
+     * @return whether the entry is created in non-blocking mode
+     * @since 1.5.0
+     */
+    public boolean isNonBlocking() {
+        return nonBlocking;
+    }
+
+    /**
+     * Defer the permit time of the entry, so that the request should wait for given time before it proceeds.
+     * If deferred more than once (e.g. by multiple rules), the latest permit time takes effect. The response
+     * time is measured from the permit time, excluding the time waiting for the permit.
+     *
+     * @param waitMs time to wait in milliseconds
+     * @since 1.5.0
+     */
+    public synchronized void deferPermit(long waitMs) {
+        if (waitMs <= 0) {
+            return;
+        }
+        long time = TimeUtil.currentTimeMillis() + waitMs;
+        if (time > permitTime) {
+            permitTime = time;
+            resetCreateTime(time);
+        }
+    }
+
+    /**
+     * @return the time (in milliseconds) before which the request should not proceed, or 0 if it can proceed
+     * at once
+     * @since 1.5.0
+     */
+    public long getPermitTime() {
+        return permitTime;
+    }
+
+    /**
+     * @return remaining time (in milliseconds) to wait before the request can proceed, 0 if no need to wait
+     * @since 1.5.0
+     */
+    public long getPermitWaitMs() {
+        long time = permitTime;
+        if (time == 0) {
+            return 0;
+        }
+        return Math.max(time - TimeUtil.currentTimeMillis(), 0);
     }
 
     /**
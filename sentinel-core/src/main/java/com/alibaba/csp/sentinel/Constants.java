@@ -56,6 +56,29 @@ public final class Constants {
      */
     public static int TIME_DROP_VALVE = SentinelConfig.statisticMaxRt();
 
+    /**
+     * Whether the zero-garbage entry mode is enabled. When enabled, string resource wrappers are cached,
+     * and contexts are recycled per thread after exit. Entries are returned to callers (who may exit them
+     * more than once, or from other threads), so they are never recycled.
+     * It can be configured by property file or JVM parameter -Dcsp.sentinel.entry.zero.garbage=true
+     * See {@link SentinelConfig#zeroGarbageMode()}
+     */
+    public static volatile boolean ZERO_GARBAGE = SentinelConfig.zeroGarbageMode();
+
+    /**
+     * Whether response time is measured with the monotonic nanosecond time source.
+     * It can be configured by property file or JVM parameter -Dcsp.sentinel.statistic.rt.nano=true
+     * See {@link SentinelConfig#statisticRtNano()}
+     */
+    public static volatile boolean RT_NANO = SentinelConfig.statisticRtNano();
+
+    /**
+     * Whether latency histograms are kept in cluster nodes, for percentile response time.
+     * It can be configured by property file or JVM parameter -Dcsp.sentinel.statistic.rt.histogram=true
+     * See {@link SentinelConfig#statisticRtHistogram()}
+     */
+    public static volatile boolean RT_HISTOGRAM = SentinelConfig.statisticRtHistogram();
+
     /**
      * The global switch for Sentinel.
      */
@@ -16,8 +16,9 @@
 package com.alibaba.csp.sentinel;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.alibaba.csp.sentinel.log.RecordLog;
 import com.alibaba.csp.sentinel.context.Context;
@@ -27,7 +28,7 @@ import com.alibaba.csp.sentinel.slotchain.MethodResourceWrapper;
 import com.alibaba.csp.sentinel.slotchain.ProcessorSlot;
 import com.alibaba.csp.sentinel.slotchain.ProcessorSlotChain;
 import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
-import com.alibaba.csp.sentinel.slotchain.SlotChainProvider;
+import com.alibaba.csp.sentinel.slotchain.SlotChainRegistry;
 import com.alibaba.csp.sentinel.slotchain.StringResourceWrapper;
 import com.alibaba.csp.sentinel.slots.block.BlockException;
 import com.alibaba.csp.sentinel.slots.block.Rule;
@@ -49,10 +50,66 @@ public class CtSph implements Sph {
      * {@link ProcessorSlotChain}, no matter in which {@link Context}.
      * 存储资源对应的ProcessorSlotChain
      */
-    private static volatile Map<ResourceWrapper, ProcessorSlotChain> chainMap
-        = new HashMap<ResourceWrapper, ProcessorSlotChain>();
+    private static final SlotChainRegistry chainRegistry = new SlotChainRegistry(Constants.MAX_SLOT_CHAIN_SIZE);
 
-    private static final Object LOCK = new Object();
+    /**
+     * Cached {@link StringResourceWrapper}s of inbound and outbound resources (only used in zero-garbage mode).
+     */
+    private static final ConcurrentHashMap<String, StringResourceWrapper> IN_RESOURCE_CACHE
+        = new ConcurrentHashMap<String, StringResourceWrapper>();
+    private static final ConcurrentHashMap<String, StringResourceWrapper> OUT_RESOURCE_CACHE
+        = new ConcurrentHashMap<String, StringResourceWrapper>();
+    /**
+     * Reserved sizes of the caches, so that the caches never exceed the bound under concurrent puts.
+     */
+    private static final AtomicInteger IN_RESOURCE_CACHE_SIZE = new AtomicInteger();
+    private static final AtomicInteger OUT_RESOURCE_CACHE_SIZE = new AtomicInteger();
+
+    /**
+     * Get the string resource wrapper of provided name and type. In zero-garbage mode the wrapper will be
+     * cached per name, and the amount of cached wrappers won't exceed {@link Constants#MAX_SLOT_CHAIN_SIZE}.
+     *
+     * @param name resource name
+     * @param type entry type
+     * @return the resource wrapper
+     */
+    static StringResourceWrapper stringResource(String name, EntryType type) {
+        if (!Constants.ZERO_GARBAGE || name == null) {
+            return new StringResourceWrapper(name, type);
+        }
+        ConcurrentHashMap<String, StringResourceWrapper> cache;
+        AtomicInteger cacheSize;
+        if (type == EntryType.IN) {
+            cache = IN_RESOURCE_CACHE;
+            cacheSize = IN_RESOURCE_CACHE_SIZE;
+        } else {
+            cache = OUT_RESOURCE_CACHE;
+            cacheSize = OUT_RESOURCE_CACHE_SIZE;
+        }
+        StringResourceWrapper resource = cache.get(name);
+        if (resource != null) {
+            return resource;
+        }
+        resource = new StringResourceWrapper(name, type);
+        // Reserve a slot before putting, and give it back if the cache is full or the name is already cached.
+        if (cacheSize.incrementAndGet() > Constants.MAX_SLOT_CHAIN_SIZE) {
+            cacheSize.decrementAndGet();
+            return resource;
+        }
+        StringResourceWrapper old = cache.putIfAbsent(name, resource);
+        if (old != null) {
+            cacheSize.decrementAndGet();
+            return old;
+        }
+        return resource;
+    }
+
+    /**
+     * Only for internal test.
+     */
+    static int resourceCacheSize(EntryType type) {
+        return type == EntryType.IN ? IN_RESOURCE_CACHE.size() : OUT_RESOURCE_CACHE.size();
+    }
 
     private AsyncEntry asyncEntryWithNoChain(ResourceWrapper resourceWrapper, Context context) {
         AsyncEntry entry = new AsyncEntry(resourceWrapper, null, context);
@@ -63,7 +120,7 @@ public class CtSph implements Sph {
     }
 
     private AsyncEntry asyncEntryWithPriorityInternal(ResourceWrapper resourceWrapper, int count, boolean prioritized,
-                                                      Object... args) throws BlockException {
+                                                      boolean nonBlocking, Object... args) throws BlockException {
         Context context = ContextUtil.getContext();
         if (context instanceof NullContext) {
             // The {@link NullContext} indicates that the amount of context has exceeded the threshold,
@@ -87,7 +144,7 @@ public class CtSph implements Sph {
             return asyncEntryWithNoChain(resourceWrapper, context);
         }
 
-        AsyncEntry asyncEntry = new AsyncEntry(resourceWrapper, chain, context);
+        AsyncEntry asyncEntry = new AsyncEntry(resourceWrapper, chain, context, nonBlocking);
         try {
             chain.entry(context, resourceWrapper, null, count, prioritized, args);
             // Initiate the async context only when the entry successfully passed the slot chain.
@@ -110,13 +167,46 @@ public class CtSph implements Sph {
         return asyncEntry;
     }
 
-    private AsyncEntry asyncEntryInternal(ResourceWrapper resourceWrapper, int count, Object... args)
+    private AsyncEntry asyncEntryInternal(ResourceWrapper resourceWrapper, int count, boolean nonBlocking,
+                                          Object... args) throws BlockException {
+        return asyncEntryWithPriorityInternal(resourceWrapper, count, false, nonBlocking, args);
+    }
+
+    private Entry entryWithPriority(ResourceWrapper resourceWrapper, int count, boolean prioritized)
         throws BlockException {
-        return asyncEntryWithPriorityInternal(resourceWrapper, count, false, args);
+        return entryWithChain(resourceWrapper, null, count, prioritized, OBJECTS0);
     }
 
     private Entry entryWithPriority(ResourceWrapper resourceWrapper, int count, boolean prioritized, Object... args)
         throws BlockException {
+        return entryWithChain(resourceWrapper, null, count, prioritized, args);
+    }
+
+    /**
+     * Enter the resource via provided handle, of which the slot chain has been resolved in advance.
+     *
+     * @param handle      the resource handle
+     * @param count       tokens needed
+     * @param prioritized whether the entry is prioritized
+     * @param args        arguments of user method call
+     * @return {@link Entry} represents this call
+     * @throws BlockException if any rule's threshold is exceeded
+     */
+    Entry entryWithHandle(ResourceHandle handle, int count, boolean prioritized, Object... args)
+        throws BlockException {
+        return entryWithChain(handle.getResourceWrapper(), handle, count, prioritized, args);
+    }
+
+    /**
+     * Same as {@link #entryWithHandle(ResourceHandle, int, boolean, Object...)} without arguments,
+     * so that no varargs array is created.
+     */
+    Entry entryWithHandle(ResourceHandle handle, int count, boolean prioritized) throws BlockException {
+        return entryWithChain(handle.getResourceWrapper(), handle, count, prioritized, OBJECTS0);
+    }
+
+    private Entry entryWithChain(ResourceWrapper resourceWrapper, ResourceHandle handle, int count,
+                                 boolean prioritized, Object... args) throws BlockException {
         // 获取当前线程自己的请求上下文
         Context context = ContextUtil.getContext();
         if (context instanceof NullContext) {
@@ -136,7 +226,8 @@ public class CtSph implements Sph {
         }
         // 从这里看出责任链实例(ProcessorSlot)和resource相关和线程无关.
         // 当处理相同resource的时候(ResourceWrapper重写了hashCode和equals方法),会进入同一个ProcessorSlot实例中
-        ProcessorSlot<Object> chain = lookProcessChain(resourceWrapper);
+        ProcessorSlot<Object> chain = handle == null ? lookProcessChain(resourceWrapper)
+            : handle.getChain(chainRegistry.version());
 
         /*
          * Means amount of resources (slot chain) exceeds {@link Constants.MAX_SLOT_CHAIN_SIZE},
@@ -180,6 +271,20 @@ public class CtSph implements Sph {
         return entryWithPriority(resourceWrapper, count, false, args);
     }
 
+    /**
+     * Same as {@link #entry(ResourceWrapper, int, Object...)} without arguments, so that no varargs array
+     * is created.
+     *
+     * @param resourceWrapper resource name
+     * @param count           tokens needed
+     * @return {@link Entry} represents this call
+     * @throws BlockException if any rule's threshold is exceeded
+     * @since 1.5.0
+     */
+    public Entry entry(ResourceWrapper resourceWrapper, int count) throws BlockException {
+        return entryWithPriority(resourceWrapper, count, false);
+    }
+
     /**
      * Get {@link ProcessorSlotChain} of the resource. new {@link ProcessorSlotChain} will
      * be created if the resource doesn't relate one.
@@ -198,26 +303,7 @@ public class CtSph implements Sph {
      */
     ProcessorSlot<Object> lookProcessChain(ResourceWrapper resourceWrapper) {
         // 注意：ResourceWrapper重写了hashCode和equals方法，所以只要name相同则认为是一个Resource
-        ProcessorSlotChain chain = chainMap.get(resourceWrapper);
-        if (chain == null) {
-            synchronized (LOCK) {
-                chain = chainMap.get(resourceWrapper);
-                if (chain == null) {
-                    // Entry size limit.
-                    if (chainMap.size() >= Constants.MAX_SLOT_CHAIN_SIZE) {
-                        return null;
-                    }
-
-                    chain = SlotChainProvider.newSlotChain();
-                    Map<ResourceWrapper, ProcessorSlotChain> newMap = new HashMap<ResourceWrapper, ProcessorSlotChain>(
-                        chainMap.size() + 1);
-                    newMap.putAll(chainMap);
-                    newMap.put(resourceWrapper, chain);
-                    chainMap = newMap;
-                }
-            }
-        }
-        return chain;
+        return chainRegistry.getOrCreate(resourceWrapper);
     }
 
     /**
@@ -227,7 +313,7 @@ public class CtSph implements Sph {
      * @since 0.2.0
      */
     public static int entrySize() {
-        return chainMap.size();
+        return chainRegistry.size();
     }
 
     /**
@@ -236,7 +322,11 @@ public class CtSph implements Sph {
      * @since 0.2.0
      */
     static void resetChainMap() {
-        chainMap.clear();
+        chainRegistry.clear();
+        IN_RESOURCE_CACHE.clear();
+        OUT_RESOURCE_CACHE.clear();
+        IN_RESOURCE_CACHE_SIZE.set(0);
+        OUT_RESOURCE_CACHE_SIZE.set(0);
     }
 
     /**
@@ -245,7 +335,7 @@ public class CtSph implements Sph {
      * @since 0.2.0
      */
     static Map<ResourceWrapper, ProcessorSlotChain> getChainMap() {
-        return chainMap;
+        return chainRegistry.asMap();
     }
 
     /**
@@ -257,52 +347,67 @@ public class CtSph implements Sph {
         }
     }
 
+    /**
+     * Get a reusable handle of the protected resource, of which the slot chain is resolved in advance.
+     *
+     * @param name the unique name for the protected resource
+     * @param type the resource is an inbound or an outbound method. This is used
+     *             to mark whether it can be blocked when the system is unstable
+     * @return the resource handle
+     * @since 1.5.0
+     */
+    public ResourceHandle handle(String name, EntryType type) {
+        ResourceWrapper resource = stringResource(name, type);
+        int chainVersion = chainRegistry.version();
+        return new ResourceHandle(this, resource, lookProcessChain(resource), chainVersion);
+    }
+
     @Override
     public Entry entry(String name) throws BlockException {
-        StringResourceWrapper resource = new StringResourceWrapper(name, EntryType.OUT);
-        return entry(resource, 1, OBJECTS0);
+        StringResourceWrapper resource = stringResource(name, EntryType.OUT);
+        return entry(resource, 1);
     }
 
     @Override
     public Entry entry(Method method) throws BlockException {
         MethodResourceWrapper resource = new MethodResourceWrapper(method, EntryType.OUT);
-        return entry(resource, 1, OBJECTS0);
+        return entry(resource, 1);
     }
 
     @Override
     public Entry entry(Method method, EntryType type) throws BlockException {
         MethodResourceWrapper resource = new MethodResourceWrapper(method, type);
-        return entry(resource, 1, OBJECTS0);
+        return entry(resource, 1);
     }
 
     @Override
     public Entry entry(String name, EntryType type) throws BlockException {
-        StringResourceWrapper resource = new StringResourceWrapper(name, type);
-        return entry(resource, 1, OBJECTS0);
+        StringResourceWrapper resource = stringResource(name, type);
+        return entry(resource, 1);
     }
 
     @Override
     public Entry entry(Method method, EntryType type, int count) throws BlockException {
         MethodResourceWrapper resource = new MethodResourceWrapper(method, type);
-        return entry(resource, count, OBJECTS0);
+        return entry(resource, count);
     }
 
     @Override
     public Entry entry(String name, EntryType type, int count) throws BlockException {
-        StringResourceWrapper resource = new StringResourceWrapper(name, type);
-        return entry(resource, count, OBJECTS0);
+        StringResourceWrapper resource = stringResource(name, type);
+        return entry(resource, count);
     }
 
     @Override
     public Entry entry(Method method, int count) throws BlockException {
         MethodResourceWrapper resource = new MethodResourceWrapper(method, EntryType.OUT);
-        return entry(resource, count, OBJECTS0);
+        return entry(resource, count);
     }
 
     @Override
     public Entry entry(String name, int count) throws BlockException {
-        StringResourceWrapper resource = new StringResourceWrapper(name, EntryType.OUT);
-        return entry(resource, count, OBJECTS0);
+        StringResourceWrapper resource = stringResource(name, EntryType.OUT);
+        return entry(resource, count);
     }
 
     @Override
@@ -313,26 +418,46 @@ public class CtSph implements Sph {
 
     @Override
     public Entry entry(String name, EntryType type, int count, Object... args) throws BlockException {
-        StringResourceWrapper resource = new StringResourceWrapper(name, type);
+        StringResourceWrapper resource = stringResource(name, type);
         return entry(resource, count, args);
     }
 
     @Override
     public AsyncEntry asyncEntry(String name, EntryType type, int count, Object... args) throws BlockException {
-        StringResourceWrapper resource = new StringResourceWrapper(name, type);
-        return asyncEntryInternal(resource, count, args);
+        StringResourceWrapper resource = stringResource(name, type);
+        return asyncEntryInternal(resource, count, false, args);
+    }
+
+    /**
+     * Create a protected asynchronous resource in non-blocking mode. Flow rules that make requests queue
+     * (e.g. rate limiter) won't block the caller thread; instead the time the request should wait is
+     * recorded in the entry, see {@link AsyncEntry#getPermitWaitMs()}.
+     *
+     * @param name  the unique name for the protected resource
+     * @param type  the resource is an inbound or an outbound method. This is used
+     *              to mark whether it can be blocked when the system is unstable
+     * @param count the count that the resource requires
+     * @param args  the parameters of the method. It can also be counted by setting hot parameter rule
+     * @return created asynchronous entry
+     * @throws BlockException if the block criteria is met
+     * @since 1.5.0
+     */
+    public AsyncEntry asyncEntryNonBlocking(String name, EntryType type, int count, Object... args)
+        throws BlockException {
+        StringResourceWrapper resource = stringResource(name, type);
+        return asyncEntryInternal(resource, count, true, args);
     }
 
     @Override
     public Entry entryWithPriority(String name, EntryType type, int count, boolean prioritized) throws BlockException {
-        StringResourceWrapper resource = new StringResourceWrapper(name, type);
+        StringResourceWrapper resource = stringResource(name, type);
         return entryWithPriority(resource, count, prioritized);
     }
 
     @Override
     public Entry entryWithPriority(String name, EntryType type, int count, boolean prioritized, Object... args)
         throws BlockException {
-        StringResourceWrapper resource = new StringResourceWrapper(name, type);
+        StringResourceWrapper resource = stringResource(name, type);
         return entryWithPriority(resource, count, prioritized, args);
     }
 }
@@ -15,6 +15,8 @@
  */
 package com.alibaba.csp.sentinel;
 
+import java.util.concurrent.TimeUnit;
+
 import com.alibaba.csp.sentinel.util.TimeUtil;
 import com.alibaba.csp.sentinel.context.ContextUtil;
 import com.alibaba.csp.sentinel.node.Node;
@@ -53,17 +55,27 @@ public abstract class Entry implements AutoCloseable {
     private static final Object[] OBJECTS0 = new Object[0];
 
     private long createTime;
+    /**
+     * Monotonic create time in nanoseconds, only recorded when {@link Constants#RT_NANO}
+     * or {@link Constants#RT_HISTOGRAM} is enabled (otherwise 0).
+     */
+    private long createNanoTime;
     private Node curNode;
     /**
      * {@link Node} of the specific origin, Usually the origin is the Service Consumer.
      */
     private Node originNode;
     private Throwable error;
+    /**
+     * Business exception traced by {@link Tracer} during the invocation (not the block exception).
+     */
+    private Throwable bizError;
     protected ResourceWrapper resourceWrapper;
 
     public Entry(ResourceWrapper resourceWrapper) {
         this.resourceWrapper = resourceWrapper;
         this.createTime = TimeUtil.currentTimeMillis();
+        this.createNanoTime = Constants.RT_NANO || Constants.RT_HISTOGRAM ? TimeUtil.nanoTime() : 0;
     }
 
     public ResourceWrapper getResourceWrapper() {
@@ -123,6 +135,27 @@ public abstract class Entry implements AutoCloseable {
         return createTime;
     }
 
+    /**
+     * Move the create time to given time (e.g. when the deferred permit is granted), so that the time
+     * before is not counted in the response time.
+     *
+     * @param timeMillis the new create time in milliseconds
+     */
+    void resetCreateTime(long timeMillis) {
+        if (createNanoTime != 0) {
+            createNanoTime += TimeUnit.MILLISECONDS.toNanos(timeMillis - createTime);
+        }
+        createTime = timeMillis;
+    }
+
+    /**
+     * @return monotonic create time in nanoseconds, or 0 if not recorded
+     * @since 1.5.0
+     */
+    public long getCreateNanoTime() {
+        return createNanoTime;
+    }
+
     public Node getCurNode() {
         return curNode;
     }
@@ -139,6 +172,18 @@ public abstract class Entry implements AutoCloseable {
         this.error = error;
     }
 
+    /**
+     * @return the business exception traced by {@link Tracer} during the invocation, or null if absent
+     * @since 1.5.0
+     */
+    public Throwable getBizError() {
+        return bizError;
+    }
+
+    public void setBizError(Throwable bizError) {
+        this.bizError = bizError;
+    }
+
     /**
      * Get origin {@link Node} of the this {@link Entry}.
      *
@@ -0,0 +1,162 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel;
+
+import com.alibaba.csp.sentinel.node.ClusterNode;
+import com.alibaba.csp.sentinel.slotchain.ProcessorSlot;
+import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
+
+/**
+ * <p>
+ * A reusable handle of a protected resource, with the slot chain of the resource resolved in advance.
+ * Entering the resource via the handle skips the slot chain lookup (the chain is only looked up again
+ * when slot chains are reset), so it's designed for hot call sites of the same resource:
+ * </p>
+ *
+ * <pre>
+ * private static final ResourceHandle HANDLE = SphU.handle("resourceName", EntryType.OUT);
+ *
+ * Entry entry = null;
+ * try {
+ *     entry = HANDLE.entry();
+ *     // Do something.
+ * } catch (BlockException ex) {
+ *     // Blocked.
+ * } finally {
+ *     if (entry != null) {
+ *         entry.exit();
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>The handle is thread-safe, and can be shared among threads.</p>
+ *
+ * @see SphU#handle(String, EntryType)
+ * @since 1.5.0
+ */
+public final class ResourceHandle {
+
+    private final CtSph sph;
+    private final ResourceWrapper resourceWrapper;
+    private volatile ResolvedChain resolvedChain;
+
+    ResourceHandle(CtSph sph, ResourceWrapper resourceWrapper, ProcessorSlot<Object> chain, int chainVersion) {
+        this.sph = sph;
+        this.resourceWrapper = resourceWrapper;
+        this.resolvedChain = new ResolvedChain(chain, chainVersion);
+    }
+
+    /**
+     * Check all rules about the resource.
+     *
+     * @return entry of this invocation
+     * @throws BlockException if the block criteria is met
+     */
+    public Entry entry() throws BlockException {
+        return sph.entryWithHandle(this, 1, false);
+    }
+
+    /**
+     * Check all rules about the resource.
+     *
+     * @param count tokens required
+     * @param args  extra parameters
+     * @return entry of this invocation
+     * @throws BlockException if the block criteria is met
+     */
+    public Entry entry(int count, Object... args) throws BlockException {
+        return sph.entryWithHandle(this, count, false, args);
+    }
+
+    /**
+     * Check all rules about the resource. Instead of throwing {@link BlockException},
+     * null will be returned if blocked.
+     *
+     * @return entry of this invocation, or null if blocked
+     */
+    public Entry tryEntry() {
+        try {
+            return sph.entryWithHandle(this, 1, false);
+        } catch (BlockException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check all rules about the resource. Instead of throwing {@link BlockException},
+     * null will be returned if blocked.
+     *
+     * @param count tokens required
+     * @param args  extra parameters
+     * @return entry of this invocation, or null if blocked
+     */
+    public Entry tryEntry(int count, Object... args) {
+        try {
+            return sph.entryWithHandle(this, count, false, args);
+        } catch (BlockException e) {
+            return null;
+        }
+    }
+
+    public ResourceWrapper getResourceWrapper() {
+        return resourceWrapper;
+    }
+
+    /**
+     * Get the {@link ClusterNode} of the resource.
+     *
+     * @return the cluster node of the resource, or null if the resource has never been entered
+     */
+    public ClusterNode getClusterNode() {
+        return ClusterBuilderSlot.getClusterNode(resourceWrapper.getName(), resourceWrapper.getType());
+    }
+
+    /**
+     * Get the slot chain of the resource, which is looked up again if slot chains have been reset since
+     * it was resolved.
+     *
+     * @param chainVersion current version of slot chains
+     * @return the slot chain, or null if amount of slot chains exceeds the max size
+     */
+    ProcessorSlot<Object> getChain(int chainVersion) {
+        ResolvedChain resolved = resolvedChain;
+        if (resolved.version != chainVersion) {
+            resolved = new ResolvedChain(sph.lookProcessChain(resourceWrapper), chainVersion);
+            resolvedChain = resolved;
+        }
+        return resolved.chain;
+    }
+
+    private static final class ResolvedChain {
+        private final ProcessorSlot<Object> chain;
+        private final int version;
+
+        ResolvedChain(ProcessorSlot<Object> chain, int version) {
+            this.chain = chain;
+            this.version = version;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceHandle{" +
+            "resourceWrapper=" + resourceWrapper +
+            ", chainResolved=" + (resolvedChain.chain != null) +
+            '}';
+    }
+}
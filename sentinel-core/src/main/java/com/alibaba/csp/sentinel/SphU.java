@@ -243,6 +243,42 @@ public class SphU {
         return Env.sph.asyncEntry(name, type, count, args);
     }
 
+    /**
+     * Checking all {@link Rule}s about the asynchronous resource without blocking the caller thread.
+     * When queueing is required by flow rules (e.g. rate limiter), the request should be delayed by
+     * the caller for {@link AsyncEntry#getPermitWaitMs()} before it proceeds.
+     *
+     * @param name the unique name for the protected resource
+     * @param type the resource is an inbound or an outbound method. This is used
+     *             to mark whether it can be blocked when the system is unstable,
+     *             only inbound traffic could be blocked by {@link SystemRule}
+     * @throws BlockException if the block criteria is met, eg. when any rule's threshold is exceeded
+     * @since 1.5.0
+     */
+    public static AsyncEntry asyncEntryNonBlocking(String name, EntryType type) throws BlockException {
+        return asyncEntryNonBlocking(name, type, 1, OBJECTS0);
+    }
+
+    /**
+     * Checking all {@link Rule}s about the asynchronous resource without blocking the caller thread.
+     * When queueing is required by flow rules (e.g. rate limiter), the request should be delayed by
+     * the caller for {@link AsyncEntry#getPermitWaitMs()} before it proceeds.
+     *
+     * @param name  the unique name for the protected resource
+     * @param type  the resource is an inbound or an outbound method. This is used
+     *              to mark whether it can be blocked when the system is unstable,
+     *              only inbound traffic could be blocked by {@link SystemRule}
+     * @param count tokens required
+     * @param args  extra parameters
+     * @throws BlockException if the block criteria is met, eg. when any rule's threshold is exceeded
+     * @since 1.5.0
+     */
+    public static AsyncEntry asyncEntryNonBlocking(String name, EntryType type, int count, Object... args)
+        throws BlockException {
+        // Non-blocking entries are not a part of the Sph interface.
+        return ((CtSph)Env.sph).asyncEntryNonBlocking(name, type, count, args);
+    }
+
     /**
      * Checking all {@link Rule}s related the resource. The entry is prioritized.
      *
@@ -267,4 +303,31 @@ public class SphU {
     public static Entry entryWithPriority(String name, EntryType type) throws BlockException {
         return Env.sph.entryWithPriority(name, type, 1, true);
     }
+
+    /**
+     * Get a reusable handle of the resource, of which the slot chain is resolved in advance.
+     * Entering the resource via {@link ResourceHandle#entry()} skips the lookup of slot chain and
+     * statistic nodes, so it's recommended for hot call sites of the same resource.
+     *
+     * @param name the unique name for the protected resource
+     * @param type the resource is an inbound or an outbound method. This is used
+     *             to mark whether it can be blocked when the system is unstable,
+     *             only inbound traffic could be blocked by {@link SystemRule}
+     * @return the resource handle
+     * @since 1.5.0
+     */
+    public static ResourceHandle handle(String name, EntryType type) {
+        return ((CtSph)Env.sph).handle(name, type);
+    }
+
+    /**
+     * Get a reusable handle of the outbound resource, of which the slot chain is resolved in advance.
+     *
+     * @param name the unique name for the protected resource
+     * @return the resource handle
+     * @since 1.5.0
+     */
+    public static ResourceHandle handle(String name) {
+        return ((CtSph)Env.sph).handle(name, EntryType.OUT);
+    }
 }
@@ -54,6 +54,7 @@ public final class Tracer {
             return;
         }
 
+        markBizError(e, context.getCurEntry());
         DefaultNode curNode = (DefaultNode)context.getCurNode();
         traceExceptionToNode(e, count, curNode);
     }
@@ -73,6 +74,7 @@ public final class Tracer {
             return;
         }
 
+        markBizError(e, context.getCurEntry());
         DefaultNode curNode = (DefaultNode)context.getCurNode();
         traceExceptionToNode(e, count, curNode);
     }
@@ -102,10 +104,17 @@ public final class Tracer {
             return;
         }
 
+        markBizError(e, entry);
         DefaultNode curNode = (DefaultNode)entry.getCurNode();
         traceExceptionToNode(e, count, curNode);
     }
 
+    private static void markBizError(Throwable t, Entry entry) {
+        if (entry != null) {
+            entry.setBizError(t);
+        }
+    }
+
     private static void traceExceptionToNode(Throwable t, int count, DefaultNode curNode) {
         if (curNode == null) {
             return;
@@ -0,0 +1,48 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.cluster.client;
+
+import java.util.Collection;
+
+/**
+ * Token client which can request tokens without blocking the caller, e.g. for reactive adapters.
+ *
+ * @since 1.5.0
+ */
+public interface AsyncClusterTokenClient extends ClusterTokenClient {
+
+    /**
+     * Request tokens from the remote token server asynchronously. The returned future is completed
+     * with a {@link com.alibaba.csp.sentinel.cluster.TokenResultStatus#FAIL} result if the request fails
+     * or times out.
+     *
+     * @param flowId       the unique rule ID
+     * @param acquireCount token count to acquire
+     * @param prioritized  whether the request is prioritized
+     * @return future of the token result
+     */
+    TokenResultFuture requestTokenAsync(Long flowId, int acquireCount, boolean prioritized);
+
+    /**
+     * Request tokens for a specific parameter from the remote token server asynchronously.
+     *
+     * @param flowId       the unique rule ID
+     * @param acquireCount token count to acquire
+     * @param params       parameter list
+     * @return future of the token result
+     */
+    TokenResultFuture requestParamTokenAsync(Long flowId, int acquireCount, Collection<Object> params);
+}
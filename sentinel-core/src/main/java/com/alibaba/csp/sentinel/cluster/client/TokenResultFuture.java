@@ -0,0 +1,179 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.cluster.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.alibaba.csp.sentinel.cluster.TokenResult;
+import com.alibaba.csp.sentinel.log.RecordLog;
+
+/**
+ * Future of a token result requested asynchronously from the token server.
+ * <p>
+ * The future is completed exactly once, normally by the I/O thread of the token client, and a failed request
+ * is completed with a {@link com.alibaba.csp.sentinel.cluster.TokenResultStatus#FAIL} result rather than
+ * an exception. Listeners are invoked by the completing thread (or by the registering thread if the future
+ * is already done), so they must not block. The future cannot be cancelled.
+ *
+ * @since 1.5.0
+ */
+public final class TokenResultFuture implements Future<TokenResult> {
+
+    /**
+     * Listener of the completion of a {@link TokenResultFuture}.
+     */
+    public interface Listener {
+
+        /**
+         * @param result the token result, never null
+         */
+        void onComplete(TokenResult result);
+    }
+
+    private volatile TokenResult result;
+    /**
+     * Listeners registered before completion, guarded by {@code this}.
+     */
+    private List<Listener> listeners;
+
+    /**
+     * @param result the token result
+     * @return a future already completed with the result
+     */
+    public static TokenResultFuture completed(TokenResult result) {
+        TokenResultFuture future = new TokenResultFuture();
+        future.complete(result);
+        return future;
+    }
+
+    /**
+     * Completes the future, waking up the waiting threads and invoking the listeners.
+     *
+     * @param result the token result, not null
+     * @return true if the future is completed by this call, false if it was already done
+     */
+    public boolean complete(TokenResult result) {
+        if (result == null) {
+            throw new IllegalArgumentException("result cannot be null");
+        }
+        List<Listener> toNotify;
+        synchronized (this) {
+            if (this.result != null) {
+                return false;
+            }
+            this.result = result;
+            toNotify = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        if (toNotify != null) {
+            for (Listener listener : toNotify) {
+                notifyListener(listener, result);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a listener, which is invoked immediately if the future is already done.
+     *
+     * @param listener the listener, not null
+     * @return this future
+     */
+    public TokenResultFuture addListener(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+        synchronized (this) {
+            if (result == null) {
+                if (listeners == null) {
+                    listeners = new ArrayList<Listener>(1);
+                }
+                listeners.add(listener);
+                return this;
+            }
+        }
+        notifyListener(listener, result);
+        return this;
+    }
+
+    private static void notifyListener(Listener listener, TokenResult result) {
+        try {
+            listener.onComplete(result);
+        } catch (Throwable ex) {
+            RecordLog.warn("[TokenResultFuture] Unexpected error in listener", ex);
+        }
+    }
+
+    /**
+     * @return the token result if done, otherwise null
+     */
+    public TokenResult getNow() {
+        return result;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return result != null;
+    }
+
+    @Override
+    public TokenResult get() throws InterruptedException {
+        TokenResult r = result;
+        if (r != null) {
+            return r;
+        }
+        synchronized (this) {
+            while (result == null) {
+                wait();
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public TokenResult get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        TokenResult r = result;
+        if (r != null) {
+            return r;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (result == null) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            }
+            return result;
+        }
+    }
+}
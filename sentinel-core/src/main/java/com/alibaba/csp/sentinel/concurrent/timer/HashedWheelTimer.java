@@ -0,0 +1,444 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.concurrent.timer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.csp.sentinel.log.RecordLog;
+import com.alibaba.csp.sentinel.util.AssertUtil;
+
+/**
+ * <p>
+ * A timer for a large number of delayed tasks with low precision requirements (e.g. recovery of degraded
+ * resources), based on a hashed timing wheel. Scheduling and cancelling a task are O(1), and all tasks
+ * are driven by a single worker thread, which ticks every {@code tickDuration}.
+ * </p>
+ * <p>
+ * Tasks are executed in the worker thread, so they should be short and non-blocking.
+ * Heavy work should be handed off to other executors.
+ * </p>
+ * <p>
+ * The timer keeps metrics of the lag between the deadline of tasks and the time they are actually
+ * executed, which can be used to detect whether the worker thread is overloaded.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class HashedWheelTimer {
+
+    private static final int WORKER_STATE_INIT = 0;
+    private static final int WORKER_STATE_STARTED = 1;
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+
+    /**
+     * Max count of new timeouts transferred to the wheel in a tick, so that a burst of scheduling
+     * won't delay the expiration of the current tick.
+     */
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    /**
+     * A warning is logged if tasks are executed later than this many ticks after their deadline,
+     * at most once in {@code LAG_WARN_INTERVAL_NANOS}.
+     */
+    private static final int LAG_WARN_TICKS = 10;
+    private static final long LAG_WARN_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_STATE_INIT);
+    private final Thread workerThread;
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+
+    private final long tickDurationNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    private final Queue<WheelTimeout> newTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+    private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+    private final AtomicLong pendingTimeouts = new AtomicLong(0);
+
+    private volatile long startTime;
+
+    /**
+     * Metrics, only updated by the worker thread.
+     */
+    private volatile long expiredCount;
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+    private long lastLagWarnTime = -LAG_WARN_INTERVAL_NANOS;
+
+    /**
+     * @param name          name of the worker thread
+     * @param tickDuration  duration between two ticks
+     * @param unit          time unit of the tick duration
+     * @param ticksPerWheel size of the wheel, will be rounded up to a power of two
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        AssertUtil.assertNotBlank(name, "name cannot be blank");
+        AssertUtil.notNull(unit, "unit cannot be null");
+        AssertUtil.isTrue(tickDuration > 0, "tickDuration should be positive");
+        AssertUtil.isTrue(ticksPerWheel > 0 && ticksPerWheel <= (1 << 30), "ticksPerWheel should be in (0, 2^30]");
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.tickDurationNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+
+        this.workerThread = new Thread(new Worker(), name);
+        this.workerThread.setDaemon(true);
+    }
+
+    /**
+     * Schedule a task to be executed once after given delay.
+     *
+     * @param task  the task
+     * @param delay delay of the task
+     * @param unit  time unit of the delay
+     * @return the handle of the scheduled task
+     * @throws IllegalStateException if the timer has been stopped
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        AssertUtil.notNull(task, "task cannot be null");
+        AssertUtil.notNull(unit, "unit cannot be null");
+        start();
+
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+        // Guard against overflow.
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        WheelTimeout timeout = new WheelTimeout(this, task, deadline);
+        pendingTimeouts.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    private void start() {
+        switch (workerState.get()) {
+            case WORKER_STATE_INIT:
+                if (workerState.compareAndSet(WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            default:
+                throw new IllegalStateException("Cannot schedule new tasks after the timer is stopped");
+        }
+        // Wait until the start time is initialized by the worker.
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException ignore) {
+                // Keep waiting, as the worker will initialize the start time very soon.
+            }
+        }
+    }
+
+    /**
+     * Stop the timer. Tasks not expired yet will never be executed.
+     */
+    public void stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException("Cannot stop the timer in its own task");
+        }
+        if (workerState.getAndSet(WORKER_STATE_SHUTDOWN) != WORKER_STATE_STARTED) {
+            return;
+        }
+        workerThread.interrupt();
+        try {
+            workerThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return count of tasks that are scheduled but neither expired nor cancelled
+     */
+    public long getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * @return count of expired tasks
+     */
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * @return lag (in milliseconds) between the deadline and the actual execution of the last expired task
+     */
+    public long getLastLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLagNanos);
+    }
+
+    /**
+     * @return max lag (in milliseconds) between the deadline and the actual execution of expired tasks
+     */
+    public long getMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos);
+    }
+
+    public long getTickDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickDurationNanos);
+    }
+
+    private void recordExpired(long currentTime, long lagNanos) {
+        // Only the worker thread updates the metrics.
+        expiredCount++;
+        lastLagNanos = lagNanos;
+        if (lagNanos > maxLagNanos) {
+            maxLagNanos = lagNanos;
+        }
+        if (lagNanos > LAG_WARN_TICKS * tickDurationNanos
+            && currentTime - lastLagWarnTime >= LAG_WARN_INTERVAL_NANOS) {
+            lastLagWarnTime = currentTime;
+            RecordLog.warn("[HashedWheelTimer] Tasks are executed " + TimeUnit.NANOSECONDS.toMillis(lagNanos)
+                + " ms later than their deadline, the timer may be overloaded: " + this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HashedWheelTimer{" +
+            "name=" + workerThread.getName() +
+            ", tickDurationMs=" + getTickDurationMillis() +
+            ", wheelSize=" + wheel.length +
+            ", pendingTimeouts=" + getPendingTimeouts() +
+            ", expiredCount=" + expiredCount +
+            ", maxLagMs=" + getMaxLagMillis() +
+            '}';
+    }
+
+    private final class Worker implements Runnable {
+
+        private long tick;
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            // Zero is used as "not initialized".
+            startTime = now == 0 ? 1 : now;
+            startTimeInitialized.countDown();
+
+            while (workerState.get() == WORKER_STATE_STARTED) {
+                long deadline = waitForNextTick();
+                if (deadline < 0) {
+                    continue;
+                }
+                processCancelledTimeouts();
+                transferTimeoutsToBuckets();
+                wheel[(int)(tick & mask)].expireTimeouts(deadline);
+                tick++;
+            }
+        }
+
+        /**
+         * @return current time relative to the start time, or -1 if interrupted on shutdown
+         */
+        private long waitForNextTick() {
+            long deadline = tickDurationNanos * (tick + 1);
+            while (true) {
+                long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+                if (sleepTimeMs <= 0) {
+                    return currentTime;
+                }
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignore) {
+                    if (workerState.get() == WORKER_STATE_SHUTDOWN) {
+                        return -1;
+                    }
+                }
+            }
+        }
+
+        private void processCancelledTimeouts() {
+            WheelTimeout timeout;
+            while ((timeout = cancelledTimeouts.poll()) != null) {
+                timeout.removeFromBucket();
+                pendingTimeouts.decrementAndGet();
+            }
+        }
+
+        private void transferTimeoutsToBuckets() {
+            for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+                WheelTimeout timeout = newTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.isCancelled()) {
+                    // Will be counted when processing cancelled timeouts.
+                    continue;
+                }
+                long calculated = timeout.deadline / tickDurationNanos;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+                // Tasks of which deadline has passed are expired in current tick.
+                long ticks = Math.max(calculated, tick);
+                wheel[(int)(ticks & mask)].add(timeout);
+            }
+        }
+    }
+
+    private static final class WheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        /**
+         * Fields below are only accessed by the worker thread.
+         */
+        private long remainingRounds;
+        private Bucket bucket;
+        private WheelTimeout next;
+        private WheelTimeout prev;
+
+        WheelTimeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Runnable task() {
+            return task;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // Removal from the bucket is done by the worker thread in the next tick.
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        void removeFromBucket() {
+            if (bucket != null) {
+                bucket.remove(this);
+            }
+        }
+
+        void expire(long currentTime) {
+            if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            timer.pendingTimeouts.decrementAndGet();
+            timer.recordExpired(currentTime, Math.max(currentTime - deadline, 0));
+            try {
+                task.run();
+            } catch (Throwable t) {
+                RecordLog.warn("[HashedWheelTimer] Error when running timer task: " + task, t);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "WheelTimeout{task=" + task + ", state=" + state.get() + '}';
+        }
+    }
+
+    /**
+     * Doubly-linked list of timeouts in a slot of the wheel, only accessed by the worker thread.
+     */
+    private static final class Bucket {
+
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expireTimeouts(long currentTime) {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.deadline > currentTime) {
+                        // Should not happen. Putting it back to this bucket would make it visited again
+                        // in this loop, so expire it now (slightly earlier than its deadline).
+                        RecordLog.warn("[HashedWheelTimer] Timeout placed into wrong slot: " + timeout);
+                    }
+                    timeout.expire(currentTime);
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(WheelTimeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            WheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.concurrent.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shared timer for delayed work of Sentinel (e.g. recovery of degraded resources and reconnecting
+ * of cluster clients), so that the delayed work is driven by a single thread.
+ *
+ * @since 1.5.0
+ */
+public final class SentinelTimer {
+
+    private static final long TICK_DURATION_MS = 10;
+    private static final int TICKS_PER_WHEEL = 512;
+
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer("sentinel-timer",
+        TICK_DURATION_MS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+
+    /**
+     * Schedule a task to be executed once after given delay with the shared timer.
+     * The task should be short and non-blocking.
+     *
+     * @param task  the task
+     * @param delay delay of the task
+     * @param unit  time unit of the delay
+     * @return the handle of the scheduled task
+     */
+    public static Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        return TIMER.newTimeout(task, delay, unit);
+    }
+
+    /**
+     * @return the shared timer, for metrics of the timer
+     */
+    public static HashedWheelTimer getTimer() {
+        return TIMER;
+    }
+
+    private SentinelTimer() {}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.concurrent.timer;
+
+/**
+ * A handle of a task scheduled by {@link HashedWheelTimer}.
+ *
+ * @since 1.5.0
+ */
+public interface Timeout {
+
+    /**
+     * @return the scheduled task
+     */
+    Runnable task();
+
+    /**
+     * @return true if the task has been executed (or is being executed)
+     */
+    boolean isExpired();
+
+    /**
+     * @return true if the task has been cancelled
+     */
+    boolean isCancelled();
+
+    /**
+     * Cancel the task. The task won't be executed if cancelled before it expires.
+     *
+     * @return true if cancelled successfully, false if the task has been expired or cancelled
+     */
+    boolean cancel();
+}
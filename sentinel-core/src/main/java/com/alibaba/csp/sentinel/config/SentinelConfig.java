@@ -41,12 +41,57 @@ public class SentinelConfig {
     public static final String TOTAL_METRIC_FILE_COUNT = "csp.sentinel.metric.file.total.count";
     public static final String COLD_FACTOR = "csp.sentinel.flow.cold.factor";
     public static final String STATISTIC_MAX_RT = "csp.sentinel.statistic.max.rt";
+    public static final String ZERO_GARBAGE_MODE = "csp.sentinel.entry.zero.garbage";
+    public static final String STATISTIC_BUCKET_TYPE = "csp.sentinel.statistic.bucket.type";
+    public static final String STATISTIC_BUCKET_STRIPES = "csp.sentinel.statistic.bucket.stripes";
+    public static final String CLOCK_TYPE = "csp.sentinel.clock.type";
+    public static final String CLOCK_TICKING_THRESHOLD = "csp.sentinel.clock.ticking.threshold";
+    public static final String STATISTIC_RT_NANO = "csp.sentinel.statistic.rt.nano";
+    public static final String STATISTIC_RT_HISTOGRAM = "csp.sentinel.statistic.rt.histogram";
+    public static final String STATISTIC_MAX_ORIGIN = "csp.sentinel.statistic.max.origin";
+    public static final String STATISTIC_NODE_MAX_BYTES = "csp.sentinel.statistic.node.max.bytes";
+    public static final String STATISTIC_NODE_IDLE_TIMEOUT = "csp.sentinel.statistic.node.idle.timeout";
+    public static final String METRIC_FILE_FORMAT = "csp.sentinel.metric.file.format";
+    public static final String METRIC_WRITE_ASYNC = "csp.sentinel.metric.write.async";
+    public static final String METRIC_WRITE_QUEUE_SIZE = "csp.sentinel.metric.write.queue.size";
+    public static final String METRIC_FORCE_INTERVAL = "csp.sentinel.metric.force.interval";
+    public static final String METRIC_FILE_COMPRESS = "csp.sentinel.metric.file.compress";
+    public static final String METRIC_RETENTION_BYTES = "csp.sentinel.metric.retention.bytes";
+    public static final String METRIC_RETENTION_AGE = "csp.sentinel.metric.retention.age";
+    public static final String STATISTIC_RATE_ESTIMATOR = "csp.sentinel.statistic.rate.estimator";
+
+    public static final String BUCKET_TYPE_ADDER = "adder";
+    public static final String BUCKET_TYPE_STRIPED = "striped";
+    public static final String CLOCK_TYPE_ADAPTIVE = "adaptive";
+    public static final String CLOCK_TYPE_SYSTEM = "system";
+    public static final String METRIC_FILE_FORMAT_TEXT = "text";
+    public static final String METRIC_FILE_FORMAT_BINARY = "binary";
+    public static final String RATE_ESTIMATOR_WINDOW = "window";
+    public static final String RATE_ESTIMATOR_DECAYING = "decaying";
 
     static final String DEFAULT_CHARSET = "UTF-8";
     static final long DEFAULT_SINGLE_METRIC_FILE_SIZE = 1024 * 1024 * 50;
     static final int DEFAULT_TOTAL_METRIC_FILE_COUNT = 6;
     static final int DEFAULT_COLD_FACTOR = 3;
     static final int DEFAULT_STATISTIC_MAX_RT = 4900;
+    static final boolean DEFAULT_ZERO_GARBAGE_MODE = false;
+    static final String DEFAULT_STATISTIC_BUCKET_TYPE = BUCKET_TYPE_ADDER;
+    static final int MAX_STATISTIC_BUCKET_STRIPES = 64;
+    static final String DEFAULT_CLOCK_TYPE = CLOCK_TYPE_ADAPTIVE;
+    static final long DEFAULT_CLOCK_TICKING_THRESHOLD = 5000;
+    static final boolean DEFAULT_STATISTIC_RT_NANO = false;
+    static final boolean DEFAULT_STATISTIC_RT_HISTOGRAM = false;
+    static final int DEFAULT_STATISTIC_MAX_ORIGIN = 10000;
+    static final long DEFAULT_STATISTIC_NODE_MAX_BYTES = 256L * 1024 * 1024;
+    static final long DEFAULT_STATISTIC_NODE_IDLE_TIMEOUT = 10 * 60 * 1000;
+    static final String DEFAULT_METRIC_FILE_FORMAT = METRIC_FILE_FORMAT_TEXT;
+    static final boolean DEFAULT_METRIC_WRITE_ASYNC = true;
+    static final int DEFAULT_METRIC_WRITE_QUEUE_SIZE = 60;
+    static final long DEFAULT_METRIC_FORCE_INTERVAL = 0;
+    static final boolean DEFAULT_METRIC_FILE_COMPRESS = false;
+    static final long DEFAULT_METRIC_RETENTION_BYTES = 0;
+    static final long DEFAULT_METRIC_RETENTION_AGE = 0;
+    static final String DEFAULT_STATISTIC_RATE_ESTIMATOR = RATE_ESTIMATOR_WINDOW;
 
     static {
         initialize();
@@ -60,6 +105,23 @@ public class SentinelConfig {
         SentinelConfig.setConfig(TOTAL_METRIC_FILE_COUNT, String.valueOf(DEFAULT_TOTAL_METRIC_FILE_COUNT));
         SentinelConfig.setConfig(COLD_FACTOR, String.valueOf(DEFAULT_COLD_FACTOR));
         SentinelConfig.setConfig(STATISTIC_MAX_RT, String.valueOf(DEFAULT_STATISTIC_MAX_RT));
+        SentinelConfig.setConfig(ZERO_GARBAGE_MODE, String.valueOf(DEFAULT_ZERO_GARBAGE_MODE));
+        SentinelConfig.setConfig(STATISTIC_BUCKET_TYPE, DEFAULT_STATISTIC_BUCKET_TYPE);
+        SentinelConfig.setConfig(CLOCK_TYPE, DEFAULT_CLOCK_TYPE);
+        SentinelConfig.setConfig(CLOCK_TICKING_THRESHOLD, String.valueOf(DEFAULT_CLOCK_TICKING_THRESHOLD));
+        SentinelConfig.setConfig(STATISTIC_RT_NANO, String.valueOf(DEFAULT_STATISTIC_RT_NANO));
+        SentinelConfig.setConfig(STATISTIC_RT_HISTOGRAM, String.valueOf(DEFAULT_STATISTIC_RT_HISTOGRAM));
+        SentinelConfig.setConfig(STATISTIC_MAX_ORIGIN, String.valueOf(DEFAULT_STATISTIC_MAX_ORIGIN));
+        SentinelConfig.setConfig(STATISTIC_NODE_MAX_BYTES, String.valueOf(DEFAULT_STATISTIC_NODE_MAX_BYTES));
+        SentinelConfig.setConfig(STATISTIC_NODE_IDLE_TIMEOUT, String.valueOf(DEFAULT_STATISTIC_NODE_IDLE_TIMEOUT));
+        SentinelConfig.setConfig(METRIC_FILE_FORMAT, DEFAULT_METRIC_FILE_FORMAT);
+        SentinelConfig.setConfig(METRIC_WRITE_ASYNC, String.valueOf(DEFAULT_METRIC_WRITE_ASYNC));
+        SentinelConfig.setConfig(METRIC_WRITE_QUEUE_SIZE, String.valueOf(DEFAULT_METRIC_WRITE_QUEUE_SIZE));
+        SentinelConfig.setConfig(METRIC_FORCE_INTERVAL, String.valueOf(DEFAULT_METRIC_FORCE_INTERVAL));
+        SentinelConfig.setConfig(METRIC_FILE_COMPRESS, String.valueOf(DEFAULT_METRIC_FILE_COMPRESS));
+        SentinelConfig.setConfig(METRIC_RETENTION_BYTES, String.valueOf(DEFAULT_METRIC_RETENTION_BYTES));
+        SentinelConfig.setConfig(METRIC_RETENTION_AGE, String.valueOf(DEFAULT_METRIC_RETENTION_AGE));
+        SentinelConfig.setConfig(STATISTIC_RATE_ESTIMATOR, DEFAULT_STATISTIC_RATE_ESTIMATOR);
     }
 
     private static void loadProps() {
@@ -184,4 +246,377 @@ public class SentinelConfig {
             return DEFAULT_STATISTIC_MAX_RT;
         }
     }
+
+    /**
+     * Whether the zero-garbage entry mode is enabled. In this mode resource wrappers and contexts
+     * are cached and recycled per thread, so that steady-state entry/exit only allocates the entry itself.
+     *
+     * @return true if zero-garbage mode is enabled, otherwise false
+     * @since 1.5.0
+     */
+    public static boolean zeroGarbageMode() {
+        String value = props.get(ZERO_GARBAGE_MODE);
+        if (value == null) {
+            return DEFAULT_ZERO_GARBAGE_MODE;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Get the type of metric buckets, which can be {@code adder} (default, counters backed by
+     * {@code LongAdder}) or {@code striped} (counters of all events kept in one padded array per CPU stripe).
+     *
+     * @return the metric bucket type
+     * @since 1.5.0
+     */
+    public static String statisticBucketType() {
+        String value = props.get(STATISTIC_BUCKET_TYPE);
+        if (value == null) {
+            return DEFAULT_STATISTIC_BUCKET_TYPE;
+        }
+        value = value.trim().toLowerCase();
+        if (!BUCKET_TYPE_ADDER.equals(value) && !BUCKET_TYPE_STRIPED.equals(value)) {
+            RecordLog.warn("[SentinelConfig] Unknown statisticBucketType: " + value + ", use default value: "
+                + DEFAULT_STATISTIC_BUCKET_TYPE);
+            return DEFAULT_STATISTIC_BUCKET_TYPE;
+        }
+        return value;
+    }
+
+    /**
+     * Get the stripe count of striped metric buckets. The count will be rounded up to a power of two.
+     * If absent or invalid, the stripe count is decided by available processors (no more than 16).
+     *
+     * @return the stripe count of striped metric buckets
+     * @since 1.5.0
+     */
+    public static int statisticBucketStripes() {
+        int stripes = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+        String value = props.get(STATISTIC_BUCKET_STRIPES);
+        if (value != null) {
+            try {
+                int configured = Integer.parseInt(value.trim());
+                if (configured > 0) {
+                    stripes = Math.min(configured, MAX_STATISTIC_BUCKET_STRIPES);
+                } else {
+                    RecordLog.warn("[SentinelConfig] statisticBucketStripes=" + configured
+                        + ", should be positive, use default value: " + stripes);
+                }
+            } catch (Throwable throwable) {
+                RecordLog.warn("[SentinelConfig] Parse statisticBucketStripes fail, use default value: "
+                    + stripes, throwable);
+            }
+        }
+        int n = 1;
+        while (n < stripes) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    /**
+     * Get the type of the default clock, which can be {@code adaptive} (default, switches between direct
+     * reads and a cached ticking time by read rate) or {@code system} (always reads the system time directly).
+     *
+     * @return the clock type
+     * @since 1.5.0
+     */
+    public static String clockType() {
+        String value = props.get(CLOCK_TYPE);
+        if (value == null) {
+            return DEFAULT_CLOCK_TYPE;
+        }
+        value = value.trim().toLowerCase();
+        if (!CLOCK_TYPE_ADAPTIVE.equals(value) && !CLOCK_TYPE_SYSTEM.equals(value)) {
+            RecordLog.warn("[SentinelConfig] Unknown clockType: " + value + ", use default value: "
+                + DEFAULT_CLOCK_TYPE);
+            return DEFAULT_CLOCK_TYPE;
+        }
+        return value;
+    }
+
+    /**
+     * Get the time read rate (per second) at which the adaptive clock switches to ticking mode.
+     * 0 means ticking all the time.
+     *
+     * @return the ticking threshold of the adaptive clock
+     * @since 1.5.0
+     */
+    public static long clockTickingThreshold() {
+        try {
+            long threshold = Long.parseLong(props.get(CLOCK_TICKING_THRESHOLD));
+            if (threshold < 0) {
+                RecordLog.warn("[SentinelConfig] clockTickingThreshold=" + threshold
+                    + ", should not be negative, use default value: " + DEFAULT_CLOCK_TICKING_THRESHOLD);
+                return DEFAULT_CLOCK_TICKING_THRESHOLD;
+            }
+            return threshold;
+        } catch (Throwable throwable) {
+            RecordLog.warn("[SentinelConfig] Parse clockTickingThreshold fail, use default value: "
+                + DEFAULT_CLOCK_TICKING_THRESHOLD, throwable);
+            return DEFAULT_CLOCK_TICKING_THRESHOLD;
+        }
+    }
+
+    /**
+     * Whether response time is measured with the monotonic nanosecond time source,
+     * instead of the difference of millisecond wall-clock time.
+     *
+     * @return true if the nanosecond mode is enabled, otherwise false
+     * @since 1.5.0
+     */
+    public static boolean statisticRtNano() {
+        String value = props.get(STATISTIC_RT_NANO);
+        if (value == null) {
+            return DEFAULT_STATISTIC_RT_NANO;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Whether latency histograms are kept in all cluster nodes, so that percentile response time
+     * is available. Response time will be measured with the nanosecond time source once enabled.
+     *
+     * @return true if latency histograms are enabled, otherwise false
+     * @since 1.5.0
+     */
+    public static boolean statisticRtHistogram() {
+        String value = props.get(STATISTIC_RT_HISTOGRAM);
+        if (value == null) {
+            return DEFAULT_STATISTIC_RT_HISTOGRAM;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Get the max count of distinct origins that statistics are kept for. Idle origins will be evicted
+     * when the count is exceeded.
+     *
+     * @return the max count of origins
+     * @since 1.5.0
+     */
+    public static int statisticMaxOrigin() {
+        try {
+            int maxOrigin = Integer.parseInt(props.get(STATISTIC_MAX_ORIGIN));
+            if (maxOrigin <= 0) {
+                RecordLog.warn("[SentinelConfig] statisticMaxOrigin=" + maxOrigin
+                    + ", should be positive, use default value: " + DEFAULT_STATISTIC_MAX_ORIGIN);
+                return DEFAULT_STATISTIC_MAX_ORIGIN;
+            }
+            return maxOrigin;
+        } catch (Throwable throwable) {
+            RecordLog.warn("[SentinelConfig] Parse statisticMaxOrigin fail, use default value: "
+                + DEFAULT_STATISTIC_MAX_ORIGIN, throwable);
+            return DEFAULT_STATISTIC_MAX_ORIGIN;
+        }
+    }
+
+    /**
+     * Get the memory budget (estimated) of statistic nodes in the invocation tree, including entrance nodes.
+     *
+     * @return the max bytes of statistic nodes in the invocation tree
+     * @since 1.5.0
+     */
+    public static long statisticNodeMaxBytes() {
+        try {
+            long maxBytes = Long.parseLong(props.get(STATISTIC_NODE_MAX_BYTES));
+            if (maxBytes <= 0) {
+                RecordLog.warn("[SentinelConfig] statisticNodeMaxBytes=" + maxBytes
+                    + ", should be positive, use default value: " + DEFAULT_STATISTIC_NODE_MAX_BYTES);
+                return DEFAULT_STATISTIC_NODE_MAX_BYTES;
+            }
+            return maxBytes;
+        } catch (Throwable throwable) {
+            RecordLog.warn("[SentinelConfig] Parse statisticNodeMaxBytes fail, use default value: "
+                + DEFAULT_STATISTIC_NODE_MAX_BYTES, throwable);
+            return DEFAULT_STATISTIC_NODE_MAX_BYTES;
+        }
+    }
+
+    /**
+     * Get the idle time (in milliseconds) after which nodes of the invocation tree will be evicted.
+     * 0 means idle nodes are only evicted when the memory budget is exceeded.
+     *
+     * @return the idle timeout of nodes in milliseconds
+     * @since 1.5.0
+     */
+    public static long statisticNodeIdleTimeout() {
+        try {
+            long timeout = Long.parseLong(props.get(STATISTIC_NODE_IDLE_TIMEOUT));
+            if (timeout < 0) {
+                RecordLog.warn("[SentinelConfig] statisticNodeIdleTimeout=" + timeout
+                    + ", should not be negative, use default value: " + DEFAULT_STATISTIC_NODE_IDLE_TIMEOUT);
+                return DEFAULT_STATISTIC_NODE_IDLE_TIMEOUT;
+            }
+            return timeout;
+        } catch (Throwable throwable) {
+            RecordLog.warn("[SentinelConfig] Parse statisticNodeIdleTimeout fail, use default value: "
+                + DEFAULT_STATISTIC_NODE_IDLE_TIMEOUT, throwable);
+            return DEFAULT_STATISTIC_NODE_IDLE_TIMEOUT;
+        }
+    }
+
+    /**
+     * Get the format of metric log files, which can be {@code text} (default, one line per metric)
+     * or {@code binary} (fixed-width records in memory-mapped files, with an embedded index).
+     *
+     * @return the metric file format
+     * @since 1.5.0
+     */
+    public static String metricFileFormat() {
+        String value = props.get(METRIC_FILE_FORMAT);
+        if (value == null) {
+            return DEFAULT_METRIC_FILE_FORMAT;
+        }
+        value = value.trim().toLowerCase();
+        if (!METRIC_FILE_FORMAT_TEXT.equals(value) && !METRIC_FILE_FORMAT_BINARY.equals(value)) {
+            RecordLog.warn("[SentinelConfig] Unknown metricFileFormat: " + value + ", use default value: "
+                + DEFAULT_METRIC_FILE_FORMAT);
+            return DEFAULT_METRIC_FILE_FORMAT;
+        }
+        return value;
+    }
+
+    /**
+     * Whether metrics are written to metric files by a dedicated writer thread, so that slow disks don't
+     * stall the metric timer.
+     *
+     * @return true if metrics are written asynchronously, otherwise false
+     * @since 1.5.0
+     */
+    public static boolean metricWriteAsync() {
+        String value = props.get(METRIC_WRITE_ASYNC);
+        if (value == null) {
+            return DEFAULT_METRIC_WRITE_ASYNC;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Get the max count of per-second metric batches waiting for the asynchronous writer. Metrics of later
+     * seconds are dropped when the queue is full.
+     *
+     * @return the queue size of the asynchronous metric writer
+     * @since 1.5.0
+     */
+    public static int metricWriteQueueSize() {
+        try {
+            int size = Integer.parseInt(props.get(METRIC_WRITE_QUEUE_SIZE));
+            if (size <= 0) {
+                RecordLog.warn("[SentinelConfig] metricWriteQueueSize=" + size
+                    + ", should be positive, use default value: " + DEFAULT_METRIC_WRITE_QUEUE_SIZE);
+                return DEFAULT_METRIC_WRITE_QUEUE_SIZE;
+            }
+            return size;
+        } catch (Throwable throwable) {
+            RecordLog.warn("[SentinelConfig] Parse metricWriteQueueSize fail, use default value: "
+                + DEFAULT_METRIC_WRITE_QUEUE_SIZE, throwable);
+            return DEFAULT_METRIC_WRITE_QUEUE_SIZE;
+        }
+    }
+
+    /**
+     * Get the min interval (in milliseconds) between forcing metric files to the storage device.
+     * 0 means metric files are never forced, and left to the OS.
+     *
+     * @return the force interval of metric files in milliseconds
+     * @since 1.5.0
+     */
+    public static long metricForceInterval() {
+        try {
+            long interval = Long.parseLong(props.get(METRIC_FORCE_INTERVAL));
+            if (interval < 0) {
+                RecordLog.warn("[SentinelConfig] metricForceInterval=" + interval
+                    + ", should not be negative, use default value: " + DEFAULT_METRIC_FORCE_INTERVAL);
+                return DEFAULT_METRIC_FORCE_INTERVAL;
+            }
+            return interval;
+        } catch (Throwable throwable) {
+            RecordLog.warn("[SentinelConfig] Parse metricForceInterval fail, use default value: "
+                + DEFAULT_METRIC_FORCE_INTERVAL, throwable);
+            return DEFAULT_METRIC_FORCE_INTERVAL;
+        }
+    }
+
+    /**
+     * Whether closed metric files are compressed (in DEFLATE blocks) in the background.
+     *
+     * @return true if closed metric files are compressed, otherwise false
+     * @since 1.5.0
+     */
+    public static boolean metricFileCompress() {
+        String value = props.get(METRIC_FILE_COMPRESS);
+        if (value == null) {
+            return DEFAULT_METRIC_FILE_COMPRESS;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Get the max total bytes of metric files (including index files) to retain. 0 means no limit
+     * besides the total file count.
+     *
+     * @return the retention bytes of metric files
+     * @since 1.5.0
+     */
+    public static long metricRetentionBytes() {
+        try {
+            long bytes = Long.parseLong(props.get(METRIC_RETENTION_BYTES));
+            if (bytes < 0) {
+                RecordLog.warn("[SentinelConfig] metricRetentionBytes=" + bytes
+                    + ", should not be negative, use default value: " + DEFAULT_METRIC_RETENTION_BYTES);
+                return DEFAULT_METRIC_RETENTION_BYTES;
+            }
+            return bytes;
+        } catch (Throwable throwable) {
+            RecordLog.warn("[SentinelConfig] Parse metricRetentionBytes fail, use default value: "
+                + DEFAULT_METRIC_RETENTION_BYTES, throwable);
+            return DEFAULT_METRIC_RETENTION_BYTES;
+        }
+    }
+
+    /**
+     * Get the max age (in milliseconds) of metric files to retain, since they are closed. 0 means no limit
+     * besides the total file count.
+     *
+     * @return the retention age of metric files in milliseconds
+     * @since 1.5.0
+     */
+    public static long metricRetentionAge() {
+        try {
+            long age = Long.parseLong(props.get(METRIC_RETENTION_AGE));
+            if (age < 0) {
+                RecordLog.warn("[SentinelConfig] metricRetentionAge=" + age
+                    + ", should not be negative, use default value: " + DEFAULT_METRIC_RETENTION_AGE);
+                return DEFAULT_METRIC_RETENTION_AGE;
+            }
+            return age;
+        } catch (Throwable throwable) {
+            RecordLog.warn("[SentinelConfig] Parse metricRetentionAge fail, use default value: "
+                + DEFAULT_METRIC_RETENTION_AGE, throwable);
+            return DEFAULT_METRIC_RETENTION_AGE;
+        }
+    }
+
+    /**
+     * Get the estimator of second-level statistics (e.g. QPS) used by flow control: {@code window} for
+     * sliding window buckets, or {@code decaying} for exponentially decaying counters, which don't drop
+     * when a bucket is deprecated. Minute-level statistics always use sliding window buckets.
+     *
+     * @return the estimator of second-level statistics
+     * @since 1.5.0
+     */
+    public static String statisticRateEstimator() {
+        String value = props.get(STATISTIC_RATE_ESTIMATOR);
+        if (value == null) {
+            return DEFAULT_STATISTIC_RATE_ESTIMATOR;
+        }
+        value = value.trim().toLowerCase();
+        if (!RATE_ESTIMATOR_WINDOW.equals(value) && !RATE_ESTIMATOR_DECAYING.equals(value)) {
+            RecordLog.warn("[SentinelConfig] Unknown statisticRateEstimator: " + value + ", use default value: "
+                + DEFAULT_STATISTIC_RATE_ESTIMATOR);
+            return DEFAULT_STATISTIC_RATE_ESTIMATOR;
+        }
+        return value;
+    }
 }
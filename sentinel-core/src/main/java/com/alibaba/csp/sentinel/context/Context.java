@@ -21,7 +21,9 @@ import com.alibaba.csp.sentinel.SphU;
 import com.alibaba.csp.sentinel.node.DefaultNode;
 import com.alibaba.csp.sentinel.node.EntranceNode;
 import com.alibaba.csp.sentinel.node.Node;
+import com.alibaba.csp.sentinel.node.OriginRegistry;
 import com.alibaba.csp.sentinel.slots.nodeselector.NodeSelectorSlot;
+import com.alibaba.csp.sentinel.util.StringUtil;
 
 /**
  * This class holds metadata of current invocation:<br/>
@@ -80,6 +82,11 @@ public class Context {
      */
     private String origin = "";
 
+    /**
+     * The interned origin, null if the origin is empty or the count of origins exceeds the max count.
+     */
+    private OriginRegistry.Origin internedOrigin;
+
     private final boolean async;
 
     /**
@@ -135,10 +142,20 @@ public class Context {
     }
 
     public Context setOrigin(String origin) {
-        this.origin = origin;
+        this.internedOrigin = StringUtil.isEmpty(origin) ? null : OriginRegistry.intern(origin);
+        // Use the canonical instance, so that origins can be matched by reference in most cases.
+        this.origin = internedOrigin == null ? origin : internedOrigin.getName();
         return this;
     }
 
+    /**
+     * @return the interned origin, or null if the origin is empty or cannot be interned
+     * @since 1.5.0
+     */
+    public OriginRegistry.Origin getInternedOrigin() {
+        return internedOrigin;
+    }
+
     public double getOriginTotalQps() {
         return getOriginNode() == null ? 0 : getOriginNode().totalQps();
     }
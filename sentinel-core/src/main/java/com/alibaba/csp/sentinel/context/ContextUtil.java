@@ -15,8 +15,11 @@
  */
 package com.alibaba.csp.sentinel.context;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.alibaba.csp.sentinel.Constants;
@@ -27,6 +30,7 @@ import com.alibaba.csp.sentinel.log.RecordLog;
 import com.alibaba.csp.sentinel.node.DefaultNode;
 import com.alibaba.csp.sentinel.node.EntranceNode;
 import com.alibaba.csp.sentinel.node.Node;
+import com.alibaba.csp.sentinel.node.NodeTreeManager;
 import com.alibaba.csp.sentinel.slotchain.StringResourceWrapper;
 import com.alibaba.csp.sentinel.slots.nodeselector.NodeSelectorSlot;
 
@@ -50,6 +54,11 @@ public class ContextUtil {
      */
     private static ThreadLocal<Context> contextHolder = new ThreadLocal<>();
 
+    /**
+     * Holds the last exited context of current thread, which could be reused in zero-garbage mode.
+     */
+    private static final ThreadLocal<Context> recycledContextHolder = new ThreadLocal<>();
+
     /**
      * Holds all {@link EntranceNode}. Each {@link EntranceNode} is associated with a distinct context name.
      * 存储Context name对应的EntranceNode，key是Context name默认为"default_context_name"
@@ -59,6 +68,44 @@ public class ContextUtil {
     private static final ReentrantLock LOCK = new ReentrantLock();
     private static final Context NULL_CONTEXT = new NullContext();
 
+    private static final String OVERFLOW_CONTEXT_ENTRANCE_NAME = "sentinel_overflow_context";
+    /**
+     * Shared entrance of the new contexts whose entrance node cannot be added to the invocation tree
+     * as the memory budget is exceeded (see {@link NodeTreeManager}), so that rules still take effect.
+     */
+    private static volatile EntranceNode overflowEntranceNode;
+
+    /**
+     * <p>Names of the contexts bound to {@link #overflowEntranceNode} (at most {@code MAX_CONTEXT_NAME_SIZE}),
+     * so that entering them again neither takes the lock nor creates an entrance node. Once the names are full,
+     * all new names are bound to the overflow entrance node without the lock.</p>
+     * <p>The names are only valid until nodes are evicted from the invocation tree (i.e. the evicted count
+     * changes), after which they will try to get their own entrance nodes again.</p>
+     */
+    private static volatile Set<String> overflowContextNames = Collections.emptySet();
+    private static volatile long overflowEvictedCount = -1;
+
+    /**
+     * Remove evicted idle entrance nodes (see {@link NodeTreeManager}) from the cache.
+     */
+    private static final NodeTreeManager.EvictionHandler ENTRANCE_EVICTION_HANDLER
+        = new NodeTreeManager.EvictionHandler() {
+        @Override
+        public void onEvicted(String name, DefaultNode node) {
+            try {
+                LOCK.lock();
+                if (contextNameNodeMap.get(name) != node) {
+                    return;
+                }
+                Map<String, DefaultNode> newMap = new HashMap<>(contextNameNodeMap);
+                newMap.remove(name);
+                contextNameNodeMap = newMap;
+            } finally {
+                LOCK.unlock();
+            }
+        }
+    };
+
     static {
         // Cache the entrance node for default context.
         initDefaultContext();
@@ -78,6 +125,7 @@ public class ContextUtil {
         if (contextNameNodeMap != null) {
             RecordLog.warn("Context map cleared and reset to initial state");
             contextNameNodeMap.clear();
+            overflowContextNames = Collections.emptySet();
             initDefaultContext();
         }
     }
@@ -136,6 +184,9 @@ public class ContextUtil {
             Map<String, DefaultNode> localCacheNameMap = contextNameNodeMap;
             // 相同context name获取相同的EntranceNode
             DefaultNode node = localCacheNameMap.get(name);
+            if (node == null) {
+                node = overflowEntranceNodeOf(name);
+            }
             if (node == null) {
                 if (localCacheNameMap.size() > Constants.MAX_CONTEXT_NAME_SIZE) {
                     setNullContext();
@@ -144,6 +195,9 @@ public class ContextUtil {
                     try {
                         LOCK.lock();
                         node = contextNameNodeMap.get(name);
+                        if (node == null) {
+                            node = overflowEntranceNodeOf(name);
+                        }
                         if (node == null) {
                             if (contextNameNodeMap.size() > Constants.MAX_CONTEXT_NAME_SIZE) {
                                 setNullContext();
@@ -151,13 +205,21 @@ public class ContextUtil {
                             } else {
                                 // 更加上下文名称构建一个入口节点EntranceNode，添加到ROOT中
                                 node = new EntranceNode(new StringResourceWrapper(name, EntryType.IN), null);
-                                // Add entrance node.
-                                Constants.ROOT.addChild(node);
+                                if (!NodeTreeManager.tryAdd(node, Constants.ROOT, name, ENTRANCE_EVICTION_HANDLER)) {
+                                    // The memory budget of the invocation tree is exceeded.
+                                    // 超出内存预算，使用共享的溢出入口节点，规则仍然生效
+                                    node = getOrCreateOverflowEntranceNode();
+                                    addOverflowContextName(name);
+                                    warnOverflow();
+                                } else {
+                                    // Add entrance node.
+                                    Constants.ROOT.addChild(node);
 
-                                Map<String, DefaultNode> newMap = new HashMap<>(contextNameNodeMap.size() + 1);
-                                newMap.putAll(contextNameNodeMap);
-                                newMap.put(name, node);
-                                contextNameNodeMap = newMap;
+                                    Map<String, DefaultNode> newMap = new HashMap<>(contextNameNodeMap.size() + 1);
+                                    newMap.putAll(contextNameNodeMap);
+                                    newMap.put(name, node);
+                                    contextNameNodeMap = newMap;
+                                }
                             }
                         }
                     } finally {
@@ -165,7 +227,7 @@ public class ContextUtil {
                     }
                 }
             }
-            context = new Context(node, name);
+            context = newOrRecycledContext(node, name);
             context.setOrigin(origin);
             contextHolder.set(context);
         }
@@ -173,6 +235,87 @@ public class ContextUtil {
         return context;
     }
 
+    private static Context newOrRecycledContext(DefaultNode node, String name) {
+        if (Constants.ZERO_GARBAGE) {
+            Context recycled = recycledContextHolder.get();
+            // The recycled context can be reused only when it's bound with the same entrance node and name,
+            // as contexts of different names share the overflow entrance node.
+            if (recycled != null && recycled.getEntranceNode() == node && name.equals(recycled.getName())
+                && recycled.getCurEntry() == null) {
+                return recycled;
+            }
+        }
+        return new Context(node, name);
+    }
+
+    /**
+     * @return the overflow entrance node if the context name has been bound to it, otherwise null
+     */
+    private static DefaultNode overflowEntranceNodeOf(String name) {
+        EntranceNode node = overflowEntranceNode;
+        if (node == null || overflowEvictedCount != NodeTreeManager.getEvictedCount()) {
+            return null;
+        }
+        Set<String> names = overflowContextNames;
+        if (names.contains(name) || names.size() >= Constants.MAX_CONTEXT_NAME_SIZE) {
+            return node;
+        }
+        return null;
+    }
+
+    private static void addOverflowContextName(String name) {
+        // Called with the lock held.
+        long evictedCount = NodeTreeManager.getEvictedCount();
+        Set<String> names = overflowContextNames;
+        if (evictedCount != overflowEvictedCount) {
+            // Names bound before the last eviction are stale.
+            names = Collections.emptySet();
+        }
+        if (names.size() < Constants.MAX_CONTEXT_NAME_SIZE) {
+            Set<String> newNames = new HashSet<>(names.size() + 1);
+            newNames.addAll(names);
+            newNames.add(name);
+            names = newNames;
+        }
+        overflowContextNames = names;
+        overflowEvictedCount = evictedCount;
+    }
+
+    private static EntranceNode getOrCreateOverflowEntranceNode() {
+        // Called with the lock held.
+        if (overflowEntranceNode == null) {
+            EntranceNode node = new EntranceNode(
+                new StringResourceWrapper(OVERFLOW_CONTEXT_ENTRANCE_NAME, EntryType.IN), null);
+            Constants.ROOT.addChild(node);
+            overflowEntranceNode = node;
+        }
+        return overflowEntranceNode;
+    }
+
+    /**
+     * Check whether the context is bound to the shared overflow entrance node, as the memory budget of
+     * the invocation tree was exceeded when the context was entered. Nodes of such contexts should not be
+     * added to the invocation tree.
+     *
+     * @param context the context
+     * @return true if the context is bound to the overflow entrance node
+     */
+    public static boolean isOverflowContext(Context context) {
+        EntranceNode node = overflowEntranceNode;
+        return node != null && context != null && context.getEntranceNode() == node;
+    }
+
+    private static boolean shouldWarnOverflow = true;
+
+    private static void warnOverflow() {
+        // Don't need to be thread-safe.
+        if (shouldWarnOverflow) {
+            RecordLog.warn("[NodeTreeManager] WARN: Memory budget of the invocation tree is exceeded. "
+                + "New contexts share the entrance node <" + OVERFLOW_CONTEXT_ENTRANCE_NAME + ">");
+            shouldWarnOverflow = false;
+        }
+    }
+
     private static boolean shouldWarn = true;
 
     private static void setNullContext() {
@@ -216,6 +359,9 @@ public class ContextUtil {
         Context context = contextHolder.get();
         if (context != null && context.getCurEntry() == null) {
             contextHolder.set(null);
+            if (Constants.ZERO_GARBAGE && !(context instanceof NullContext) && !context.isAsync()) {
+                recycledContextHolder.set(context);
+            }
         }
     }
 
@@ -17,10 +17,17 @@ package com.alibaba.csp.sentinel.node;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.alibaba.csp.sentinel.Constants;
 import com.alibaba.csp.sentinel.context.ContextUtil;
 import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.statistic.base.LongAdder;
+import com.alibaba.csp.sentinel.slots.statistic.base.UnaryLeapArray;
+import com.alibaba.csp.sentinel.slots.statistic.base.WindowWrap;
+import com.alibaba.csp.sentinel.slots.statistic.metric.LatencyHistogramLeapArray;
+import com.alibaba.csp.sentinel.util.TimeUtil;
 
 /**
  * <p>
@@ -31,9 +38,9 @@ import com.alibaba.csp.sentinel.slots.block.BlockException;
  * <p>
  * To distinguish invocation from different origin (declared in
  * {@link ContextUtil#enter(String name, String origin)}),
- * one {@link ClusterNode} holds an {@link #originCountMap}, this map holds {@link StatisticNode}
- * of different origin. Use {@link #getOrCreateOriginNode(String)} to get {@link Node} of the specific
- * origin.<br/>
+ * one {@link ClusterNode} holds {@link StatisticNode}s of different origin, indexed by the ID of the
+ * origin interned in {@link OriginRegistry}. Use {@link #getOrCreateOriginNode(String)} to get {@link Node}
+ * of the specific origin.<br/>
  * Note that 'origin' usually is Service Consumer's app name.
  * </p>
  *
@@ -43,18 +50,59 @@ import com.alibaba.csp.sentinel.slots.block.BlockException;
 public class ClusterNode extends StatisticNode {
 
     /**
-     * <p>The origin map holds the pair: (origin, originNode) for one specific resource.</p>
+     * Estimated memory of the slot that holds the origin and its statistic node.
+     */
+    private static final long ORIGIN_NODE_BYTES = 24;
+    /**
+     * Window count of the requests in flight, which bounds the error of telling how long they have run.
+     */
+    private static final int IN_FLIGHT_SAMPLE_COUNT = 20;
+
+    /**
+     * <p>Statistic nodes of origins for one specific resource, indexed by the origin ID
+     * (see {@link OriginRegistry}).</p>
      * <p>
-     * The longer the application runs, the more stable this mapping will become.
-     * So we didn't use concurrent map here, but a lock, as this lock only happens
-     * at the very beginning while concurrent map will hold the lock all the time.
+     * The longer the application runs, the more stable the origins will become. So the array only grows
+     * (doubling the length) under the lock, and slots are published without copying the whole array.
      * </p>
-     * 计算不同上下文访问同一资源时，针对每个上下文的origin创建的StatisticNode
+     * 计算不同上下文访问同一资源时，针对每个上下文的origin创建的StatisticNode，按照origin的ID索引
      */
-    private Map<String, StatisticNode> originCountMap = new HashMap<String, StatisticNode>();
+    private volatile AtomicReferenceArray<OriginNode> originNodes = new AtomicReferenceArray<OriginNode>(0);
+
+    /**
+     * Statistic node shared by the origins that cannot be interned as {@link OriginRegistry} is full,
+     * so that rules of the `other` origins still take effect on them (as a whole).
+     */
+    private volatile StatisticNode overflowOriginNode;
 
     private final ReentrantLock lock = new ReentrantLock();
 
+    /**
+     * Latency histograms of the recent {@code INTERVAL} (or longer if required by degrade rules),
+     * which is null if not enabled.
+     */
+    private volatile LatencyHistogramLeapArray rtHistogram = Constants.RT_HISTOGRAM ? newRtHistogram(0) : null;
+
+    /**
+     * Count of requests in flight, in the window of their start time, so that requests that have run longer than
+     * a threshold (e.g. hanging ones) can be counted without tracking each request. Null if not enabled.
+     * 按开始时间所在窗口统计未完成的请求数
+     */
+    private volatile UnaryLeapArray inFlightCount;
+
+    /**
+     * Create the latency histograms with the same window length as other statistics,
+     * covering no less than {@code INTERVAL} and the given interval.
+     */
+    private static LatencyHistogramLeapArray newRtHistogram(int minIntervalMs) {
+        int sampleCount = SampleCountProperty.SAMPLE_COUNT;
+        int windowLengthInMs = IntervalProperty.INTERVAL / sampleCount;
+        if (minIntervalMs > IntervalProperty.INTERVAL) {
+            sampleCount = (minIntervalMs + windowLengthInMs - 1) / windowLengthInMs;
+        }
+        return new LatencyHistogramLeapArray(sampleCount, sampleCount * windowLengthInMs);
+    }
+
     /**
      * <p>Get {@link Node} of the specific origin. Usually the origin is the Service Consumer's app name.</p>
      * <p>If the origin node for given origin is absent, then a new {@link StatisticNode}
@@ -63,31 +111,322 @@ public class ClusterNode extends StatisticNode {
      * @param origin The caller's name, which is designated in the {@code parameter} parameter
      *               {@link ContextUtil#enter(String name, String origin)}.
      *               每个上下文可以手动输入一个origin，例如：ContextUtil.enter("db", "userCenter");
-     * @return the {@link Node} of the specific origin
+     * @return the {@link Node} of the specific origin, or the node shared by overflow origins if the count
+     * of origins exceeds the max count (see {@link OriginRegistry})
      */
     public Node getOrCreateOriginNode(String origin) {
-        StatisticNode statisticNode = originCountMap.get(origin);
-        if (statisticNode == null) {
-            try {
-                lock.lock();
-                statisticNode = originCountMap.get(origin);
-                if (statisticNode == null) {
-                    // The node is absent, create a new node for the origin.
-                    statisticNode = new StatisticNode();
-                    HashMap<String, StatisticNode> newMap = new HashMap<>(originCountMap.size() + 1);
-                    newMap.putAll(originCountMap);
-                    newMap.put(origin, statisticNode);
-                    originCountMap = newMap;
+        OriginRegistry.Origin interned = OriginRegistry.intern(origin);
+        return interned == null ? getOrCreateOverflowOriginNode() : getOrCreateOriginNode(interned);
+    }
+
+    /**
+     * Get {@link Node} of the interned origin, or create it if absent.
+     *
+     * @param origin the interned origin
+     * @return the {@link Node} of the specific origin, or the node shared by overflow origins if the origin
+     * has been evicted and cannot be interned again
+     * @since 1.5.0
+     */
+    public Node getOrCreateOriginNode(OriginRegistry.Origin origin) {
+        if (origin.isEvicted()) {
+            // The origin has been idle for a long time and the ID may belong to another origin now.
+            origin = OriginRegistry.intern(origin.getName());
+            if (origin == null) {
+                return getOrCreateOverflowOriginNode();
+            }
+        }
+        int id = origin.getId();
+        AtomicReferenceArray<OriginNode> nodes = originNodes;
+        if (id < nodes.length()) {
+            OriginNode originNode = nodes.get(id);
+            if (originNode != null && originNode.origin == origin) {
+                return originNode.node;
+            }
+        }
+        try {
+            lock.lock();
+            nodes = originNodes;
+            if (id >= nodes.length()) {
+                int newLength = Math.max(id + 1, Math.min(nodes.length() * 2, OriginRegistry.capacity()));
+                AtomicReferenceArray<OriginNode> newNodes = new AtomicReferenceArray<OriginNode>(newLength);
+                for (int i = 0; i < nodes.length(); i++) {
+                    newNodes.set(i, nodes.get(i));
+                }
+                originNodes = nodes = newNodes;
+            }
+            OriginNode originNode = nodes.get(id);
+            // The slot of an evicted origin will be replaced.
+            if (originNode == null || originNode.origin != origin) {
+                originNode = new OriginNode(origin, new StatisticNode(true));
+                nodes.set(id, originNode);
+            }
+            return originNode.node;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the {@link Node} shared by the origins that cannot be interned as the count of origins
+     * exceeds the max count (see {@link OriginRegistry}), or create it if absent.
+     *
+     * @return the {@link Node} shared by overflow origins
+     * @since 1.5.0
+     */
+    public Node getOrCreateOverflowOriginNode() {
+        StatisticNode node = overflowOriginNode;
+        if (node != null) {
+            return node;
+        }
+        try {
+            lock.lock();
+            if (overflowOriginNode == null) {
+                overflowOriginNode = new StatisticNode(true);
+            }
+            return overflowOriginNode;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enable the latency histogram of the resource, no matter whether histograms are enabled globally.
+     *
+     * @since 1.5.0
+     */
+    public void enableRtHistogram() {
+        enableRtHistogram(0);
+    }
+
+    /**
+     * Enable the latency histogram of the resource, which keeps latencies of no less than the given interval.
+     * Latencies recorded before are discarded if the histogram has to be extended.
+     *
+     * @param intervalMs the interval in milliseconds
+     * @since 1.5.0
+     */
+    public void enableRtHistogram(int intervalMs) {
+        LatencyHistogramLeapArray histogram = rtHistogram;
+        if (histogram != null && histogram.getIntervalInMs() >= intervalMs) {
+            return;
+        }
+        try {
+            lock.lock();
+            histogram = rtHistogram;
+            if (histogram == null || histogram.getIntervalInMs() < intervalMs) {
+                rtHistogram = newRtHistogram(intervalMs);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enable the count of requests in flight (see {@link #countInFlight(long, long)}), which keeps requests
+     * started in no less than the given interval.
+     *
+     * @param intervalMs the interval in milliseconds
+     * @since 1.5.0
+     */
+    public void enableInFlightCount(int intervalMs) {
+        UnaryLeapArray counts = inFlightCount;
+        if (counts != null && counts.getIntervalInMs() >= intervalMs) {
+            return;
+        }
+        try {
+            lock.lock();
+            counts = inFlightCount;
+            if (counts == null || counts.getIntervalInMs() < intervalMs) {
+                int windowLengthInMs = Math.max(1, (intervalMs + IN_FLIGHT_SAMPLE_COUNT - 1) / IN_FLIGHT_SAMPLE_COUNT);
+                inFlightCount = new UnaryLeapArray(IN_FLIGHT_SAMPLE_COUNT, windowLengthInMs * IN_FLIGHT_SAMPLE_COUNT);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Count a request passed (if the count of requests in flight is enabled).
+     *
+     * @param startTime create time of the request in milliseconds
+     * @since 1.5.0
+     */
+    public void increaseInFlight(long startTime) {
+        UnaryLeapArray counts = inFlightCount;
+        if (counts != null) {
+            counts.currentWindow(startTime).value().increment();
+        }
+    }
+
+    /**
+     * Count a request completed (if the count of requests in flight is enabled). Requests started out of
+     * the interval are no longer counted.
+     *
+     * @param startTime create time of the request in milliseconds
+     * @since 1.5.0
+     */
+    public void decreaseInFlight(long startTime) {
+        UnaryLeapArray counts = inFlightCount;
+        if (counts != null) {
+            WindowWrap<LongAdder> window = counts.getValidWindow(startTime);
+            if (window != null) {
+                window.value().decrement();
+            }
+        }
+    }
+
+    /**
+     * Count the requests in flight which started in the given time range. Requests are counted by whole windows,
+     * so that the requests in a window which is partly out of the range are not counted.
+     *
+     * @param since  the earliest start time in milliseconds
+     * @param before the latest start time in milliseconds (exclusive)
+     * @return count of the requests in flight, or 0 if not enabled
+     * @since 1.5.0
+     */
+    public long countInFlight(long since, long before) {
+        UnaryLeapArray counts = inFlightCount;
+        return counts == null ? 0 : counts.sum(since, before);
+    }
+
+    public boolean isRtHistogramEnabled() {
+        return rtHistogram != null;
+    }
+
+    /**
+     * @return the latency histograms of the resource, or null if not enabled
+     * @since 1.5.0
+     */
+    public LatencyHistogramLeapArray getRtHistogram() {
+        return rtHistogram;
+    }
+
+    /**
+     * Record response time to the latency histogram (if enabled).
+     *
+     * @param rtMicros response time in microseconds
+     * @since 1.5.0
+     */
+    public void recordRt(long rtMicros) {
+        LatencyHistogramLeapArray histogram = rtHistogram;
+        if (histogram != null) {
+            histogram.record(rtMicros);
+        }
+    }
+
+    /**
+     * <p>Get response time at given percentile, measured in the same interval as {@link #avgRt()}.
+     * Only available when the latency histogram of the resource is enabled
+     * (see {@link com.alibaba.csp.sentinel.config.SentinelConfig#STATISTIC_RT_HISTOGRAM}).</p>
+     * <p>Only degrade rules of {@link com.alibaba.csp.sentinel.slots.block.RuleConstant#DEGRADE_GRADE_RT_PERCENTILE}
+     * gate on it, flow rules still gate on QPS and thread count.</p>
+     *
+     * @param percentile percentile in range (0, 100], e.g. {@code 99.9} for p999
+     * @return response time in milliseconds (with microsecond resolution) at the percentile,
+     * or 0 if not available
+     * @since 1.5.0
+     */
+    public double percentileRt(double percentile) {
+        LatencyHistogramLeapArray histogram = rtHistogram;
+        if (histogram == null) {
+            return 0;
+        }
+        long since = TimeUtil.currentTimeMillis() - IntervalProperty.INTERVAL;
+        return histogram.valueAtPercentile(percentile, since) / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        LatencyHistogramLeapArray histogram = rtHistogram;
+        if (histogram != null) {
+            rtHistogram = newRtHistogram(histogram.getIntervalInMs());
+        }
+    }
+
+    /**
+     * Get statistic nodes of all origins.
+     *
+     * @return a new map of origin names and statistic nodes
+     */
+    public Map<String, StatisticNode> getOriginCountMap() {
+        Map<String, StatisticNode> map = new HashMap<String, StatisticNode>();
+        AtomicReferenceArray<OriginNode> nodes = originNodes;
+        for (int i = 0; i < nodes.length(); i++) {
+            OriginNode originNode = nodes.get(i);
+            if (originNode != null && !originNode.origin.isEvicted()) {
+                map.put(originNode.origin.getName(), originNode.node);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @return count of origins that statistic nodes are kept for
+     * @since 1.5.0
+     */
+    public int getOriginNodeCount() {
+        int count = 0;
+        AtomicReferenceArray<OriginNode> nodes = originNodes;
+        for (int i = 0; i < nodes.length(); i++) {
+            if (nodes.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Remove the statistic node of the origin evicted from {@link OriginRegistry}, if it's still in the slot.
+     *
+     * @param origin the evicted origin
+     */
+    void removeOriginNode(OriginRegistry.Origin origin) {
+        try {
+            lock.lock();
+            AtomicReferenceArray<OriginNode> nodes = originNodes;
+            int id = origin.getId();
+            if (id < nodes.length()) {
+                OriginNode originNode = nodes.get(id);
+                if (originNode != null && originNode.origin == origin) {
+                    nodes.set(id, null);
                 }
-            } finally {
-                lock.unlock();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimate the memory held for origins of the resource.
+     *
+     * @return estimated memory in bytes
+     * @since 1.5.0
+     */
+    public long estimateOriginMemoryBytes() {
+        AtomicReferenceArray<OriginNode> nodes = originNodes;
+        long bytes = 16 + 8L * nodes.length();
+        StatisticNode overflowNode = overflowOriginNode;
+        if (overflowNode != null) {
+            bytes += overflowNode.estimateMemoryBytes();
+        }
+        for (int i = 0; i < nodes.length(); i++) {
+            OriginNode originNode = nodes.get(i);
+            if (originNode != null) {
+                bytes += ORIGIN_NODE_BYTES + originNode.node.estimateMemoryBytes();
             }
         }
-        return statisticNode;
+        return bytes;
     }
 
-    public synchronized Map<String, StatisticNode> getOriginCountMap() {
-        return originCountMap;
+    private static final class OriginNode {
+        private final OriginRegistry.Origin origin;
+        private final StatisticNode node;
+
+        OriginNode(OriginRegistry.Origin origin, StatisticNode node) {
+            this.origin = origin;
+            this.node = node;
+        }
     }
 
     /**
@@ -59,7 +59,14 @@ public class DefaultNode extends StatisticNode {
      */
     private ClusterNode clusterNode;
 
+    /**
+     * Whether the node has been evicted from the invocation tree (see {@link NodeTreeManager}).
+     */
+    private volatile boolean evicted = false;
+
     public DefaultNode(ResourceWrapper id, ClusterNode clusterNode) {
+        // Minute-level statistics are only maintained after being read (e.g. by the tree commands).
+        super(true);
         this.id = id;
         this.clusterNode = clusterNode;
     }
@@ -99,6 +106,26 @@ public class DefaultNode extends StatisticNode {
         }
     }
 
+    /**
+     * Remove the child node from current node.
+     *
+     * @param node the child node to remove
+     * @return true if the node was a child of current node
+     * @since 1.5.0
+     */
+    public boolean removeChild(Node node) {
+        synchronized (this) {
+            if (!childList.contains(node)) {
+                return false;
+            }
+            Set<Node> newSet = new HashSet<>(childList);
+            newSet.remove(node);
+            childList = newSet;
+        }
+        RecordLog.info("Remove child <{0}> from node <{1}>", ((DefaultNode)node).id.getName(), id.getName());
+        return true;
+    }
+
     /**
      * Reset the child node list.
      */
@@ -110,6 +137,18 @@ public class DefaultNode extends StatisticNode {
         return childList;
     }
 
+    /**
+     * @return true if the node has been evicted from the invocation tree, and should no longer be cached
+     * @since 1.5.0
+     */
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    void markEvicted() {
+        this.evicted = true;
+    }
+
     @Override
     public void increaseBlockQps(int count) {
         super.increaseBlockQps(count);
@@ -0,0 +1,347 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.alibaba.csp.sentinel.concurrent.NamedThreadFactory;
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.log.RecordLog;
+import com.alibaba.csp.sentinel.util.AssertUtil;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
+/**
+ * <p>
+ * Keeps the invocation tree ({@link EntranceNode}s and {@link DefaultNode}s) bounded. Every node added to
+ * the tree via {@link #tryAdd(DefaultNode, DefaultNode, String, EvictionHandler)} is accounted against the
+ * memory budget ({@code csp.sentinel.statistic.node.max.bytes}). Nodes are accounted by what they have
+ * actually created (see {@link StatisticNode#estimateMemoryBytes()}), which is re-estimated by every sweep,
+ * as the metrics of a node may grow after it has been added.
+ * </p>
+ * <p>
+ * Leaf nodes without running threads and without any request in the last minute are idle.
+ * Idle nodes are evicted after {@code csp.sentinel.statistic.node.idle.timeout} by a background sweep,
+ * and when the budget is exceeded, idle nodes are evicted in least-recently-idle order. An evicted node
+ * is removed from all its parents and from the holder (via {@link EvictionHandler}); it will be re-created
+ * when the resource is invoked in the context again. Evicting a leaf may turn its parent into a leaf,
+ * which will then be evicted by later sweeps.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public final class NodeTreeManager {
+
+    private static final long SWEEP_INTERVAL_MS = 10 * 1000;
+    /**
+     * Min interval of the sweeps triggered by exceeding the budget.
+     */
+    private static final long PRESSURE_SWEEP_INTERVAL_MS = 1000;
+    /**
+     * Evict until the estimated memory is below the low water mark (of the budget), to avoid thrashing.
+     */
+    private static final double LOW_WATER_MARK = 0.9;
+
+    private static volatile long maxBytes = SentinelConfig.statisticNodeMaxBytes();
+    private static volatile long idleTimeoutMs = SentinelConfig.statisticNodeIdleTimeout();
+
+    private static final Map<DefaultNode, ManagedNode> MANAGED_NODES = new ConcurrentHashMap<>();
+    private static final AtomicInteger TREE_NODE_COUNT = new AtomicInteger();
+    private static final AtomicInteger ENTRANCE_NODE_COUNT = new AtomicInteger();
+    private static final AtomicLong EVICTED_COUNT = new AtomicLong();
+    private static final AtomicLong ESTIMATED_BYTES = new AtomicLong();
+
+    private static final ReentrantLock SWEEP_LOCK = new ReentrantLock();
+    private static volatile long lastPressureSweepTime = 0;
+
+    private static final ScheduledExecutorService SWEEPER = Executors.newScheduledThreadPool(1,
+        new NamedThreadFactory("sentinel-node-sweeper", true));
+
+    static {
+        SWEEPER.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Also re-estimates the memory of the nodes when idle eviction is disabled.
+                    evictIdleNodes();
+                } catch (Throwable e) {
+                    RecordLog.warn("[NodeTreeManager] Unexpected error when sweeping idle nodes", e);
+                }
+            }
+        }, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Callback of the holder of nodes (e.g. the node map of a slot), invoked after the node has been evicted.
+     */
+    public interface EvictionHandler {
+
+        /**
+         * Remove the evicted node from the holder.
+         *
+         * @param key  the key of the node provided in {@link #tryAdd(DefaultNode, DefaultNode, String, EvictionHandler)}
+         * @param node the evicted node
+         */
+        void onEvicted(String key, DefaultNode node);
+    }
+
+    /**
+     * Account a new node of the invocation tree. If the memory budget is exceeded, idle nodes will be
+     * evicted first (at most once per second), and the node will be rejected if the budget is still
+     * exceeded. The caller should add the node to the parent only if accepted.
+     *
+     * @param node    the new node
+     * @param parent  the parent of the node in the invocation tree
+     * @param key     the key of the node in the holder
+     * @param handler callback to remove the node from the holder when evicted
+     * @return true if the node is accepted, false if the budget is exceeded
+     */
+    public static boolean tryAdd(DefaultNode node, DefaultNode parent, String key, EvictionHandler handler) {
+        AssertUtil.notNull(node, "node cannot be null");
+        AssertUtil.notNull(parent, "parent cannot be null");
+        AssertUtil.notNull(handler, "handler cannot be null");
+        long bytes = node.estimateMemoryBytes();
+        if (exceedsBudget(bytes)) {
+            evictUnderPressure();
+            if (exceedsBudget(bytes)) {
+                return false;
+            }
+        }
+        counterOf(node).incrementAndGet();
+        ESTIMATED_BYTES.addAndGet(bytes);
+        MANAGED_NODES.put(node, new ManagedNode(node, parent, key, handler, bytes));
+        return true;
+    }
+
+    /**
+     * Add the node as a child of the parent. A node may be reached from several parents in the same context,
+     * all of which are recorded so that the evicted node is removed from every parent.
+     *
+     * @param parent the parent of the node in the invocation tree
+     * @param node   the node, which is either managed or not
+     */
+    public static void addChild(DefaultNode parent, DefaultNode node) {
+        ManagedNode managed = MANAGED_NODES.get(node);
+        if (managed != null) {
+            managed.parents.put(parent, Boolean.TRUE);
+        }
+        parent.addChild(node);
+        if (node.isEvicted()) {
+            // Evicted concurrently, the parent may be missed by the eviction.
+            parent.removeChild(node);
+        }
+    }
+
+    /**
+     * Evict all nodes that have been idle for the idle timeout.
+     *
+     * @return the number of evicted nodes
+     */
+    public static int evictIdleNodes() {
+        SWEEP_LOCK.lock();
+        try {
+            return sweep(TimeUtil.currentTimeMillis(), false);
+        } finally {
+            SWEEP_LOCK.unlock();
+        }
+    }
+
+    private static void evictUnderPressure() {
+        long now = TimeUtil.currentTimeMillis();
+        if (now - lastPressureSweepTime < PRESSURE_SWEEP_INTERVAL_MS) {
+            return;
+        }
+        // Never wait for the sweep here, as the caller may hold the lock of the holder.
+        if (!SWEEP_LOCK.tryLock()) {
+            return;
+        }
+        try {
+            lastPressureSweepTime = now;
+            sweep(now, true);
+        } finally {
+            SWEEP_LOCK.unlock();
+        }
+    }
+
+    private static int sweep(long now, boolean underPressure) {
+        List<ManagedNode> candidates = new ArrayList<>();
+        int evicted = 0;
+        for (ManagedNode managed : MANAGED_NODES.values()) {
+            DefaultNode node = managed.node;
+            reestimate(managed);
+            if (!node.getChildList().isEmpty() || node.curThreadNum() > 0 || node.hasRecentRequest()) {
+                managed.idleSince = 0;
+                continue;
+            }
+            if (managed.idleSince == 0) {
+                managed.idleSince = now;
+            }
+            if (idleTimeoutMs > 0 && now - managed.idleSince >= idleTimeoutMs) {
+                evicted += evict(managed) ? 1 : 0;
+            } else {
+                candidates.add(managed);
+            }
+        }
+        if (underPressure && !candidates.isEmpty()) {
+            // 内存超出预算时，按最早空闲的顺序淘汰
+            Collections.sort(candidates, IDLE_SINCE_COMPARATOR);
+            long lowWaterMark = (long)(maxBytes * LOW_WATER_MARK);
+            for (ManagedNode managed : candidates) {
+                if (estimateMemoryBytes() <= lowWaterMark) {
+                    break;
+                }
+                evicted += evict(managed) ? 1 : 0;
+            }
+        }
+        if (evicted > 0) {
+            RecordLog.info("[NodeTreeManager] {0} idle nodes evicted, treeNodes={1}, entranceNodes={2}, "
+                + "estimatedBytes={3}", evicted, getTreeNodeCount(), getEntranceNodeCount(), estimateMemoryBytes());
+        }
+        return evicted;
+    }
+
+    private static void reestimate(ManagedNode managed) {
+        long bytes = managed.node.estimateMemoryBytes();
+        ESTIMATED_BYTES.addAndGet(bytes - managed.bytes);
+        managed.bytes = bytes;
+    }
+
+    private static boolean evict(ManagedNode managed) {
+        DefaultNode node = managed.node;
+        // Re-check as a child may be added concurrently.
+        synchronized (node) {
+            if (!node.getChildList().isEmpty()) {
+                return false;
+            }
+            node.markEvicted();
+        }
+        if (MANAGED_NODES.remove(node) == null) {
+            return false;
+        }
+        for (DefaultNode parent : managed.parents.keySet()) {
+            parent.removeChild(node);
+        }
+        managed.handler.onEvicted(managed.key, node);
+        counterOf(node).decrementAndGet();
+        ESTIMATED_BYTES.addAndGet(-managed.bytes);
+        EVICTED_COUNT.incrementAndGet();
+        return true;
+    }
+
+    private static boolean exceedsBudget(long newBytes) {
+        return ESTIMATED_BYTES.get() + newBytes > maxBytes;
+    }
+
+    private static AtomicInteger counterOf(DefaultNode node) {
+        return node instanceof EntranceNode ? ENTRANCE_NODE_COUNT : TREE_NODE_COUNT;
+    }
+
+    /**
+     * @return count of the managed {@link DefaultNode}s in the invocation tree, excluding entrance nodes
+     */
+    public static int getTreeNodeCount() {
+        return TREE_NODE_COUNT.get();
+    }
+
+    /**
+     * @return count of the managed {@link EntranceNode}s
+     */
+    public static int getEntranceNodeCount() {
+        return ENTRANCE_NODE_COUNT.get();
+    }
+
+    /**
+     * @return total count of evicted nodes
+     */
+    public static long getEvictedCount() {
+        return EVICTED_COUNT.get();
+    }
+
+    /**
+     * Roughly estimate the memory of the managed nodes of the invocation tree, as of their addition or
+     * the last sweep.
+     *
+     * @return estimated memory in bytes
+     */
+    public static long estimateMemoryBytes() {
+        return ESTIMATED_BYTES.get();
+    }
+
+    public static long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public static long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    static void setMaxBytes(long maxBytes) {
+        NodeTreeManager.maxBytes = maxBytes;
+    }
+
+    static void setIdleTimeoutMs(long idleTimeoutMs) {
+        NodeTreeManager.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    static void resetPressureSweepTime() {
+        lastPressureSweepTime = 0;
+    }
+
+    private static final Comparator<ManagedNode> IDLE_SINCE_COMPARATOR = new Comparator<ManagedNode>() {
+        @Override
+        public int compare(ManagedNode o1, ManagedNode o2) {
+            return Long.compare(o1.idleSince, o2.idleSince);
+        }
+    };
+
+    private static final class ManagedNode {
+        private final DefaultNode node;
+        /**
+         * All parents the node has been added to (see {@link #addChild(DefaultNode, DefaultNode)}).
+         */
+        private final Map<DefaultNode, Boolean> parents = new ConcurrentHashMap<>(2);
+        private final String key;
+        private final EvictionHandler handler;
+        /**
+         * Estimated memory of the node when it was last accounted (guarded by the sweep lock once added).
+         */
+        private long bytes;
+        /**
+         * The time when the node was first found idle by sweeps (0 if not idle).
+         */
+        private volatile long idleSince = 0;
+
+        ManagedNode(DefaultNode node, DefaultNode parent, String key, EvictionHandler handler, long bytes) {
+            this.node = node;
+            this.parents.put(parent, Boolean.TRUE);
+            this.key = key;
+            this.handler = handler;
+            this.bytes = bytes;
+        }
+    }
+
+    private NodeTreeManager() {}
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.log.RecordLog;
+import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
+import com.alibaba.csp.sentinel.util.AssertUtil;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
+/**
+ * <p>Registry that interns origins (usually the caller's app name) to dense int IDs, so that the
+ * statistic nodes of origins can be indexed by the ID in {@link ClusterNode}, and origins can be
+ * compared by reference.</p>
+ *
+ * <p>The count of origins is bounded by {@link SentinelConfig#statisticMaxOrigin()}. When the registry
+ * is full, origins that have not been seen for {@link #IDLE_EVICT_MS} (e.g. one-off callers)
+ * are evicted and their IDs are reused. If there is still no room, the new origin won't be interned,
+ * and its statistics will be kept in a node shared by all such origins
+ * (see {@link ClusterNode#getOrCreateOriginNode(String)}).</p>
+ *
+ * <p>Origins referenced by rules (see {@link #pinOrigins(Collection)}) are pinned: they are interned
+ * as soon as the rules are loaded and never evicted, even beyond the capacity, so that rules of
+ * a specific origin always have the statistics of their own.</p>
+ *
+ * 调用来源注册表：将调用来源映射为稠密的整数ID，数量有上限，满了之后淘汰长时间未出现的调用来源
+ *
+ * @since 1.5.0
+ */
+public final class OriginRegistry {
+
+    /**
+     * Origins that have not been seen for this period can be evicted when the registry is full.
+     */
+    static final long IDLE_EVICT_MS = 60 * 1000;
+    /**
+     * Min interval between two eviction scans, to avoid scanning the registry for every new origin when full.
+     */
+    private static final long EVICT_SCAN_INTERVAL_MS = 1000;
+    /**
+     * Precision of the last seen time, so that the hot path won't write it for every request.
+     */
+    private static final long TOUCH_INTERVAL_MS = 1000;
+
+    private static final Object LOCK = new Object();
+
+    private static volatile int capacity = SentinelConfig.statisticMaxOrigin();
+    private static final ConcurrentHashMap<String, Origin> ORIGINS = new ConcurrentHashMap<String, Origin>();
+    private static volatile AtomicReferenceArray<Origin> originsById = new AtomicReferenceArray<Origin>(capacity);
+    /**
+     * Released IDs to reuse, guarded by {@link #LOCK}.
+     */
+    private static final ArrayDeque<Integer> FREE_IDS = new ArrayDeque<Integer>();
+    private static int nextId = 0;
+    private static long lastEvictScanTime = 0;
+    /**
+     * <p>Time before which the registry is known to be full, so that new origins are rejected
+     * without taking {@link #LOCK}. It's set when no ID can be allocated, and cleared when IDs are freed.</p>
+     * <p>It expires at the time of the next eviction scan, so that one caller will take the lock to scan again.</p>
+     */
+    private static volatile long fullUntil = 0;
+    /**
+     * Names of pinned origins, guarded by {@link #LOCK}.
+     */
+    private static Set<String> pinnedNames = Collections.emptySet();
+
+    /**
+     * Get the interned origin, or intern it if absent.
+     *
+     * @param name name of the origin
+     * @return the interned origin, or null if the registry is full
+     */
+    public static Origin intern(String name) {
+        AssertUtil.notNull(name, "origin cannot be null");
+        Origin origin = ORIGINS.get(name);
+        if (origin != null) {
+            origin.touch();
+            return origin;
+        }
+        // Pinned origins are always interned, so the origin absent must be a new one.
+        if (fullUntil != 0 && TimeUtil.currentTimeMillis() < fullUntil) {
+            return null;
+        }
+        synchronized (LOCK) {
+            origin = ORIGINS.get(name);
+            if (origin != null) {
+                return origin;
+            }
+            return newOrigin(name, pinnedNames.contains(name));
+        }
+    }
+
+    /**
+     * Get the interned origin without interning it.
+     *
+     * @param name name of the origin
+     * @return the interned origin, or null if absent
+     */
+    public static Origin lookup(String name) {
+        return name == null ? null : ORIGINS.get(name);
+    }
+
+    /**
+     * <p>Pin the origins referenced by rules, which replaces the origins pinned before.</p>
+     * <p>Pinned origins are interned at once and never evicted, and they don't count towards
+     * the capacity when there is no room. Origins that are no longer pinned can be evicted
+     * again when they become idle.</p>
+     *
+     * @param names names of the origins to pin
+     */
+    public static void pinOrigins(Collection<String> names) {
+        Set<String> newPinned = new HashSet<String>(names);
+        synchronized (LOCK) {
+            for (String name : pinnedNames) {
+                Origin origin = ORIGINS.get(name);
+                if (origin != null && !newPinned.contains(name)) {
+                    origin.pinned = false;
+                }
+            }
+            pinnedNames = newPinned;
+            for (String name : newPinned) {
+                Origin origin = ORIGINS.get(name);
+                if (origin == null) {
+                    newOrigin(name, true);
+                } else {
+                    origin.pinned = true;
+                }
+            }
+        }
+    }
+
+    private static Origin newOrigin(String name, boolean pinned) {
+        int id = allocateId(pinned);
+        if (id < 0) {
+            return null;
+        }
+        Origin origin = new Origin(name, id);
+        origin.pinned = pinned;
+        originsById.set(id, origin);
+        ORIGINS.put(name, origin);
+        return origin;
+    }
+
+    /**
+     * Get the interned origin of the ID.
+     *
+     * @param id ID of the origin
+     * @return the interned origin, or null if absent
+     */
+    public static Origin get(int id) {
+        AtomicReferenceArray<Origin> origins = originsById;
+        return id >= 0 && id < origins.length() ? origins.get(id) : null;
+    }
+
+    /**
+     * @return count of interned origins
+     */
+    public static int size() {
+        return ORIGINS.size();
+    }
+
+    /**
+     * @return max count of interned origins, which is also the upper bound of origin IDs
+     * unless more origins are pinned
+     */
+    public static int capacity() {
+        return capacity;
+    }
+
+    private static int allocateId(boolean pinned) {
+        if (nextId < capacity) {
+            return nextId++;
+        }
+        if (FREE_IDS.isEmpty()) {
+            evictIdleOrigins();
+        }
+        Integer id = FREE_IDS.poll();
+        if (id != null) {
+            return id;
+        }
+        if (!pinned) {
+            fullUntil = lastEvictScanTime + EVICT_SCAN_INTERVAL_MS;
+            return -1;
+        }
+        // Pinned origins go beyond the capacity.
+        if (nextId >= originsById.length()) {
+            AtomicReferenceArray<Origin> origins = originsById;
+            AtomicReferenceArray<Origin> newOrigins = new AtomicReferenceArray<Origin>(origins.length() * 2 + 1);
+            for (int i = 0; i < origins.length(); i++) {
+                newOrigins.set(i, origins.get(i));
+            }
+            originsById = newOrigins;
+        }
+        return nextId++;
+    }
+
+    private static void evictIdleOrigins() {
+        long now = TimeUtil.currentTimeMillis();
+        if (now - lastEvictScanTime < EVICT_SCAN_INTERVAL_MS) {
+            return;
+        }
+        lastEvictScanTime = now;
+        int evicted = 0;
+        Collection<ClusterNode> clusterNodes = null;
+        for (int i = 0; i < nextId; i++) {
+            Origin origin = originsById.get(i);
+            if (origin != null && !origin.pinned && now - origin.lastSeenTime >= IDLE_EVICT_MS) {
+                origin.evicted = true;
+                originsById.set(i, null);
+                ORIGINS.remove(origin.getName());
+                // Release the statistic nodes of the origin at once rather than when the ID is reused.
+                if (clusterNodes == null) {
+                    clusterNodes = ClusterBuilderSlot.getClusterNodeMap().values();
+                }
+                for (ClusterNode clusterNode : clusterNodes) {
+                    clusterNode.removeOriginNode(origin);
+                }
+                FREE_IDS.offer(i);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            fullUntil = 0;
+            RecordLog.info("[OriginRegistry] Evicted " + evicted + " idle origins");
+        } else {
+            RecordLog.warn("[OriginRegistry] Origin count exceeds the max count " + capacity
+                + ", statistics of new origins will be dropped");
+        }
+    }
+
+    /**
+     * Reset the registry with a new capacity, only for test.
+     *
+     * @param newCapacity max count of interned origins
+     */
+    static void resetForTest(int newCapacity) {
+        synchronized (LOCK) {
+            for (Origin origin : ORIGINS.values()) {
+                origin.evicted = true;
+            }
+            ORIGINS.clear();
+            FREE_IDS.clear();
+            pinnedNames = Collections.emptySet();
+            nextId = 0;
+            lastEvictScanTime = 0;
+            fullUntil = 0;
+            capacity = newCapacity;
+            originsById = new AtomicReferenceArray<Origin>(newCapacity);
+        }
+    }
+
+    /**
+     * An interned origin. Two origins of the same name are the same instance as long as neither is evicted.
+     */
+    public static final class Origin {
+
+        private final String name;
+        private final int id;
+        private volatile long lastSeenTime;
+        private volatile boolean evicted = false;
+        private volatile boolean pinned = false;
+
+        private Origin(String name, int id) {
+            this.name = name;
+            this.id = id;
+            this.lastSeenTime = TimeUtil.currentTimeMillis();
+        }
+
+        private void touch() {
+            long now = TimeUtil.currentTimeMillis();
+            if (now - lastSeenTime >= TOUCH_INTERVAL_MS) {
+                lastSeenTime = now;
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return true if the origin is referenced by rules and won't be evicted
+         */
+        public boolean isPinned() {
+            return pinned;
+        }
+
+        /**
+         * @return true if the origin has been evicted from the registry (so the ID may belong to another origin)
+         */
+        public boolean isEvicted() {
+            return evicted;
+        }
+
+        @Override
+        public String toString() {
+            return "Origin{name='" + name + "', id=" + id + ", evicted=" + evicted + '}';
+        }
+    }
+
+    private OriginRegistry() {}
+}
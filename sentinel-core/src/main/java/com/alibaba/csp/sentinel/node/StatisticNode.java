@@ -15,23 +15,35 @@
  */
 package com.alibaba.csp.sentinel.node;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.alibaba.csp.sentinel.config.SentinelConfig;
 import com.alibaba.csp.sentinel.util.TimeUtil;
 import com.alibaba.csp.sentinel.node.metric.MetricNode;
+import com.alibaba.csp.sentinel.node.metric.MetricSnapshotRing;
 import com.alibaba.csp.sentinel.slots.statistic.metric.ArrayMetric;
+import com.alibaba.csp.sentinel.slots.statistic.metric.DecayingMetric;
+import com.alibaba.csp.sentinel.slots.statistic.metric.HierarchicalMetric;
 import com.alibaba.csp.sentinel.slots.statistic.metric.Metric;
+import com.alibaba.csp.sentinel.slots.statistic.metric.WindowSnapshotMetric;
 
 /**
- * <p>The statistic node keep three kinds of real-time statistics metrics:</p>
+ * <p>The statistic node keep four kinds of real-time statistics metrics:</p>
  * <ol>
  * <li>metrics in second level ({@code rollingCounterInSecond})</li>
- * <li>metrics in minute level ({@code rollingCounterInMinute})</li>
+ * <li>metrics in minute level ({@code rollingCounterInMinute}), which may be created lazily
+ * (see {@link #StatisticNode(boolean)})</li>
+ * <li>metrics in hour level, which are created on first read (see {@link #hourMetrics()})</li>
  * <li>thread count</li>
  * </ol>
+ * <p>
+ * Requests are only recorded in the second-level metric, and the buckets are rolled up into
+ * the minute-level and hour-level metrics (see {@link HierarchicalMetric}).
+ * </p>
  *
  * <p>
  * Sentinel use sliding window to record and count the resource statistics in real-time.
@@ -89,20 +101,35 @@ import com.alibaba.csp.sentinel.slots.statistic.metric.Metric;
  */
 public class StatisticNode implements Node {
 
+    private static final boolean DECAYING_RATE = SentinelConfig.RATE_ESTIMATOR_DECAYING.equals(
+        SentinelConfig.statisticRateEstimator());
+
     /**
      * Holds statistics of the recent {@code INTERVAL} seconds. The {@code INTERVAL} is divided into time spans
      * by given {@code sampleCount}.
      * 采样个数2，采样时间1000ms.也就是说这里总共分了2个采样的窗口，每个时间窗口的长度是500ms
      */
-    private transient volatile Metric rollingCounterInSecond = new ArrayMetric(SampleCountProperty.SAMPLE_COUNT,
-        IntervalProperty.INTERVAL);
+    private final transient HierarchicalMetric rollingCounterInSecond;
+
+    /**
+     * The metric for second-level statistics used by flow control, which is either {@code rollingCounterInSecond}
+     * or a {@link DecayingMetric} (see {@link SentinelConfig#statisticRateEstimator()}).
+     */
+    private transient volatile Metric rateCounter;
 
     /**
      * Holds statistics of the recent 60 seconds. The windowLengthInMs is deliberately set to 1000 milliseconds,
      * meaning each bucket per second, in this way we can get accurate statistics of each second.
+     * This is the minute level of {@code rollingCounterInSecond}.
      * 采样个数60，采样时间60 * 1000ms.也就是说这里总共分了60个采样的窗口，每个时间窗口的长度是1s
      */
-    private transient Metric rollingCounterInMinute = new ArrayMetric(60, 60 * 1000, false);
+    private transient volatile WindowSnapshotMetric rollingCounterInMinute;
+
+    /**
+     * The last time (in second precision) when a request was recorded, only maintained
+     * before the lazy minute-level metric is created.
+     */
+    private volatile long lastRequestTime = -1;
 
     /**
      * The counter for thread count.
@@ -114,13 +141,110 @@ public class StatisticNode implements Node {
      */
     private long lastFetchTime = -1;
 
+    /**
+     * Per-second snapshots collected by {@link #collectMetrics()}, created on first use.
+     */
+    private MetricSnapshotRing metricRing;
+
+    public StatisticNode() {
+        this(false);
+    }
+
+    /**
+     * @param lazyMinuteMetric whether to create the minute-level metric lazily, i.e. on the first read
+     *                         of minute-level statistics. Second-level buckets of such nodes are only
+     *                         rolled up after the first read, which saves the memory of 60 buckets per node
+     *                         for the nodes that are never exported. On the first read, the minute-level
+     *                         statistics only cover the second-level buckets not rolled up yet (about the last
+     *                         one and a half seconds by default), so {@link #previousPassQps()} is complete
+     *                         at once while {@link #totalRequest()} starts from the recent requests
+     * @since 1.5.0
+     */
+    public StatisticNode(boolean lazyMinuteMetric) {
+        this.rollingCounterInSecond = new HierarchicalMetric(SampleCountProperty.SAMPLE_COUNT,
+            IntervalProperty.INTERVAL, !lazyMinuteMetric);
+        this.rateCounter = newRateCounter();
+        if (!lazyMinuteMetric) {
+            this.rollingCounterInMinute = rollingCounterInSecond.minuteLevel();
+        }
+    }
+
+    private Metric newRateCounter() {
+        if (DECAYING_RATE) {
+            return new DecayingMetric(SampleCountProperty.SAMPLE_COUNT, IntervalProperty.INTERVAL);
+        }
+        return rollingCounterInSecond;
+    }
+
+    private WindowSnapshotMetric minuteMetric() {
+        WindowSnapshotMetric minuteMetric = rollingCounterInMinute;
+        if (minuteMetric == null) {
+            minuteMetric = rollingCounterInMinute = rollingCounterInSecond.minuteLevel();
+        }
+        return minuteMetric;
+    }
+
+    /**
+     * Record the request time when the minute-level metric is absent.
+     */
+    private void recordRequestTime() {
+        long currentTime = TimeUtil.currentTimeMillis();
+        if (currentTime - lastRequestTime >= 1000) {
+            lastRequestTime = currentTime;
+        }
+    }
+
+    /**
+     * Check whether any request has been passed or blocked in the last minute. Unlike {@link #totalRequest()},
+     * this won't create the lazy minute-level metric.
+     *
+     * @return true if any request has been recorded in the last minute
+     * @since 1.5.0
+     */
+    public boolean hasRecentRequest() {
+        Metric minuteMetric = rollingCounterInMinute;
+        if (minuteMetric != null) {
+            return minuteMetric.pass() + minuteMetric.block() > 0;
+        }
+        // The request time is recorded in second precision.
+        return lastRequestTime >= 0 && TimeUtil.currentTimeMillis() - lastRequestTime <= 61 * 1000;
+    }
+
+    /**
+     * @return true if the minute-level metric has been created
+     * @since 1.5.0
+     */
+    public boolean hasMinuteMetric() {
+        return rollingCounterInMinute != null;
+    }
+
+    /**
+     * Roughly estimate the memory held by the node, counting only the metrics and buckets created so far,
+     * e.g. a lazy node without the minute-level metric takes much less memory.
+     *
+     * @return estimated memory in bytes
+     * @since 1.5.0
+     */
+    public long estimateMemoryBytes() {
+        long bytes = 64 + rollingCounterInSecond.estimateMemoryBytes();
+        Metric rateCounter = this.rateCounter;
+        if (rateCounter instanceof DecayingMetric) {
+            bytes += ((DecayingMetric)rateCounter).estimateMemoryBytes();
+        }
+        MetricSnapshotRing ring = metricRing;
+        if (ring != null) {
+            bytes += ring.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
     @Override
     public Map<Long, MetricNode> metrics() {
         // The fetch operation is thread-safe under a single-thread scheduler pool.
         long currentTime = TimeUtil.currentTimeMillis();
         currentTime = currentTime - currentTime % 1000;
         Map<Long, MetricNode> metrics = new ConcurrentHashMap<>();
-        List<MetricNode> nodesOfEverySecond = rollingCounterInMinute.details();
+        List<MetricNode> nodesOfEverySecond = minuteMetric().details();
         long newLastFetchTime = lastFetchTime;
         // Iterate metrics of all resources, filter valid metrics (not-empty and up-to-date).
         for (MetricNode node : nodesOfEverySecond) {
@@ -134,6 +258,33 @@ public class StatisticNode implements Node {
         return metrics;
     }
 
+    /**
+     * Append snapshots of the completed seconds since the last fetch to the per-node ring, without
+     * creating any {@link MetricNode}. This shares the last fetch time with {@link #metrics()}, and
+     * should also be called by the single metric timer thread.
+     *
+     * @return the per-node ring of metric snapshots
+     * @since 1.5.0
+     */
+    public MetricSnapshotRing collectMetrics() {
+        MetricSnapshotRing ring = metricRing;
+        if (ring == null) {
+            ring = metricRing = new MetricSnapshotRing();
+        }
+        long currentTime = TimeUtil.currentTimeMillis();
+        currentTime = currentTime - currentTime % 1000;
+        long time = Math.max(lastFetchTime + 1, currentTime - 60 * 1000);
+        // Align to the start of the second.
+        time = (time + 999) / 1000 * 1000;
+        WindowSnapshotMetric minuteMetric = minuteMetric();
+        for (; time < currentTime; time += 1000) {
+            if (minuteMetric.snapshotWindow(time, ring)) {
+                lastFetchTime = time;
+            }
+        }
+        return ring;
+    }
+
     private boolean isNodeInTime(MetricNode node, long currentTime) {
         return node.getTimestamp() > lastFetchTime && node.getTimestamp() < currentTime;
     }
@@ -143,35 +294,55 @@ public class StatisticNode implements Node {
             || node.getExceptionQps() > 0 || node.getRt() > 0 || node.getOccupiedPassQps() > 0;
     }
 
+    /**
+     * Get the statistics of every minute in the last hour. The hour-level metric is created on
+     * the first call, and only requests after that are counted.
+     *
+     * @return valid metrics of every minute in the last hour
+     * @since 1.5.0
+     */
+    public List<MetricNode> hourMetrics() {
+        List<MetricNode> details = rollingCounterInSecond.hourLevel().details();
+        List<MetricNode> metrics = new ArrayList<MetricNode>(details.size());
+        for (MetricNode node : details) {
+            if (isValidMetricNode(node)) {
+                metrics.add(node);
+            }
+        }
+        return metrics;
+    }
+
     @Override
     public void reset() {
-        rollingCounterInSecond = new ArrayMetric(SampleCountProperty.SAMPLE_COUNT, IntervalProperty.INTERVAL);
+        rollingCounterInSecond.reset(SampleCountProperty.SAMPLE_COUNT, IntervalProperty.INTERVAL);
+        rateCounter = newRateCounter();
     }
 
     @Override
     public long totalRequest() {
-        long totalRequest = rollingCounterInMinute.pass() + rollingCounterInMinute.block();
+        Metric minuteMetric = minuteMetric();
+        long totalRequest = minuteMetric.pass() + minuteMetric.block();
         return totalRequest;
     }
 
     @Override
     public long blockRequest() {
-        return rollingCounterInMinute.block();
+        return minuteMetric().block();
     }
 
     @Override
     public double blockQps() {
-        return rollingCounterInSecond.block() / rollingCounterInSecond.getWindowIntervalInSec();
+        return rateCounter.block() / rateCounter.getWindowIntervalInSec();
     }
 
     @Override
     public double previousBlockQps() {
-        return this.rollingCounterInMinute.previousWindowBlock();
+        return minuteMetric().previousWindowBlock();
     }
 
     @Override
     public double previousPassQps() {
-        return this.rollingCounterInMinute.previousWindowPass();
+        return minuteMetric().previousWindowPass();
     }
 
     @Override
@@ -181,7 +352,7 @@ public class StatisticNode implements Node {
 
     @Override
     public long totalSuccess() {
-        return rollingCounterInMinute.success();
+        return minuteMetric().success();
     }
 
     /**
@@ -190,52 +361,52 @@ public class StatisticNode implements Node {
      */
     @Override
     public double exceptionQps() {
-        return rollingCounterInSecond.exception() / rollingCounterInSecond.getWindowIntervalInSec();
+        return rateCounter.exception() / rateCounter.getWindowIntervalInSec();
     }
 
     @Override
     public long totalException() {
-        return rollingCounterInMinute.exception();
+        return minuteMetric().exception();
     }
 
     @Override
     public double passQps() {
-        return rollingCounterInSecond.pass() / rollingCounterInSecond.getWindowIntervalInSec();
+        return rateCounter.pass() / rateCounter.getWindowIntervalInSec();
     }
 
     @Override
     public long totalPass() {
-        return rollingCounterInMinute.pass();
+        return minuteMetric().pass();
     }
 
     @Override
     public double successQps() {
-        return rollingCounterInSecond.success() / rollingCounterInSecond.getWindowIntervalInSec();
+        return rateCounter.success() / rateCounter.getWindowIntervalInSec();
     }
 
     @Override
     public double maxSuccessQps() {
-        return rollingCounterInSecond.maxSuccess() * rollingCounterInSecond.getSampleCount();
+        return rateCounter.maxSuccess() * rateCounter.getSampleCount();
     }
 
     @Override
     public double occupiedPassQps() {
-        return rollingCounterInSecond.occupiedPass() / rollingCounterInSecond.getWindowIntervalInSec();
+        return rateCounter.occupiedPass() / rateCounter.getWindowIntervalInSec();
     }
 
     @Override
     public double avgRt() {
-        long successCount = rollingCounterInSecond.success();
+        long successCount = rateCounter.success();
         if (successCount == 0) {
             return 0;
         }
 
-        return rollingCounterInSecond.rt() * 1.0 / successCount;
+        return rateCounter.rt() * 1.0 / successCount;
     }
 
     @Override
     public double minRt() {
-        return rollingCounterInSecond.minRt();
+        return rateCounter.minRt();
     }
 
     @Override
@@ -246,28 +417,45 @@ public class StatisticNode implements Node {
     @Override
     public void addPassRequest(int count) {
         rollingCounterInSecond.addPass(count);
-        rollingCounterInMinute.addPass(count);
+        Metric rateCounter = this.rateCounter;
+        if (rateCounter != rollingCounterInSecond) {
+            rateCounter.addPass(count);
+        }
+        if (rollingCounterInMinute == null) {
+            recordRequestTime();
+        }
     }
 
     @Override
     public void addRtAndSuccess(long rt, int successCount) {
         rollingCounterInSecond.addSuccess(successCount);
         rollingCounterInSecond.addRT(rt);
-
-        rollingCounterInMinute.addSuccess(successCount);
-        rollingCounterInMinute.addRT(rt);
+        Metric rateCounter = this.rateCounter;
+        if (rateCounter != rollingCounterInSecond) {
+            rateCounter.addSuccess(successCount);
+            rateCounter.addRT(rt);
+        }
     }
 
     @Override
     public void increaseBlockQps(int count) {
         rollingCounterInSecond.addBlock(count);
-        rollingCounterInMinute.addBlock(count);
+        Metric rateCounter = this.rateCounter;
+        if (rateCounter != rollingCounterInSecond) {
+            rateCounter.addBlock(count);
+        }
+        if (rollingCounterInMinute == null) {
+            recordRequestTime();
+        }
     }
 
     @Override
     public void increaseExceptionQps(int count) {
         rollingCounterInSecond.addException(count);
-        rollingCounterInMinute.addException(count);
+        Metric rateCounter = this.rateCounter;
+        if (rateCounter != rollingCounterInSecond) {
+            rateCounter.addException(count);
+        }
     }
 
     @Override
@@ -282,7 +470,7 @@ public class StatisticNode implements Node {
 
     @Override
     public void debug() {
-        rollingCounterInSecond.debug();
+        rateCounter.debug();
     }
 
     /**
@@ -299,7 +487,7 @@ public class StatisticNode implements Node {
         // 最终计算出来的就是一个滑动窗口token的个数
         double maxCount = threshold * IntervalProperty.INTERVAL / 1000;
         // 计算到当前时间为止，等待token的请求数(默认计算的是下一个槽已被占用的token数)，这个记录在LeapArray -> OccupiableBucketLeapArray -> borrowArray中
-        long currentBorrow = rollingCounterInSecond.waiting();
+        long currentBorrow = rateCounter.waiting();
         if (currentBorrow >= maxCount) {
             return OccupyTimeoutProperty.getOccupyTimeout();
         }
@@ -326,7 +514,7 @@ public class StatisticNode implements Node {
          * 所以最终会导致更多的token被获取
          */
         // 计算到当前时间为止，已被使用的token数 这个记录在LeapArray -> OccupiableBucketLeapArray中
-        long currentPass = rollingCounterInSecond.pass();
+        long currentPass = rateCounter.pass();
         while (earliestTime < currentTime) {
             /**
              * windowLength - currentTime % windowLength 计算当前时间距离下一个采样窗口开始还有多久
@@ -338,7 +526,7 @@ public class StatisticNode implements Node {
                 break;
             }
             // 计算earliestTime所在槽已用token数，这个记录在LeapArray -> OccupiableBucketLeapArray中
-            long windowPass = rollingCounterInSecond.getWindowPass(earliestTime);
+            long windowPass = rateCounter.getWindowPass(earliestTime);
             // currentPass  - windowPass 计算参数currentTime所在槽剩余的token数 记住这里
             if (currentPass + currentBorrow + acquireCount - windowPass <= maxCount) {
                 return waitInMs;
@@ -357,7 +545,7 @@ public class StatisticNode implements Node {
 
     @Override
     public long waiting() {
-        return rollingCounterInSecond.waiting();
+        return rateCounter.waiting();
     }
 
     /**
@@ -368,11 +556,21 @@ public class StatisticNode implements Node {
     @Override
     public void addWaitingRequest(long futureTime, int acquireCount) {
         rollingCounterInSecond.addWaiting(futureTime, acquireCount);
+        Metric rateCounter = this.rateCounter;
+        if (rateCounter != rollingCounterInSecond) {
+            rateCounter.addWaiting(futureTime, acquireCount);
+        }
     }
 
     @Override
     public void addOccupiedPass(int acquireCount) {
-        rollingCounterInMinute.addOccupiedPass(acquireCount);
-        rollingCounterInMinute.addPass(acquireCount);
+        rollingCounterInSecond.addOccupiedPass(acquireCount);
+        Metric rateCounter = this.rateCounter;
+        if (rateCounter != rollingCounterInSecond) {
+            rateCounter.addOccupiedPass(acquireCount);
+        }
+        if (rollingCounterInMinute == null) {
+            recordRequestTime();
+        }
     }
 }
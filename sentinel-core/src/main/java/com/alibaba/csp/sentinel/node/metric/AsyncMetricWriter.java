@@ -0,0 +1,161 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.csp.sentinel.concurrent.NamedThreadFactory;
+import com.alibaba.csp.sentinel.log.RecordLog;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
+/**
+ * <p>
+ * Writes metrics of {@link MetricTimerListener} to a {@link MetricWriter} in a dedicated thread, so that a slow
+ * disk never stalls the metric timer:
+ * </p>
+ * <ol>
+ * <li>batches are borrowed from a bounded pool, filled by the timer and queued to the writer thread;</li>
+ * <li>the writer thread appends all queued batches and commits them together (group commit), and forces the
+ * files at most once per force interval (if configured);</li>
+ * <li>when the writer falls behind and the pool is exhausted, metrics of the following seconds are dropped
+ * and counted, instead of blocking the timer;</li>
+ * <li>metrics of a second that fail to be appended are not committed, and are counted as dropped.</li>
+ * </ol>
+ *
+ * @since 1.5.0
+ */
+final class AsyncMetricWriter {
+
+    private final MetricWriter writer;
+    private final long forceIntervalMs;
+
+    private final BlockingQueue<MetricBatch> freeBatches;
+    private final BlockingQueue<MetricBatch> pendingBatches;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+        new NamedThreadFactory("sentinel-metric-writer", true));
+
+    /**
+     * Only accessed by the writer thread.
+     */
+    private final List<MetricBatch> group = new ArrayList<MetricBatch>();
+    private long lastForceTime;
+
+    AsyncMetricWriter(MetricWriter writer, int queueSize, long forceIntervalMs) {
+        this.writer = writer;
+        this.forceIntervalMs = forceIntervalMs;
+        this.freeBatches = new ArrayBlockingQueue<MetricBatch>(queueSize);
+        this.pendingBatches = new ArrayBlockingQueue<MetricBatch>(queueSize);
+        for (int i = 0; i < queueSize; i++) {
+            freeBatches.offer(new MetricBatch());
+        }
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        writeGroup();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Borrow a batch for metrics of the given time.
+     *
+     * @param time time of the metrics
+     * @return the batch, or null if the writer falls behind, in which case metrics of the time should be dropped
+     */
+    MetricBatch borrowBatch(long time) {
+        MetricBatch batch = freeBatches.poll();
+        if (batch == null) {
+            long dropped = droppedCount.incrementAndGet();
+            // Log at exponentially growing intervals.
+            if ((dropped & (dropped - 1)) == 0) {
+                RecordLog.warn("[AsyncMetricWriter] Metric writer falls behind, metrics dropped: " + dropped
+                    + " seconds in total");
+            }
+            return null;
+        }
+        batch.reset(time);
+        return batch;
+    }
+
+    /**
+     * Queue the filled batch to the writer thread.
+     */
+    void submit(MetricBatch batch) {
+        // Never fails, as there are no more batches than the capacity.
+        pendingBatches.offer(batch);
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Wait until all queued batches are written, for testing.
+     */
+    void awaitWritten() throws InterruptedException {
+        while (freeBatches.remainingCapacity() > 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void writeGroup() throws InterruptedException {
+        group.add(pendingBatches.take());
+        pendingBatches.drainTo(group);
+        try {
+            for (MetricBatch batch : group) {
+                try {
+                    writer.append(batch);
+                } catch (Exception e) {
+                    // The failed second is not published by the commit, so it's dropped.
+                    droppedCount.incrementAndGet();
+                    RecordLog.warn("[AsyncMetricWriter] Write metric error, metrics dropped: " + batch.getTime(), e);
+                }
+            }
+            writer.commit();
+            long now = TimeUtil.currentTimeMillis();
+            if (forceIntervalMs > 0 && (now < lastForceTime || now - lastForceTime >= forceIntervalMs)) {
+                writer.force();
+                lastForceTime = now;
+            }
+        } catch (Exception e) {
+            RecordLog.warn("[AsyncMetricWriter] Commit metric error", e);
+        } finally {
+            for (MetricBatch batch : group) {
+                batch.reset(0);
+                freeBatches.offer(batch);
+            }
+            group.clear();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Layout of the binary metric file (see {@link BinaryMetricWriter}), and a read-only view of the mapped file.</p>
+ *
+ * <pre>
+ * +--------------------+ 0
+ * | header (64 bytes)  |  magic, version, index count, record count, dictionary count/start, file size
+ * +--------------------+ INDEX_START
+ * | index              |  (second: long, first record: int) for each second, in time order
+ * +--------------------+ RECORD_START
+ * | records            |  fixed-width (64 bytes) records in time order, growing forwards
+ * |        ...         |
+ * | dictionary         |  (length: int, UTF-8 resource name) entries, growing backwards from the end of file
+ * +--------------------+ file size
+ * </pre>
+ *
+ * <p>
+ * Counts in the header are updated after the data they cover, so a reader always sees complete records.
+ * A file only holds metrics of a single day, so the index has a fixed capacity of one entry per second.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+final class BinaryMetricFile {
+
+    static final int MAGIC = 0x534D4231;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_VERSION = 4;
+    static final int OFFSET_INDEX_COUNT = 8;
+    static final int OFFSET_RECORD_COUNT = 12;
+    static final int OFFSET_DICT_COUNT = 16;
+    static final int OFFSET_DICT_START = 20;
+    static final int OFFSET_FILE_SIZE = 24;
+
+    static final int INDEX_START = HEADER_SIZE;
+    static final int INDEX_ENTRY_SIZE = 12;
+    static final int INDEX_CAPACITY = 24 * 60 * 60 + 1;
+
+    static final int RECORD_SIZE = 64;
+    static final int RECORD_START = (INDEX_START + INDEX_ENTRY_SIZE * INDEX_CAPACITY + RECORD_SIZE - 1)
+        / RECORD_SIZE * RECORD_SIZE;
+    static final int RECORD_TIMESTAMP = 0;
+    static final int RECORD_RESOURCE_ID = 8;
+    static final int RECORD_PASS = 16;
+    static final int RECORD_BLOCK = 24;
+    static final int RECORD_SUCCESS = 32;
+    static final int RECORD_EXCEPTION = 40;
+    static final int RECORD_RT = 48;
+    static final int RECORD_OCCUPIED_PASS = 56;
+
+    static final int MIN_FILE_SIZE = RECORD_START + 4096;
+
+    static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+
+    private final String fileName;
+    private final MappedByteBuffer buffer;
+
+    private final List<String> names = new ArrayList<String>();
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private int parsedDictStart;
+
+    private BinaryMetricFile(String fileName, MappedByteBuffer buffer) {
+        this.fileName = fileName;
+        this.buffer = buffer;
+        this.parsedDictStart = buffer.getInt(OFFSET_FILE_SIZE);
+    }
+
+    /**
+     * Map the binary metric file in read-only mode.
+     *
+     * @param fileName the binary metric file
+     * @return the view of the file, or null if the file is not a valid binary metric file
+     */
+    static BinaryMetricFile open(String fileName) throws Exception {
+        File file = new File(fileName);
+        if (!file.exists() || file.length() < MIN_FILE_SIZE) {
+            return null;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_VERSION) != VERSION
+                || buffer.getInt(OFFSET_FILE_SIZE) != file.length()) {
+                MappedBuffers.unmap(buffer);
+                return null;
+            }
+            return new BinaryMetricFile(fileName, buffer);
+        } finally {
+            // The mapping stays valid after the channel is closed.
+            raf.close();
+        }
+    }
+
+    /**
+     * Unmap the file. The view must not be used afterwards.
+     */
+    void close() {
+        MappedBuffers.unmap(buffer);
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    int indexCount() {
+        return buffer.getInt(OFFSET_INDEX_COUNT);
+    }
+
+    int recordCount() {
+        return buffer.getInt(OFFSET_RECORD_COUNT);
+    }
+
+    long indexSecond(int i) {
+        return buffer.getLong(INDEX_START + i * INDEX_ENTRY_SIZE);
+    }
+
+    int indexRecord(int i) {
+        return buffer.getInt(INDEX_START + i * INDEX_ENTRY_SIZE + 8);
+    }
+
+    /**
+     * Binary search the index for the first record of which the second is not earlier than the given second.
+     *
+     * @param second     the second to search
+     * @param indexCount the count of index entries to search in
+     * @return number of the record, or -1 if all records are earlier than the given second
+     */
+    int firstRecordFrom(long second, int indexCount) {
+        int low = 0;
+        int high = indexCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexSecond(mid) < second) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low < indexCount ? indexRecord(low) : -1;
+    }
+
+    long recordTimestamp(int record) {
+        return buffer.getLong(RECORD_START + record * RECORD_SIZE + RECORD_TIMESTAMP);
+    }
+
+    int recordResourceId(int record) {
+        return buffer.getInt(RECORD_START + record * RECORD_SIZE + RECORD_RESOURCE_ID);
+    }
+
+    MetricNode toMetricNode(int record) {
+        int position = RECORD_START + record * RECORD_SIZE;
+        MetricNode node = new MetricNode();
+        node.setTimestamp(buffer.getLong(position + RECORD_TIMESTAMP));
+        node.setResource(resourceName(buffer.getInt(position + RECORD_RESOURCE_ID)));
+        node.setPassQps(buffer.getLong(position + RECORD_PASS));
+        node.setBlockQps(buffer.getLong(position + RECORD_BLOCK));
+        node.setSuccessQps(buffer.getLong(position + RECORD_SUCCESS));
+        node.setExceptionQps(buffer.getLong(position + RECORD_EXCEPTION));
+        node.setRt(buffer.getLong(position + RECORD_RT));
+        node.setOccupiedPassQps(buffer.getLong(position + RECORD_OCCUPIED_PASS));
+        return node;
+    }
+
+    /**
+     * @param name resource name
+     * @return ID of the resource in this file, or -1 if absent
+     */
+    int resourceId(String name) {
+        refreshDictionary();
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    String resourceName(int id) {
+        if (id >= names.size()) {
+            refreshDictionary();
+        }
+        return id >= 0 && id < names.size() ? names.get(id) : null;
+    }
+
+    /**
+     * Parse dictionary entries added since the last refresh. New entries lie between the current
+     * dictionary start and the parsed one, in reverse order of IDs.
+     */
+    private void refreshDictionary() {
+        int dictCount = buffer.getInt(OFFSET_DICT_COUNT);
+        int dictStart = buffer.getInt(OFFSET_DICT_START);
+        if (dictCount <= names.size()) {
+            return;
+        }
+        String[] newNames = new String[dictCount - names.size()];
+        int position = dictStart;
+        for (int i = newNames.length - 1; i >= 0 && position < parsedDictStart; i--) {
+            int length = buffer.getInt(position);
+            byte[] bytes = new byte[length];
+            for (int j = 0; j < length; j++) {
+                bytes[j] = buffer.get(position + 4 + j);
+            }
+            newNames[i] = new String(bytes, NAME_CHARSET);
+            position += 4 + length;
+        }
+        for (String name : newNames) {
+            ids.put(name, names.size());
+            names.add(name);
+        }
+        parsedDictStart = dictStart;
+    }
+}
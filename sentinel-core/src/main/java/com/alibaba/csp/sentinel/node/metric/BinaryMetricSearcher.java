@@ -0,0 +1,154 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searches metrics in binary metric files written by {@link BinaryMetricWriter}. Files are mapped (and cached
+ * until they're removed) in read-only mode, the first record of the begin second is located by binary search on the index in the
+ * file header, and records are filtered by resource ID, so no text is parsed.
+ *
+ * @since 1.5.0
+ */
+public class BinaryMetricSearcher extends MetricSearcher {
+
+    private static final int MAX_LINES_RETURN = 100000;
+
+    private String baseDir;
+    private final String baseFileName;
+
+    private final Map<String, BinaryMetricFile> files = new HashMap<String, BinaryMetricFile>();
+
+    /**
+     * @param baseDir      directory of the binary metric files
+     * @param baseFileName base name of the binary metric files, e.g. {@code app-metrics.bin.pid123}
+     */
+    public BinaryMetricSearcher(String baseDir, String baseFileName) {
+        super(baseDir, baseFileName);
+        this.baseDir = baseDir;
+        if (!baseDir.endsWith(File.separator)) {
+            this.baseDir += File.separator;
+        }
+        this.baseFileName = baseFileName;
+    }
+
+    @Override
+    public synchronized List<MetricNode> find(long beginTimeMs, int recommendLines) throws Exception {
+        long beginSecond = beginTimeMs / 1000;
+        List<MetricNode> list = null;
+        long lastSecond = -1;
+        for (BinaryMetricFile file : openFiles()) {
+            int indexCount = file.indexCount();
+            if (indexCount == 0 || file.indexSecond(indexCount - 1) < beginSecond) {
+                continue;
+            }
+            int recordCount = file.recordCount();
+            int record = file.firstRecordFrom(beginSecond, indexCount);
+            for (; record >= 0 && record < recordCount; record++) {
+                long second = file.recordTimestamp(record) / 1000;
+                if (list == null) {
+                    list = new ArrayList<MetricNode>(recommendLines);
+                } else if (list.size() >= recommendLines && second != lastSecond) {
+                    // Metrics of the same second are not split.
+                    return list;
+                }
+                list.add(file.toMetricNode(record));
+                lastSecond = second;
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Find metric between [beginTimeMs, endTimeMs], both side inclusive.
+     * When identity is null, all metric between the time intervalMs will be read, otherwise, only the specific
+     * identity will be read.
+     */
+    @Override
+    public synchronized List<MetricNode> findByTimeAndResource(long beginTimeMs, long endTimeMs, String identity)
+        throws Exception {
+        long beginSecond = beginTimeMs / 1000;
+        long endSecond = endTimeMs / 1000;
+        List<MetricNode> list = null;
+        for (BinaryMetricFile file : openFiles()) {
+            int indexCount = file.indexCount();
+            if (indexCount == 0 || file.indexSecond(indexCount - 1) < beginSecond) {
+                continue;
+            }
+            if (file.indexSecond(0) > endSecond) {
+                break;
+            }
+            if (list == null) {
+                list = new ArrayList<MetricNode>();
+            }
+            int resourceId = -1;
+            if (identity != null) {
+                resourceId = file.resourceId(identity);
+                if (resourceId < 0) {
+                    continue;
+                }
+            }
+            int recordCount = file.recordCount();
+            int record = file.firstRecordFrom(beginSecond, indexCount);
+            for (; record >= 0 && record < recordCount; record++) {
+                if (file.recordTimestamp(record) / 1000 > endSecond) {
+                    break;
+                }
+                if (identity == null || file.recordResourceId(record) == resourceId) {
+                    list.add(file.toMetricNode(record));
+                    if (list.size() >= MAX_LINES_RETURN) {
+                        return list;
+                    }
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Map the binary metric files in time order, reusing mappings of the previous search.
+     */
+    private List<BinaryMetricFile> openFiles() throws Exception {
+        List<String> fileNames = MetricWriter.listMetricFiles(baseDir, baseFileName);
+        for (Iterator<Map.Entry<String, BinaryMetricFile>> it = files.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, BinaryMetricFile> e = it.next();
+            if (!fileNames.contains(e.getKey())) {
+                // The file has been removed, so release the mapping.
+                e.getValue().close();
+                it.remove();
+            }
+        }
+        List<BinaryMetricFile> list = new ArrayList<BinaryMetricFile>(fileNames.size());
+        for (String fileName : fileNames) {
+            BinaryMetricFile file = files.get(fileName);
+            if (file == null) {
+                file = BinaryMetricFile.open(fileName);
+                if (file == null) {
+                    continue;
+                }
+                files.put(fileName, file);
+            }
+            list.add(file);
+        }
+        return list;
+    }
+}
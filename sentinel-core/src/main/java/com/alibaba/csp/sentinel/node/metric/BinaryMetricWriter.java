@@ -0,0 +1,247 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.log.RecordLog;
+import com.alibaba.csp.sentinel.util.PidUtil;
+
+import static com.alibaba.csp.sentinel.node.metric.BinaryMetricFile.*;
+
+/**
+ * <p>
+ * Writes metrics to binary metric files (see {@link BinaryMetricFile} for the layout), as an alternative of
+ * the text format of {@link MetricWriter}. Each file is pre-allocated with the single file size and appended
+ * via a memory mapping. Resource names are kept in a per-file dictionary, and metrics are kept in fixed-width
+ * records, so {@link BinaryMetricSearcher} can locate records by binary search on the index in the file header
+ * without parsing any text.
+ * </p>
+ * <p>
+ * Binary files are named like {@code ${appName}-metrics.bin.pid${pid}.yyyy-MM-dd.[number]}, so they can
+ * coexist with text files. Rolling (by day and size) and the total file count are the same as the text format.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class BinaryMetricWriter extends MetricWriter {
+
+    public static final String BINARY_METRIC_FILE = "metrics.bin";
+
+    private final int fileSize;
+    private final int pid = PidUtil.getPid();
+
+    private String curFileName;
+    private MappedByteBuffer buffer;
+    private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+    private int indexCount;
+    private int recordCount;
+    private int dictStart;
+
+    /**
+     * The last second written (in any file), and the last second indexed in the current file.
+     */
+    private long lastSecond = -1;
+    private long lastIndexedSecond = -1;
+
+    public BinaryMetricWriter(long singleFileSize, int totalFileCount) {
+        this(METRIC_BASE_DIR, singleFileSize, totalFileCount);
+    }
+
+    public BinaryMetricWriter(String baseDir, long singleFileSize, int totalFileCount) {
+        super(baseDir, singleFileSize, totalFileCount);
+        this.fileSize = (int)Math.min(Integer.MAX_VALUE, Math.max(singleFileSize, MIN_FILE_SIZE));
+    }
+
+    public static String formBinaryMetricFileName(String appName, int pid) {
+        return formMetricFileName(appName, pid, BINARY_METRIC_FILE);
+    }
+
+    @Override
+    synchronized void append(MetricBatch batch) throws Exception {
+        long time = batch.getTime();
+        int newNameBytes = 0;
+        int allNameBytes = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            String resource = batch.resource(i);
+            int bytes = nameBytes(resource);
+            allNameBytes += bytes;
+            newNameBytes += dictionary.containsKey(resource) ? 0 : bytes;
+        }
+        if (!beginWrite(time, batch.size(), newNameBytes, allNameBytes)) {
+            return;
+        }
+        int recordMark = recordCount;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                writeRecord(time, batch.resource(i), batch.pass(i), batch.block(i), batch.success(i),
+                    batch.exception(i), batch.rt(i), batch.occupiedPass(i));
+            }
+        } catch (Exception e) {
+            // Records of the second are not counted, so they're never published.
+            recordCount = recordMark;
+            throw e;
+        }
+    }
+
+    /**
+     * Publish the appended records (and index) in the header.
+     */
+    @Override
+    synchronized void commit() {
+        if (buffer != null) {
+            buffer.putInt(OFFSET_RECORD_COUNT, recordCount);
+            buffer.putInt(OFFSET_INDEX_COUNT, indexCount);
+        }
+    }
+
+    @Override
+    synchronized void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        stopRetentionTask();
+        if (buffer != null) {
+            commit();
+            buffer.force();
+            // Release the mapping at once, so the file can be removed (see MappedBuffers).
+            MappedBuffers.unmap(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Make sure the current file can hold the records of given time, and index the second.
+     *
+     * @return false if the records should be ignored
+     */
+    private boolean beginWrite(long time, int records, int newNameBytes, int allNameBytes) throws Exception {
+        long second = time / 1000;
+        if (second < lastSecond) {
+            // Metrics of the earlier seconds are ignored, which should not happen.
+            return false;
+        }
+        if (buffer == null) {
+            baseFileName = formBinaryMetricFileName(SentinelConfig.getAppName(), pid);
+            newFile(time);
+        } else if (shouldCheckFiles() && !new File(curFileName).exists()) {
+            // The file is removed by others, so the cached files are stale.
+            resetMetricFiles();
+            newFile(time);
+        } else if (second > lastSecond && isNewDay(lastSecond, second)) {
+            newFile(time);
+        }
+        if (!hasCapacity(records, newNameBytes)) {
+            newFile(time);
+            if (!hasCapacity(records, allNameBytes)) {
+                RecordLog.warn("[BinaryMetricWriter] Metrics of one second exceed the single file size, "
+                    + "ignored: " + records + " records");
+                return false;
+            }
+        }
+        if (second != lastIndexedSecond) {
+            int position = INDEX_START + indexCount * INDEX_ENTRY_SIZE;
+            buffer.putLong(position, second);
+            buffer.putInt(position + 8, recordCount);
+            indexCount++;
+            lastIndexedSecond = second;
+        }
+        lastSecond = second;
+        return true;
+    }
+
+    private boolean hasCapacity(int records, int nameBytes) {
+        long recordEnd = RECORD_START + (long)(recordCount + records) * RECORD_SIZE;
+        return indexCount < INDEX_CAPACITY && recordEnd + nameBytes <= dictStart;
+    }
+
+    private void writeRecord(long time, String resource, long pass, long block, long success, long exception,
+                             long rt, long occupiedPass) {
+        int position = RECORD_START + recordCount * RECORD_SIZE;
+        buffer.putLong(position + RECORD_TIMESTAMP, time);
+        buffer.putInt(position + RECORD_RESOURCE_ID, resourceId(resource));
+        buffer.putLong(position + RECORD_PASS, pass);
+        buffer.putLong(position + RECORD_BLOCK, block);
+        buffer.putLong(position + RECORD_SUCCESS, success);
+        buffer.putLong(position + RECORD_EXCEPTION, exception);
+        buffer.putLong(position + RECORD_RT, rt);
+        buffer.putLong(position + RECORD_OCCUPIED_PASS, occupiedPass);
+        recordCount++;
+    }
+
+    private int resourceId(String resource) {
+        Integer id = dictionary.get(resource);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = resource.getBytes(NAME_CHARSET);
+        dictStart -= 4 + bytes.length;
+        buffer.putInt(dictStart, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(dictStart + 4 + i, bytes[i]);
+        }
+        id = dictionary.size();
+        dictionary.put(resource, id);
+        // The dictionary entry is published before the records referring to it.
+        buffer.putInt(OFFSET_DICT_START, dictStart);
+        buffer.putInt(OFFSET_DICT_COUNT, dictionary.size());
+        return id;
+    }
+
+    private static int nameBytes(String resource) {
+        // Upper bound of the UTF-8 length.
+        return 4 + resource.length() * 3;
+    }
+
+    private void newFile(long time) throws Exception {
+        close();
+        removeMoreFiles();
+        String fileName = nextFileNameOfDay(time);
+        RandomAccessFile raf = new RandomAccessFile(fileName, "rw");
+        try {
+            raf.setLength(fileSize);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        } finally {
+            raf.close();
+        }
+        buffer.putInt(OFFSET_VERSION, VERSION);
+        buffer.putInt(OFFSET_INDEX_COUNT, 0);
+        buffer.putInt(OFFSET_RECORD_COUNT, 0);
+        buffer.putInt(OFFSET_DICT_COUNT, 0);
+        buffer.putInt(OFFSET_DICT_START, fileSize);
+        buffer.putInt(OFFSET_FILE_SIZE, fileSize);
+        buffer.putInt(OFFSET_MAGIC, MAGIC);
+
+        curFileName = fileName;
+        addMetricFile(fileName);
+        dictionary.clear();
+        indexCount = 0;
+        recordCount = 0;
+        dictStart = fileSize;
+        lastIndexedSecond = -1;
+        RecordLog.info("[BinaryMetricWriter] New binary metric file created: " + fileName);
+    }
+}
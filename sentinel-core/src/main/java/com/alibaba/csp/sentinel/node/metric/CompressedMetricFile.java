@@ -0,0 +1,393 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ * A closed metric file compressed in DEFLATE blocks, named {@code ${metricFileName}.z}. Blocks are cut at line
+ * boundaries, and a block index is appended at the end of the file, so offsets in the index files of the metric
+ * file (which stay uncompressed) can still be used: the block containing an offset is located by binary search,
+ * and only that block is inflated.
+ * </p>
+ * <pre>
+ * blocks | index: (uncompressed offset(long), compressed offset(long), compressed length(int),
+ *        |         uncompressed length(int)) for each block
+ *        | footer: index offset(long), block count(int), magic(int)
+ * </pre>
+ *
+ * @since 1.5.0
+ */
+final class CompressedMetricFile {
+
+    static final String COMPRESSED_SUFFIX = ".z";
+    static final String TEMP_SUFFIX = ".tmp";
+
+    static final int BLOCK_SIZE = 16 * 1024;
+    static final int MAGIC = 0x534D5A31;
+    private static final int INDEX_ENTRY_SIZE = 24;
+    private static final int FOOTER_SIZE = 16;
+
+    private final String fileName;
+    private final long[] uncompressedOffsets;
+    private final long[] compressedOffsets;
+    private final int[] compressedLengths;
+    private final int[] uncompressedLengths;
+
+    /**
+     * The last inflated block, reused by sequential and nearby reads.
+     */
+    private int cachedBlock = -1;
+    private byte[] cachedData = new byte[BLOCK_SIZE];
+    private byte[] compressedData = new byte[BLOCK_SIZE];
+    private final Inflater inflater = new Inflater();
+
+    private CompressedMetricFile(String fileName, int blockCount) {
+        this.fileName = fileName;
+        this.uncompressedOffsets = new long[blockCount];
+        this.compressedOffsets = new long[blockCount];
+        this.compressedLengths = new int[blockCount];
+        this.uncompressedLengths = new int[blockCount];
+    }
+
+    static String formCompressedFileName(String metricFileName) {
+        return metricFileName + COMPRESSED_SUFFIX;
+    }
+
+    /**
+     * Compress the closed metric file, and then remove the uncompressed one. Nothing is done if the metric
+     * file has been removed (e.g. by retention) in the meantime.
+     *
+     * @param metricFileName the closed metric file
+     * @return whether the file is compressed
+     */
+    static boolean compress(String metricFileName) throws Exception {
+        File source = new File(metricFileName);
+        if (!source.exists()) {
+            return false;
+        }
+        File temp = new File(formCompressedFileName(metricFileName) + TEMP_SUFFIX);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        FileInputStream in = new FileInputStream(source);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            LongArray index = new LongArray();
+            byte[] block = new byte[BLOCK_SIZE];
+            byte[] compressed = new byte[BLOCK_SIZE + 1024];
+            int length = 0;
+            long uncompressedOffset = 0;
+            long compressedOffset = 0;
+            int n;
+            while ((n = in.read(block, length, block.length - length)) >= 0 || length > 0) {
+                length += Math.max(n, 0);
+                if (n >= 0 && length < block.length) {
+                    continue;
+                }
+                // Cut the block after the last complete line (or take all at the end of file).
+                int cut = length;
+                if (n >= 0) {
+                    cut = lastLineEnd(block, length);
+                    if (cut == 0) {
+                        // A line longer than the block.
+                        block = grow(block);
+                        continue;
+                    }
+                }
+                deflater.reset();
+                deflater.setInput(block, 0, cut);
+                deflater.finish();
+                if (compressed.length < cut + 1024) {
+                    compressed = new byte[cut + 1024];
+                }
+                int compressedLength = 0;
+                while (!deflater.finished()) {
+                    compressedLength += deflater.deflate(compressed, compressedLength,
+                        compressed.length - compressedLength);
+                    if (compressedLength == compressed.length) {
+                        compressed = grow(compressed);
+                    }
+                }
+                out.write(compressed, 0, compressedLength);
+                index.add(uncompressedOffset);
+                index.add(compressedOffset);
+                index.add(((long)compressedLength << 32) | cut);
+                uncompressedOffset += cut;
+                compressedOffset += compressedLength;
+                System.arraycopy(block, cut, block, 0, length - cut);
+                length -= cut;
+                if (n < 0 && length == 0) {
+                    break;
+                }
+            }
+            for (int i = 0; i < index.size(); i += 3) {
+                out.writeLong(index.get(i));
+                out.writeLong(index.get(i + 1));
+                out.writeInt((int)(index.get(i + 2) >>> 32));
+                out.writeInt((int)index.get(i + 2));
+            }
+            out.writeLong(compressedOffset);
+            out.writeInt(index.size() / 3);
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+            in.close();
+            out.close();
+        }
+        if (!source.exists() || !temp.renameTo(new File(formCompressedFileName(metricFileName)))) {
+            temp.delete();
+            return false;
+        }
+        return source.delete();
+    }
+
+    private static int lastLineEnd(byte[] block, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (block[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static byte[] grow(byte[] bytes) {
+        byte[] newBytes = new byte[bytes.length << 1];
+        System.arraycopy(bytes, 0, newBytes, 0, bytes.length);
+        return newBytes;
+    }
+
+    /**
+     * Open the compressed file of the metric file.
+     *
+     * @param metricFileName the (uncompressed) metric file name
+     * @return the compressed file, or null if absent or invalid
+     */
+    static CompressedMetricFile open(String metricFileName) throws Exception {
+        File file = new File(formCompressedFileName(metricFileName));
+        if (!file.exists() || file.length() < FOOTER_SIZE) {
+            return null;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            readFully(channel, footer, file.length() - FOOTER_SIZE);
+            long indexOffset = footer.getLong(0);
+            int blockCount = footer.getInt(8);
+            if (footer.getInt(12) != MAGIC || indexOffset + (long)blockCount * INDEX_ENTRY_SIZE + FOOTER_SIZE
+                != file.length()) {
+                return null;
+            }
+            ByteBuffer index = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE);
+            readFully(channel, index, indexOffset);
+            CompressedMetricFile compressedFile = new CompressedMetricFile(file.getPath(), blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                int position = i * INDEX_ENTRY_SIZE;
+                compressedFile.uncompressedOffsets[i] = index.getLong(position);
+                compressedFile.compressedOffsets[i] = index.getLong(position + 8);
+                compressedFile.compressedLengths[i] = index.getInt(position + 16);
+                compressedFile.uncompressedLengths[i] = index.getInt(position + 20);
+            }
+            return compressedFile;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * @return the block containing the uncompressed offset, or -1 if beyond the end
+     */
+    private int blockOf(long offset) {
+        int low = 0;
+        int high = uncompressedOffsets.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (uncompressedOffsets[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int block = low - 1;
+        if (block < 0 || offset >= uncompressedOffsets[block] + uncompressedLengths[block]) {
+            return -1;
+        }
+        return block;
+    }
+
+    private byte[] inflate(RandomAccessFile raf, int block) throws IOException {
+        if (block == cachedBlock) {
+            return cachedData;
+        }
+        int compressedLength = compressedLengths[block];
+        if (compressedData.length < compressedLength) {
+            compressedData = new byte[compressedLength];
+        }
+        raf.seek(compressedOffsets[block]);
+        raf.readFully(compressedData, 0, compressedLength);
+        if (cachedData.length < uncompressedLengths[block]) {
+            cachedData = new byte[uncompressedLengths[block]];
+        }
+        inflater.reset();
+        try {
+            inflater.setInput(compressedData, 0, compressedLength);
+            int length = 0;
+            while (length < uncompressedLengths[block] && !inflater.finished()) {
+                length += inflater.inflate(cachedData, length, uncompressedLengths[block] - length);
+            }
+        } catch (DataFormatException e) {
+            cachedBlock = -1;
+            throw new IOException(e);
+        }
+        cachedBlock = block;
+        return cachedData;
+    }
+
+    /**
+     * Open the compressed file for reading lines at uncompressed offsets.
+     */
+    RandomAccessFile openFile() throws IOException {
+        return new RandomAccessFile(fileName, "r");
+    }
+
+    /**
+     * Read the line at the uncompressed offset (without the trailing line separator).
+     *
+     * @param raf    the compressed file opened by {@link #openFile()}
+     * @param offset uncompressed offset of the line
+     * @param line   the line is copied to
+     * @return the length of the line, or -1 if absent
+     */
+    int readLine(RandomAccessFile raf, long offset, LineBuffer line) throws IOException {
+        int block = blockOf(offset);
+        if (block < 0) {
+            return -1;
+        }
+        byte[] data = inflate(raf, block);
+        int start = (int)(offset - uncompressedOffsets[block]);
+        int end = uncompressedLengths[block];
+        for (int i = start; i < end; i++) {
+            if (data[i] == '\n') {
+                return line.set(data, start, i - start);
+            }
+        }
+        return line.set(data, start, end - start);
+    }
+
+    /**
+     * Open a stream of the uncompressed content from the offset.
+     */
+    InputStream openStream(final long offset) throws IOException {
+        final RandomAccessFile raf = openFile();
+        return new InputStream() {
+            private int block = blockOf(offset);
+            private int position = block < 0 ? 0 : (int)(offset - uncompressedOffsets[block]);
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                while (block >= 0 && block < uncompressedLengths.length) {
+                    int remaining = uncompressedLengths[block] - position;
+                    if (remaining > 0) {
+                        int n = Math.min(len, remaining);
+                        System.arraycopy(inflate(raf, block), position, b, off, n);
+                        position += n;
+                        return n;
+                    }
+                    block++;
+                    position = 0;
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() throws IOException {
+                raf.close();
+            }
+        };
+    }
+
+    /**
+     * Release the native resources of the inflater. The file cannot be read any more after closed.
+     */
+    void close() {
+        inflater.end();
+    }
+
+    /**
+     * A reusable line buffer.
+     */
+    static final class LineBuffer {
+        byte[] bytes = new byte[256];
+        int length;
+
+        int set(byte[] data, int start, int length) {
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length << 1)];
+            }
+            System.arraycopy(data, start, bytes, 0, length);
+            this.length = length;
+            return length;
+        }
+    }
+
+    private static final class LongArray {
+        private long[] values = new long[96];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                long[] newValues = new long[size << 1];
+                System.arraycopy(values, 0, newValues, 0, size);
+                values = newValues;
+            }
+            values[size++] = value;
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import com.alibaba.csp.sentinel.log.RecordLog;
+
+/**
+ * <p>
+ * Unmaps memory-mapped buffers once they're no longer used. Otherwise a mapping is only released when
+ * the buffer is garbage collected, which keeps the disk space of removed metric files (and keeps them
+ * from being removed at all on Windows) until then.
+ * </p>
+ * <p>
+ * There's no public API to unmap a buffer, so the cleaner of the JDK is invoked reflectively
+ * ({@code sun.misc.Unsafe#invokeCleaner} since JDK 9, or {@code DirectByteBuffer#cleaner} before).
+ * If neither is accessible, buffers are left to the garbage collector.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+final class MappedBuffers {
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (Throwable e) {
+            // Before JDK 9.
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner");
+                cleaner.setAccessible(true);
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (Throwable ex) {
+                RecordLog.info("[MappedBuffers] Mapped buffers cannot be unmapped, left to GC: " + ex);
+                cleaner = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    /**
+     * Unmap the buffer. The buffer (and its duplicates) must never be accessed afterwards,
+     * which would crash the JVM.
+     *
+     * @param buffer the buffer to unmap, nullable
+     * @return true if unmapped, or false if left to the garbage collector
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return false;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return true;
+            }
+            if (CLEANER != null) {
+                Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                    return true;
+                }
+            }
+        } catch (Throwable e) {
+            RecordLog.warn("[MappedBuffers] Unmap buffer error", e);
+        }
+        return false;
+    }
+
+    private MappedBuffers() {}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+/**
+ * Metrics of all resources in one second, kept in reusable primitive arrays, which is the unit handed to
+ * {@link MetricWriter} (and queued by {@link AsyncMetricWriter}).
+ *
+ * @since 1.5.0
+ */
+final class MetricBatch {
+
+    private long time;
+    private int size;
+
+    private String[] resources;
+    private long[] pass;
+    private long[] block;
+    private long[] success;
+    private long[] exception;
+    private long[] rt;
+    private long[] occupiedPass;
+
+    MetricBatch() {
+        this(64);
+    }
+
+    MetricBatch(int capacity) {
+        resources = new String[capacity];
+        pass = new long[capacity];
+        block = new long[capacity];
+        success = new long[capacity];
+        exception = new long[capacity];
+        rt = new long[capacity];
+        occupiedPass = new long[capacity];
+    }
+
+    /**
+     * Clear the batch for metrics of given time.
+     */
+    void reset(long time) {
+        for (int i = 0; i < size; i++) {
+            resources[i] = null;
+        }
+        this.time = time;
+        this.size = 0;
+    }
+
+    void add(String resource, long pass, long block, long success, long exception, long rt, long occupiedPass) {
+        if (size == resources.length) {
+            grow();
+        }
+        this.resources[size] = resource;
+        this.pass[size] = pass;
+        this.block[size] = block;
+        this.success[size] = success;
+        this.exception[size] = exception;
+        this.rt[size] = rt;
+        this.occupiedPass[size] = occupiedPass;
+        size++;
+    }
+
+    /**
+     * Move the head snapshot of the ring into this batch.
+     */
+    void addFirst(String resource, MetricSnapshotRing ring) {
+        add(resource, ring.firstPass(), ring.firstBlock(), ring.firstSuccess(), ring.firstException(),
+            ring.firstRt(), ring.firstOccupiedPass());
+        ring.removeFirst();
+    }
+
+    void add(MetricNode node) {
+        add(node.getResource(), node.getPassQps(), node.getBlockQps(), node.getSuccessQps(),
+            node.getExceptionQps(), node.getRt(), node.getOccupiedPassQps());
+    }
+
+    private void grow() {
+        int capacity = resources.length << 1;
+        String[] newResources = new String[capacity];
+        System.arraycopy(resources, 0, newResources, 0, size);
+        resources = newResources;
+        pass = copyOf(pass, capacity);
+        block = copyOf(block, capacity);
+        success = copyOf(success, capacity);
+        exception = copyOf(exception, capacity);
+        rt = copyOf(rt, capacity);
+        occupiedPass = copyOf(occupiedPass, capacity);
+    }
+
+    private long[] copyOf(long[] values, int capacity) {
+        long[] newValues = new long[capacity];
+        System.arraycopy(values, 0, newValues, 0, size);
+        return newValues;
+    }
+
+    long getTime() {
+        return time;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String resource(int i) {
+        return resources[i];
+    }
+
+    long pass(int i) {
+        return pass[i];
+    }
+
+    long block(int i) {
+        return block[i];
+    }
+
+    long success(int i) {
+        return success[i];
+    }
+
+    long exception(int i) {
+        return exception[i];
+    }
+
+    long rt(int i) {
+        return rt[i];
+    }
+
+    long occupiedPass(int i) {
+        return occupiedPass[i];
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Per-resource index of a metric file (see {@link MetricResourceIndexWriter}), so that metrics of a single
+ * resource can be found without scanning metrics of all resources.
+ * </p>
+ * <pre>
+ * ${metricFileName}.ridx:  pages of PAGE_SIZE bytes, each belongs to one resource
+ *     header:  count(int), reserved(int), next page(long), last page(long, first page only), reserved(long)
+ *     entries: (second(long), offset in metric file(long)) in time order
+ * ${metricFileName}.rdict: (name length(int), UTF-8 name, first page(long)) for each resource
+ * </pre>
+ * <p>
+ * Pages of a resource are chained from the first page, and the first page also points to the last one. The count of
+ * a page is updated after its entries, and a resource is added to the dictionary after its first page, so a reader
+ * only sees complete entries. This class is the reader side, which caches the dictionary and the page where the last
+ * search of each resource started, so that searches moving forwards don't walk the chain from the beginning.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+final class MetricResourceIndex {
+
+    static final String RESOURCE_INDEX_SUFFIX = ".ridx";
+    static final String RESOURCE_DICT_SUFFIX = ".rdict";
+
+    static final int PAGE_SIZE = 1024;
+    static final int PAGE_HEADER_SIZE = 32;
+    static final int OFFSET_COUNT = 0;
+    static final int OFFSET_NEXT = 8;
+    static final int OFFSET_LAST = 16;
+    static final int ENTRY_SIZE = 16;
+    static final int ENTRIES_PER_PAGE = (PAGE_SIZE - PAGE_HEADER_SIZE) / ENTRY_SIZE;
+
+    static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+
+    private static final int MAX_CURSORS = 10000;
+
+    private final String indexFileName;
+    private final String dictFileName;
+
+    private final Map<String, Long> firstPages = new HashMap<String, Long>();
+    private long parsedDictLength;
+
+    /**
+     * resource -> {page, first second of the page} where the last search of the resource started.
+     */
+    private final Map<String, long[]> cursors = new HashMap<String, long[]>();
+
+    private final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+
+    MetricResourceIndex(String metricFileName) {
+        this.indexFileName = formIndexFileName(metricFileName);
+        this.dictFileName = formDictFileName(metricFileName);
+    }
+
+    static String formIndexFileName(String metricFileName) {
+        return metricFileName + RESOURCE_INDEX_SUFFIX;
+    }
+
+    static String formDictFileName(String metricFileName) {
+        return metricFileName + RESOURCE_DICT_SUFFIX;
+    }
+
+    /**
+     * @param metricFileName the metric file
+     * @return whether the metric file has a resource index
+     */
+    static boolean exists(String metricFileName) {
+        return new File(formIndexFileName(metricFileName)).exists()
+            && new File(formDictFileName(metricFileName)).exists();
+    }
+
+    /**
+     * Find offsets (in the metric file) of metrics of the resource between [beginSecond, endSecond].
+     *
+     * @param resource    the resource
+     * @param beginSecond begin second, inclusive
+     * @param endSecond   end second, inclusive
+     * @param offsets     the found offsets are appended to
+     * @return false if metrics of the resource later than endSecond are found, so later files can be skipped
+     */
+    boolean findOffsets(String resource, long beginSecond, long endSecond, OffsetList offsets) throws Exception {
+        refreshDictionary();
+        Long firstPage = firstPages.get(resource);
+        if (firstPage == null) {
+            return true;
+        }
+        RandomAccessFile raf = new RandomAccessFile(indexFileName, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long pos = firstPage;
+            if (!readPage(channel, pos)) {
+                return true;
+            }
+            long lastPage = page.getLong(OFFSET_LAST);
+            if (page.getInt(OFFSET_COUNT) > 0 && entrySecond(0) > endSecond) {
+                return false;
+            }
+            long[] cursor = cursors.get(resource);
+            if (cursor != null && cursor[1] <= beginSecond) {
+                pos = cursor[0];
+            } else if (lastPage != 0 && lastPage != pos && readPage(channel, lastPage)) {
+                // Jump to the last page directly if earlier pages can't contain the begin second.
+                int count = page.getInt(OFFSET_COUNT);
+                if (count > 0 && entrySecond(0) <= beginSecond) {
+                    pos = lastPage;
+                }
+            }
+            while (readPage(channel, pos)) {
+                int count = page.getInt(OFFSET_COUNT);
+                if (count == 0) {
+                    return true;
+                }
+                if (entrySecond(count - 1) >= beginSecond) {
+                    if (entrySecond(0) <= beginSecond) {
+                        saveCursor(resource, pos, entrySecond(0));
+                    }
+                    for (int i = 0; i < count; i++) {
+                        long second = entrySecond(i);
+                        if (second > endSecond) {
+                            return false;
+                        }
+                        if (second >= beginSecond) {
+                            offsets.add(page.getLong(PAGE_HEADER_SIZE + i * ENTRY_SIZE + 8));
+                        }
+                    }
+                }
+                long next = page.getLong(OFFSET_NEXT);
+                if (count < ENTRIES_PER_PAGE || next == 0) {
+                    return true;
+                }
+                pos = next;
+            }
+            return true;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private long entrySecond(int i) {
+        return page.getLong(PAGE_HEADER_SIZE + i * ENTRY_SIZE);
+    }
+
+    private void saveCursor(String resource, long pos, long firstSecond) {
+        long[] cursor = cursors.get(resource);
+        if (cursor == null) {
+            if (cursors.size() >= MAX_CURSORS) {
+                cursors.clear();
+            }
+            cursors.put(resource, new long[] {pos, firstSecond});
+        } else {
+            cursor[0] = pos;
+            cursor[1] = firstSecond;
+        }
+    }
+
+    private boolean readPage(FileChannel channel, long pos) throws Exception {
+        page.clear();
+        while (page.hasRemaining()) {
+            if (channel.read(page, pos + page.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse dictionary entries appended since the last refresh. A partially written entry is left to the next refresh.
+     */
+    private void refreshDictionary() throws Exception {
+        File file = new File(dictFileName);
+        long length = file.length();
+        if (length <= parsedDictLength) {
+            return;
+        }
+        FileInputStream in = new FileInputStream(file);
+        try {
+            in.getChannel().position(parsedDictLength);
+            DataInputStream dictIn = new DataInputStream(in);
+            while (parsedDictLength < length) {
+                int nameLength = dictIn.readInt();
+                byte[] bytes = new byte[nameLength];
+                dictIn.readFully(bytes);
+                long firstPage = dictIn.readLong();
+                firstPages.put(new String(bytes, NAME_CHARSET), firstPage);
+                parsedDictLength += 4 + nameLength + 8;
+            }
+        } catch (EOFException ignore) {
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * A growable list of primitive offsets.
+     */
+    static final class OffsetList {
+
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                long[] newValues = new long[size << 1];
+                System.arraycopy(values, 0, newValues, 0, size);
+                values = newValues;
+            }
+            values[size++] = value;
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.csp.sentinel.node.metric.MetricResourceIndex.*;
+
+/**
+ * Maintains the per-resource index of a metric file (see {@link MetricResourceIndex} for the layout) while
+ * {@link MetricWriter} appends to it. Entries are added after the metric lines they point to are flushed.
+ * Pages are written through memory mappings of {@link #CHUNK_SIZE} bytes, as entries of a second are
+ * scattered over pages of all resources.
+ *
+ * @since 1.5.0
+ */
+final class MetricResourceIndexWriter {
+
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    private final RandomAccessFile indexFile;
+    private final List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+    private long nextPage;
+
+    private final DataOutputStream dictOut;
+    private final Map<String, Pages> resources = new HashMap<String, Pages>();
+
+    MetricResourceIndexWriter(String metricFileName) throws Exception {
+        this.indexFile = new RandomAccessFile(formIndexFileName(metricFileName), "rw");
+        indexFile.setLength(0);
+        this.dictOut = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(formDictFileName(metricFileName), false)));
+    }
+
+    /**
+     * Add an entry for the metric line of the resource.
+     *
+     * @param resource resource name as written in the metric file
+     * @param second   the second of the metric
+     * @param offset   offset of the metric line in the metric file
+     */
+    void add(String resource, long second, long offset) throws Exception {
+        Pages pages = resources.get(resource);
+        boolean newResource = pages == null;
+        if (newResource) {
+            long page = allocatePage();
+            pages = new Pages(page);
+            resources.put(resource, pages);
+        } else if (pages.count == ENTRIES_PER_PAGE) {
+            long page = allocatePage();
+            chunk(pages.current).putLong(offsetInChunk(pages.current) + OFFSET_NEXT, page);
+            chunk(pages.first).putLong(offsetInChunk(pages.first) + OFFSET_LAST, page);
+            pages.current = page;
+            pages.count = 0;
+        }
+        MappedByteBuffer chunk = chunk(pages.current);
+        int pageOffset = offsetInChunk(pages.current);
+        int entryOffset = pageOffset + PAGE_HEADER_SIZE + pages.count * ENTRY_SIZE;
+        chunk.putLong(entryOffset, second);
+        chunk.putLong(entryOffset + 8, offset);
+        chunk.putInt(pageOffset + OFFSET_COUNT, ++pages.count);
+        if (newResource) {
+            byte[] bytes = resource.getBytes(NAME_CHARSET);
+            dictOut.writeInt(bytes.length);
+            dictOut.write(bytes);
+            dictOut.writeLong(pages.first);
+        }
+    }
+
+    /**
+     * Publish resources added since the last flush.
+     */
+    void flush() throws Exception {
+        dictOut.flush();
+    }
+
+    void close() throws Exception {
+        try {
+            dictOut.close();
+        } finally {
+            for (MappedByteBuffer chunk : chunks) {
+                MappedBuffers.unmap(chunk);
+            }
+            chunks.clear();
+            indexFile.close();
+        }
+    }
+
+    private long allocatePage() throws Exception {
+        long page = nextPage;
+        if (page / CHUNK_SIZE >= chunks.size()) {
+            // The extended part of the file is zero-filled, so the new page is empty.
+            long position = (long)chunks.size() * CHUNK_SIZE;
+            indexFile.setLength(position + CHUNK_SIZE);
+            chunks.add(indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, position, CHUNK_SIZE));
+        }
+        chunk(page).putLong(offsetInChunk(page) + OFFSET_LAST, page);
+        nextPage += PAGE_SIZE;
+        return page;
+    }
+
+    private MappedByteBuffer chunk(long page) {
+        return chunks.get((int)(page / CHUNK_SIZE));
+    }
+
+    private static int offsetInChunk(long page) {
+        return (int)(page % CHUNK_SIZE);
+    }
+
+    private static final class Pages {
+        private final long first;
+        private long current;
+        private int count;
+
+        Pages(long first) {
+            this.first = first;
+            this.current = first;
+        }
+    }
+}
@@ -20,7 +20,10 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.alibaba.csp.sentinel.config.SentinelConfig;
 
@@ -41,6 +44,9 @@ public class MetricSearcher {
 
     private Position lastPosition = new Position();
 
+    private final Map<String, MetricResourceIndex> resourceIndexes = new HashMap<String, MetricResourceIndex>();
+    private final MetricResourceIndex.OffsetList offsets = new MetricResourceIndex.OffsetList();
+
     /**
      * @param baseDir      metric文件所在目录
      * @param baseFileName metric文件名的关键字，比如 alihot-metrics.log
@@ -115,6 +121,9 @@ public class MetricSearcher {
         List<String> fileNames = MetricWriter.listMetricFiles(baseDir, baseFileName);
         //RecordLog.info("pid=" + pid + ", findByTimeAndResource([" + beginTimeMs + ", " + endTimeMs
         //    + "], " + identity + ")");
+        if (identity != null && hasResourceIndex(fileNames)) {
+            return findByResourceIndex(fileNames, beginTimeMs, endTimeMs, identity);
+        }
         int i = 0;
         long offsetInIndex = 0;
         if (validPosition(beginTimeMs)) {
@@ -140,6 +149,39 @@ public class MetricSearcher {
         return null;
     }
 
+    private boolean hasResourceIndex(List<String> fileNames) {
+        for (String fileName : fileNames) {
+            if (!resourceIndexes.containsKey(fileName) && !MetricResourceIndex.exists(fileName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read metrics of the resource through the per-resource index, so only lines of the resource are read.
+     */
+    private List<MetricNode> findByResourceIndex(List<String> fileNames, long beginTimeMs, long endTimeMs,
+                                                 String identity) throws Exception {
+        resourceIndexes.keySet().retainAll(fileNames);
+        long beginSecond = beginTimeMs / 1000;
+        long endSecond = endTimeMs / 1000;
+        List<MetricNode> list = new ArrayList<MetricNode>();
+        for (String fileName : fileNames) {
+            MetricResourceIndex index = resourceIndexes.get(fileName);
+            if (index == null) {
+                index = new MetricResourceIndex(fileName);
+                resourceIndexes.put(fileName, index);
+            }
+            offsets.clear();
+            boolean continueRead = index.findOffsets(identity, beginSecond, endSecond, offsets);
+            if (!metricsReader.readMetricsAtOffsets(list, fileName, offsets) || !continueRead) {
+                break;
+            }
+        }
+        return list;
+    }
+
     /**
      * 记录上一次读取的index文件位置和数值
      */
@@ -0,0 +1,169 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+/**
+ * <p>
+ * A compact ring buffer of per-second metric snapshots of a node, kept in parallel primitive arrays.
+ * Snapshots are appended in time order by the metric timer and drained (from the head) by
+ * {@link MetricWriter#write(long, java.util.List, java.util.List)}, so no {@link MetricNode} is created.
+ * </p>
+ * <p>
+ * The ring is not thread-safe and should only be accessed by the single metric timer thread.
+ * When the ring is full, the oldest snapshot is overwritten.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public final class MetricSnapshotRing {
+
+    /**
+     * Enough for the 60 seconds held by the minute-level metric.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final int mask;
+    private final long[] timestamps;
+    private final long[] pass;
+    private final long[] block;
+    private final long[] success;
+    private final long[] exception;
+    private final long[] rt;
+    private final long[] occupiedPass;
+
+    private int head = 0;
+    private int size = 0;
+
+    public MetricSnapshotRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity capacity of the ring, will be rounded up to a power of 2
+     */
+    public MetricSnapshotRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be positive");
+        }
+        int actualCapacity = Integer.highestOneBit(capacity);
+        if (actualCapacity < capacity) {
+            actualCapacity <<= 1;
+        }
+        this.mask = actualCapacity - 1;
+        this.timestamps = new long[actualCapacity];
+        this.pass = new long[actualCapacity];
+        this.block = new long[actualCapacity];
+        this.success = new long[actualCapacity];
+        this.exception = new long[actualCapacity];
+        this.rt = new long[actualCapacity];
+        this.occupiedPass = new long[actualCapacity];
+    }
+
+    /**
+     * Roughly estimate the memory of the ring.
+     *
+     * @return estimated memory in bytes
+     */
+    public long estimateMemoryBytes() {
+        return 48 + 7 * (16 + 8L * timestamps.length);
+    }
+
+    /**
+     * Append a snapshot to the tail of the ring. The timestamp should not be earlier than the existing ones.
+     *
+     * @param timestamp    start time of the second
+     * @param pass         pass count
+     * @param block        block count
+     * @param success      success count
+     * @param exception    exception count
+     * @param rt           average response time
+     * @param occupiedPass occupied pass count
+     */
+    public void append(long timestamp, long pass, long block, long success, long exception, long rt,
+                       long occupiedPass) {
+        if (size == capacity()) {
+            removeFirst();
+        }
+        int idx = (head + size) & mask;
+        this.timestamps[idx] = timestamp;
+        this.pass[idx] = pass;
+        this.block[idx] = block;
+        this.success[idx] = success;
+        this.exception[idx] = exception;
+        this.rt[idx] = rt;
+        this.occupiedPass[idx] = occupiedPass;
+        size++;
+    }
+
+    /**
+     * Remove the first (oldest) snapshot.
+     */
+    public void removeFirst() {
+        if (size == 0) {
+            return;
+        }
+        head = (head + 1) & mask;
+        size--;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return timestamp of the first snapshot, or {@link Long#MAX_VALUE} if the ring is empty
+     */
+    public long firstTimestamp() {
+        return size == 0 ? Long.MAX_VALUE : timestamps[head];
+    }
+
+    public long firstPass() {
+        return pass[head];
+    }
+
+    public long firstBlock() {
+        return block[head];
+    }
+
+    public long firstSuccess() {
+        return success[head];
+    }
+
+    public long firstException() {
+        return exception[head];
+    }
+
+    public long firstRt() {
+        return rt[head];
+    }
+
+    public long firstOccupiedPass() {
+        return occupiedPass[head];
+    }
+}
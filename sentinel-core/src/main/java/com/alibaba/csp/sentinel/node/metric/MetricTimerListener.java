@@ -17,9 +17,7 @@ package com.alibaba.csp.sentinel.node.metric;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import com.alibaba.csp.sentinel.Constants;
 import com.alibaba.csp.sentinel.config.SentinelConfig;
@@ -33,41 +31,95 @@ import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
  */
 public class MetricTimerListener implements Runnable {
 
-    private static final MetricWriter metricWriter = new MetricWriter(SentinelConfig.singleMetricFileSize(),
-        SentinelConfig.totalMetricFileCount());
+    private static final MetricWriter metricWriter = newMetricWriter();
+    private static final AsyncMetricWriter asyncMetricWriter = SentinelConfig.metricWriteAsync()
+        ? new AsyncMetricWriter(metricWriter, SentinelConfig.metricWriteQueueSize(),
+        SentinelConfig.metricForceInterval()) : null;
 
+    /**
+     * Reused across runs, only accessed by the single timer thread.
+     */
+    private final List<String> resources = new ArrayList<String>();
+    private final List<MetricSnapshotRing> rings = new ArrayList<MetricSnapshotRing>();
+    private final MetricBatch batch = new MetricBatch();
+
+    /**
+     * Stream the per-second snapshots of all cluster nodes into the metric file, in time order.
+     * Snapshots are kept in the per-node primitive rings, and merged by timestamp from the head of the rings,
+     * so no {@link MetricNode} or intermediate map is created. Metrics of each second are handed to the
+     * asynchronous writer if enabled, and dropped if the writer falls behind.
+     */
     @Override
     public void run() {
-        Map<Long, List<MetricNode>> maps = new TreeMap<Long, List<MetricNode>>();
+        resources.clear();
+        rings.clear();
         for (Entry<ResourceWrapper, ClusterNode> e : ClusterBuilderSlot.getClusterNodeMap().entrySet()) {
-            String name = e.getKey().getName();
-            ClusterNode node = e.getValue();
-            Map<Long, MetricNode> metrics = node.metrics();
-            aggregate(maps, metrics, name);
+            collect(e.getKey().getName(), e.getValue());
         }
-        aggregate(maps, Constants.ENTRY_NODE.metrics(), Constants.TOTAL_IN_RESOURCE_NAME);
-        if (!maps.isEmpty()) {
-            for (Entry<Long, List<MetricNode>> entry : maps.entrySet()) {
+        collect(Constants.TOTAL_IN_RESOURCE_NAME, Constants.ENTRY_NODE);
+
+        long time = firstTimestamp();
+        while (time != Long.MAX_VALUE) {
+            if (asyncMetricWriter != null) {
+                MetricBatch asyncBatch = asyncMetricWriter.borrowBatch(time);
+                if (asyncBatch == null) {
+                    discard(time);
+                } else {
+                    fill(asyncBatch, time);
+                    asyncMetricWriter.submit(asyncBatch);
+                }
+            } else {
+                batch.reset(time);
+                fill(batch, time);
                 try {
-                    metricWriter.write(entry.getKey(), entry.getValue());
+                    metricWriter.write(batch);
                 } catch (Exception e) {
                     RecordLog.warn("[MetricTimerListener] Write metric error", e);
                 }
             }
+            time = firstTimestamp();
+        }
+        rings.clear();
+    }
+
+    private void collect(String resourceName, ClusterNode node) {
+        MetricSnapshotRing ring = node.collectMetrics();
+        if (!ring.isEmpty()) {
+            resources.add(resourceName);
+            rings.add(ring);
         }
     }
 
-    private void aggregate(Map<Long, List<MetricNode>> maps, Map<Long, MetricNode> metrics, String resourceName) {
-        for (Entry<Long, MetricNode> entry : metrics.entrySet()) {
-            long time = entry.getKey();
-            MetricNode metricNode = entry.getValue();
-            metricNode.setResource(resourceName);
-            if (maps.get(time) == null) {
-                maps.put(time, new ArrayList<MetricNode>());
+    private long firstTimestamp() {
+        long time = Long.MAX_VALUE;
+        for (int i = 0; i < rings.size(); i++) {
+            time = Math.min(time, rings.get(i).firstTimestamp());
+        }
+        return time;
+    }
+
+    private void fill(MetricBatch batch, long time) {
+        for (int i = 0; i < rings.size(); i++) {
+            MetricSnapshotRing ring = rings.get(i);
+            if (ring.firstTimestamp() == time) {
+                batch.addFirst(resources.get(i), ring);
             }
-            List<MetricNode> nodes = maps.get(time);
-            nodes.add(entry.getValue());
         }
     }
 
+    private void discard(long time) {
+        for (int i = 0; i < rings.size(); i++) {
+            MetricSnapshotRing ring = rings.get(i);
+            if (ring.firstTimestamp() == time) {
+                ring.removeFirst();
+            }
+        }
+    }
+
+    private static MetricWriter newMetricWriter() {
+        if (SentinelConfig.METRIC_FILE_FORMAT_BINARY.equals(SentinelConfig.metricFileFormat())) {
+            return new BinaryMetricWriter(SentinelConfig.singleMetricFileSize(), SentinelConfig.totalMetricFileCount());
+        }
+        return new MetricWriter(SentinelConfig.singleMetricFileSize(), SentinelConfig.totalMetricFileCount());
+    }
 }
@@ -16,9 +16,15 @@
 package com.alibaba.csp.sentinel.node.metric;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -26,9 +32,15 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import com.alibaba.csp.sentinel.concurrent.NamedThreadFactory;
 import com.alibaba.csp.sentinel.log.LogBase;
 import com.alibaba.csp.sentinel.util.PidUtil;
+import com.alibaba.csp.sentinel.util.TimeUtil;
 import com.alibaba.csp.sentinel.config.SentinelConfig;
 import com.alibaba.csp.sentinel.log.RecordLog;
 
@@ -40,6 +52,10 @@ import com.alibaba.csp.sentinel.log.RecordLog;
  * <li>file name is like: {@code ${appName}-metrics.log.pid${pid}.yyyy-MM-dd.[number]}</li>
  * <li>metric of different day should in different file;</li>
  * <li>every metric file is accompanied with an index file, which file name is {@code ${metricFileName}.idx}</li>
+ * <li>closed metric files can be compressed (see {@link CompressedMetricFile}), while the index files are kept
+ * uncompressed;</li>
+ * <li>every metric file is also accompanied with a per-resource index (see {@link MetricResourceIndex}), so that
+ * metrics of a single resource can be searched without reading metrics of other resources.</li>
  * </ol>
  *
  * @author leyou
@@ -64,7 +80,7 @@ public class MetricWriter {
      */
     private long timeSecondBase;
     private String baseDir;
-    private String baseFileName;
+    String baseFileName;
     /**
      * file must exist when writing
      */
@@ -73,11 +89,60 @@ public class MetricWriter {
 
     private FileOutputStream outMetric;
     private DataOutputStream outIndex;
+    private MetricResourceIndexWriter resourceIndex;
     private BufferedOutputStream outMetricBuf;
     private long singleFileSize;
     private int totalFileCount;
     private boolean append = false;
     private final int pid = PidUtil.getPid();
+    private final StringBuilder lineBuilder = new StringBuilder(128);
+
+    /**
+     * Lines are encoded into the reused buffers, instead of creating a String and a byte array per line.
+     */
+    private final CharsetEncoder lineEncoder = Charset.forName(CHARSET).newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private char[] lineChars = new char[128];
+    private CharBuffer lineCharBuffer = CharBuffer.wrap(lineChars);
+    private ByteBuffer lineBytes = ByteBuffer.allocate(512);
+    /**
+     * Encoded lines of the second being appended, which are written to the file at once.
+     */
+    private final ByteArrayOutputStream secondBytes = new ByteArrayOutputStream(4096);
+
+    private final MetricBatch batch = new MetricBatch();
+
+    /**
+     * Offset of the next line in the current metric file, and appended lines pending to be indexed
+     * (after they are flushed).
+     */
+    private long lineOffset;
+    private String[] pendingResources = new String[64];
+    private long[] pendingSeconds = new long[64];
+    private long[] pendingOffsets = new long[64];
+    private int pendingCount;
+
+    /**
+     * Metric files are listed once, and then maintained by this writer instead of listing the directory
+     * on each roll. Existence of the files being written is checked at most once per interval.
+     */
+    private List<String> metricFiles;
+    private long lastFileCheckTime;
+    private static final long FILE_CHECK_INTERVAL_MS = 5000;
+
+    /**
+     * Closed metric files are compressed in the background if enabled, and retained within the bytes and age
+     * (if configured) besides the total file count. Retention is checked when a new file is created, and also
+     * periodically, as files may not roll for a long time.
+     */
+    private final boolean compress = SentinelConfig.metricFileCompress();
+    private final long retentionBytes = SentinelConfig.metricRetentionBytes();
+    private final long retentionAgeMs = SentinelConfig.metricRetentionAge();
+    private ScheduledFuture<?> retentionTask;
+    private static final long RETENTION_CHECK_INTERVAL_MS = 60 * 1000;
+    private static final ScheduledExecutorService FILE_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+        new NamedThreadFactory("sentinel-metric-file-task", true));
 
     /**
      * 秒级统计，忽略毫秒数。
@@ -89,13 +154,23 @@ public class MetricWriter {
     }
 
     public MetricWriter(long singleFileSize, int totalFileCount) {
-        if (singleFileSize <= 0 || totalFileCount <= 0) {
+        this(METRIC_BASE_DIR, singleFileSize, totalFileCount);
+    }
+
+    /**
+     * @param baseDir        the directory of metric files
+     * @param singleFileSize max size of a single metric file
+     * @param totalFileCount max count of metric files
+     * @since 1.5.0
+     */
+    public MetricWriter(String baseDir, long singleFileSize, int totalFileCount) {
+        if (baseDir == null || singleFileSize <= 0 || totalFileCount <= 0) {
             throw new IllegalArgumentException();
         }
         RecordLog.info(
             "[MetricWriter] Creating new MetricWriter, singleFileSize=" + singleFileSize + ", totalFileCount="
                 + totalFileCount);
-        this.baseDir = METRIC_BASE_DIR;
+        this.baseDir = baseDir.endsWith(File.separator) ? baseDir : baseDir + File.separator;
         File dir = new File(baseDir);
         if (!dir.exists()) {
             dir.mkdirs();
@@ -122,10 +197,121 @@ public class MetricWriter {
         if (nodes == null) {
             return;
         }
+        batch.reset(time);
         for (MetricNode node : nodes) {
             node.setTimestamp(time);
+            batch.add(node);
         }
+        write(batch);
+    }
+
+    /**
+     * Write the snapshots of given time from the head of the rings, in the same format as
+     * {@link MetricNode#toFatString()}. Snapshots of given time are removed from the rings
+     * (even if not written), and other snapshots are kept.
+     *
+     * @param time      the time of the snapshots to write
+     * @param resources resource names of the rings
+     * @param rings     per-node rings of metric snapshots (in time order)
+     * @since 1.5.0
+     */
+    public synchronized void write(long time, List<String> resources, List<MetricSnapshotRing> rings)
+        throws Exception {
+        batch.reset(time);
+        for (int i = 0; i < rings.size(); i++) {
+            MetricSnapshotRing ring = rings.get(i);
+            if (ring.firstTimestamp() == time) {
+                batch.addFirst(resources.get(i), ring);
+            }
+        }
+        write(batch);
+    }
 
+    /**
+     * Write and commit metrics of one second.
+     */
+    synchronized void write(MetricBatch batch) throws Exception {
+        append(batch);
+        commit();
+    }
+
+    /**
+     * Append metrics of one second, which are not visible to readers until {@link #commit()}. Several seconds
+     * can be appended before a commit, so that they are flushed together. If the append fails, none of
+     * the metrics of the second will be published by the following commit.
+     */
+    synchronized void append(MetricBatch batch) throws Exception {
+        long time = batch.getTime();
+        if (!beginWrite(time)) {
+            return;
+        }
+        long second = time / 1000;
+        String timeStr = df.format(new Date(time));
+        StringBuilder sb = lineBuilder;
+        int pendingMark = pendingCount;
+        long lineOffsetMark = lineOffset;
+        secondBytes.reset();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                String resource = legalName(batch.resource(i));
+                sb.setLength(0);
+                sb.append(time).append('|').append(timeStr).append('|');
+                sb.append(resource).append('|');
+                sb.append(batch.pass(i)).append('|');
+                sb.append(batch.block(i)).append('|');
+                sb.append(batch.success(i)).append('|');
+                sb.append(batch.exception(i)).append('|');
+                sb.append(batch.rt(i)).append('|');
+                sb.append(batch.occupiedPass(i));
+                sb.append('\n');
+                ByteBuffer line = encodeLine(sb);
+                secondBytes.write(line.array(), 0, line.position());
+                addPending(resource, second, line.position());
+            }
+            secondBytes.writeTo(outMetricBuf);
+        } catch (Exception e) {
+            // Lines of the second are not indexed, so they're never published.
+            discardPending(pendingMark, lineOffsetMark);
+            throw e;
+        }
+        if (lineOffset >= singleFileSize) {
+            closeAndNewFile(nextFileNameOfDay(time));
+        }
+    }
+
+    /**
+     * Flush the appended metrics, and then publish them in the indexes.
+     */
+    synchronized void commit() throws Exception {
+        if (outMetricBuf == null) {
+            return;
+        }
+        outMetricBuf.flush();
+        outIndex.flush();
+        // Index the lines only after they are flushed, so the index never points beyond the metric file.
+        for (int i = 0; i < pendingCount; i++) {
+            resourceIndex.add(pendingResources[i], pendingSeconds[i], pendingOffsets[i]);
+            pendingResources[i] = null;
+        }
+        pendingCount = 0;
+        resourceIndex.flush();
+    }
+
+    /**
+     * Force the committed metrics to the storage device.
+     */
+    synchronized void force() throws Exception {
+        if (outMetric != null) {
+            outMetric.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Prepare the metric file (and the index) for writing metrics of given time.
+     *
+     * @return false if metrics of given time should be ignored
+     */
+    private boolean beginWrite(long time) throws Exception {
         String appName = SentinelConfig.getAppName();
         if (appName == null) {
             appName = "";
@@ -134,76 +320,177 @@ public class MetricWriter {
         if (curMetricFile == null) {
             baseFileName = formMetricFileName(appName, pid);
             closeAndNewFile(nextFileNameOfDay(time));
-        }
-        if (!(curMetricFile.exists() && curMetricIndexFile.exists())) {
+        } else if (shouldCheckFiles() && !(curMetricFile.exists() && curMetricIndexFile.exists())) {
+            // Files are removed by others, so the cached files are stale.
+            resetMetricFiles();
             closeAndNewFile(nextFileNameOfDay(time));
         }
 
         long second = time / 1000;
         if (second < lastSecond) {
             // 时间靠前的直接忽略，不应该发生。
-        } else if (second == lastSecond) {
-            for (MetricNode node : nodes) {
-                outMetricBuf.write(node.toFatString().getBytes(CHARSET));
-            }
-            outMetricBuf.flush();
-            if (!validSize()) {
-                closeAndNewFile(nextFileNameOfDay(time));
-            }
-        } else {
-            writeIndex(second, outMetric.getChannel().position());
+            return false;
+        }
+        if (second > lastSecond) {
             if (isNewDay(lastSecond, second)) {
                 closeAndNewFile(nextFileNameOfDay(time));
-                for (MetricNode node : nodes) {
-                    outMetricBuf.write(node.toFatString().getBytes(CHARSET));
-                }
-                outMetricBuf.flush();
-                if (!validSize()) {
-                    closeAndNewFile(nextFileNameOfDay(time));
-                }
-            } else {
-                for (MetricNode node : nodes) {
-                    outMetricBuf.write(node.toFatString().getBytes(CHARSET));
-                }
-                outMetricBuf.flush();
-                if (!validSize()) {
-                    closeAndNewFile(nextFileNameOfDay(time));
-                }
             }
+            writeIndex(second, lineOffset);
             lastSecond = second;
         }
+        return true;
+    }
+
+    /**
+     * Encode the line into the reused buffer.
+     *
+     * @return the buffer, whose position is the length of the encoded line
+     */
+    private ByteBuffer encodeLine(StringBuilder sb) {
+        int length = sb.length();
+        if (lineChars.length < length) {
+            lineChars = new char[Math.max(length, lineChars.length << 1)];
+            lineCharBuffer = CharBuffer.wrap(lineChars);
+        }
+        sb.getChars(0, length, lineChars, 0);
+        CharBuffer in = lineCharBuffer;
+        in.clear();
+        in.limit(length);
+        int maxBytes = (int)Math.ceil(length * (double)lineEncoder.maxBytesPerChar());
+        if (lineBytes.capacity() < maxBytes) {
+            lineBytes = ByteBuffer.allocate(maxBytes);
+        }
+        ByteBuffer out = lineBytes;
+        out.clear();
+        lineEncoder.reset();
+        lineEncoder.encode(in, out, true);
+        lineEncoder.flush(out);
+        return out;
+    }
+
+    private void addPending(String resource, long second, int lineLength) {
+        if (pendingCount == pendingResources.length) {
+            int capacity = pendingCount << 1;
+            String[] newResources = new String[capacity];
+            long[] newSeconds = new long[capacity];
+            long[] newOffsets = new long[capacity];
+            System.arraycopy(pendingResources, 0, newResources, 0, pendingCount);
+            System.arraycopy(pendingSeconds, 0, newSeconds, 0, pendingCount);
+            System.arraycopy(pendingOffsets, 0, newOffsets, 0, pendingCount);
+            pendingResources = newResources;
+            pendingSeconds = newSeconds;
+            pendingOffsets = newOffsets;
+        }
+        pendingResources[pendingCount] = resource;
+        pendingSeconds[pendingCount] = second;
+        pendingOffsets[pendingCount] = lineOffset;
+        pendingCount++;
+        lineOffset += lineLength;
+    }
+
+    private void discardPending(int pendingMark, long lineOffsetMark) {
+        for (int i = pendingMark; i < pendingCount; i++) {
+            pendingResources[i] = null;
+        }
+        pendingCount = pendingMark;
+        lineOffset = lineOffsetMark;
+    }
+
+    private static String legalName(String resource) {
+        return resource.indexOf('|') >= 0 ? resource.replace('|', '_') : resource;
     }
 
     public synchronized void close() throws Exception {
+        stopRetentionTask();
         if (outMetricBuf != null) {
+            commit();
             outMetricBuf.close();
         }
         if (outIndex != null) {
             outIndex.close();
         }
+        if (resourceIndex != null) {
+            resourceIndex.close();
+            resourceIndex = null;
+        }
     }
 
     private void writeIndex(long time, long offset) throws Exception {
         outIndex.writeLong(time);
         outIndex.writeLong(offset);
-        outIndex.flush();
     }
 
-    private String nextFileNameOfDay(long time) {
+    /**
+     * Whether it's time to check that the files being written still exist. Checks are throttled, as they
+     * cost a system call each.
+     */
+    boolean shouldCheckFiles() {
+        long now = TimeUtil.currentTimeMillis();
+        if (now >= lastFileCheckTime && now - lastFileCheckTime < FILE_CHECK_INTERVAL_MS) {
+            return false;
+        }
+        lastFileCheckTime = now;
+        return true;
+    }
+
+    /**
+     * Metric files of {@code baseFileName} in order, which are listed once and then maintained by this writer.
+     */
+    private List<String> metricFiles() throws Exception {
+        if (metricFiles == null) {
+            metricFiles = listMetricFiles(baseDir, baseFileName);
+        }
+        return metricFiles;
+    }
+
+    void resetMetricFiles() {
+        metricFiles = null;
+    }
+
+    /**
+     * Record the newly created metric file, which must be the latest one.
+     */
+    void addMetricFile(String fileName) throws Exception {
+        metricFiles().add(new File(fileName).getAbsolutePath());
+        startRetentionTask();
+    }
+
+    private void startRetentionTask() {
+        if (retentionTask != null || (retentionBytes <= 0 && retentionAgeMs <= 0)) {
+            return;
+        }
+        retentionTask = FILE_EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    enforceRetention();
+                } catch (Throwable e) {
+                    RecordLog.warn("[MetricWriter] Remove expired metric files error", e);
+                }
+            }
+        }, RETENTION_CHECK_INTERVAL_MS, RETENTION_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic retention check, which is started again when a new file is created.
+     */
+    void stopRetentionTask() {
+        if (retentionTask != null) {
+            retentionTask.cancel(false);
+            retentionTask = null;
+        }
+    }
+
+    String nextFileNameOfDay(long time) throws Exception {
         List<String> list = new ArrayList<String>();
-        File baseFile = new File(baseDir);
         DateFormat fileNameDf = new SimpleDateFormat("yyyy-MM-dd");
         String dateStr = fileNameDf.format(new Date(time));
         String fileNameModel = baseFileName + "." + dateStr;
-        for (File file : baseFile.listFiles()) {
-            String fileName = file.getName();
-            if (fileName.contains(fileNameModel)
-                && !fileName.endsWith(METRIC_FILE_INDEX_SUFFIX)
-                && !fileName.endsWith(".lck")) {
-                list.add(file.getAbsolutePath());
+        for (String fileName : metricFiles()) {
+            if (fileName.contains(fileNameModel)) {
+                list.add(fileName);
             }
         }
-        Collections.sort(list, METRIC_FILE_NAME_CMP);
         if (list.isEmpty()) {
             return baseDir + fileNameModel;
         }
@@ -288,11 +575,20 @@ public class MetricWriter {
         }
         for (File file : files) {
             String fileName = file.getName();
+            String path = file.getAbsolutePath();
+            if (fileName.endsWith(CompressedMetricFile.COMPRESSED_SUFFIX)) {
+                // Compressed files are listed by the name of the metric file.
+                fileName = fileName.substring(0, fileName.length() - CompressedMetricFile.COMPRESSED_SUFFIX.length());
+                path = path.substring(0, path.length() - CompressedMetricFile.COMPRESSED_SUFFIX.length());
+                if (new File(path).exists()) {
+                    continue;
+                }
+            }
             if (file.isFile()
                 && fileNameMatches(fileName, baseFileName)
                 && !fileName.endsWith(MetricWriter.METRIC_FILE_INDEX_SUFFIX)
                 && !fileName.endsWith(".lck")) {
-                list.add(file.getAbsolutePath());
+                list.add(path);
             }
         }
         Collections.sort(list, MetricWriter.METRIC_FILE_NAME_CMP);
@@ -319,22 +615,81 @@ public class MetricWriter {
         }
     }
 
-    private void removeMoreFiles() throws Exception {
-        List<String> list = listMetricFiles(baseDir, baseFileName);
-        if (list == null || list.isEmpty()) {
-            return;
+    /**
+     * Remove the oldest metric files, so that there is room for a new file within the total file count,
+     * and the retained files are within the retention bytes and age (if configured).
+     */
+    void removeMoreFiles() throws Exception {
+        removeMoreFiles(true);
+    }
+
+    /**
+     * Remove the oldest metric files beyond the retention bytes and age (if configured), except the latest one
+     * which is being written.
+     */
+    synchronized void enforceRetention() throws Exception {
+        removeMoreFiles(false);
+    }
+
+    private void removeMoreFiles(boolean rolling) throws Exception {
+        List<String> list = metricFiles();
+        int maxFileCount = rolling ? totalFileCount - 1 : totalFileCount;
+        long totalBytes = 0;
+        if (retentionBytes > 0) {
+            for (String fileName : list) {
+                totalBytes += segmentBytes(fileName);
+            }
         }
-        for (int i = 0; i < list.size() - totalFileCount + 1; i++) {
-            String fileName = list.get(i);
+        long now = TimeUtil.currentTimeMillis();
+        while (!list.isEmpty()) {
+            if (!rolling && list.size() == 1) {
+                // The latest file is being written.
+                break;
+            }
+            String fileName = list.get(0);
+            boolean expired = retentionAgeMs > 0 && now - segmentLastModified(fileName) > retentionAgeMs;
+            if (list.size() <= maxFileCount && (retentionBytes <= 0 || totalBytes <= retentionBytes)
+                && !expired) {
+                break;
+            }
+            list.remove(0);
+            totalBytes -= retentionBytes > 0 ? segmentBytes(fileName) : 0;
             String indexFile = formIndexFileName(fileName);
             new File(fileName).delete();
+            new File(CompressedMetricFile.formCompressedFileName(fileName)).delete();
             RecordLog.info("[MetricWriter] Removing metric file: " + fileName);
-            new File(indexFile).delete();
-            RecordLog.info("[MetricWriter] Removing metric index file: " + indexFile);
+            if (new File(indexFile).delete()) {
+                RecordLog.info("[MetricWriter] Removing metric index file: " + indexFile);
+            }
+            new File(MetricResourceIndex.formIndexFileName(fileName)).delete();
+            new File(MetricResourceIndex.formDictFileName(fileName)).delete();
         }
     }
 
+    /**
+     * @return bytes of the metric file (or its compressed file) and the index files
+     */
+    private static long segmentBytes(String fileName) {
+        return new File(fileName).length()
+            + new File(CompressedMetricFile.formCompressedFileName(fileName)).length()
+            + new File(formIndexFileName(fileName)).length()
+            + new File(MetricResourceIndex.formIndexFileName(fileName)).length()
+            + new File(MetricResourceIndex.formDictFileName(fileName)).length();
+    }
+
+    /**
+     * @return last modified time of the metric file, given by the index file which is never changed after
+     * the metric file is closed (while the metric file may be replaced by the compressed file later)
+     */
+    private static long segmentLastModified(String fileName) {
+        long lastModified = new File(formIndexFileName(fileName)).lastModified();
+        return lastModified > 0 ? lastModified : new File(fileName).lastModified();
+    }
+
     private void closeAndNewFile(String fileName) throws Exception {
+        if (outMetricBuf != null) {
+            commit();
+        }
         removeMoreFiles();
         if (outMetricBuf != null) {
             outMetricBuf.close();
@@ -342,22 +697,41 @@ public class MetricWriter {
         if (outIndex != null) {
             outIndex.close();
         }
+        if (resourceIndex != null) {
+            resourceIndex.close();
+        }
+        if (compress && curMetricFile != null) {
+            compressLater(curMetricFile.getAbsolutePath());
+        }
         outMetric = new FileOutputStream(fileName, append);
         outMetricBuf = new BufferedOutputStream(outMetric);
         curMetricFile = new File(fileName);
         String idxFile = formIndexFileName(fileName);
         curMetricIndexFile = new File(idxFile);
         outIndex = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(idxFile, append)));
+        resourceIndex = new MetricResourceIndexWriter(fileName);
+        lineOffset = 0;
+        addMetricFile(fileName);
         RecordLog.info("[MetricWriter] New metric file created: " + fileName);
         RecordLog.info("[MetricWriter] New metric index file created: " + idxFile);
     }
 
-    private boolean validSize() throws Exception {
-        long size = outMetric.getChannel().size();
-        return size < singleFileSize;
+    private static void compressLater(final String fileName) {
+        FILE_EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (CompressedMetricFile.compress(fileName)) {
+                        RecordLog.info("[MetricWriter] Metric file compressed: " + fileName);
+                    }
+                } catch (Throwable e) {
+                    RecordLog.warn("[MetricWriter] Compress metric file error: " + fileName, e);
+                }
+            }
+        });
     }
 
-    private boolean isNewDay(long lastSecond, long second) {
+    boolean isNewDay(long lastSecond, long second) {
         long lastDay = (lastSecond - timeSecondBase) / 86400;
         long newDay = (second - timeSecondBase) / 86400;
         return newDay > lastDay;
@@ -375,6 +749,10 @@ public class MetricWriter {
      * @return metric file name.
      */
     public static String formMetricFileName(String appName, int pid) {
+        return formMetricFileName(appName, pid, METRIC_FILE);
+    }
+
+    static String formMetricFileName(String appName, int pid, String metricFile) {
         if (appName == null) {
             appName = "";
         }
@@ -384,7 +762,7 @@ public class MetricWriter {
         if (appName.contains(dot)) {
             appName = appName.replace(dot, separator);
         }
-        String name = appName + separator + METRIC_FILE;
+        String name = appName + separator + metricFile;
         if (LogBase.isLogNameUsePid()) {
             name += ".pid" + pid;
         }
@@ -16,11 +16,16 @@
 package com.alibaba.csp.sentinel.node.metric;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Reads metrics data from log file.
@@ -32,23 +37,68 @@ class MetricsReader {
      */
     private static final int MAX_LINES_RETURN = 100000;
 
+    private static final int MAX_CACHED_COMPRESSED_FILES = 64;
+
     private final Charset charset;
 
+    /**
+     * Block indexes of compressed metric files, the least recently used of which is closed and evicted
+     * when the count exceeds {@link #MAX_CACHED_COMPRESSED_FILES}.
+     */
+    private final Map<String, CompressedMetricFile> compressedFiles
+        = new LinkedHashMap<String, CompressedMetricFile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompressedMetricFile> eldest) {
+            if (size() > MAX_CACHED_COMPRESSED_FILES) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
     public MetricsReader(Charset charset) {
         this.charset = charset;
     }
 
+    /**
+     * Open the metric file from the offset, which is read from the compressed file if the metric file has been
+     * compressed (see {@link CompressedMetricFile}).
+     */
+    private InputStream openStream(String fileName, long offset) throws Exception {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            CompressedMetricFile compressedFile = compressedFile(fileName);
+            if (compressedFile != null) {
+                return compressedFile.openStream(offset);
+            }
+        }
+        FileInputStream in = new FileInputStream(file);
+        in.getChannel().position(offset);
+        return in;
+    }
+
+    private CompressedMetricFile compressedFile(String fileName) throws Exception {
+        CompressedMetricFile compressedFile = compressedFiles.get(fileName);
+        if (compressedFile == null) {
+            compressedFile = CompressedMetricFile.open(fileName);
+            if (compressedFile != null) {
+                compressedFiles.put(fileName, compressedFile);
+            }
+        }
+        return compressedFile;
+    }
+
     /**
      * @return if should continue read, return true, else false.
      */
     boolean readMetricsInOneFileByEndTime(List<MetricNode> list, String fileName, long offset,
                                           long beginTimeMs, long endTimeMs, String identity) throws Exception {
-        FileInputStream in = null;
+        InputStream in = null;
         long beginSecond = beginTimeMs / 1000;
         long endSecond = endTimeMs / 1000;
         try {
-            in = new FileInputStream(fileName);
-            in.getChannel().position(offset);
+            in = openStream(fileName, offset);
             BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
             String line;
             while ((line = reader.readLine()) != null) {
@@ -89,10 +139,9 @@ class MetricsReader {
         if (list.size() > 0) {
             lastSecond = list.get(list.size() - 1).getTimestamp() / 1000;
         }
-        FileInputStream in = null;
+        InputStream in = null;
         try {
-            in = new FileInputStream(fileName);
-            in.getChannel().position(offset);
+            in = openStream(fileName, offset);
             BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
             String line;
             while ((line = reader.readLine()) != null) {
@@ -139,4 +188,73 @@ class MetricsReader {
         }
         return list;
     }
-}
\ No newline at end of file
+
+    /**
+     * Read the metric lines at given offsets of the metric file (see {@link MetricResourceIndex}).
+     *
+     * @return if should continue read, return true, else false.
+     */
+    boolean readMetricsAtOffsets(List<MetricNode> list, String fileName, MetricResourceIndex.OffsetList offsets)
+        throws Exception {
+        if (offsets.size() == 0) {
+            return true;
+        }
+        if (!new File(fileName).exists()) {
+            CompressedMetricFile compressedFile = compressedFile(fileName);
+            if (compressedFile != null) {
+                return readCompressedMetricsAtOffsets(list, compressedFile, offsets);
+            }
+        }
+        RandomAccessFile in = new RandomAccessFile(fileName, "r");
+        try {
+            byte[] buf = new byte[256];
+            for (int i = 0; i < offsets.size(); i++) {
+                int length = -1;
+                while (length < 0) {
+                    in.seek(offsets.get(i));
+                    int n = in.read(buf);
+                    for (int j = 0; j < n; j++) {
+                        if (buf[j] == '\n') {
+                            length = j;
+                            break;
+                        }
+                    }
+                    if (length < 0) {
+                        if (n < buf.length) {
+                            // Incomplete line, which should not happen.
+                            return false;
+                        }
+                        buf = new byte[buf.length << 1];
+                    }
+                }
+                list.add(MetricNode.fromFatString(new String(buf, 0, length, charset)));
+                if (list.size() >= MAX_LINES_RETURN) {
+                    return false;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return true;
+    }
+
+    private boolean readCompressedMetricsAtOffsets(List<MetricNode> list, CompressedMetricFile compressedFile,
+                                                   MetricResourceIndex.OffsetList offsets) throws Exception {
+        RandomAccessFile in = compressedFile.openFile();
+        try {
+            CompressedMetricFile.LineBuffer line = new CompressedMetricFile.LineBuffer();
+            for (int i = 0; i < offsets.size(); i++) {
+                if (compressedFile.readLine(in, offsets.get(i), line) < 0) {
+                    return false;
+                }
+                list.add(MetricNode.fromFatString(new String(line.bytes, 0, line.length, charset)));
+                if (list.size() >= MAX_LINES_RETURN) {
+                    return false;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return true;
+    }
+}
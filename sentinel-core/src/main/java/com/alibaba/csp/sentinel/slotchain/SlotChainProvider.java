@@ -35,23 +35,30 @@ public final class SlotChainProvider {
     private static final ServiceLoader<SlotChainBuilder> LOADER = ServiceLoader.load(SlotChainBuilder.class);
 
     /**
-     * The load and pick process is not thread-safe, but it's okay since the method should be only invoked
-     * via {@code lookProcessChain} in {@link com.alibaba.csp.sentinel.CtSph} under lock.
+     * Slot chains of different resources may be created concurrently (see {@link SlotChainRegistry}),
+     * so the load and pick process of the builder is guarded by the class lock.
      *
      * @return new created slot chain
      */
     public static ProcessorSlotChain newSlotChain() {
-        if (builder != null) {
-            return builder.build();
+        SlotChainBuilder b = builder;
+        if (b != null) {
+            return b.build();
         }
+        return resolveAndGetBuilder().build();
+    }
 
+    private static synchronized SlotChainBuilder resolveAndGetBuilder() {
+        if (builder != null) {
+            return builder;
+        }
         resolveSlotChainBuilder();
 
         if (builder == null) {
             RecordLog.warn("[SlotChainProvider] Wrong state when resolving slot chain builder, using default");
             builder = new DefaultSlotChainBuilder();
         }
-        return builder.build();
+        return builder;
     }
 
     private static void resolveSlotChainBuilder() {
@@ -0,0 +1,139 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slotchain;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.csp.sentinel.util.AssertUtil;
+
+/**
+ * <p>
+ * Concurrent registry of {@link ProcessorSlotChain} for resources. Same resource
+ * ({@link ResourceWrapper#equals(Object)}) will always get the same slot chain.
+ * </p>
+ * <p>
+ * Lookup of an existing slot chain is lock-free. Creation of a new slot chain is guarded by
+ * a lock striped by the hash of the resource name, so that new resources can be registered
+ * concurrently in O(1) without copying the whole map, while a slot chain of the same resource
+ * is never built twice. The amount of slot chains will never exceed the max size.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public final class SlotChainRegistry {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Map<ResourceWrapper, ProcessorSlotChain> chainMap;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final int maxSize;
+    /**
+     * Amount of registered slot chains, including those being created.
+     */
+    private final AtomicInteger reservedSize = new AtomicInteger();
+    /**
+     * Version of the registry, which changes whenever registered slot chains are dropped.
+     */
+    private final AtomicInteger version = new AtomicInteger();
+
+    public SlotChainRegistry(int maxSize) {
+        AssertUtil.isTrue(maxSize > 0, "maxSize should be positive");
+        this.maxSize = maxSize;
+        this.chainMap = new ConcurrentHashMap<ResourceWrapper, ProcessorSlotChain>(Math.min(maxSize, 1024));
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Get the slot chain of provided resource. A new slot chain will be created if absent.
+     *
+     * @param resourceWrapper target resource
+     * @return slot chain of the resource, or null if amount of slot chains exceeds the max size
+     */
+    public ProcessorSlotChain getOrCreate(ResourceWrapper resourceWrapper) {
+        ProcessorSlotChain chain = chainMap.get(resourceWrapper);
+        if (chain != null) {
+            return chain;
+        }
+        synchronized (lockFor(resourceWrapper)) {
+            chain = chainMap.get(resourceWrapper);
+            if (chain != null) {
+                return chain;
+            }
+            // Entry size limit.
+            if (chainMap.size() >= maxSize) {
+                return null;
+            }
+            // Resources of different lock stripes may be registered concurrently,
+            // so the capacity is reserved before the slot chain is created and published.
+            if (reservedSize.incrementAndGet() > maxSize) {
+                reservedSize.decrementAndGet();
+                return null;
+            }
+            chain = SlotChainProvider.newSlotChain();
+            chainMap.put(resourceWrapper, chain);
+            return chain;
+        }
+    }
+
+    private Object lockFor(ResourceWrapper resourceWrapper) {
+        int h = resourceWrapper.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Get current amount of registered slot chains.
+     *
+     * @return amount of registered slot chains
+     */
+    public int size() {
+        return chainMap.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void clear() {
+        version.incrementAndGet();
+        chainMap.clear();
+        reservedSize.set(0);
+    }
+
+    /**
+     * Get the version of the registry. Slot chains resolved with an earlier version may have been
+     * dropped from the registry, so they should be looked up again.
+     *
+     * @return current version of the registry
+     */
+    public int version() {
+        return version.get();
+    }
+
+    /**
+     * Get the underlying map of resource to slot chain. DO NOT MODIFY the map returned,
+     * unless for test.
+     *
+     * @return the underlying map
+     */
+    public Map<ResourceWrapper, ProcessorSlotChain> asMap() {
+        return chainMap;
+    }
+}
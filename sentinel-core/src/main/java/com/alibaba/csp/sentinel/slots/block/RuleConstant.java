@@ -35,6 +35,20 @@ public final class RuleConstant {
      * Degrade by biz exception count in the last 60 seconds.
      */
     public static final int DEGRADE_GRADE_EXCEPTION_COUNT = 2;
+    /**
+     * Degrade by response time at the given percentile (e.g. p99) in the statistic interval of the rule.
+     */
+    public static final int DEGRADE_GRADE_RT_PERCENTILE = 3;
+    /**
+     * Degrade by the ratio of slow requests (of which response time exceeds the threshold)
+     * in the statistic interval of the rule.
+     */
+    public static final int DEGRADE_GRADE_SLOW_REQUEST_RATIO = 4;
+
+    public static final int DEGRADE_DEFAULT_MIN_REQUEST_AMOUNT = 5;
+    public static final int DEGRADE_DEFAULT_STAT_INTERVAL_MS = 1000;
+    public static final double DEGRADE_DEFAULT_PERCENTILE = 99;
+    public static final int DEGRADE_DEFAULT_HALF_OPEN_PROBE_COUNT = 1;
 
     public static final int AUTHORITY_WHITE = 0;
     public static final int AUTHORITY_BLACK = 1;
@@ -47,6 +61,11 @@ public final class RuleConstant {
     public static final int CONTROL_BEHAVIOR_WARM_UP = 1;
     public static final int CONTROL_BEHAVIOR_RATE_LIMITER = 2;
     public static final int CONTROL_BEHAVIOR_WARM_UP_RATE_LIMITER = 3;
+    /**
+     * Generic cell rate algorithm (virtual scheduling) with nanosecond resolution, which allows
+     * a burst of at most {@code burstSize} requests and rejects the exceeding requests directly.
+     */
+    public static final int CONTROL_BEHAVIOR_GCRA = 4;
 
     public static final String LIMIT_APP_DEFAULT = "default";
     public static final String LIMIT_APP_OTHER = "other";
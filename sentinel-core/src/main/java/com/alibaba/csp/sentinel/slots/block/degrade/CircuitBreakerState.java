@@ -0,0 +1,37 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.degrade;
+
+/**
+ * States of the circuit breaker of a {@link DegradeRule}.
+ *
+ * @since 1.5.0
+ */
+public enum CircuitBreakerState {
+    /**
+     * All requests are permitted, and the rule checks whether the resource should be degraded.
+     */
+    CLOSED,
+    /**
+     * The resource is degraded, all requests are blocked until the time window ends.
+     */
+    OPEN,
+    /**
+     * The time window has ended. Only a limited number of probe requests are permitted, and the
+     * circuit breaker will be closed if all of them succeed, or opened again once any of them fails.
+     */
+    HALF_OPEN
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.degrade;
+
+/**
+ * Listener of state transitions of circuit breakers, registered via
+ * {@link DegradeRuleManager#addStateChangeListener(CircuitBreakerStateChangeListener)}.
+ * The listener is invoked synchronously in the thread that triggers the transition,
+ * after the transition, so it should be light-weight. Note that notifications of transitions triggered
+ * by different threads (e.g. the timer thread and request threads) may interleave.
+ *
+ * @since 1.5.0
+ */
+public interface CircuitBreakerStateChangeListener {
+
+    /**
+     * Invoked when the circuit breaker of a degrade rule transits to a new state.
+     *
+     * @param rule      the degrade rule
+     * @param prevState the previous state
+     * @param newState  the new state
+     */
+    void onStateChange(DegradeRule rule, CircuitBreakerState prevState, CircuitBreakerState newState);
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.degrade;
+
+import com.alibaba.csp.sentinel.context.Context;
+import com.alibaba.csp.sentinel.slotchain.ProcessorSlotExitCallback;
+import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
+
+/**
+ * Exit callback that reports completed requests to circuit breakers, so that in-flight requests are
+ * no longer tracked, and the outcome of probe requests decides the next state of half-open circuit breakers.
+ *
+ * @since 1.5.0
+ */
+class DegradeProbeExitCallback implements ProcessorSlotExitCallback {
+
+    @Override
+    public void onExit(Context context, ResourceWrapper resourceWrapper, int count, Object... args) {
+        if (context.getCurEntry() != null) {
+            DegradeRuleManager.onRequestComplete(resourceWrapper, context.getCurEntry());
+        }
+    }
+}
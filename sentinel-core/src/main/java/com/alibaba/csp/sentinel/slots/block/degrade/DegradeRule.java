@@ -15,19 +15,27 @@
  */
 package com.alibaba.csp.sentinel.slots.block.degrade;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
-import com.alibaba.csp.sentinel.concurrent.NamedThreadFactory;
+import com.alibaba.csp.sentinel.concurrent.timer.SentinelTimer;
+import com.alibaba.csp.sentinel.Entry;
 import com.alibaba.csp.sentinel.context.Context;
 import com.alibaba.csp.sentinel.node.ClusterNode;
 import com.alibaba.csp.sentinel.node.DefaultNode;
 import com.alibaba.csp.sentinel.slots.block.AbstractRule;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
 import com.alibaba.csp.sentinel.slots.block.RuleConstant;
 import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
+import com.alibaba.csp.sentinel.slots.statistic.StatisticSlot;
+import com.alibaba.csp.sentinel.slots.statistic.data.LatencyHistogram;
+import com.alibaba.csp.sentinel.slots.statistic.metric.LatencyHistogramLeapArray;
+import com.alibaba.csp.sentinel.util.TimeUtil;
 
 /**
  * <p>
@@ -49,7 +57,31 @@ import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
  * success qps exceeds the threshold, access to the resource will be blocked in
  * the coming window.
  * </li>
+ * <li>
+ * Percentile response time ({@code DEGRADE_GRADE_RT_PERCENTILE}): When the response time at
+ * {@code percentile} (e.g. p99) of requests completed in the recent {@code statIntervalMs}
+ * exceeds the threshold ('count', in milliseconds), the resource will be downgraded.
+ * </li>
+ * <li>
+ * Slow request ratio ({@code DEGRADE_GRADE_SLOW_REQUEST_RATIO}): When the ratio of requests
+ * slower than the threshold ('count', in milliseconds) in the recent {@code statIntervalMs}
+ * reaches {@code slowRatioThreshold}, the resource will be downgraded.
+ * </li>
  * </ul>
+ * <p>
+ * The two grades above read response time from the latency histogram of the resource's {@link ClusterNode},
+ * which is enabled when the rule is loaded, and need no less than {@code minRequestAmount} requests
+ * in the interval. Requests still in flight are counted as slow once they've run longer than the threshold
+ * (see {@link ClusterNode#countInFlight(long, long)}), so hanging calls trip the circuit breaker
+ * before they complete (or time out).
+ * </p>
+ * <p>
+ * Each rule works as a circuit breaker ({@link CircuitBreakerState}). When degraded, the circuit breaker
+ * is OPEN and blocks all requests. After {@code timeWindow} it turns HALF_OPEN, and permits at most
+ * {@code halfOpenProbeCount} probe requests. If all the probes succeed, the circuit breaker is CLOSED;
+ * once any of them fails (with exception traced by {@link com.alibaba.csp.sentinel.Tracer}, or slower than
+ * the threshold for response time based grades), it's OPEN again for another {@code timeWindow}.
+ * </p>
  *
  * @author jialiang.linjl
  */
@@ -61,10 +93,10 @@ public class DegradeRule extends AbstractRule {
     private static final int RT_MAX_EXCEED_N = 5;
 
     /**
-     * 定时任务执行线程池
+     * Minimum interval (in milliseconds) of re-calculating the response time statistics,
+     * only for percentile RT and slow request ratio grades.
      */
-    private static ScheduledExecutorService pool = Executors.newScheduledThreadPool(
-        Runtime.getRuntime().availableProcessors(), new NamedThreadFactory("sentinel-degrade-reset-task", true));
+    private static final long RT_STAT_CACHE_MS = 10;
 
     public DegradeRule() {}
 
@@ -85,15 +117,64 @@ public class DegradeRule extends AbstractRule {
     private int timeWindow;
 
     /**
-     * Degrade strategy (0: average RT, 1: exception ratio).
+     * Degrade strategy (0: average RT, 1: exception ratio, 2: exception count,
+     * 3: percentile RT, 4: slow request ratio).
      * 降级策略，0：调用比例 1：异常比例: 2：异常数策略
      */
     private int grade = RuleConstant.DEGRADE_GRADE_RT;
 
     /**
-     * 是否正处于熔断状态
+     * Percentile (in range (0, 100]) of response time, only for {@code DEGRADE_GRADE_RT_PERCENTILE}.
+     */
+    private double percentile = RuleConstant.DEGRADE_DEFAULT_PERCENTILE;
+
+    /**
+     * Ratio threshold of slow requests (in range [0, 1]), only for {@code DEGRADE_GRADE_SLOW_REQUEST_RATIO}.
+     */
+    private double slowRatioThreshold = 1.0d;
+
+    /**
+     * Minimum requests (completed, or in flight longer than the threshold) in the statistic interval
+     * to trigger degradation, only for percentile RT and slow request ratio grades.
+     */
+    private int minRequestAmount = RuleConstant.DEGRADE_DEFAULT_MIN_REQUEST_AMOUNT;
+
+    /**
+     * Statistic interval in milliseconds, only for percentile RT and slow request ratio grades.
+     */
+    private int statIntervalMs = RuleConstant.DEGRADE_DEFAULT_STAT_INTERVAL_MS;
+
+    /**
+     * Max count of probe requests permitted when the circuit breaker is half-open.
+     */
+    private int halfOpenProbeCount = RuleConstant.DEGRADE_DEFAULT_HALF_OPEN_PROBE_COUNT;
+
+    /**
+     * Requests completed before the time (when the circuit breaker is closed) are not counted.
+     */
+    private volatile long rtStatResetTime = Long.MIN_VALUE;
+
+    /**
+     * Cached count of requests and slow requests, so that the histogram is not scanned on every check.
+     */
+    private volatile long rtStatExpireTime = Long.MIN_VALUE;
+    private volatile long cachedRequestCount;
+    private volatile long cachedSlowCount;
+
+    /**
+     * 熔断器状态
+     */
+    private final AtomicReference<CircuitBreakerState> state
+        = new AtomicReference<CircuitBreakerState>(CircuitBreakerState.CLOSED);
+
+    /**
+     * Probe requests of the current half-open round. Probes that are not completed within
+     * a time window (e.g. entries never exited) will be given up and a new round starts.
      */
-    private final AtomicBoolean cut = new AtomicBoolean(false);
+    private final Set<Entry> probes = Collections.newSetFromMap(new ConcurrentHashMap<Entry, Boolean>());
+    private final AtomicInteger issuedProbes = new AtomicInteger(0);
+    private final AtomicInteger succeededProbes = new AtomicInteger(0);
+    private volatile long probeRoundStartTime;
 
     public int getGrade() {
         return grade;
@@ -115,12 +196,57 @@ public class DegradeRule extends AbstractRule {
         return this;
     }
 
-    private boolean isCut() {
-        return cut.get();
+    /**
+     * @return current state of the circuit breaker
+     * @since 1.5.0
+     */
+    public CircuitBreakerState getCircuitBreakerState() {
+        return state.get();
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public DegradeRule setPercentile(double percentile) {
+        this.percentile = percentile;
+        return this;
+    }
+
+    public double getSlowRatioThreshold() {
+        return slowRatioThreshold;
+    }
+
+    public DegradeRule setSlowRatioThreshold(double slowRatioThreshold) {
+        this.slowRatioThreshold = slowRatioThreshold;
+        return this;
+    }
+
+    public int getMinRequestAmount() {
+        return minRequestAmount;
+    }
+
+    public DegradeRule setMinRequestAmount(int minRequestAmount) {
+        this.minRequestAmount = minRequestAmount;
+        return this;
+    }
+
+    public int getStatIntervalMs() {
+        return statIntervalMs;
+    }
+
+    public DegradeRule setStatIntervalMs(int statIntervalMs) {
+        this.statIntervalMs = statIntervalMs;
+        return this;
+    }
+
+    public int getHalfOpenProbeCount() {
+        return halfOpenProbeCount;
     }
 
-    private void setCut(boolean cut) {
-        this.cut.set(cut);
+    public DegradeRule setHalfOpenProbeCount(int halfOpenProbeCount) {
+        this.halfOpenProbeCount = halfOpenProbeCount;
+        return this;
     }
 
     public AtomicLong getPassCount() {
@@ -159,7 +285,19 @@ public class DegradeRule extends AbstractRule {
         if (grade != that.grade) {
             return false;
         }
-        return true;
+        if (Double.compare(percentile, that.percentile) != 0) {
+            return false;
+        }
+        if (Double.compare(slowRatioThreshold, that.slowRatioThreshold) != 0) {
+            return false;
+        }
+        if (minRequestAmount != that.minRequestAmount) {
+            return false;
+        }
+        if (halfOpenProbeCount != that.halfOpenProbeCount) {
+            return false;
+        }
+        return statIntervalMs == that.statIntervalMs;
     }
 
     @Override
@@ -168,6 +306,11 @@ public class DegradeRule extends AbstractRule {
         result = 31 * result + new Double(count).hashCode();
         result = 31 * result + timeWindow;
         result = 31 * result + grade;
+        result = 31 * result + new Double(percentile).hashCode();
+        result = 31 * result + new Double(slowRatioThreshold).hashCode();
+        result = 31 * result + minRequestAmount;
+        result = 31 * result + statIntervalMs;
+        result = 31 * result + halfOpenProbeCount;
         return result;
     }
 
@@ -181,10 +324,14 @@ public class DegradeRule extends AbstractRule {
      */
     @Override
     public boolean passCheck(Context context, DefaultNode node, int acquireCount, Object... args) {
-        // 1. 判断是否处于熔断状态，如果是则直接返回
-        if (cut.get()) {
+        // 1. 判断熔断器状态：打开时直接拒绝，半开时只放行有限的探测请求
+        CircuitBreakerState currentState = state.get();
+        if (currentState == CircuitBreakerState.OPEN) {
             return false;
         }
+        if (currentState == CircuitBreakerState.HALF_OPEN) {
+            return tryAcquireProbe(context);
+        }
         // 2. 获取被访问资源的ClusterNode，不存在不降级
         ClusterNode clusterNode = ClusterBuilderSlot.getClusterNode(this.getResource());
         if (clusterNode == null) {
@@ -234,17 +381,187 @@ public class DegradeRule extends AbstractRule {
             if (exception < count) {
                 return true;
             }
+        } else if (isRtWindowGrade()) {
+            refreshRtStat(clusterNode);
+            if (!isRtStatExceeded()) {
+                return true;
+            }
+        }
+        // 执行到这里说明触发了熔断，熔断器打开
+        // 启动定时任务，在时间窗口过后，熔断器进入半开状态
+        openCircuit(CircuitBreakerState.CLOSED);
+
+        return false;
+    }
+
+    private boolean tryAcquireProbe(Context context) {
+        long now = TimeUtil.currentTimeMillis();
+        if (now - probeRoundStartTime >= timeWindow * 1000L) {
+            restartProbeRound(now);
+        }
+        while (true) {
+            int issued = issuedProbes.get();
+            if (issued >= halfOpenProbeCount) {
+                return false;
+            }
+            if (issuedProbes.compareAndSet(issued, issued + 1)) {
+                break;
+            }
+        }
+        Entry entry = context == null ? null : context.getCurEntry();
+        if (entry != null) {
+            probes.add(entry);
+        }
+        return true;
+    }
+
+    private synchronized void restartProbeRound(long now) {
+        if (now - probeRoundStartTime < timeWindow * 1000L) {
+            // Already restarted by other threads.
+            return;
+        }
+        resetProbeRound(now);
+    }
+
+    private synchronized void resetProbeRound(long now) {
+        probes.clear();
+        succeededProbes.set(0);
+        issuedProbes.set(0);
+        probeRoundStartTime = now;
+    }
+
+    /**
+     * Handle a completed request when the circuit breaker is half-open: decide the next state
+     * from the outcome of probe requests.
+     *
+     * @param entry the completed entry
+     */
+    void onRequestComplete(Entry entry) {
+        if (state.get() != CircuitBreakerState.HALF_OPEN || !probes.remove(entry)) {
+            return;
+        }
+        if (entry.getError() instanceof BlockException) {
+            // The probe is blocked by other rules, so give back the permit.
+            issuedProbes.decrementAndGet();
+            return;
         }
-        // 执行到这里说明触发了熔断，将标识置为true
-        // 启动定时任务，在时间窗口过后，将cut置为true，将passCount置为0
-        if (cut.compareAndSet(false, true)) {
-            ResetTask resetTask = new ResetTask(this);
-            pool.schedule(resetTask, timeWindow, TimeUnit.SECONDS);
+        if (isProbeFailed(entry)) {
+            openCircuit(CircuitBreakerState.HALF_OPEN);
+        } else if (succeededProbes.incrementAndGet() >= halfOpenProbeCount) {
+            closeCircuit();
         }
+    }
 
+    private boolean isProbeFailed(Entry entry) {
+        if (entry.getBizError() != null || entry.getError() != null) {
+            return true;
+        }
+        if (grade == RuleConstant.DEGRADE_GRADE_RT || grade == RuleConstant.DEGRADE_GRADE_RT_PERCENTILE
+            || grade == RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO) {
+            return StatisticSlot.calculateRtMicros(entry) > count * 1000;
+        }
         return false;
     }
 
+    private void openCircuit(CircuitBreakerState prevState) {
+        if (state.compareAndSet(prevState, CircuitBreakerState.OPEN)) {
+            probes.clear();
+            // 恢复任务由共享的时间轮定时器调度，不再为熔断恢复单独维护线程池
+            SentinelTimer.newTimeout(new ResetTask(this), timeWindow, TimeUnit.SECONDS);
+            DegradeRuleManager.onStateChange(this, prevState, CircuitBreakerState.OPEN);
+        }
+    }
+
+    private void halfOpenCircuit() {
+        if (state.get() != CircuitBreakerState.OPEN) {
+            return;
+        }
+        // Prepare the probe round before other threads see the half-open state.
+        resetProbeRound(TimeUtil.currentTimeMillis());
+        if (state.compareAndSet(CircuitBreakerState.OPEN, CircuitBreakerState.HALF_OPEN)) {
+            DegradeRuleManager.onStateChange(this, CircuitBreakerState.OPEN, CircuitBreakerState.HALF_OPEN);
+        }
+    }
+
+    private void closeCircuit() {
+        if (state.compareAndSet(CircuitBreakerState.HALF_OPEN, CircuitBreakerState.CLOSED)) {
+            probes.clear();
+            passCount.set(0);
+            resetRtStat(TimeUtil.currentTimeMillis());
+            DegradeRuleManager.onStateChange(this, CircuitBreakerState.HALF_OPEN, CircuitBreakerState.CLOSED);
+        }
+    }
+
+    boolean isRtWindowGrade() {
+        return grade == RuleConstant.DEGRADE_GRADE_RT_PERCENTILE
+            || grade == RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO;
+    }
+
+    /**
+     * @return interval of the latency statistics of the resource required by the rule, which covers
+     * the requests in flight that started in the statistic interval before they became slow
+     */
+    int latencyStatIntervalMs() {
+        return statIntervalMs + (int)Math.ceil(count);
+    }
+
+    /**
+     * Threshold of slow requests in microseconds. For the percentile grade, the response time at the percentile
+     * exceeds the threshold if and only if enough requests are no faster than the threshold.
+     */
+    private long slowThresholdMicros() {
+        long micros = (long)Math.ceil(count * 1000);
+        return grade == RuleConstant.DEGRADE_GRADE_RT_PERCENTILE ? micros : micros + 1;
+    }
+
+    private boolean isRtStatExceeded() {
+        long total = cachedRequestCount;
+        long slow = cachedSlowCount;
+        if (total == 0 || total < minRequestAmount) {
+            return false;
+        }
+        if (grade == RuleConstant.DEGRADE_GRADE_RT_PERCENTILE) {
+            return slow > total - LatencyHistogram.rankOf(percentile, total);
+        }
+        return (double)slow / total >= slowRatioThreshold;
+    }
+
+    private void refreshRtStat(ClusterNode clusterNode) {
+        long now = TimeUtil.currentTimeMillis();
+        if (now < rtStatExpireTime) {
+            return;
+        }
+        // Not thread-safe, but it's okay as the statistics are read-only here.
+        rtStatExpireTime = now + RT_STAT_CACHE_MS;
+        long thresholdMicros = slowThresholdMicros();
+        long total = 0;
+        long slow = 0;
+        LatencyHistogramLeapArray histogram = clusterNode.getRtHistogram();
+        if (histogram != null) {
+            long since = Math.max(now - statIntervalMs, rtStatResetTime + 1);
+            total = histogram.count(since);
+            slow = histogram.countAtOrAbove(thresholdMicros, since);
+        }
+        // 未完成的请求耗时已超过阈值时计为慢调用，这样调用挂起时无需等到超时返回即可熔断
+        long slowBefore = now - (thresholdMicros + 999) / 1000;
+        long hanging = clusterNode.countInFlight(Math.max(slowBefore - statIntervalMs, rtStatResetTime + 1),
+            slowBefore);
+        total += hanging;
+        slow += hanging;
+        cachedRequestCount = total;
+        cachedSlowCount = slow;
+    }
+
+    /**
+     * Ignore the requests completed before, so that they won't trigger degradation again after the recovery.
+     */
+    private void resetRtStat(long now) {
+        rtStatResetTime = now;
+        rtStatExpireTime = Long.MIN_VALUE;
+        cachedRequestCount = 0;
+        cachedSlowCount = 0;
+    }
+
     @Override
     public String toString() {
         return "DegradeRule{" +
@@ -253,6 +570,9 @@ public class DegradeRule extends AbstractRule {
             ", count=" + count +
             ", limitApp=" + getLimitApp() +
             ", timeWindow=" + timeWindow +
+            ", halfOpenProbeCount=" + halfOpenProbeCount +
+            (isRtWindowGrade() ? ", percentile=" + percentile + ", slowRatioThreshold=" + slowRatioThreshold
+                + ", minRequestAmount=" + minRequestAmount + ", statIntervalMs=" + statIntervalMs : "") +
             "}";
     }
 
@@ -265,12 +585,11 @@ public class DegradeRule extends AbstractRule {
         }
 
         /**
-         * 重置DegradeRule中的passCount和cut
+         * 时间窗口结束，熔断器进入半开状态，由探测请求的结果决定是否恢复
          */
         @Override
         public void run() {
-            rule.getPassCount().set(0);
-            rule.cut.set(false);
+            rule.halfOpenCircuit();
         }
     }
 }
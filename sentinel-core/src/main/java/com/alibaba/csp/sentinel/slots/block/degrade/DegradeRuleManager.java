@@ -22,8 +22,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.alibaba.csp.sentinel.Constants;
+import com.alibaba.csp.sentinel.Entry;
 import com.alibaba.csp.sentinel.context.Context;
 import com.alibaba.csp.sentinel.log.RecordLog;
 import com.alibaba.csp.sentinel.node.DefaultNode;
@@ -33,6 +35,8 @@ import com.alibaba.csp.sentinel.property.SentinelProperty;
 import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
 import com.alibaba.csp.sentinel.slots.block.BlockException;
 import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
+import com.alibaba.csp.sentinel.slots.statistic.StatisticSlotCallbackRegistry;
 import com.alibaba.csp.sentinel.util.AssertUtil;
 import com.alibaba.csp.sentinel.util.StringUtil;
 
@@ -56,8 +60,17 @@ public final class DegradeRuleManager {
     private static SentinelProperty<List<DegradeRule>> currentProperty
         = new DynamicSentinelProperty<>();
 
+    /**
+     * 熔断器状态变更监听器
+     */
+    private static final List<CircuitBreakerStateChangeListener> STATE_CHANGE_LISTENERS
+        = new CopyOnWriteArrayList<>();
+
     static {
         currentProperty.addListener(LISTENER);
+        // Outcomes of probe requests of half-open circuit breakers are tracked on exit.
+        StatisticSlotCallbackRegistry.addExitCallback(DegradeProbeExitCallback.class.getName(),
+            new DegradeProbeExitCallback());
     }
 
     /**
@@ -91,6 +104,57 @@ public final class DegradeRuleManager {
         }
     }
 
+    /**
+     * Report a completed request to circuit breakers of the resource.
+     *
+     * @param resource the resource
+     * @param entry    the completed entry
+     * @since 1.5.0
+     */
+    static void onRequestComplete(ResourceWrapper resource, Entry entry) {
+        Set<DegradeRule> rules = degradeRules.get(resource.getName());
+        if (rules == null) {
+            return;
+        }
+        for (DegradeRule rule : rules) {
+            rule.onRequestComplete(entry);
+        }
+    }
+
+    /**
+     * Add a listener of state transitions of circuit breakers of all degrade rules.
+     *
+     * @param listener the listener to add
+     * @since 1.5.0
+     */
+    public static void addStateChangeListener(CircuitBreakerStateChangeListener listener) {
+        AssertUtil.notNull(listener, "listener cannot be null");
+        STATE_CHANGE_LISTENERS.add(listener);
+    }
+
+    /**
+     * Remove the listener of state transitions of circuit breakers.
+     *
+     * @param listener the listener to remove
+     * @return true if the listener was registered
+     * @since 1.5.0
+     */
+    public static boolean removeStateChangeListener(CircuitBreakerStateChangeListener listener) {
+        return STATE_CHANGE_LISTENERS.remove(listener);
+    }
+
+    static void onStateChange(DegradeRule rule, CircuitBreakerState prevState, CircuitBreakerState newState) {
+        RecordLog.info(String.format("[DegradeRuleManager] Circuit breaker state changed from %s to %s: %s",
+            prevState, newState, rule));
+        for (CircuitBreakerStateChangeListener listener : STATE_CHANGE_LISTENERS) {
+            try {
+                listener.onStateChange(rule, prevState, newState);
+            } catch (Throwable t) {
+                RecordLog.warn("[DegradeRuleManager] Error when notifying circuit breaker state change", t);
+            }
+        }
+    }
+
     public static boolean hasConfig(String resource) {
         if (resource == null) {
             return false;
@@ -167,6 +231,7 @@ public final class DegradeRuleManager {
             if (rules != null) {
                 degradeRules.clear();
                 degradeRules.putAll(rules);
+                ClusterBuilderSlot.setLatencyStatIntervals(latencyStatIntervalsOf(rules));
             }
             RecordLog.info("[DegradeRuleManager] Degrade rules received: " + degradeRules);
         }
@@ -177,10 +242,31 @@ public final class DegradeRuleManager {
             if (rules != null) {
                 degradeRules.clear();
                 degradeRules.putAll(rules);
+                ClusterBuilderSlot.setLatencyStatIntervals(latencyStatIntervalsOf(rules));
             }
             RecordLog.info("[DegradeRuleManager] Degrade rules loaded: " + degradeRules);
         }
 
+        /**
+         * Latency statistics required by percentile RT and slow request ratio rules are enabled
+         * when the rules are loaded.
+         */
+        private Map<String, Integer> latencyStatIntervalsOf(Map<String, Set<DegradeRule>> rules) {
+            Map<String, Integer> intervals = new HashMap<>();
+            for (Map.Entry<String, Set<DegradeRule>> entry : rules.entrySet()) {
+                for (DegradeRule rule : entry.getValue()) {
+                    if (!rule.isRtWindowGrade()) {
+                        continue;
+                    }
+                    Integer interval = intervals.get(entry.getKey());
+                    if (interval == null || interval < rule.latencyStatIntervalMs()) {
+                        intervals.put(entry.getKey(), rule.latencyStatIntervalMs());
+                    }
+                }
+            }
+            return intervals;
+        }
+
         private Map<String, Set<DegradeRule>> loadDegradeConf(List<DegradeRule> list) {
             Map<String, Set<DegradeRule>> newRuleMap = new ConcurrentHashMap<>();
 
@@ -214,7 +300,7 @@ public final class DegradeRuleManager {
 
     public static boolean isValidRule(DegradeRule rule) {
         boolean baseValid = rule != null && !StringUtil.isBlank(rule.getResource())
-            && rule.getCount() >= 0 && rule.getTimeWindow() > 0;
+            && rule.getCount() >= 0 && rule.getTimeWindow() > 0 && rule.getHalfOpenProbeCount() > 0;
         if (!baseValid) {
             return false;
         }
@@ -229,6 +315,21 @@ public final class DegradeRuleManager {
         if (rule.getGrade() == RuleConstant.DEGRADE_GRADE_EXCEPTION_RATIO && rule.getCount() > 1) {
             return false;
         }
+        // Check percentile RT and slow request ratio mode.
+        if (rule.getGrade() == RuleConstant.DEGRADE_GRADE_RT_PERCENTILE
+            || rule.getGrade() == RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO) {
+            if (rule.getStatIntervalMs() <= 0 || rule.getMinRequestAmount() < 0) {
+                return false;
+            }
+            if (rule.getGrade() == RuleConstant.DEGRADE_GRADE_RT_PERCENTILE
+                && (rule.getPercentile() <= 0 || rule.getPercentile() > 100)) {
+                return false;
+            }
+            if (rule.getGrade() == RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO
+                && (rule.getSlowRatioThreshold() < 0 || rule.getSlowRatioThreshold() > 1)) {
+                return false;
+            }
+        }
         return true;
     }
 }
@@ -80,8 +80,8 @@ public class FlowRule extends AbstractRule {
 
     /**
      * Rate limiter control behavior.
-     * 0. default(reject directly), 1. warm up, 2. rate limiter, 3. warm up + rate limiter
-     * 流控规则配置页面的"流控效果" 0：快速失败 1：warm up 2：排队等待 3：warm up + 排队等待
+     * 0. default(reject directly), 1. warm up, 2. rate limiter, 3. warm up + rate limiter, 4. GCRA
+     * 流控规则配置页面的"流控效果" 0：快速失败 1：warm up 2：排队等待 3：warm up + 排队等待 4：GCRA
      */
     private int controlBehavior = RuleConstant.CONTROL_BEHAVIOR_DEFAULT;
 
@@ -96,6 +96,11 @@ public class FlowRule extends AbstractRule {
      */
     private int maxQueueingTimeMs = 500;
 
+    /**
+     * Max count of requests that can pass at the same moment in GCRA behavior.
+     */
+    private int burstSize = 1;
+
     /**
      * 流控规则配置页面的"是否集群"
      */
@@ -130,6 +135,15 @@ public class FlowRule extends AbstractRule {
         return this;
     }
 
+    public int getBurstSize() {
+        return burstSize;
+    }
+
+    public FlowRule setBurstSize(int burstSize) {
+        this.burstSize = burstSize;
+        return this;
+    }
+
     FlowRule setRater(TrafficShapingController rater) {
         this.controller = rater;
         return this;
@@ -221,6 +235,7 @@ public class FlowRule extends AbstractRule {
         if (controlBehavior != rule.controlBehavior) { return false; }
         if (warmUpPeriodSec != rule.warmUpPeriodSec) { return false; }
         if (maxQueueingTimeMs != rule.maxQueueingTimeMs) { return false; }
+        if (burstSize != rule.burstSize) { return false; }
         if (clusterMode != rule.clusterMode) { return false; }
         if (refResource != null ? !refResource.equals(rule.refResource) : rule.refResource != null) { return false; }
         return clusterConfig != null ? clusterConfig.equals(rule.clusterConfig) : rule.clusterConfig == null;
@@ -238,6 +253,7 @@ public class FlowRule extends AbstractRule {
         result = 31 * result + controlBehavior;
         result = 31 * result + warmUpPeriodSec;
         result = 31 * result + maxQueueingTimeMs;
+        result = 31 * result + burstSize;
         result = 31 * result + (clusterMode ? 1 : 0);
         result = 31 * result + (clusterConfig != null ? clusterConfig.hashCode() : 0);
         return result;
@@ -255,6 +271,7 @@ public class FlowRule extends AbstractRule {
             ", controlBehavior=" + controlBehavior +
             ", warmUpPeriodSec=" + warmUpPeriodSec +
             ", maxQueueingTimeMs=" + maxQueueingTimeMs +
+            ", burstSize=" + burstSize +
             ", clusterMode=" + clusterMode +
             ", clusterConfig=" + clusterConfig +
             ", controller=" + controller +
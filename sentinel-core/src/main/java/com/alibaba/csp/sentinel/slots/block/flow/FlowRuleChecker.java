@@ -15,6 +15,8 @@
  */
 package com.alibaba.csp.sentinel.slots.block.flow;
 
+import com.alibaba.csp.sentinel.AsyncEntry;
+import com.alibaba.csp.sentinel.Entry;
 import com.alibaba.csp.sentinel.cluster.ClusterStateManager;
 import com.alibaba.csp.sentinel.cluster.server.EmbeddedClusterTokenServerProvider;
 import com.alibaba.csp.sentinel.cluster.client.TokenClientProvider;
@@ -112,7 +114,46 @@ final class FlowRuleChecker {
             return true;
         }
         // 流控规则校验.rule.getRater()获取流控效果：快速失败、Warm Up、排队等待
-        return rule.getRater().canPass(selectedNode, acquireCount, prioritized);
+        return passNodeCheck(rule.getRater(), context, selectedNode, acquireCount, prioritized);
+    }
+
+    /**
+     * Check the traffic shaping controller of the rule on the selected node.
+     *
+     * @param rater        traffic shaping controller of the rule
+     * @param context      current context
+     * @param selectedNode selected statistic node, should not be null
+     * @param acquireCount count to acquire
+     * @param prioritized  whether the request is prioritized
+     * @return true if the request can pass, otherwise false
+     */
+    static boolean passNodeCheck(TrafficShapingController rater, Context context, /*@NonNull*/ Node selectedNode,
+                                 int acquireCount, boolean prioritized) {
+        if (rater instanceof NonBlockingTrafficShapingController) {
+            AsyncEntry entry = nonBlockingEntryOf(context);
+            if (entry != null) {
+                // 非阻塞模式下不在当前线程等待，由调用方按照许可时间延迟请求
+                long waitMs = ((NonBlockingTrafficShapingController)rater).tryAcquire(selectedNode, acquireCount,
+                    prioritized);
+                if (waitMs < 0) {
+                    return false;
+                }
+                entry.deferPermit(waitMs);
+                return true;
+            }
+        }
+        return rater.canPass(selectedNode, acquireCount, prioritized);
+    }
+
+    private static AsyncEntry nonBlockingEntryOf(Context context) {
+        if (context == null) {
+            return null;
+        }
+        Entry entry = context.getCurEntry();
+        if (entry instanceof AsyncEntry && ((AsyncEntry)entry).isNonBlocking()) {
+            return (AsyncEntry)entry;
+        }
+        return null;
     }
 
     /**
@@ -207,7 +248,7 @@ final class FlowRuleChecker {
         return null;
     }
 
-    private static boolean filterOrigin(String origin) {
+    static boolean filterOrigin(String origin) {
         // Origin cannot be `default` or `other`.
         return !RuleConstant.LIMIT_APP_DEFAULT.equals(origin) && !RuleConstant.LIMIT_APP_OTHER.equals(origin);
     }
@@ -239,6 +280,11 @@ final class FlowRuleChecker {
             case TokenResultStatus.OK:
                 return true;
             case TokenResultStatus.SHOULD_WAIT:
+                AsyncEntry entry = nonBlockingEntryOf(context);
+                if (entry != null) {
+                    entry.deferPermit(result.getWaitInMs());
+                    return true;
+                }
                 // Wait for next tick.
                 try {
                     Thread.sleep(result.getWaitInMs());
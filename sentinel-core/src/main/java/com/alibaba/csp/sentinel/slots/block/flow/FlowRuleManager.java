@@ -16,6 +16,7 @@
 package com.alibaba.csp.sentinel.slots.block.flow;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -52,6 +53,12 @@ public class FlowRuleManager {
      */
     private static final Map<String, List<FlowRule>> flowRules = new ConcurrentHashMap<String, List<FlowRule>>();
 
+    /**
+     * 预编译的流控规则执行计划，key是资源名称，每次加载规则后整体替换
+     * Compiled evaluation plans of resources, which will be replaced as a whole when rules are loaded.
+     */
+    private static volatile Map<String, FlowRulePlan> flowRulePlans = Collections.emptyMap();
+
     /**
      * 流控规则配置监听器，当流控规则发生变更后进行缓存map的及时更新
      */
@@ -114,6 +121,14 @@ public class FlowRuleManager {
         return flowRules;
     }
 
+    /**
+     * @return compiled evaluation plans of all resources, which should not be modified
+     * @since 1.5.0
+     */
+    static Map<String, FlowRulePlan> getFlowRulePlans() {
+        return flowRulePlans;
+    }
+
     public static boolean hasConfig(String resource) {
         return flowRules.containsKey(resource);
     }
@@ -150,6 +165,7 @@ public class FlowRuleManager {
             if (rules != null) {
                 flowRules.clear();
                 flowRules.putAll(rules);
+                flowRulePlans = FlowRulePlan.compile(rules);
             }
             RecordLog.info("[FlowRuleManager] Flow rules received: " + flowRules);
         }
@@ -160,6 +176,7 @@ public class FlowRuleManager {
             if (rules != null) {
                 flowRules.clear();
                 flowRules.putAll(rules);
+                flowRulePlans = FlowRulePlan.compile(rules);
             }
             RecordLog.info("[FlowRuleManager] Flow rules loaded: " + flowRules);
         }
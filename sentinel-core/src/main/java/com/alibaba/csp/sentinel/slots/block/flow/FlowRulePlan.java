@@ -0,0 +1,307 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.alibaba.csp.sentinel.context.Context;
+import com.alibaba.csp.sentinel.node.ClusterNode;
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.node.Node;
+import com.alibaba.csp.sentinel.node.OriginRegistry;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
+import com.alibaba.csp.sentinel.util.StringUtil;
+
+/**
+ * <p>Immutable evaluation plan of the flow rules of a resource, compiled when rules are loaded.</p>
+ *
+ * <p>The rules are grouped by the origin they apply to in advance (same as
+ * {@link FlowRuleChecker#selectNodeByRequesterAndStrategy(FlowRule, Context, DefaultNode)}), and the way
+ * to select the statistic node of each rule is resolved ahead, so that checking an entry only needs
+ * a lookup of the origin rather than comparing the limit app of every rule with the origin.
+ * The rules are still evaluated in the sorted order of {@link FlowRuleComparator}.</p>
+ *
+ * 预编译的资源流控规则执行计划：按调用来源预先分组，并预先解析每条规则统计节点的选择方式
+ *
+ * @since 1.5.0
+ */
+final class FlowRulePlan {
+
+    private static final Step[] NO_STEPS = new Step[0];
+
+    /**
+     * Steps of origins that have specific rules (only if different from {@link #otherOriginSteps}).
+     */
+    private final Map<String, Step[]> originSteps;
+    /**
+     * Steps of the origins that don't have specific rules.
+     */
+    private final Step[] otherOriginSteps;
+    /**
+     * Steps of the requests without origin.
+     */
+    private final Step[] noOriginSteps;
+
+    private FlowRulePlan(Map<String, Step[]> originSteps, Step[] otherOriginSteps, Step[] noOriginSteps) {
+        this.originSteps = originSteps.isEmpty() ? null : originSteps;
+        this.otherOriginSteps = otherOriginSteps;
+        this.noOriginSteps = noOriginSteps;
+    }
+
+    /**
+     * Get the steps to check for the given origin, in order.
+     *
+     * @param origin origin of the request
+     * @return steps to check, never null
+     */
+    Step[] stepsFor(String origin) {
+        if (StringUtil.isEmpty(origin)) {
+            return noOriginSteps;
+        }
+        if (originSteps != null) {
+            Step[] steps = originSteps.get(origin);
+            if (steps != null) {
+                return steps;
+            }
+        }
+        return otherOriginSteps;
+    }
+
+    /**
+     * Compile the plans of all resources.
+     *
+     * @param ruleMap sorted flow rules grouped by resource
+     * @return plans of resources, which should not be modified
+     */
+    static Map<String, FlowRulePlan> compile(Map<String, List<FlowRule>> ruleMap) {
+        pinLimitApps(ruleMap);
+        if (ruleMap == null || ruleMap.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, FlowRulePlan> plans = new HashMap<String, FlowRulePlan>(ruleMap.size() * 2);
+        for (Map.Entry<String, List<FlowRule>> e : ruleMap.entrySet()) {
+            if (e.getValue() != null && !e.getValue().isEmpty()) {
+                plans.put(e.getKey(), compile(e.getValue()));
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * Compile the plan of a resource.
+     *
+     * @param rules sorted flow rules of the resource
+     * @return the plan
+     */
+    static FlowRulePlan compile(List<FlowRule> rules) {
+        Step[] steps = new Step[rules.size()];
+        Set<String> origins = new LinkedHashSet<String>();
+        for (int i = 0; i < steps.length; i++) {
+            FlowRule rule = rules.get(i);
+            steps[i] = new Step(rule);
+            if (rule.getLimitApp() != null) {
+                origins.add(rule.getLimitApp());
+            }
+        }
+        // The origin named `default` or `other` may also behave differently.
+        origins.add(RuleConstant.LIMIT_APP_DEFAULT);
+        origins.add(RuleConstant.LIMIT_APP_OTHER);
+
+        // Any origin that is not the limit app of rules.
+        Step[] otherOriginSteps = select(steps, null, true);
+        Map<String, Step[]> originSteps = new HashMap<String, Step[]>();
+        for (String origin : origins) {
+            Step[] selected = select(steps, origin, !hasLimitApp(rules, origin));
+            if (!Arrays.equals(selected, otherOriginSteps)) {
+                originSteps.put(canonicalOrigin(origin), selected);
+            }
+        }
+        return new FlowRulePlan(originSteps, otherOriginSteps, select(steps, "", false));
+    }
+
+    /**
+     * Pin the specific limit apps of rules, so that they always have statistic nodes of their own
+     * rather than sharing the node of overflow origins (see {@link OriginRegistry}).
+     */
+    private static void pinLimitApps(Map<String, List<FlowRule>> ruleMap) {
+        Set<String> limitApps = new HashSet<String>();
+        if (ruleMap != null) {
+            for (List<FlowRule> rules : ruleMap.values()) {
+                if (rules == null) {
+                    continue;
+                }
+                for (FlowRule rule : rules) {
+                    String limitApp = rule.getLimitApp();
+                    if (StringUtil.isNotEmpty(limitApp) && !RuleConstant.LIMIT_APP_DEFAULT.equals(limitApp)
+                        && !RuleConstant.LIMIT_APP_OTHER.equals(limitApp)) {
+                        limitApps.add(limitApp);
+                    }
+                }
+            }
+        }
+        OriginRegistry.pinOrigins(limitApps);
+    }
+
+    /**
+     * Use the same instance as origins of contexts if interned, so that the lookup matches by reference.
+     * The origin won't be interned here, otherwise `default` and `other` would take slots of the registry.
+     */
+    private static String canonicalOrigin(String origin) {
+        OriginRegistry.Origin interned = OriginRegistry.lookup(origin);
+        return interned == null ? origin : interned.getName();
+    }
+
+    private static boolean hasLimitApp(List<FlowRule> rules, String origin) {
+        for (FlowRule rule : rules) {
+            if (origin.equals(rule.getLimitApp())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Select the steps that apply to the origin, the same as
+     * {@link FlowRuleChecker#selectNodeByRequesterAndStrategy(FlowRule, Context, DefaultNode)}.
+     * Rules of cluster mode apply to all origins.
+     *
+     * @param steps       all steps
+     * @param origin      the origin, null for any origin that is not the limit app of rules
+     * @param otherOrigin whether the origin is regarded as `other` (see {@link FlowRuleManager#isOtherOrigin})
+     * @return selected steps in order
+     */
+    private static Step[] select(Step[] steps, String origin, boolean otherOrigin) {
+        List<Step> selected = new ArrayList<Step>(steps.length);
+        for (Step step : steps) {
+            String limitApp = step.rule.getLimitApp();
+            if (limitApp == null) {
+                continue;
+            }
+            if (step.rule.isClusterMode()) {
+                // Cluster rules request tokens whatever the limit app is (see FlowRuleChecker#passCheck).
+                selected.add(step);
+                continue;
+            }
+            if (step.kind == Step.SKIP) {
+                continue;
+            }
+            if ((limitApp.equals(origin) && FlowRuleChecker.filterOrigin(origin))
+                || RuleConstant.LIMIT_APP_DEFAULT.equals(limitApp)
+                || (RuleConstant.LIMIT_APP_OTHER.equals(limitApp) && otherOrigin)) {
+                selected.add(step);
+            }
+        }
+        return selected.isEmpty() ? NO_STEPS : selected.toArray(new Step[0]);
+    }
+
+    /**
+     * Pre-resolved check of a flow rule.
+     */
+    static final class Step {
+
+        /**
+         * No statistic node can be selected, so the rule never takes effect locally.
+         */
+        static final int SKIP = 0;
+        static final int CLUSTER_NODE = 1;
+        static final int ORIGIN_NODE = 2;
+        static final int REF_CLUSTER_NODE = 3;
+        static final int CHAIN_NODE = 4;
+
+        private final FlowRule rule;
+        private final TrafficShapingController rater;
+        private final int kind;
+        private final String refResource;
+        /**
+         * Cluster node of the related resource, resolved when it's created.
+         */
+        private volatile ClusterNode refNode;
+
+        Step(FlowRule rule) {
+            this.rule = rule;
+            this.rater = rule.getRater();
+            this.refResource = rule.getRefResource();
+            this.kind = resolveKind(rule);
+        }
+
+        private static int resolveKind(FlowRule rule) {
+            int strategy = rule.getStrategy();
+            if (strategy == RuleConstant.STRATEGY_DIRECT) {
+                return RuleConstant.LIMIT_APP_DEFAULT.equals(rule.getLimitApp()) ? CLUSTER_NODE : ORIGIN_NODE;
+            }
+            if (StringUtil.isEmpty(rule.getRefResource())) {
+                return SKIP;
+            }
+            if (strategy == RuleConstant.STRATEGY_RELATE) {
+                return REF_CLUSTER_NODE;
+            }
+            if (strategy == RuleConstant.STRATEGY_CHAIN) {
+                return CHAIN_NODE;
+            }
+            return SKIP;
+        }
+
+        FlowRule getRule() {
+            return rule;
+        }
+
+        int getKind() {
+            return kind;
+        }
+
+        boolean passCheck(Context context, DefaultNode node, int acquireCount, boolean prioritized) {
+            if (rule.isClusterMode()) {
+                // Network cost of the token request dominates, so no need to pre-resolve.
+                return FlowRuleChecker.passCheck(rule, context, node, acquireCount, prioritized);
+            }
+            Node selectedNode = selectNode(context, node);
+            if (selectedNode == null) {
+                return true;
+            }
+            return FlowRuleChecker.passNodeCheck(rater, context, selectedNode, acquireCount, prioritized);
+        }
+
+        Node selectNode(Context context, DefaultNode node) {
+            switch (kind) {
+                case CLUSTER_NODE:
+                    return node.getClusterNode();
+                case ORIGIN_NODE:
+                    return context.getOriginNode();
+                case REF_CLUSTER_NODE:
+                    ClusterNode clusterNode = refNode;
+                    if (clusterNode == null) {
+                        // Cluster nodes are never replaced once created.
+                        clusterNode = ClusterBuilderSlot.getClusterNode(refResource);
+                        refNode = clusterNode;
+                    }
+                    return clusterNode;
+                case CHAIN_NODE:
+                    return refResource.equals(context.getName()) ? node : null;
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -29,6 +29,7 @@ import com.alibaba.csp.sentinel.log.RecordLog;
 import com.alibaba.csp.sentinel.slots.block.ClusterRuleConstant;
 import com.alibaba.csp.sentinel.slots.block.RuleConstant;
 import com.alibaba.csp.sentinel.slots.block.flow.controller.DefaultController;
+import com.alibaba.csp.sentinel.slots.block.flow.controller.GcraController;
 import com.alibaba.csp.sentinel.slots.block.flow.controller.RateLimiterController;
 import com.alibaba.csp.sentinel.slots.block.flow.controller.WarmUpController;
 import com.alibaba.csp.sentinel.slots.block.flow.controller.WarmUpRateLimiterController;
@@ -147,6 +148,8 @@ public final class FlowRuleUtil {
                 case RuleConstant.CONTROL_BEHAVIOR_WARM_UP_RATE_LIMITER:
                     return new WarmUpRateLimiterController(rule.getCount(), rule.getWarmUpPeriodSec(),
                         rule.getMaxQueueingTimeMs(), ColdFactorProperty.coldFactor);
+                case RuleConstant.CONTROL_BEHAVIOR_GCRA:
+                    return new GcraController(rule.getCount(), rule.getBurstSize());
                 case RuleConstant.CONTROL_BEHAVIOR_DEFAULT:
                 default:
                     // Default mode or unknown mode: default traffic shaping controller (fast-reject).
@@ -222,6 +225,8 @@ public final class FlowRuleUtil {
                 return rule.getMaxQueueingTimeMs() > 0;
             case RuleConstant.CONTROL_BEHAVIOR_WARM_UP_RATE_LIMITER:
                 return rule.getWarmUpPeriodSec() > 0 && rule.getMaxQueueingTimeMs() > 0;
+            case RuleConstant.CONTROL_BEHAVIOR_GCRA:
+                return rule.getGrade() == RuleConstant.FLOW_GRADE_QPS && rule.getBurstSize() > 0;
             default:
                 return true;
         }
@@ -15,7 +15,6 @@
  */
 package com.alibaba.csp.sentinel.slots.block.flow;
 
-import java.util.List;
 import java.util.Map;
 
 import com.alibaba.csp.sentinel.context.Context;
@@ -143,28 +142,56 @@ public class FlowSlot extends AbstractLinkedProcessorSlot<DefaultNode> {
         fireEntry(context, resourceWrapper, node, count, prioritized, args);
     }
 
+    /**
+     * Compiled plan of the resource cached in this slot chain, so that no rule map lookup is needed
+     * until rules are reloaded.
+     */
+    private volatile CachedPlan cachedPlan;
+
     void checkFlow(ResourceWrapper resource, Context context, DefaultNode node, int count, boolean prioritized) throws BlockException {
-        // Flow rule map cannot be null.
-        // 获取所有的流控规则
-        Map<String, List<FlowRule>> flowRules = FlowRuleManager.getFlowRuleMap();
-        // 获取被访问资源对应的流控规则
-        List<FlowRule> rules = flowRules.get(resource.getName());
-        if (rules != null) {
-            // 校验被访问资源对应的所有流控规则
-            for (FlowRule rule : rules) {
-                if (!canPassCheck(rule, context, node, count, prioritized)) {
+        // 获取被访问资源对应的预编译流控规则执行计划
+        FlowRulePlan plan = getPlan(resource.getName());
+        if (plan != null) {
+            // 按调用来源获取需要校验的规则，依次校验
+            for (FlowRulePlan.Step step : plan.stepsFor(context.getOrigin())) {
+                if (!canPassCheck(step, context, node, count, prioritized)) {
+                    FlowRule rule = step.getRule();
                     throw new FlowException(rule.getLimitApp(), rule);
                 }
             }
         }
     }
 
-    boolean canPassCheck(FlowRule rule, Context context, DefaultNode node, int count, boolean prioritized) {
-        return FlowRuleChecker.passCheck(rule, context, node, count, prioritized);
+    private FlowRulePlan getPlan(String resourceName) {
+        // Flow rule plan map cannot be null.
+        Map<String, FlowRulePlan> plans = FlowRuleManager.getFlowRulePlans();
+        CachedPlan cached = cachedPlan;
+        if (cached != null && cached.plans == plans && cached.resourceName.equals(resourceName)) {
+            return cached.plan;
+        }
+        FlowRulePlan plan = plans.get(resourceName);
+        cachedPlan = new CachedPlan(plans, resourceName, plan);
+        return plan;
+    }
+
+    boolean canPassCheck(FlowRulePlan.Step step, Context context, DefaultNode node, int count, boolean prioritized) {
+        return step.passCheck(context, node, count, prioritized);
     }
 
     @Override
     public void exit(Context context, ResourceWrapper resourceWrapper, int count, Object... args) {
         fireExit(context, resourceWrapper, count, args);
     }
+
+    private static final class CachedPlan {
+        private final Map<String, FlowRulePlan> plans;
+        private final String resourceName;
+        private final FlowRulePlan plan;
+
+        CachedPlan(Map<String, FlowRulePlan> plans, String resourceName, FlowRulePlan plan) {
+            this.plans = plans;
+            this.resourceName = resourceName;
+            this.plan = plan;
+        }
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.flow;
+
+import com.alibaba.csp.sentinel.node.Node;
+
+/**
+ * <p>
+ * A {@link TrafficShapingController} that may make requests queue (e.g. rate limiter), which can acquire
+ * permits without blocking the caller thread: the time to wait is returned instead of sleeping in
+ * {@link #canPass(Node, int, boolean)}.
+ * </p>
+ * <p>
+ * It's used for non-blocking asynchronous entries (see
+ * {@link com.alibaba.csp.sentinel.SphU#asyncEntryNonBlocking(String, com.alibaba.csp.sentinel.EntryType)}),
+ * so that callers running on event loops can delay the request asynchronously.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public interface NonBlockingTrafficShapingController extends TrafficShapingController {
+
+    /**
+     * Indicates that the request is not permitted.
+     */
+    long NOT_PERMITTED = -1;
+
+    /**
+     * Try to acquire permits for the request without blocking. Once the permits are acquired
+     * (non-negative result), the request must not pass before the returned time elapses.
+     *
+     * @param node         resource node
+     * @param acquireCount count to acquire
+     * @param prioritized  whether the request is prioritized
+     * @return time to wait (in milliseconds) before the request can pass, 0 if the request can pass at once,
+     * or {@link #NOT_PERMITTED} if the request should be blocked
+     */
+    long tryAcquire(Node node, int acquireCount, boolean prioritized);
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.flow.controller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.csp.sentinel.node.Node;
+import com.alibaba.csp.sentinel.slots.block.flow.TrafficShapingController;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
+/**
+ * <p>Traffic shaping controller based on the generic cell rate algorithm (virtual scheduling).</p>
+ *
+ * <p>The controller keeps only the theoretical arrival time (TAT) of the next request. Each request
+ * moves the TAT forward by the emission interval ({@code 1s / count}), and the request is permitted
+ * only if the new TAT is not ahead of now by more than {@code burstSize} intervals. Thus at most
+ * {@code burstSize} requests can pass at the same moment, and the long-term rate never exceeds
+ * {@code count} per second.</p>
+ *
+ * <p>Unlike {@link RateLimiterController}, the time is measured in nanoseconds (with 8 fraction bits
+ * for the interval), so the rate stays exact above 1000 QPS. The state is updated with a single CAS,
+ * so a request is either counted exactly once or rejected without any side effect. Requests are
+ * rejected directly and never queued.</p>
+ *
+ * 通用信元速率算法（GCRA），纳秒精度，支持突发量 burstSize，超出的请求直接拒绝，不排队等待
+ *
+ * @since 1.5.0
+ */
+public class GcraController implements TrafficShapingController {
+
+    /**
+     * Fraction bits of the fixed-point time, so that the interval of high rates is not truncated.
+     */
+    private static final int FRACTION_BITS = 8;
+    private static final double NANOS_PER_SECOND = 1000d * 1000 * 1000;
+
+    private final double count;
+    private final int burstSize;
+    /**
+     * Interval between two requests in fixed-point nanoseconds.
+     */
+    private final long emissionInterval;
+    /**
+     * Max distance that the TAT can be ahead of now, in fixed-point nanoseconds.
+     */
+    private final long tolerance;
+
+    /**
+     * Theoretical arrival time of the next request in fixed-point nanoseconds.
+     */
+    private final AtomicLong tat;
+
+    public GcraController(double count, int burstSize) {
+        this.count = count;
+        this.burstSize = burstSize;
+        this.emissionInterval = count > 0
+            ? Math.max(1, Math.round(NANOS_PER_SECOND * (1 << FRACTION_BITS) / count)) : Long.MAX_VALUE;
+        this.tolerance = count > 0 && burstSize > 0 ? emissionInterval * burstSize : 0;
+        this.tat = new AtomicLong(now());
+    }
+
+    @Override
+    public boolean canPass(Node node, int acquireCount) {
+        return canPass(node, acquireCount, false);
+    }
+
+    @Override
+    public boolean canPass(Node node, int acquireCount, boolean prioritized) {
+        if (acquireCount <= 0) {
+            return true;
+        }
+        // Requests that can never pass (including the burst larger than the bucket).
+        if (count <= 0 || acquireCount > burstSize) {
+            return false;
+        }
+        long increment = emissionInterval * acquireCount;
+        while (true) {
+            long now = now();
+            long expected = tat.get();
+            // All comparisons are made on differences, so that overflow of the time is harmless.
+            long newTat = (expected - now > 0 ? expected : now) + increment;
+            if (newTat - now > tolerance) {
+                return false;
+            }
+            if (tat.compareAndSet(expected, newTat)) {
+                return true;
+            }
+        }
+    }
+
+    private static long now() {
+        return TimeUtil.nanoTime() << FRACTION_BITS;
+    }
+
+    public double getCount() {
+        return count;
+    }
+
+    public int getBurstSize() {
+        return burstSize;
+    }
+}
@@ -17,7 +17,7 @@ package com.alibaba.csp.sentinel.slots.block.flow.controller;
 
 import java.util.concurrent.atomic.AtomicLong;
 
-import com.alibaba.csp.sentinel.slots.block.flow.TrafficShapingController;
+import com.alibaba.csp.sentinel.slots.block.flow.NonBlockingTrafficShapingController;
 
 import com.alibaba.csp.sentinel.util.TimeUtil;
 import com.alibaba.csp.sentinel.node.Node;
@@ -26,7 +26,7 @@ import com.alibaba.csp.sentinel.node.Node;
  * @author jialiang.linjl
  * 漏桶算法，达到匀速通过请求，流控效果为排队等待
  */
-public class RateLimiterController implements TrafficShapingController {
+public class RateLimiterController implements NonBlockingTrafficShapingController {
 
     /**
      * 每一个请求的最长等待时间ms
@@ -73,14 +73,34 @@ public class RateLimiterController implements TrafficShapingController {
      */
     @Override
     public boolean canPass(Node node, int acquireCount, boolean prioritized) {
+        long waitTime = tryAcquire(node, acquireCount, prioritized);
+        if (waitTime < 0) {
+            return false;
+        }
+        // 等待一段时间后，通过请求
+        if (waitTime > 0) {
+            try {
+                Thread.sleep(waitTime);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取令牌但不阻塞当前线程，返回需要等待的时间，由调用方（如异步调用）自行延迟请求
+     */
+    @Override
+    public long tryAcquire(Node node, int acquireCount, boolean prioritized) {
         // Pass when acquire count is less or equal than 0.
         if (acquireCount <= 0) {
-            return true;
+            return 0;
         }
         // Reject when count is less or equal than 0.
         // Otherwise,the costTime will be max of long and waitTime will overflow in some cases.
         if (count <= 0) {
-            return false;
+            return NOT_PERMITTED;
         }
 
         long currentTime = TimeUtil.currentTimeMillis();
@@ -98,14 +118,14 @@ public class RateLimiterController implements TrafficShapingController {
             // Contention may exist here, but it's okay.
             // todo 这里可以看出当大量并发请求过来时，会存在暂短的洪峰
             latestPassedTime.set(currentTime);
-            return true;
+            return 0;
         // 期望时间 > 当前时间，令牌不够，需要等待
         } else {
             // Calculate the time to wait.
             long waitTime = costTime + latestPassedTime.get() - TimeUtil.currentTimeMillis();
             // 需要等待时间 > 设置的最大等待时长，直接丢弃，不用等待了
             if (waitTime > maxQueueingTimeMs) {
-                return false;
+                return NOT_PERMITTED;
             } else {
                 // 需要等待时间 <= 设置的最大等待时长，可以等待
                 // 首先更新最近获取token的时间，当下一个请求到达时，会基于最新的token被获取的时间来计算自己所需等待的时间
@@ -113,25 +133,17 @@ public class RateLimiterController implements TrafficShapingController {
                 // 请求1CAS调用addAndGet()成功，更新latestPassedTime为10:01:06
                 // 请求2CAS首次失败，再次调用addAndGet()成功，更新latestPassedTime为10:01:07
                 long oldTime = latestPassedTime.addAndGet(costTime);
-                try {
-                    // 重新计算所需等待时间，上一步即使并发调用addAndGet()最终也会让请求排队来获取自己所需的等待时间
-                    waitTime = oldTime - TimeUtil.currentTimeMillis();
-                    // 超过了阈值，那么由于上面更新了latestPassedTime，所以这里要减掉
-                    if (waitTime > maxQueueingTimeMs) {
-                        latestPassedTime.addAndGet(-costTime);
-                        return false;
-                    }
-                    // in race condition waitTime may <= 0
-                    // 等待一段时间后，通过请求
-                    if (waitTime > 0) {
-                        Thread.sleep(waitTime);
-                    }
-                    return true;
-                } catch (InterruptedException e) {
+                // 重新计算所需等待时间，上一步即使并发调用addAndGet()最终也会让请求排队来获取自己所需的等待时间
+                waitTime = oldTime - TimeUtil.currentTimeMillis();
+                // 超过了阈值，那么由于上面更新了latestPassedTime，所以这里要减掉
+                if (waitTime > maxQueueingTimeMs) {
+                    latestPassedTime.addAndGet(-costTime);
+                    return NOT_PERMITTED;
                 }
+                // in race condition waitTime may <= 0
+                return Math.max(waitTime, 0);
             }
         }
-        return false;
     }
 
 }
@@ -15,6 +15,7 @@
  */
 package com.alibaba.csp.sentinel.slots.clusterbuilder;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,6 +32,7 @@ import com.alibaba.csp.sentinel.slotchain.AbstractLinkedProcessorSlot;
 import com.alibaba.csp.sentinel.slotchain.ProcessorSlotChain;
 import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
 import com.alibaba.csp.sentinel.slotchain.StringResourceWrapper;
+import com.alibaba.csp.sentinel.util.StringUtil;
 
 /**
  * <p>
@@ -70,6 +72,13 @@ public class ClusterBuilderSlot extends AbstractLinkedProcessorSlot<DefaultNode>
 
     private static final Object lock = new Object();
 
+    /**
+     * Intervals of the latency statistics (the latency histogram and the count of requests in flight)
+     * required by rules, keyed by resource name. They are enabled when the rules are loaded, or as soon as
+     * the cluster node is created, so that the checks of rules don't have to.
+     */
+    private static volatile Map<String, Integer> latencyStatIntervals = Collections.emptyMap();
+
     private volatile ClusterNode clusterNode = null;
 
     /**
@@ -90,6 +99,7 @@ public class ClusterBuilderSlot extends AbstractLinkedProcessorSlot<DefaultNode>
                 if (clusterNode == null) {
                     // Create the cluster node.
                     clusterNode = Env.nodeBuilder.buildClusterNode();
+                    enableLatencyStats(clusterNode, resourceWrapper.getName());
                     HashMap<ResourceWrapper, ClusterNode> newMap = new HashMap<>(Math.max(clusterNodeMap.size(), 16));
                     newMap.putAll(clusterNodeMap);
                     newMap.put(node.getId(), clusterNode);
@@ -109,9 +119,12 @@ public class ClusterBuilderSlot extends AbstractLinkedProcessorSlot<DefaultNode>
          * 这里其实就是针对访问同一资源的上下文，如果有上下文设置了origin，那么创建一个与之对应的StatisticNode
          * 记录到ClusterNode的map中
          */
-        if (!"".equals(context.getOrigin())) {
-            Node originNode = node.getClusterNode().getOrCreateOriginNode(context.getOrigin());
+        if (context.getInternedOrigin() != null) {
+            Node originNode = node.getClusterNode().getOrCreateOriginNode(context.getInternedOrigin());
             context.getCurEntry().setOriginNode(originNode);
+        } else if (StringUtil.isNotEmpty(context.getOrigin())) {
+            // The origin cannot be interned as there are too many origins.
+            context.getCurEntry().setOriginNode(node.getClusterNode().getOrCreateOverflowOriginNode());
         }
 
         fireEntry(context, resourceWrapper, node, count, prioritized, args);
@@ -166,6 +179,31 @@ public class ClusterBuilderSlot extends AbstractLinkedProcessorSlot<DefaultNode>
         return clusterNodeMap;
     }
 
+    /**
+     * Set the intervals of latency statistics required by rules (e.g. degrade rules based on percentile RT),
+     * and enable the latency statistics of the existing {@link ClusterNode}s. The latency statistics enabled
+     * before are kept.
+     *
+     * @param intervals intervals in milliseconds keyed by resource name
+     * @since 1.5.0
+     */
+    public static void setLatencyStatIntervals(Map<String, Integer> intervals) {
+        synchronized (lock) {
+            latencyStatIntervals = new HashMap<>(intervals);
+            for (Map.Entry<ResourceWrapper, ClusterNode> entry : clusterNodeMap.entrySet()) {
+                enableLatencyStats(entry.getValue(), entry.getKey().getName());
+            }
+        }
+    }
+
+    private static void enableLatencyStats(ClusterNode clusterNode, String resourceName) {
+        Integer intervalMs = latencyStatIntervals.get(resourceName);
+        if (intervalMs != null) {
+            clusterNode.enableRtHistogram(intervalMs);
+            clusterNode.enableInFlightCount(intervalMs);
+        }
+    }
+
     /**
      * Reset all {@link ClusterNode}s. Reset is needed when {@link IntervalProperty#INTERVAL} or
      * {@link SampleCountProperty#SAMPLE_COUNT} is changed.
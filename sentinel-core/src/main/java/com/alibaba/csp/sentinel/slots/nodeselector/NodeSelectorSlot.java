@@ -24,6 +24,7 @@ import com.alibaba.csp.sentinel.context.ContextUtil;
 import com.alibaba.csp.sentinel.node.ClusterNode;
 import com.alibaba.csp.sentinel.node.DefaultNode;
 import com.alibaba.csp.sentinel.node.EntranceNode;
+import com.alibaba.csp.sentinel.node.NodeTreeManager;
 import com.alibaba.csp.sentinel.slotchain.AbstractLinkedProcessorSlot;
 import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
 
@@ -123,7 +124,8 @@ import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
  * @see EntranceNode
  * @see ContextUtil
  */
-public class NodeSelectorSlot extends AbstractLinkedProcessorSlot<Object> {
+public class NodeSelectorSlot extends AbstractLinkedProcessorSlot<Object>
+    implements NodeTreeManager.EvictionHandler {
 
     /**
      * {@link DefaultNode}s of the same resource in different context.
@@ -132,6 +134,18 @@ public class NodeSelectorSlot extends AbstractLinkedProcessorSlot<Object> {
      */
     private volatile Map<String, DefaultNode> map = new HashMap<String, DefaultNode>(10);
 
+    /**
+     * Shared node of the resource for contexts whose node cannot be added to the invocation tree
+     * as the memory budget is exceeded (see {@link NodeTreeManager}). The node is not a part of the tree.
+     */
+    private volatile DefaultNode overflowNode;
+
+    /**
+     * Node of the last entered context, so that entries of the resource in the same context repeatedly
+     * (e.g. the default context) don't need to look up {@link #map} by the context name.
+     */
+    private volatile LastNode lastNode;
+
     /**
      * 基于该方法不同name的Context都会为当前资源创建一个单独的DefaultNode
      * @param context         current {@link Context}
@@ -164,27 +178,84 @@ public class NodeSelectorSlot extends AbstractLinkedProcessorSlot<Object> {
          */
         // 获取当前线程对应该resource name的DefaultNode，不存在则创建
         // 然后将DefaultNode添加到当前线程的调用树中
+        LastNode last = lastNode;
+        // Same entrance node indicates the same context name, so no string comparison is needed.
+        if (last != null && last.entranceNode == context.getEntranceNode() && !last.node.isEvicted()) {
+            context.setCurNode(last.node);
+            fireEntry(context, resourceWrapper, last.node, count, prioritized, args);
+            return;
+        }
         DefaultNode node = map.get(context.getName());
         if (node == null) {
             synchronized (this) {
                 node = map.get(context.getName());
+                DefaultNode parent = (DefaultNode)context.getLastNode();
                 if (node == null) {
-                    // 构造一个DefaultNode
-                    node = Env.nodeBuilder.buildTreeNode(resourceWrapper, null);
-                    HashMap<String, DefaultNode> cacheMap = new HashMap<String, DefaultNode>(map.size());
-                    cacheMap.putAll(map);
-                    cacheMap.put(context.getName(), node);
-                    map = cacheMap;
+                    if (ContextUtil.isOverflowContext(context)) {
+                        // The entrance of the context is out of the tree, so are the nodes in the context.
+                        node = getOrCreateOverflowNode(resourceWrapper);
+                    } else {
+                        // 构造一个DefaultNode
+                        node = Env.nodeBuilder.buildTreeNode(resourceWrapper, null);
+                        if (NodeTreeManager.tryAdd(node, parent, context.getName(), this)) {
+                            HashMap<String, DefaultNode> cacheMap = new HashMap<String, DefaultNode>(map.size());
+                            cacheMap.putAll(map);
+                            cacheMap.put(context.getName(), node);
+                            map = cacheMap;
+                        } else {
+                            // 超出内存预算，使用不在调用树中的共享节点
+                            node = getOrCreateOverflowNode(resourceWrapper);
+                        }
+                    }
+                }
+                if (node != overflowNode) {
+                    // Build invocation tree 初始化调用树
+                    NodeTreeManager.addChild(parent, node);
                 }
-                // Build invocation tree 初始化调用树
-                ((DefaultNode)context.getLastNode()).addChild(node);
             }
         }
 
+        if (node != overflowNode && !ContextUtil.isOverflowContext(context)) {
+            lastNode = new LastNode(context.getEntranceNode(), node);
+        }
+
         context.setCurNode(node);
         fireEntry(context, resourceWrapper, node, count, prioritized, args);
     }
 
+    private DefaultNode getOrCreateOverflowNode(ResourceWrapper resourceWrapper) {
+        if (overflowNode == null) {
+            overflowNode = Env.nodeBuilder.buildTreeNode(resourceWrapper, null);
+        }
+        return overflowNode;
+    }
+
+    @Override
+    public void onEvicted(String contextName, DefaultNode node) {
+        synchronized (this) {
+            if (map.get(contextName) != node) {
+                return;
+            }
+            HashMap<String, DefaultNode> cacheMap = new HashMap<String, DefaultNode>(map);
+            cacheMap.remove(contextName);
+            map = cacheMap;
+            LastNode last = lastNode;
+            if (last != null && last.node == node) {
+                lastNode = null;
+            }
+        }
+    }
+
+    private static final class LastNode {
+        private final DefaultNode entranceNode;
+        private final DefaultNode node;
+
+        LastNode(DefaultNode entranceNode, DefaultNode node) {
+            this.entranceNode = entranceNode;
+            this.node = node;
+        }
+    }
+
     @Override
     public void exit(Context context, ResourceWrapper resourceWrapper, int count, Object... args) {
         fireExit(context, resourceWrapper, count, args);
@@ -15,13 +15,14 @@
  */
 package com.alibaba.csp.sentinel.slots.statistic;
 
-import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 import com.alibaba.csp.sentinel.slotchain.ProcessorSlotEntryCallback;
 import com.alibaba.csp.sentinel.slotchain.ProcessorSlotExitCallback;
 import com.alibaba.csp.sentinel.slots.block.flow.PriorityWaitException;
 import com.alibaba.csp.sentinel.util.TimeUtil;
 import com.alibaba.csp.sentinel.Constants;
+import com.alibaba.csp.sentinel.Entry;
 import com.alibaba.csp.sentinel.EntryType;
 import com.alibaba.csp.sentinel.context.Context;
 import com.alibaba.csp.sentinel.node.ClusterNode;
@@ -48,6 +49,8 @@ import com.alibaba.csp.sentinel.slots.block.BlockException;
  */
 public class StatisticSlot extends AbstractLinkedProcessorSlot<DefaultNode> {
 
+    private static final Object[] OBJECTS0 = new Object[0];
+
     /**
      *
      * @param context         current {@link Context}
@@ -72,6 +75,9 @@ public class StatisticSlot extends AbstractLinkedProcessorSlot<DefaultNode> {
             // 2.1 当前资源针对当前线程创建的node中的线程数+1、通过请求数+1
             node.increaseThreadNum();
             node.addPassRequest(count);
+            if (node.getClusterNode() != null) {
+                node.getClusterNode().increaseInFlight(context.getCurEntry().getCreateTime());
+            }
 
             // 2.2 如果用户手动设置了origin,如: ContextUtil.enter("db", "userCenter")则会在ClusterBuilderSlot中添加一个OriginNode
             // 统计来源线程数+1、通过请求数+1
@@ -89,12 +95,15 @@ public class StatisticSlot extends AbstractLinkedProcessorSlot<DefaultNode> {
             }
 
             // Handle pass event with registered entry callback handlers.
-            for (ProcessorSlotEntryCallback<DefaultNode> handler : StatisticSlotCallbackRegistry.getEntryCallbacks()) {
+            for (ProcessorSlotEntryCallback<DefaultNode> handler : StatisticSlotCallbackRegistry.entryCallbackArray()) {
                 handler.onPass(context, resourceWrapper, node, count, args);
             }
         // 4. 遇到限流策略
         } catch (PriorityWaitException ex) {
             node.increaseThreadNum();
+            if (node.getClusterNode() != null) {
+                node.getClusterNode().increaseInFlight(context.getCurEntry().getCreateTime());
+            }
             if (context.getCurEntry().getOriginNode() != null) {
                 // Add count for origin node.
                 context.getCurEntry().getOriginNode().increaseThreadNum();
@@ -105,7 +114,7 @@ public class StatisticSlot extends AbstractLinkedProcessorSlot<DefaultNode> {
                 Constants.ENTRY_NODE.increaseThreadNum();
             }
             // Handle pass event with registered entry callback handlers.
-            for (ProcessorSlotEntryCallback<DefaultNode> handler : StatisticSlotCallbackRegistry.getEntryCallbacks()) {
+            for (ProcessorSlotEntryCallback<DefaultNode> handler : StatisticSlotCallbackRegistry.entryCallbackArray()) {
                 handler.onPass(context, resourceWrapper, node, count, args);
             }
         } catch (BlockException e) {
@@ -124,7 +133,7 @@ public class StatisticSlot extends AbstractLinkedProcessorSlot<DefaultNode> {
             }
 
             // Handle block event with registered entry callback handlers.
-            for (ProcessorSlotEntryCallback<DefaultNode> handler : StatisticSlotCallbackRegistry.getEntryCallbacks()) {
+            for (ProcessorSlotEntryCallback<DefaultNode> handler : StatisticSlotCallbackRegistry.entryCallbackArray()) {
                 handler.onBlocked(e, context, resourceWrapper, node, count, args);
             }
 
@@ -147,13 +156,27 @@ public class StatisticSlot extends AbstractLinkedProcessorSlot<DefaultNode> {
         }
     }
 
+    /**
+     * Calculate response time of the entry in microseconds. If the monotonic create time is recorded,
+     * it's measured by the nanosecond time source, so it won't be affected by wall-clock adjustment.
+     * Otherwise it's measured in milliseconds.
+     */
+    public static long calculateRtMicros(Entry entry) {
+        long createNanoTime = entry.getCreateNanoTime();
+        if (createNanoTime != 0) {
+            return TimeUnit.NANOSECONDS.toMicros(TimeUtil.nanoTime() - createNanoTime);
+        }
+        return TimeUnit.MILLISECONDS.toMicros(TimeUtil.currentTimeMillis() - entry.getCreateTime());
+    }
+
     @Override
     public void exit(Context context, ResourceWrapper resourceWrapper, int count, Object... args) {
         DefaultNode node = (DefaultNode)context.getCurNode();
 
         if (context.getCurEntry().getError() == null) {
             // Calculate response time (max RT is TIME_DROP_VALVE).
-            long rt = TimeUtil.currentTimeMillis() - context.getCurEntry().getCreateTime();
+            long rtMicros = calculateRtMicros(context.getCurEntry());
+            long rt = TimeUnit.MICROSECONDS.toMillis(rtMicros);
             if (rt > Constants.TIME_DROP_VALVE) {
                 rt = Constants.TIME_DROP_VALVE;
             }
@@ -161,6 +184,10 @@ public class StatisticSlot extends AbstractLinkedProcessorSlot<DefaultNode> {
             // Record response time and success count.
             // 统计rt时间
             node.addRtAndSuccess(rt, count);
+            if (node.getClusterNode() != null) {
+                node.getClusterNode().recordRt(rtMicros);
+                node.getClusterNode().decreaseInFlight(context.getCurEntry().getCreateTime());
+            }
             if (context.getCurEntry().getOriginNode() != null) {
                 context.getCurEntry().getOriginNode().addRtAndSuccess(rt, count);
             }
@@ -180,11 +207,10 @@ public class StatisticSlot extends AbstractLinkedProcessorSlot<DefaultNode> {
         }
 
         // Handle exit event with registered exit callback handlers.
-        Collection<ProcessorSlotExitCallback> exitCallbacks = StatisticSlotCallbackRegistry.getExitCallbacks();
-        for (ProcessorSlotExitCallback handler : exitCallbacks) {
+        for (ProcessorSlotExitCallback handler : StatisticSlotCallbackRegistry.exitCallbackArray()) {
             handler.onExit(context, resourceWrapper, count, args);
         }
 
-        fireExit(context, resourceWrapper, count);
+        fireExit(context, resourceWrapper, count, OBJECTS0);
     }
 }
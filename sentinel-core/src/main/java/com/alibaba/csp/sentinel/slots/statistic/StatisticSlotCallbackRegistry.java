@@ -43,34 +43,70 @@ public final class StatisticSlotCallbackRegistry {
     private static final Map<String, ProcessorSlotExitCallback> exitCallbackMap
         = new ConcurrentHashMap<String, ProcessorSlotExitCallback>();
 
-    public static void clearEntryCallback() {
+    /**
+     * Snapshots of the callbacks for iterating in {@link StatisticSlot} without allocating iterators.
+     */
+    private static volatile ProcessorSlotEntryCallback[] entryCallbacks = new ProcessorSlotEntryCallback[0];
+    private static volatile ProcessorSlotExitCallback[] exitCallbacks = new ProcessorSlotExitCallback[0];
+
+    public static synchronized void clearEntryCallback() {
         entryCallbackMap.clear();
+        refreshEntryCallbacks();
     }
 
-    public static void clearExitCallback() {
+    public static synchronized void clearExitCallback() {
         exitCallbackMap.clear();
+        refreshExitCallbacks();
     }
 
-    public static void addEntryCallback(String key, ProcessorSlotEntryCallback<DefaultNode> callback) {
+    public static synchronized void addEntryCallback(String key, ProcessorSlotEntryCallback<DefaultNode> callback) {
         entryCallbackMap.put(key, callback);
+        refreshEntryCallbacks();
     }
 
-    public static void addExitCallback(String key, ProcessorSlotExitCallback callback) {
+    public static synchronized void addExitCallback(String key, ProcessorSlotExitCallback callback) {
         exitCallbackMap.put(key, callback);
+        refreshExitCallbacks();
     }
 
-    public static ProcessorSlotEntryCallback<DefaultNode> removeEntryCallback(String key) {
+    public static synchronized ProcessorSlotEntryCallback<DefaultNode> removeEntryCallback(String key) {
         if (key == null) {
             return null;
         }
-        return entryCallbackMap.remove(key);
+        ProcessorSlotEntryCallback<DefaultNode> callback = entryCallbackMap.remove(key);
+        refreshEntryCallbacks();
+        return callback;
     }
 
-    public static ProcessorSlotExitCallback removeExitCallback(String key) {
+    public static synchronized ProcessorSlotExitCallback removeExitCallback(String key) {
         if (key == null) {
             return null;
         }
-        return exitCallbackMap.remove(key);
+        ProcessorSlotExitCallback callback = exitCallbackMap.remove(key);
+        refreshExitCallbacks();
+        return callback;
+    }
+
+    private static void refreshEntryCallbacks() {
+        entryCallbacks = entryCallbackMap.values().toArray(new ProcessorSlotEntryCallback[0]);
+    }
+
+    private static void refreshExitCallbacks() {
+        exitCallbacks = exitCallbackMap.values().toArray(new ProcessorSlotExitCallback[0]);
+    }
+
+    /**
+     * Get the snapshot array of entry callbacks. DO NOT MODIFY the returned array.
+     */
+    static ProcessorSlotEntryCallback[] entryCallbackArray() {
+        return entryCallbacks;
+    }
+
+    /**
+     * Get the snapshot array of exit callbacks. DO NOT MODIFY the returned array.
+     */
+    static ProcessorSlotExitCallback[] exitCallbackArray() {
+        return exitCallbacks;
     }
 
     public static Collection<ProcessorSlotEntryCallback<DefaultNode>> getEntryCallbacks() {
@@ -18,7 +18,6 @@ package com.alibaba.csp.sentinel.slots.statistic.base;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReferenceArray;
-import java.util.concurrent.locks.ReentrantLock;
 
 import com.alibaba.csp.sentinel.util.AssertUtil;
 import com.alibaba.csp.sentinel.util.TimeUtil;
@@ -58,9 +57,14 @@ public abstract class LeapArray<T> {
     protected final AtomicReferenceArray<WindowWrap<T>> array;
 
     /**
-     * The conditional (predicate) update lock is used only when current bucket is deprecated.
+     * <p>The standby bucket of each slot, which is reset in place and swapped in when the bucket in the slot
+     * is deprecated, and then the retired bucket becomes the standby. So each slot keeps two buckets
+     * and rotation allocates nothing in steady state.</p>
+     * <p>The standby works as a token: a retired bucket can get back to the slot only through the thread
+     * holding the standby, so the slot can't go through an ABA change while the token is held.</p>
+     * 每个槽的备用槽，时间窗口过期时重置备用槽并替换过期的槽，被替换的槽成为新的备用槽
      */
-    private final ReentrantLock updateLock = new ReentrantLock();
+    private final AtomicReferenceArray<WindowWrap<T>> standby;
 
     /**
      * The total bucket count is: {@code sampleCount = intervalInMs / windowLengthInMs}.
@@ -78,6 +82,7 @@ public abstract class LeapArray<T> {
         this.sampleCount = sampleCount;
 
         this.array = new AtomicReferenceArray<>(sampleCount);
+        this.standby = new AtomicReferenceArray<>(sampleCount);
     }
 
     /**
@@ -100,6 +105,11 @@ public abstract class LeapArray<T> {
 
     /**
      * Reset given bucket to provided start time and reset the value.
+     * <p>
+     * The given bucket is the standby of the slot, which is not visible to other threads until it replaces
+     * the deprecated bucket in the slot. Note that a thread which got the bucket a whole interval ago
+     * (before it was retired) and has stalled since then may still write to it.
+     * </p>
      *
      * @param startTime  the start time of the bucket in milliseconds
      * @param windowWrap current bucket
@@ -107,6 +117,20 @@ public abstract class LeapArray<T> {
      */
     protected abstract WindowWrap<T> resetWindowTo(WindowWrap<T> windowWrap, long startTime);
 
+    /**
+     * Called by the thread which has replaced a deprecated bucket. Subclasses may override this to roll up
+     * the values of the retired bucket. Note that threads which got the bucket before the replacement
+     * may still write to it.
+     *
+     * @param windowWrap the retired bucket
+     * @return true if the retired bucket can be reset and reused for a later window, or false
+     * if the subclass still holds it (a new bucket will be created for the next rotation of the slot instead)
+     * @since 1.5.0
+     */
+    protected boolean onWindowRetired(WindowWrap<T> windowWrap) {
+        return true;
+    }
+
     private int calculateTimeIdx(/*@Valid*/ long timeMillis) {
         long timeId = timeMillis / windowLengthInMs;
         // Calculate current index so we can map the timestamp to the leap array.
@@ -144,6 +168,7 @@ public abstract class LeapArray<T> {
         // 3. 获取参数timeMillis对应的槽
         while (true) {
             WindowWrap<T> old = array.get(idx);
+            long oldStart = old == null ? -1 : old.windowStart();
             // 3.1 没有槽，初始化一个并更新进去
             if (old == null) {
                 /*
@@ -156,18 +181,17 @@ public abstract class LeapArray<T> {
                  *
                  * If the old bucket is absent, then we create a new bucket at {@code windowStart},
                  * then try to update circular array via a CAS operation. Only one thread can
-                 * succeed to update, while other threads yield its time slice.
+                 * succeed to update, while other threads read the bucket created by it.
                  */
                 WindowWrap<T> window = new WindowWrap<T>(windowLengthInMs, windowStart, newEmptyBucket(timeMillis));
                 if (array.compareAndSet(idx, null, window)) {
-                    // Successfully updated, return the created bucket.
+                    // Successfully updated, create the standby of the slot and return the created bucket.
+                    standby.set(idx, new WindowWrap<T>(windowLengthInMs, windowStart, newEmptyBucket(timeMillis)));
                     return window;
-                } else {
-                    // Contention failed, the thread will yield its time slice to wait for bucket available.
-                    Thread.yield();
                 }
+                // Contention failed, another thread has created the bucket, so just read it again.
             // 3.2 如果参数timeMillis所期望的槽的开始时间time与old的开始时间相等，那么说明old就是那个槽，直接返回old
-            } else if (windowStart == old.windowStart()) {
+            } else if (windowStart == oldStart) {
                 /*
                  *     B0       B1      B2     B3      B4
                  * ||_______|_______|_______|_______|_______||___
@@ -180,8 +204,8 @@ public abstract class LeapArray<T> {
                  * that means the time is within the bucket, so directly return the bucket.
                  */
                 return old;
-            // 3.3 如果参数timeMillis所期望的槽的开始时间time大于old的开始时间，则说明old槽已经过时了，将old的开始时间更新为最新值windowStart。重用该槽
-            } else if (windowStart > old.windowStart()) {
+            // 3.3 如果参数timeMillis所期望的槽的开始时间time大于old的开始时间，则说明old槽已经过时了，将备用槽重置到最新值windowStart后替换old，old成为新的备用槽
+            } else if (windowStart > oldStart) {
                 /*
                  *   (old)
                  *             B0       B1      B2    NULL      B4
@@ -192,25 +216,41 @@ public abstract class LeapArray<T> {
                  *          startTime of Bucket 2: 400, deprecated, should be reset
                  *
                  * If the start timestamp of old bucket is behind provided time, that means
-                 * the bucket is deprecated. We have to reset the bucket to current {@code windowStart}.
-                 * Note that the reset and clean-up operations are hard to be atomic,
-                 * so we need a update lock to guarantee the correctness of bucket update.
+                 * the bucket is deprecated. We take the standby bucket of the slot, reset it to
+                 * current {@code windowStart} and then try to replace the old bucket via a CAS
+                 * operation. Only one thread can succeed to replace the old bucket, and the retired
+                 * bucket becomes the standby. Other threads simply read the new bucket, so no thread
+                 * ever waits for the update.
                  *
-                 * The update lock is conditional (tiny scope) and will take effect only when
-                 * bucket is deprecated, so in most cases it won't lead to performance loss.
+                 * The start time works as the epoch tag of the bucket: while holding the standby,
+                 * the thread checks that the slot still holds the old bucket of the same start time,
+                 * as a retired bucket can get back to the slot only through the standby. If the
+                 * standby is held by another thread, a new bucket is created and the old one is
+                 * never reused. The old bucket is checked right before the CAS as well: it can't
+                 * get back to the slot in between, which takes two rotations of the slot and thus
+                 * a whole interval.
                  */
-                if (updateLock.tryLock()) {
-                    try {
-                        // Successfully get the update lock, now we reset the bucket.
-                        return resetWindowTo(old, windowStart);
-                    } finally {
-                        updateLock.unlock();
+                WindowWrap<T> window = standby.getAndSet(idx, null);
+                if (window == null) {
+                    window = new WindowWrap<T>(windowLengthInMs, windowStart, newEmptyBucket(timeMillis));
+                    if (old.windowStart() == oldStart && array.compareAndSet(idx, old, window)) {
+                        onWindowRetired(old);
+                        return window;
                     }
-                } else {
-                    // Contention failed, the thread will yield its time slice to wait for bucket available.
-                    Thread.yield();
+                    continue;
                 }
-            } else if (windowStart < old.windowStart()) {
+                if (array.get(idx) == old && old.windowStart() == oldStart) {
+                    window = resetWindowTo(window, windowStart);
+                    if (array.compareAndSet(idx, old, window)) {
+                        if (onWindowRetired(old)) {
+                            standby.set(idx, old);
+                        }
+                        return window;
+                    }
+                }
+                // Contention failed, put back the standby and read the new bucket again.
+                standby.set(idx, window);
+            } else if (windowStart < oldStart) {
                 // Should not go through here, as the provided time is already behind.
                 return new WindowWrap<T>(windowLengthInMs, windowStart, newEmptyBucket(timeMillis));
             }
@@ -259,18 +299,26 @@ public abstract class LeapArray<T> {
      * @return the statistic value if bucket for provided timestamp is up-to-date; otherwise null
      */
     public T getWindowValue(long timeMillis) {
+        WindowWrap<T> bucket = getValidWindow(timeMillis);
+        return bucket == null ? null : bucket.value();
+    }
+
+    /**
+     * Get the bucket for provided timestamp, without creating or resetting buckets.
+     *
+     * @param timeMillis a valid timestamp in milliseconds
+     * @return the bucket if it is up-to-date for provided timestamp; otherwise null
+     * @since 1.5.0
+     */
+    public WindowWrap<T> getValidWindow(long timeMillis) {
         if (timeMillis < 0) {
             return null;
         }
-        int idx = calculateTimeIdx(timeMillis);
-
-        WindowWrap<T> bucket = array.get(idx);
-
+        WindowWrap<T> bucket = array.get(calculateTimeIdx(timeMillis));
         if (bucket == null || !bucket.isTimeInWindow(timeMillis)) {
             return null;
         }
-
-        return bucket.value();
+        return bucket;
     }
 
     /**
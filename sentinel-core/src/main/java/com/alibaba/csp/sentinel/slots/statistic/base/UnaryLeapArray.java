@@ -15,6 +15,8 @@
  */
 package com.alibaba.csp.sentinel.slots.statistic.base;
 
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
 /**
  * @author Eric Zhao
  */
@@ -35,4 +37,25 @@ public class UnaryLeapArray extends LeapArray<LongAdder> {
         windowWrap.value().reset();
         return windowWrap;
     }
+
+    /**
+     * Sum the valid windows which are entirely within the given time range, ignoring negative windows.
+     *
+     * @param since  the earliest start time (in milliseconds) of windows to sum
+     * @param before the latest end time (in milliseconds, exclusive) of windows to sum
+     * @return sum of the windows
+     * @since 1.5.0
+     */
+    public long sum(long since, long before) {
+        long now = TimeUtil.currentTimeMillis();
+        long sum = 0;
+        for (int i = 0; i < array.length(); i++) {
+            WindowWrap<LongAdder> w = array.get(i);
+            if (w != null && w.windowStart() >= since && w.windowStart() + windowLengthInMs <= before
+                && !isWindowDeprecated(now, w)) {
+                sum += Math.max(0, w.value().sum());
+            }
+        }
+        return sum;
+    }
 }
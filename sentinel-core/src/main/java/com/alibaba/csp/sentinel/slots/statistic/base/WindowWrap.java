@@ -31,10 +31,10 @@ public class WindowWrap<T> {
     private final long windowLengthInMs;
 
     /**
-     * Start timestamp of the window in milliseconds.
+     * Start timestamp of the window in milliseconds, which also tags the epoch of a bucket reset in place.
      * 滑动时间中当前槽的开始时间，单位：毫秒
      */
-    private long windowStart;
+    private volatile long windowStart;
 
     /**
      * Statistic data.
@@ -89,7 +89,8 @@ public class WindowWrap<T> {
      * 判断参数时间戳是否在当前时间窗口中
      */
     public boolean isTimeInWindow(long timeMillis) {
-        return windowStart <= timeMillis && timeMillis < windowStart + windowLengthInMs;
+        long start = windowStart;
+        return start <= timeMillis && timeMillis < start + windowLengthInMs;
     }
 
     @Override
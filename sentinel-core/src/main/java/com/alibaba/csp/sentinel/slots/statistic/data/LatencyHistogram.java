@@ -0,0 +1,187 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.data;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A lock-free, fixed-memory latency histogram of log-linear buckets, recording values in microseconds.
+ * </p>
+ * <p>
+ * Values below {@code 16} are recorded exactly. Above that, each power-of-two range is divided into
+ * {@code 16} linear sub-buckets, so the relative error of a recorded value is no more than {@code 1/16}
+ * (6.25%). Values no less than {@link #MAX_VALUE} (about 67 seconds) are recorded as {@code MAX_VALUE - 1}.
+ * Recording a value is a single atomic increment, and a histogram occupies about 3 KB.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 26;
+
+    /**
+     * Upper bound (exclusive) of recordable values in microseconds.
+     */
+    public static final long MAX_VALUE = 1L << MAX_VALUE_BITS;
+
+    /**
+     * Count of buckets, indexed from {@code 0} in ascending order of values.
+     */
+    public static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Record a latency value.
+     *
+     * @param micros latency in microseconds
+     */
+    public void record(long micros) {
+        counts.incrementAndGet(indexFor(micros));
+    }
+
+    public long count() {
+        long sum = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            sum += counts.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * @param index index of the bucket, in range [0, {@link #BUCKET_COUNT})
+     * @return count of values recorded in the bucket
+     */
+    public long countAt(int index) {
+        return counts.get(index);
+    }
+
+    /**
+     * Get count of values no less than given value. Values in the same bucket as the given value are counted too,
+     * so the result is accurate to the resolution of the histogram.
+     *
+     * @param micros the value in microseconds
+     * @return count of values no less than the value
+     */
+    public long countAtOrAbove(long micros) {
+        long sum = 0;
+        for (int i = indexFor(micros); i < BUCKET_COUNT; i++) {
+            sum += counts.get(i);
+        }
+        return sum;
+    }
+
+    public LatencyHistogram reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        return this;
+    }
+
+    /**
+     * Get the value at given percentile.
+     *
+     * @param percentile percentile in range (0, 100], e.g. {@code 99.9} for p999
+     * @return the highest value (in microseconds) that is equivalent to the value at the percentile,
+     * or 0 if no value is recorded
+     */
+    public long valueAtPercentile(double percentile) {
+        return valueAtPercentile(Collections.singletonList(this), percentile);
+    }
+
+    /**
+     * Get the value at given percentile of all values recorded in the histograms, without merging them.
+     *
+     * @param histograms histograms to calculate
+     * @param percentile percentile in range (0, 100], e.g. {@code 99.9} for p999
+     * @return the highest value (in microseconds) that is equivalent to the value at the percentile,
+     * or 0 if no value is recorded
+     */
+    public static long valueAtPercentile(List<LatencyHistogram> histograms, double percentile) {
+        checkPercentile(percentile);
+        long total = 0;
+        for (LatencyHistogram histogram : histograms) {
+            total += histogram.count();
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = rankOf(percentile, total);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            for (LatencyHistogram histogram : histograms) {
+                seen += histogram.counts.get(i);
+            }
+            if (seen >= rank) {
+                return highestEquivalentValue(i);
+            }
+        }
+        // Values may be recorded concurrently after the total is counted.
+        return highestEquivalentValue(BUCKET_COUNT - 1);
+    }
+
+    public static void checkPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile should be in range (0, 100]: " + percentile);
+        }
+    }
+
+    /**
+     * @param percentile percentile in range (0, 100]
+     * @param total      total count of values
+     * @return rank (starting from 1) of the value at the percentile
+     */
+    public static long rankOf(double percentile, long total) {
+        return Math.max(1, (long)Math.ceil(percentile / 100 * total));
+    }
+
+    static int indexFor(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int)value;
+        }
+        if (value >= MAX_VALUE) {
+            value = MAX_VALUE - 1;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    static long lowestEquivalentValue(int index) {
+        int group = index >>> SUB_BUCKET_BITS;
+        int subBucket = index & (SUB_BUCKET_COUNT - 1);
+        if (group == 0) {
+            return subBucket;
+        }
+        return (long)(SUB_BUCKET_COUNT + subBucket) << (group - 1);
+    }
+
+    /**
+     * @param index index of the bucket
+     * @return the highest value (in microseconds) recorded in the bucket
+     */
+    public static long highestEquivalentValue(int index) {
+        int group = index >>> SUB_BUCKET_BITS;
+        long width = group == 0 ? 1 : 1L << (group - 1);
+        return lowestEquivalentValue(index) + width - 1;
+    }
+}
@@ -27,6 +27,8 @@ import com.alibaba.csp.sentinel.slots.statistic.base.LongAdder;
  */
 public class MetricBucket {
 
+    private static final MetricEvent[] EVENTS = MetricEvent.values();
+
     /**
      * 统计各种指标
      */
@@ -43,6 +45,17 @@ public class MetricBucket {
         initMinRt();
     }
 
+    /**
+     * For subclasses that keep the counters on their own, which must override
+     * {@link #get(MetricEvent)}, {@link #add(MetricEvent, long)} and the reset methods.
+     *
+     * @param counters the adders, null if the subclass keeps counters on its own
+     */
+    MetricBucket(LongAdder[] counters) {
+        this.counters = counters;
+        initMinRt();
+    }
+
     public MetricBucket reset(MetricBucket bucket) {
         for (MetricEvent event : MetricEvent.values()) {
             counters[event.ordinal()].reset();
@@ -52,7 +65,28 @@ public class MetricBucket {
         return this;
     }
 
-    private void initMinRt() {
+    /**
+     * Add all counters of given bucket to this bucket.
+     *
+     * @param bucket the bucket to merge
+     * @return this bucket
+     * @since 1.5.0
+     */
+    public MetricBucket merge(MetricBucket bucket) {
+        for (MetricEvent event : EVENTS) {
+            long n = bucket.get(event);
+            if (n != 0) {
+                add(event, n);
+            }
+        }
+        long rt = bucket.minRt();
+        if (rt < minRt) {
+            minRt = rt;
+        }
+        return this;
+    }
+
+    void initMinRt() {
         this.minRt = Constants.TIME_DROP_VALVE;
     }
 
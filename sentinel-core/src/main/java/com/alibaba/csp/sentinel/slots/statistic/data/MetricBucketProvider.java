@@ -0,0 +1,54 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.data;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.log.RecordLog;
+
+/**
+ * A provider for creating metric buckets of the type configured by
+ * {@link SentinelConfig#STATISTIC_BUCKET_TYPE}. All bucket leap arrays should create their
+ * buckets here, so that the bucket implementation is transparent to them.
+ *
+ * @since 1.5.0
+ */
+public final class MetricBucketProvider {
+
+    private static final boolean STRIPED = SentinelConfig.BUCKET_TYPE_STRIPED.equals(
+        SentinelConfig.statisticBucketType());
+    private static final int STRIPES = STRIPED ? SentinelConfig.statisticBucketStripes() : 1;
+
+    static {
+        if (STRIPED) {
+            RecordLog.info("[MetricBucketProvider] Using striped metric buckets, stripes: " + STRIPES);
+        }
+    }
+
+    /**
+     * Create a new metric bucket in initial state.
+     *
+     * @return new created metric bucket
+     */
+    public static MetricBucket newBucket() {
+        return STRIPED ? new StripedMetricBucket(STRIPES) : new MetricBucket();
+    }
+
+    public static boolean isStriped() {
+        return STRIPED;
+    }
+
+    private MetricBucketProvider() {}
+}
@@ -20,6 +20,7 @@ import java.util.List;
 
 import com.alibaba.csp.sentinel.Constants;
 import com.alibaba.csp.sentinel.node.metric.MetricNode;
+import com.alibaba.csp.sentinel.node.metric.MetricSnapshotRing;
 import com.alibaba.csp.sentinel.slots.statistic.MetricEvent;
 import com.alibaba.csp.sentinel.slots.statistic.base.LeapArray;
 import com.alibaba.csp.sentinel.slots.statistic.data.MetricBucket;
@@ -32,7 +33,7 @@ import com.alibaba.csp.sentinel.slots.statistic.metric.occupy.OccupiableBucketLe
  * @author jialiang.linjl
  * @author Eric Zhao
  */
-public class ArrayMetric implements Metric {
+public class ArrayMetric implements WindowSnapshotMetric {
 
     private final LeapArray<MetricBucket> data;
 
@@ -296,6 +297,27 @@ public class ArrayMetric implements Metric {
         return bucket.pass();
     }
 
+    @Override
+    public boolean snapshotWindow(long timeMillis, MetricSnapshotRing ring) {
+        WindowWrap<MetricBucket> window = data.getValidWindow(timeMillis);
+        if (window == null) {
+            return false;
+        }
+        MetricBucket bucket = window.value();
+        long pass = bucket.pass();
+        long block = bucket.block();
+        long success = bucket.success();
+        long exception = bucket.exception();
+        long rt = bucket.rt();
+        long occupiedPass = bucket.occupiedPass();
+        if (pass <= 0 && block <= 0 && success <= 0 && exception <= 0 && rt <= 0 && occupiedPass <= 0) {
+            return false;
+        }
+        ring.append(window.windowStart(), pass, block, success, exception, success != 0 ? rt / success : rt,
+            occupiedPass);
+        return true;
+    }
+
     @Override
     public long waiting() {
         return data.currentWaiting();
@@ -0,0 +1,361 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.metric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.alibaba.csp.sentinel.Constants;
+import com.alibaba.csp.sentinel.node.metric.MetricNode;
+import com.alibaba.csp.sentinel.node.metric.MetricSnapshotRing;
+import com.alibaba.csp.sentinel.slots.statistic.MetricEvent;
+import com.alibaba.csp.sentinel.slots.statistic.base.LongAdder;
+import com.alibaba.csp.sentinel.slots.statistic.data.MetricBucket;
+import com.alibaba.csp.sentinel.slots.statistic.metric.occupy.FutureBucketLeapArray;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
+/**
+ * <p>
+ * A metric using exponentially decaying counters rather than sliding window buckets. Each event is
+ * counted with a weight of {@code exp(-age / intervalInMs)}, so the counters decay smoothly and don't drop
+ * when a bucket is deprecated. For a steady rate, the decayed count equals the count in {@code intervalInMs}.
+ * </p>
+ * <p>
+ * Events are added to a {@link LongAdder} per event, and the counters are decayed every tick
+ * ({@code intervalInMs / 10}) by the thread which first sees the new tick. Events since the last tick are
+ * counted with full weight, while the decayed counts keep decaying on read. The decayed counts of a tick are
+ * published as an immutable snapshot, so readers always see the counts of the same tick. Threads never wait
+ * for the decay: if another thread is decaying the counters, the reading is based on the previous snapshot.
+ * </p>
+ * <p>
+ * The decaying metric keeps no history, so it's only suitable for the second-level statistics
+ * (see {@link com.alibaba.csp.sentinel.config.SentinelConfig#statisticRateEstimator()}).
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class DecayingMetric implements WindowSnapshotMetric {
+
+    private static final MetricEvent[] EVENTS = MetricEvent.values();
+    private static final MetricBucket[] EMPTY_WINDOWS = new MetricBucket[0];
+    private static final int TICKS_PER_INTERVAL = 10;
+
+    private final int sampleCount;
+    private final int intervalInMs;
+    private final long tickInMs;
+    private final double tickDecay;
+    /**
+     * Decay factors of every millisecond in a tick.
+     */
+    private final double[] partialDecay;
+    /**
+     * The decayed fraction of current count in a window of {@code intervalInMs / sampleCount}.
+     */
+    private final double windowDecay;
+
+    /**
+     * Total counts of each event.
+     */
+    private final LongAdder[] totals;
+    /**
+     * The decayed counts at the last tick, replaced as a whole on every tick.
+     */
+    private volatile Snapshot snapshot;
+    private final AtomicBoolean ticking = new AtomicBoolean(false);
+
+    private volatile long minRt = Constants.TIME_DROP_VALVE;
+    private volatile long previousMinRt = Constants.TIME_DROP_VALVE;
+    private volatile long minRtStart;
+
+    private final FutureBucketLeapArray borrowArray;
+
+    public DecayingMetric(int sampleCount, int intervalInMs) {
+        this.sampleCount = sampleCount;
+        this.intervalInMs = intervalInMs;
+        this.tickInMs = Math.max(1, intervalInMs / TICKS_PER_INTERVAL);
+        this.tickDecay = Math.exp(-(double)tickInMs / intervalInMs);
+        this.partialDecay = new double[(int)tickInMs];
+        for (int i = 0; i < partialDecay.length; i++) {
+            partialDecay[i] = Math.exp(-(double)i / intervalInMs);
+        }
+        this.windowDecay = 1 - Math.exp(-1.0 / sampleCount);
+        this.totals = new LongAdder[EVENTS.length];
+        for (MetricEvent event : EVENTS) {
+            totals[event.ordinal()] = new LongAdder();
+        }
+        long currentTime = TimeUtil.currentTimeMillis();
+        long tick = currentTime - currentTime % tickInMs;
+        this.snapshot = new Snapshot(tick, new long[EVENTS.length], new double[EVENTS.length]);
+        this.minRtStart = tick;
+        this.borrowArray = new FutureBucketLeapArray(sampleCount, intervalInMs);
+    }
+
+    private void tryTick(long currentTime) {
+        if (currentTime - snapshot.tick < tickInMs || !ticking.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Snapshot last = snapshot;
+            long tick = currentTime - currentTime % tickInMs;
+            if (tick <= last.tick) {
+                return;
+            }
+            double decay = Math.pow(tickDecay, (tick - last.tick) / tickInMs);
+            long[] counted = new long[EVENTS.length];
+            double[] decayed = new double[EVENTS.length];
+            for (int i = 0; i < EVENTS.length; i++) {
+                counted[i] = totals[i].sum();
+                decayed[i] = last.decayed[i] * decay + (counted[i] - last.counted[i]);
+            }
+            if (tick - minRtStart >= intervalInMs) {
+                previousMinRt = tick - minRtStart >= 2L * intervalInMs ? Constants.TIME_DROP_VALVE : minRt;
+                minRt = Constants.TIME_DROP_VALVE;
+                minRtStart = tick - tick % intervalInMs;
+            }
+            snapshot = new Snapshot(tick, counted, decayed);
+        } finally {
+            ticking.set(false);
+        }
+    }
+
+    private double decayedCount(MetricEvent event) {
+        long currentTime = TimeUtil.currentTimeMillis();
+        tryTick(currentTime);
+        Snapshot s = snapshot;
+        long elapsed = currentTime - s.tick;
+        double decay;
+        if (elapsed <= 0) {
+            decay = 1;
+        } else if (elapsed < tickInMs) {
+            decay = partialDecay[(int)elapsed];
+        } else {
+            decay = Math.exp(-(double)elapsed / intervalInMs);
+        }
+        int i = event.ordinal();
+        return s.decayed[i] * decay + (totals[i].sum() - s.counted[i]);
+    }
+
+    private long count(MetricEvent event) {
+        return Math.round(decayedCount(event));
+    }
+
+    private void add(MetricEvent event, long n) {
+        totals[event.ordinal()].add(n);
+        tryTick(TimeUtil.currentTimeMillis());
+    }
+
+    /**
+     * Roughly estimate the memory of this metric.
+     *
+     * @return estimated memory in bytes
+     */
+    public long estimateMemoryBytes() {
+        // The metric, the counters of all events, the snapshot, the decay factors and the borrow array.
+        return 96 + EVENTS.length * (40L + 8 + 8) + 64 + 16 + 8L * partialDecay.length + 96 + 8L * sampleCount;
+    }
+
+    @Override
+    public long success() {
+        return count(MetricEvent.SUCCESS);
+    }
+
+    @Override
+    public long maxSuccess() {
+        return Math.max(Math.round(decayedCount(MetricEvent.SUCCESS) / sampleCount), 1);
+    }
+
+    @Override
+    public long exception() {
+        return count(MetricEvent.EXCEPTION);
+    }
+
+    @Override
+    public long block() {
+        return count(MetricEvent.BLOCK);
+    }
+
+    @Override
+    public long pass() {
+        return count(MetricEvent.PASS);
+    }
+
+    @Override
+    public long rt() {
+        return count(MetricEvent.RT);
+    }
+
+    @Override
+    public long minRt() {
+        tryTick(TimeUtil.currentTimeMillis());
+        return Math.max(1, Math.min(minRt, previousMinRt));
+    }
+
+    /**
+     * The decaying metric keeps no history, so only the current estimation is returned.
+     */
+    @Override
+    public List<MetricNode> details() {
+        long currentTime = TimeUtil.currentTimeMillis();
+        MetricNode node = new MetricNode();
+        node.setTimestamp(currentTime - currentTime % 1000);
+        node.setPassQps(pass());
+        node.setBlockQps(block());
+        long success = success();
+        node.setSuccessQps(success);
+        node.setExceptionQps(exception());
+        node.setRt(success != 0 ? rt() / success : rt());
+        node.setOccupiedPassQps(occupiedPass());
+        List<MetricNode> details = new ArrayList<MetricNode>(1);
+        details.add(node);
+        return details;
+    }
+
+    @Override
+    public MetricBucket[] windows() {
+        return EMPTY_WINDOWS;
+    }
+
+    @Override
+    public void addException(int n) {
+        add(MetricEvent.EXCEPTION, n);
+    }
+
+    @Override
+    public void addBlock(int n) {
+        add(MetricEvent.BLOCK, n);
+    }
+
+    @Override
+    public void addSuccess(int n) {
+        add(MetricEvent.SUCCESS, n);
+    }
+
+    @Override
+    public void addPass(int n) {
+        add(MetricEvent.PASS, n);
+    }
+
+    @Override
+    public void addRT(long rt) {
+        add(MetricEvent.RT, rt);
+        // Not thread-safe, but it's okay.
+        if (rt < minRt) {
+            minRt = rt;
+        }
+    }
+
+    @Override
+    public double getWindowIntervalInSec() {
+        return intervalInMs / 1000.0;
+    }
+
+    @Override
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Get the passed count which will decay in the window of {@code intervalInMs / sampleCount}.
+     * As there is no history, the time is ignored.
+     */
+    @Override
+    public long getWindowPass(long timeMillis) {
+        return Math.round(decayedCount(MetricEvent.PASS) * windowDecay);
+    }
+
+    /**
+     * The decaying metric keeps no history, so nothing is appended.
+     */
+    @Override
+    public boolean snapshotWindow(long timeMillis, MetricSnapshotRing ring) {
+        return false;
+    }
+
+    @Override
+    public void addOccupiedPass(int acquireCount) {
+        add(MetricEvent.OCCUPIED_PASS, acquireCount);
+    }
+
+    /**
+     * The occupied tokens are counted as passed right now, and kept as waiting until the future time.
+     */
+    @Override
+    public void addWaiting(long futureTime, int acquireCount) {
+        borrowArray.currentWindow(futureTime).value().addPass(acquireCount);
+        add(MetricEvent.PASS, acquireCount);
+    }
+
+    @Override
+    public long waiting() {
+        borrowArray.currentWindow();
+        long waiting = 0;
+        for (MetricBucket bucket : borrowArray.values()) {
+            waiting += bucket.pass();
+        }
+        return waiting;
+    }
+
+    @Override
+    public long occupiedPass() {
+        return count(MetricEvent.OCCUPIED_PASS);
+    }
+
+    /**
+     * @return the estimated block count of one second
+     */
+    @Override
+    public long previousWindowBlock() {
+        return Math.round(decayedCount(MetricEvent.BLOCK) * 1000 / intervalInMs);
+    }
+
+    /**
+     * @return the estimated pass count of one second
+     */
+    @Override
+    public long previousWindowPass() {
+        return Math.round(decayedCount(MetricEvent.PASS) * 1000 / intervalInMs);
+    }
+
+    /**
+     * The decayed counts at a tick, which are never modified once published.
+     */
+    private static final class Snapshot {
+        private final long tick;
+        /**
+         * The total counts which have been added to the decayed counts.
+         */
+        private final long[] counted;
+        private final double[] decayed;
+
+        Snapshot(long tick, long[] counted, double[] decayed) {
+            this.tick = tick;
+            this.counted = counted;
+            this.decayed = decayed;
+        }
+    }
+
+    @Override
+    public void debug() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("d_Thread_").append(Thread.currentThread().getId()).append(" time=")
+            .append(TimeUtil.currentTimeMillis()).append("; ");
+        for (MetricEvent event : EVENTS) {
+            sb.append(event.name()).append(": ").append(decayedCount(event)).append(";");
+        }
+        System.out.println(sb.toString());
+    }
+}
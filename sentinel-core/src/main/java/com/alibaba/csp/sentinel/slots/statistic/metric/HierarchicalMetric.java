@@ -0,0 +1,716 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.metric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.alibaba.csp.sentinel.Constants;
+import com.alibaba.csp.sentinel.node.metric.MetricNode;
+import com.alibaba.csp.sentinel.node.metric.MetricSnapshotRing;
+import com.alibaba.csp.sentinel.slots.statistic.MetricEvent;
+import com.alibaba.csp.sentinel.slots.statistic.base.WindowWrap;
+import com.alibaba.csp.sentinel.slots.statistic.data.MetricBucket;
+import com.alibaba.csp.sentinel.slots.statistic.metric.occupy.OccupiableBucketLeapArray;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
+/**
+ * <p>
+ * A multi-resolution metric. Statistics are only written to the finest sliding window (the second-level metric,
+ * e.g. two buckets of 500 ms). When a bucket of the finest window is retired, it's rolled up into the coarser
+ * levels: the minute level (60 buckets of one second) and the hour level (60 buckets of one minute).
+ * So each event costs one counter update rather than one per level.
+ * </p>
+ * <p>
+ * A retired bucket is rolled up one second later rather than immediately, as threads which got
+ * the bucket before it was retired may still write to it. The buckets of the finest window which are not
+ * rolled up yet are merged into the coarser levels on read, so the coarser levels are always up-to-date. The coarser levels are created on first use (the minute level
+ * may be created eagerly), and only statistics after the creation are rolled up.
+ * </p>
+ * <p>
+ * If the bucket length of the finest window doesn't divide one second, the buckets can't be rolled up,
+ * then the events are also written to the coarser levels directly.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class HierarchicalMetric implements WindowSnapshotMetric {
+
+    /**
+     * Estimated memory of a bucket: the window wrap, the metric bucket and the counters of all events.
+     */
+    private static final long BUCKET_BYTES = 32 + 32 + 16 + 40L * MetricEvent.values().length;
+    private static final long LEAP_ARRAY_BYTES = 96;
+
+    private volatile FineMetric fine;
+
+    private final LevelMetric minuteLevel = new LevelMetric(60, 60 * 1000);
+    private final LevelMetric hourLevel = new LevelMetric(60, 60 * 60 * 1000);
+
+    /**
+     * @param sampleCount  bucket count of the finest sliding window
+     * @param intervalInMs the total time interval of the finest sliding window in milliseconds
+     * @param minuteLevel  whether to create the minute level eagerly
+     */
+    public HierarchicalMetric(int sampleCount, int intervalInMs, boolean minuteLevel) {
+        this.fine = new FineMetric(new RollupBucketLeapArray(sampleCount, intervalInMs));
+        if (minuteLevel) {
+            this.minuteLevel.data();
+        }
+    }
+
+    /**
+     * Get the minute-level metric, which will be created on first call.
+     *
+     * @return the minute-level metric (60 buckets of one second)
+     */
+    public WindowSnapshotMetric minuteLevel() {
+        minuteLevel.data();
+        return minuteLevel;
+    }
+
+    /**
+     * @return true if the minute-level metric has been created
+     */
+    public boolean hasMinuteLevel() {
+        return minuteLevel.data != null;
+    }
+
+    /**
+     * Get the hour-level metric, which will be created on first call.
+     *
+     * @return the hour-level metric (60 buckets of one minute)
+     */
+    public WindowSnapshotMetric hourLevel() {
+        hourLevel.data();
+        return hourLevel;
+    }
+
+    /**
+     * Replace the finest sliding window with an empty one. Buckets of the previous finest window
+     * are rolled up into the coarser levels.
+     *
+     * @param sampleCount  bucket count of the new finest sliding window
+     * @param intervalInMs the total time interval of the new finest sliding window in milliseconds
+     */
+    public synchronized void reset(int sampleCount, int intervalInMs) {
+        FineMetric previous = fine;
+        fine = new FineMetric(new RollupBucketLeapArray(sampleCount, intervalInMs));
+        if (previous.rollup) {
+            for (int i = 0; i < previous.data.unrolledCount(); i++) {
+                WindowWrap<MetricBucket> window = previous.data.unrolled(i);
+                if (window != null) {
+                    rollup(window);
+                }
+            }
+        }
+    }
+
+    /**
+     * Roughly estimate the memory of this metric, counting only the levels and buckets created so far.
+     *
+     * @return estimated memory in bytes
+     */
+    public long estimateMemoryBytes() {
+        FineMetric metric = fine;
+        int buckets = metric.data.listAll().size() + metric.data.retiredCount();
+        // The metric, the finest window with its borrow array, and the lazy levels.
+        long bytes = 64 + 2 * (LEAP_ARRAY_BYTES + 8L * metric.getSampleCount()) + buckets * BUCKET_BYTES;
+        bytes += minuteLevel.estimateMemoryBytes() + hourLevel.estimateMemoryBytes();
+        return bytes;
+    }
+
+    private void rollup(WindowWrap<MetricBucket> window) {
+        minuteLevel.rollup(window);
+        hourLevel.rollup(window);
+    }
+
+    private void writeThrough(MetricEvent event, long count) {
+        minuteLevel.write(event, count);
+        hourLevel.write(event, count);
+    }
+
+    @Override
+    public long success() {
+        return fine.success();
+    }
+
+    @Override
+    public long maxSuccess() {
+        return fine.maxSuccess();
+    }
+
+    @Override
+    public long exception() {
+        return fine.exception();
+    }
+
+    @Override
+    public long block() {
+        return fine.block();
+    }
+
+    @Override
+    public long pass() {
+        return fine.pass();
+    }
+
+    @Override
+    public long rt() {
+        return fine.rt();
+    }
+
+    @Override
+    public long minRt() {
+        return fine.minRt();
+    }
+
+    @Override
+    public List<MetricNode> details() {
+        return fine.details();
+    }
+
+    @Override
+    public MetricBucket[] windows() {
+        return fine.windows();
+    }
+
+    @Override
+    public void addException(int n) {
+        FineMetric metric = fine;
+        metric.addException(n);
+        if (!metric.rollup) {
+            writeThrough(MetricEvent.EXCEPTION, n);
+        }
+    }
+
+    @Override
+    public void addBlock(int n) {
+        FineMetric metric = fine;
+        metric.addBlock(n);
+        if (!metric.rollup) {
+            writeThrough(MetricEvent.BLOCK, n);
+        }
+    }
+
+    @Override
+    public void addSuccess(int n) {
+        FineMetric metric = fine;
+        metric.addSuccess(n);
+        if (!metric.rollup) {
+            writeThrough(MetricEvent.SUCCESS, n);
+        }
+    }
+
+    @Override
+    public void addPass(int n) {
+        FineMetric metric = fine;
+        metric.addPass(n);
+        if (!metric.rollup) {
+            writeThrough(MetricEvent.PASS, n);
+        }
+    }
+
+    @Override
+    public void addRT(long rt) {
+        FineMetric metric = fine;
+        metric.addRT(rt);
+        if (!metric.rollup) {
+            minuteLevel.writeRT(rt);
+            hourLevel.writeRT(rt);
+        }
+    }
+
+    @Override
+    public double getWindowIntervalInSec() {
+        return fine.getWindowIntervalInSec();
+    }
+
+    @Override
+    public int getSampleCount() {
+        return fine.getSampleCount();
+    }
+
+    @Override
+    public long getWindowPass(long timeMillis) {
+        return fine.getWindowPass(timeMillis);
+    }
+
+    @Override
+    public boolean snapshotWindow(long timeMillis, MetricSnapshotRing ring) {
+        return fine.snapshotWindow(timeMillis, ring);
+    }
+
+    /**
+     * Record the occupied pass. The occupied tokens are counted as passed requests of the future bucket
+     * (see {@link OccupiableBucketLeapArray}), so only the occupied pass count is added here.
+     */
+    @Override
+    public void addOccupiedPass(int acquireCount) {
+        FineMetric metric = fine;
+        metric.addOccupiedPass(acquireCount);
+        if (!metric.rollup) {
+            writeThrough(MetricEvent.OCCUPIED_PASS, acquireCount);
+            writeThrough(MetricEvent.PASS, acquireCount);
+        }
+    }
+
+    @Override
+    public void addWaiting(long futureTime, int acquireCount) {
+        fine.addWaiting(futureTime, acquireCount);
+    }
+
+    @Override
+    public long waiting() {
+        return fine.waiting();
+    }
+
+    @Override
+    public long occupiedPass() {
+        return fine.occupiedPass();
+    }
+
+    @Override
+    public long previousWindowBlock() {
+        return fine.previousWindowBlock();
+    }
+
+    @Override
+    public long previousWindowPass() {
+        return fine.previousWindowPass();
+    }
+
+    @Override
+    public void debug() {
+        fine.debug();
+    }
+
+    private static final class FineMetric extends ArrayMetric {
+
+        private final RollupBucketLeapArray data;
+        private final boolean rollup;
+
+        FineMetric(RollupBucketLeapArray data) {
+            super(data);
+            this.data = data;
+            this.rollup = 1000 % data.getWindowLength() == 0;
+        }
+    }
+
+    private final class RollupBucketLeapArray extends OccupiableBucketLeapArray {
+
+        /**
+         * The buckets retired in the last second, which are not rolled up yet. So a coarser level created
+         * on read covers the whole previous second.
+         */
+        private final AtomicReferenceArray<WindowWrap<MetricBucket>> retired;
+
+        RollupBucketLeapArray(int sampleCount, int intervalInMs) {
+            super(sampleCount, intervalInMs);
+            this.retired = new AtomicReferenceArray<WindowWrap<MetricBucket>>(Math.max(1, 1000 / windowLengthInMs));
+        }
+
+        int getWindowLength() {
+            return windowLengthInMs;
+        }
+
+        /**
+         * @return count of the buckets which are not rolled up: the buckets in the array and the retired ones
+         */
+        int unrolledCount() {
+            return array.length() + retired.length();
+        }
+
+        WindowWrap<MetricBucket> unrolled(int i) {
+            return i < array.length() ? array.get(i) : retired.get(i - array.length());
+        }
+
+        int retiredCount() {
+            int count = 0;
+            for (int i = 0; i < retired.length(); i++) {
+                if (retired.get(i) != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        protected boolean onWindowRetired(WindowWrap<MetricBucket> windowWrap) {
+            if (fine.data == this && fine.rollup) {
+                // Roll up the bucket retired one second before, whose late writers are done by now.
+                int idx = (int)((windowWrap.windowStart() / windowLengthInMs) % retired.length());
+                WindowWrap<MetricBucket> previous = retired.getAndSet(idx, windowWrap);
+                if (previous != null) {
+                    rollup(previous);
+                }
+                // Kept until rolled up, so it cannot be reused.
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A coarser level, which merges its own buckets and the buckets of the finest window
+     * which are not rolled up yet.
+     */
+    private final class LevelMetric implements WindowSnapshotMetric {
+
+        private final int sampleCount;
+        private final int intervalInMs;
+        private final int windowLengthInMs;
+
+        private volatile BucketLeapArray data;
+
+        LevelMetric(int sampleCount, int intervalInMs) {
+            this.sampleCount = sampleCount;
+            this.intervalInMs = intervalInMs;
+            this.windowLengthInMs = intervalInMs / sampleCount;
+        }
+
+        BucketLeapArray data() {
+            BucketLeapArray array = data;
+            if (array == null) {
+                synchronized (this) {
+                    array = data;
+                    if (array == null) {
+                        array = data = new BucketLeapArray(sampleCount, intervalInMs);
+                    }
+                }
+            }
+            return array;
+        }
+
+        long estimateMemoryBytes() {
+            BucketLeapArray array = data;
+            if (array == null) {
+                return 0;
+            }
+            return LEAP_ARRAY_BYTES + 8L * sampleCount + array.listAll().size() * BUCKET_BYTES;
+        }
+
+        void rollup(WindowWrap<MetricBucket> window) {
+            BucketLeapArray array = data;
+            if (array != null) {
+                array.currentWindow(window.windowStart()).value().merge(window.value());
+            }
+        }
+
+        void write(MetricEvent event, long count) {
+            BucketLeapArray array = data;
+            if (array != null) {
+                array.currentWindow().value().add(event, count);
+            }
+        }
+
+        void writeRT(long rt) {
+            BucketLeapArray array = data;
+            if (array != null) {
+                array.currentWindow().value().addRT(rt);
+            }
+        }
+
+        private long windowStartOf(long timeMillis) {
+            return timeMillis - timeMillis % windowLengthInMs;
+        }
+
+        private long sum(MetricEvent event) {
+            long currentStart = windowStartOf(TimeUtil.currentTimeMillis());
+            long sum = 0;
+            for (int i = 0; i < sampleCount; i++) {
+                sum += windowSum(currentStart - i * windowLengthInMs, event);
+            }
+            return sum;
+        }
+
+        /**
+         * Get the sum of provided event in the bucket starting at provided time, including the buckets
+         * of the finest window which are not rolled up yet.
+         */
+        private long windowSum(long windowStart, MetricEvent event) {
+            long sum = 0;
+            MetricBucket bucket = data().getWindowValue(windowStart);
+            if (bucket != null) {
+                sum += bucket.get(event);
+            }
+            FineMetric metric = fine;
+            if (metric.rollup) {
+                for (int i = 0; i < metric.data.unrolledCount(); i++) {
+                    WindowWrap<MetricBucket> window = metric.data.unrolled(i);
+                    if (window != null && windowStartOf(window.windowStart()) == windowStart) {
+                        sum += window.value().get(event);
+                    }
+                }
+            }
+            return sum;
+        }
+
+        private long windowMinRt(long windowStart) {
+            long rt = Constants.TIME_DROP_VALVE;
+            MetricBucket bucket = data().getWindowValue(windowStart);
+            if (bucket != null) {
+                rt = bucket.minRt();
+            }
+            FineMetric metric = fine;
+            if (metric.rollup) {
+                for (int i = 0; i < metric.data.unrolledCount(); i++) {
+                    WindowWrap<MetricBucket> window = metric.data.unrolled(i);
+                    if (window != null && windowStartOf(window.windowStart()) == windowStart) {
+                        rt = Math.min(rt, window.value().minRt());
+                    }
+                }
+            }
+            return rt;
+        }
+
+        /**
+         * @return count of the unrolled buckets of the finest window in the bucket starting at provided time,
+         * or -1 if there's no bucket at the time in this level and in the finest window
+         */
+        private int unrolledCountOf(long windowStart) {
+            int count = data().getWindowValue(windowStart) == null ? -1 : 0;
+            FineMetric metric = fine;
+            if (metric.rollup) {
+                for (int i = 0; i < metric.data.unrolledCount(); i++) {
+                    WindowWrap<MetricBucket> window = metric.data.unrolled(i);
+                    if (window != null && windowStartOf(window.windowStart()) == windowStart) {
+                        count = Math.max(count, 0) + 1;
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public long success() {
+            return sum(MetricEvent.SUCCESS);
+        }
+
+        @Override
+        public long maxSuccess() {
+            long currentStart = windowStartOf(TimeUtil.currentTimeMillis());
+            long success = 0;
+            for (int i = 0; i < sampleCount; i++) {
+                success = Math.max(success, windowSum(currentStart - i * windowLengthInMs, MetricEvent.SUCCESS));
+            }
+            return Math.max(success, 1);
+        }
+
+        @Override
+        public long exception() {
+            return sum(MetricEvent.EXCEPTION);
+        }
+
+        @Override
+        public long block() {
+            return sum(MetricEvent.BLOCK);
+        }
+
+        @Override
+        public long pass() {
+            return sum(MetricEvent.PASS);
+        }
+
+        @Override
+        public long rt() {
+            return sum(MetricEvent.RT);
+        }
+
+        @Override
+        public long minRt() {
+            long currentStart = windowStartOf(TimeUtil.currentTimeMillis());
+            long rt = Constants.TIME_DROP_VALVE;
+            for (int i = 0; i < sampleCount; i++) {
+                rt = Math.min(rt, windowMinRt(currentStart - i * windowLengthInMs));
+            }
+            return Math.max(1, rt);
+        }
+
+        @Override
+        public List<MetricNode> details() {
+            long currentStart = windowStartOf(TimeUtil.currentTimeMillis());
+            List<MetricNode> details = new ArrayList<MetricNode>();
+            for (int i = sampleCount - 1; i >= 0; i--) {
+                long windowStart = currentStart - i * windowLengthInMs;
+                if (unrolledCountOf(windowStart) < 0) {
+                    continue;
+                }
+                MetricNode node = new MetricNode();
+                node.setBlockQps(windowSum(windowStart, MetricEvent.BLOCK));
+                node.setExceptionQps(windowSum(windowStart, MetricEvent.EXCEPTION));
+                node.setPassQps(windowSum(windowStart, MetricEvent.PASS));
+                long successQps = windowSum(windowStart, MetricEvent.SUCCESS);
+                node.setSuccessQps(successQps);
+                long rt = windowSum(windowStart, MetricEvent.RT);
+                node.setRt(successQps != 0 ? rt / successQps : rt);
+                node.setTimestamp(windowStart);
+                node.setOccupiedPassQps(windowSum(windowStart, MetricEvent.OCCUPIED_PASS));
+                details.add(node);
+            }
+            return details;
+        }
+
+        /**
+         * Get the buckets of this level. Buckets are only copied if there are unrolled buckets of
+         * the finest window to merge.
+         */
+        @Override
+        public MetricBucket[] windows() {
+            long currentStart = windowStartOf(TimeUtil.currentTimeMillis());
+            List<MetricBucket> buckets = new ArrayList<MetricBucket>(sampleCount);
+            for (int i = sampleCount - 1; i >= 0; i--) {
+                long windowStart = currentStart - i * windowLengthInMs;
+                int unrolled = unrolledCountOf(windowStart);
+                if (unrolled < 0) {
+                    continue;
+                }
+                MetricBucket bucket = data().getWindowValue(windowStart);
+                if (unrolled > 0 || bucket == null) {
+                    MetricBucket merged = new MetricBucket();
+                    if (bucket != null) {
+                        merged.merge(bucket);
+                    }
+                    FineMetric metric = fine;
+                    for (int j = 0; j < metric.data.unrolledCount(); j++) {
+                        WindowWrap<MetricBucket> window = metric.data.unrolled(j);
+                        if (window != null && windowStartOf(window.windowStart()) == windowStart) {
+                            merged.merge(window.value());
+                        }
+                    }
+                    bucket = merged;
+                }
+                buckets.add(bucket);
+            }
+            return buckets.toArray(new MetricBucket[buckets.size()]);
+        }
+
+        @Override
+        public long getWindowPass(long timeMillis) {
+            return windowSum(windowStartOf(timeMillis), MetricEvent.PASS);
+        }
+
+        @Override
+        public boolean snapshotWindow(long timeMillis, MetricSnapshotRing ring) {
+            long windowStart = windowStartOf(timeMillis);
+            long pass = 0, block = 0, success = 0, exception = 0, rt = 0, occupiedPass = 0;
+            MetricBucket bucket = data().getWindowValue(windowStart);
+            if (bucket != null) {
+                pass += bucket.pass();
+                block += bucket.block();
+                success += bucket.success();
+                exception += bucket.exception();
+                rt += bucket.rt();
+                occupiedPass += bucket.occupiedPass();
+            }
+            FineMetric metric = fine;
+            if (metric.rollup) {
+                for (int i = 0; i < metric.data.unrolledCount(); i++) {
+                    WindowWrap<MetricBucket> window = metric.data.unrolled(i);
+                    if (window == null || windowStartOf(window.windowStart()) != windowStart) {
+                        continue;
+                    }
+                    bucket = window.value();
+                    pass += bucket.pass();
+                    block += bucket.block();
+                    success += bucket.success();
+                    exception += bucket.exception();
+                    rt += bucket.rt();
+                    occupiedPass += bucket.occupiedPass();
+                }
+            }
+            if (pass <= 0 && block <= 0 && success <= 0 && exception <= 0 && rt <= 0 && occupiedPass <= 0) {
+                return false;
+            }
+            ring.append(windowStart, pass, block, success, exception, success != 0 ? rt / success : rt,
+                occupiedPass);
+            return true;
+        }
+
+        @Override
+        public long previousWindowBlock() {
+            return windowSum(windowStartOf(TimeUtil.currentTimeMillis()) - windowLengthInMs, MetricEvent.BLOCK);
+        }
+
+        @Override
+        public long previousWindowPass() {
+            return windowSum(windowStartOf(TimeUtil.currentTimeMillis()) - windowLengthInMs, MetricEvent.PASS);
+        }
+
+        @Override
+        public long occupiedPass() {
+            return sum(MetricEvent.OCCUPIED_PASS);
+        }
+
+        @Override
+        public long waiting() {
+            return 0;
+        }
+
+        @Override
+        public double getWindowIntervalInSec() {
+            return intervalInMs / 1000.0;
+        }
+
+        @Override
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        // Events are always recorded to the finest window.
+
+        @Override
+        public void addException(int n) {
+            HierarchicalMetric.this.addException(n);
+        }
+
+        @Override
+        public void addBlock(int n) {
+            HierarchicalMetric.this.addBlock(n);
+        }
+
+        @Override
+        public void addSuccess(int n) {
+            HierarchicalMetric.this.addSuccess(n);
+        }
+
+        @Override
+        public void addPass(int n) {
+            HierarchicalMetric.this.addPass(n);
+        }
+
+        @Override
+        public void addRT(long rt) {
+            HierarchicalMetric.this.addRT(rt);
+        }
+
+        @Override
+        public void addOccupiedPass(int acquireCount) {
+            HierarchicalMetric.this.addOccupiedPass(acquireCount);
+        }
+
+        @Override
+        public void addWaiting(long futureTime, int acquireCount) {
+            HierarchicalMetric.this.addWaiting(futureTime, acquireCount);
+        }
+
+        @Override
+        public void debug() {
+            data().debug(TimeUtil.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.metric;
+
+import com.alibaba.csp.sentinel.slots.statistic.base.LeapArray;
+import com.alibaba.csp.sentinel.slots.statistic.base.WindowWrap;
+import com.alibaba.csp.sentinel.slots.statistic.data.LatencyHistogram;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
+/**
+ * Sliding window of {@link LatencyHistogram}s, each window bucket holds latencies recorded in its time span.
+ *
+ * @since 1.5.0
+ */
+public class LatencyHistogramLeapArray extends LeapArray<LatencyHistogram> {
+
+    public LatencyHistogramLeapArray(int sampleCount, int intervalInMs) {
+        super(sampleCount, intervalInMs);
+    }
+
+    @Override
+    public LatencyHistogram newEmptyBucket(long time) {
+        return new LatencyHistogram();
+    }
+
+    @Override
+    protected WindowWrap<LatencyHistogram> resetWindowTo(WindowWrap<LatencyHistogram> w, long startTime) {
+        // Update the start time and reset value.
+        w.resetTo(startTime);
+        w.value().reset();
+        return w;
+    }
+
+    /**
+     * Record a latency value to current window.
+     *
+     * @param micros latency in microseconds
+     */
+    public void record(long micros) {
+        currentWindow().value().record(micros);
+    }
+
+    /**
+     * Get the latency at given percentile of all valid windows. The windows are read in place,
+     * so nothing is allocated.
+     *
+     * @param percentile percentile in range (0, 100], e.g. {@code 99.9} for p999
+     * @return the latency in microseconds, or 0 if nothing is recorded
+     */
+    public long valueAtPercentile(double percentile) {
+        return valueAtPercentile(percentile, Long.MIN_VALUE);
+    }
+
+    /**
+     * Get the latency at given percentile of valid windows that start no earlier than given time.
+     *
+     * @param percentile percentile in range (0, 100], e.g. {@code 99.9} for p999
+     * @param since      the earliest start time (in milliseconds) of windows to read
+     * @return the latency in microseconds, or 0 if nothing is recorded
+     */
+    public long valueAtPercentile(double percentile, long since) {
+        LatencyHistogram.checkPercentile(percentile);
+        long now = TimeUtil.currentTimeMillis();
+        long total = count(now, since);
+        if (total == 0) {
+            return 0;
+        }
+        long rank = LatencyHistogram.rankOf(percentile, total);
+        long seen = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            for (int j = 0; j < array.length(); j++) {
+                WindowWrap<LatencyHistogram> w = array.get(j);
+                if (isValid(now, since, w)) {
+                    seen += w.value().countAt(i);
+                }
+            }
+            if (seen >= rank) {
+                return LatencyHistogram.highestEquivalentValue(i);
+            }
+        }
+        // Values may be recorded concurrently after the total is counted.
+        return LatencyHistogram.highestEquivalentValue(LatencyHistogram.BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return count of latencies recorded in all valid windows
+     */
+    public long count() {
+        return count(TimeUtil.currentTimeMillis(), Long.MIN_VALUE);
+    }
+
+    /**
+     * @param since the earliest start time (in milliseconds) of windows to read
+     * @return count of latencies recorded in valid windows that start no earlier than given time
+     */
+    public long count(long since) {
+        return count(TimeUtil.currentTimeMillis(), since);
+    }
+
+    /**
+     * @param micros latency in microseconds
+     * @param since  the earliest start time (in milliseconds) of windows to read
+     * @return count of latencies no less than given latency (see {@link LatencyHistogram#countAtOrAbove(long)})
+     * in valid windows that start no earlier than given time
+     */
+    public long countAtOrAbove(long micros, long since) {
+        long now = TimeUtil.currentTimeMillis();
+        long count = 0;
+        for (int i = 0; i < array.length(); i++) {
+            WindowWrap<LatencyHistogram> w = array.get(i);
+            if (isValid(now, since, w)) {
+                count += w.value().countAtOrAbove(micros);
+            }
+        }
+        return count;
+    }
+
+    private long count(long now, long since) {
+        long count = 0;
+        for (int i = 0; i < array.length(); i++) {
+            WindowWrap<LatencyHistogram> w = array.get(i);
+            if (isValid(now, since, w)) {
+                count += w.value().count();
+            }
+        }
+        return count;
+    }
+
+    private boolean isValid(long now, long since, WindowWrap<LatencyHistogram> w) {
+        return w != null && w.windowStart() >= since && !isWindowDeprecated(now, w);
+    }
+}
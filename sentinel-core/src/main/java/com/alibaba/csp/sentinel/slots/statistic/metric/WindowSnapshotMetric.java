@@ -0,0 +1,39 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.metric;
+
+import com.alibaba.csp.sentinel.node.metric.MetricSnapshotRing;
+
+/**
+ * A {@link Metric} that appends snapshots of its windows to a {@link MetricSnapshotRing} without creating
+ * any object, so that metrics of nodes can be collected without garbage
+ * (see {@link com.alibaba.csp.sentinel.node.StatisticNode#collectMetrics()}).
+ *
+ * @since 1.5.0
+ */
+public interface WindowSnapshotMetric extends Metric {
+
+    /**
+     * Append the snapshot of the bucket exactly associated to provided timestamp to the ring, if the bucket
+     * is up-to-date and not empty. The response time in the snapshot is the average one.
+     * Note: this operation will not perform refreshing, and will not create any object.
+     *
+     * @param timeMillis valid time in ms
+     * @param ring       the ring to append to
+     * @return true if the snapshot is appended, otherwise false
+     */
+    boolean snapshotWindow(long timeMillis, MetricSnapshotRing ring);
+}
@@ -21,6 +21,7 @@ import com.alibaba.csp.sentinel.slots.statistic.MetricEvent;
 import com.alibaba.csp.sentinel.slots.statistic.base.LeapArray;
 import com.alibaba.csp.sentinel.slots.statistic.base.WindowWrap;
 import com.alibaba.csp.sentinel.slots.statistic.data.MetricBucket;
+import com.alibaba.csp.sentinel.slots.statistic.data.MetricBucketProvider;
 
 /**
  * @author jialiang.linjl
@@ -42,7 +43,7 @@ public class OccupiableBucketLeapArray extends LeapArray<MetricBucket> {
 
     @Override
     public MetricBucket newEmptyBucket(long time) {
-        MetricBucket newBucket = new MetricBucket();
+        MetricBucket newBucket = MetricBucketProvider.newBucket();
         // 获取time对应的采用窗口被占用的token数
         MetricBucket borrowBucket = borrowArray.getWindowValue(time);
         if (borrowBucket != null) {
@@ -15,38 +15,77 @@
  */
 package com.alibaba.csp.sentinel.util;
 
-import java.util.concurrent.TimeUnit;
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.log.RecordLog;
+import com.alibaba.csp.sentinel.util.clock.AdaptiveClock;
+import com.alibaba.csp.sentinel.util.clock.Clock;
+import com.alibaba.csp.sentinel.util.clock.SystemClock;
 
 /**
- * Provides millisecond-level time of OS.
+ * Provides millisecond-level time of OS, and monotonic nanosecond-level time for measuring elapsed time.
+ * The time source is decided by {@link SentinelConfig#CLOCK_TYPE}, and can be replaced via
+ * {@link #setClock(Clock)} (e.g. with a {@link com.alibaba.csp.sentinel.util.clock.ManualClock} in tests).
  *
  * @author qinan.qn
  */
 public final class TimeUtil {
 
-    private static volatile long currentTimeMillis;
-
-    static {
-        currentTimeMillis = System.currentTimeMillis();
-        Thread daemon = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                while (true) {
-                    currentTimeMillis = System.currentTimeMillis();
-                    try {
-                        TimeUnit.MILLISECONDS.sleep(1);
-                    } catch (Throwable e) {
-
-                    }
-                }
-            }
-        });
-        daemon.setDaemon(true);
-        daemon.setName("sentinel-time-tick-thread");
-        daemon.start();
+    private static final Clock DEFAULT_CLOCK = createDefaultClock();
+
+    private static volatile Clock clock = DEFAULT_CLOCK;
+
+    private static Clock createDefaultClock() {
+        String type = SentinelConfig.clockType();
+        Clock defaultClock;
+        if (SentinelConfig.CLOCK_TYPE_SYSTEM.equals(type)) {
+            defaultClock = SystemClock.INSTANCE;
+        } else {
+            defaultClock = new AdaptiveClock(SentinelConfig.clockTickingThreshold()).start();
+        }
+        RecordLog.info("[TimeUtil] Default clock resolved: " + defaultClock);
+        return defaultClock;
     }
 
     public static long currentTimeMillis() {
-        return currentTimeMillis;
+        return clock.currentTimeMillis();
+    }
+
+    /**
+     * Get current value of the monotonic time source, which can only be used to measure elapsed time.
+     *
+     * @return current monotonic time in nanoseconds
+     * @since 1.5.0
+     */
+    public static long nanoTime() {
+        return clock.nanoTime();
+    }
+
+    /**
+     * @since 1.5.0
+     */
+    public static Clock getClock() {
+        return clock;
     }
+
+    /**
+     * Replace the time source of Sentinel.
+     *
+     * @param clock new clock, not null
+     * @since 1.5.0
+     */
+    public static void setClock(Clock clock) {
+        AssertUtil.notNull(clock, "clock cannot be null");
+        TimeUtil.clock = clock;
+    }
+
+    /**
+     * Restore the default time source.
+     *
+     * @since 1.5.0
+     */
+    public static void resetClock() {
+        clock = DEFAULT_CLOCK;
+    }
+
+    private TimeUtil() {}
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.util.clock;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.csp.sentinel.slots.statistic.base.LongAdder;
+
+/**
+ * <p>
+ * A clock that switches between direct reads of the system time and a cached time refreshed by a tick thread.
+ * </p>
+ * <p>
+ * Reading a cached volatile time is cheaper than {@link System#currentTimeMillis()} (which can be
+ * a real system call on some virtualized hosts), but the tick thread has to wake up every millisecond,
+ * which burns CPU even in idle processes. So the clock keeps the tick thread in a slow checking
+ * loop and reads the system time directly, until the read rate reaches the ticking threshold.
+ * The clock falls back to direct reads when the read rate drops below half of the threshold.
+ * </p>
+ * <p>
+ * Reads are counted per thread, and only every {@link #READ_SAMPLE_COUNT} reads of a thread are added to the
+ * shared counter, so that reading the clock does not contend on the counter.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class AdaptiveClock implements Clock {
+
+    /**
+     * Interval of checking the read rate in milliseconds.
+     */
+    static final long CHECK_INTERVAL_MS = 500;
+
+    /**
+     * Reads of each thread are added to the shared counter in batches of this count (power of 2).
+     */
+    static final int READ_SAMPLE_COUNT = 64;
+
+    private final long tickingThreshold;
+    private final LongAdder reads = new LongAdder();
+    private final ThreadLocal<int[]> threadReads = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    private volatile boolean ticking;
+    private volatile long cachedTimeMillis;
+
+    /**
+     * @param tickingThreshold read rate (per second) to switch to ticking mode,
+     *                         0 for ticking all the time
+     */
+    public AdaptiveClock(long tickingThreshold) {
+        if (tickingThreshold < 0) {
+            throw new IllegalArgumentException("tickingThreshold should not be negative: " + tickingThreshold);
+        }
+        this.tickingThreshold = tickingThreshold;
+        this.cachedTimeMillis = System.currentTimeMillis();
+        this.ticking = tickingThreshold == 0;
+    }
+
+    /**
+     * Start the tick thread.
+     *
+     * @return this clock
+     */
+    public AdaptiveClock start() {
+        Thread daemon = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long lastCheckTime = System.currentTimeMillis();
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    cachedTimeMillis = now;
+                    if (now - lastCheckTime >= CHECK_INTERVAL_MS) {
+                        updateMode(takeReadCount(), now - lastCheckTime);
+                        lastCheckTime = now;
+                    }
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(ticking ? 1 : CHECK_INTERVAL_MS);
+                    } catch (Throwable e) {
+
+                    }
+                }
+            }
+        });
+        daemon.setDaemon(true);
+        daemon.setName("sentinel-time-tick-thread");
+        daemon.start();
+        return this;
+    }
+
+    /**
+     * Decide the mode by the read rate of the last period.
+     *
+     * @param readCount    read count during the period
+     * @param periodMillis length of the period in milliseconds
+     */
+    void updateMode(long readCount, long periodMillis) {
+        if (tickingThreshold == 0 || periodMillis <= 0) {
+            return;
+        }
+        long rate = readCount * 1000 / periodMillis;
+        if (!ticking && rate >= tickingThreshold) {
+            // Refresh the cached time before switching, so that time never goes back.
+            cachedTimeMillis = System.currentTimeMillis();
+            ticking = true;
+        } else if (ticking && rate < tickingThreshold / 2) {
+            ticking = false;
+        }
+    }
+
+    /**
+     * @return count of reads (in batches of {@link #READ_SAMPLE_COUNT}) since the last call
+     */
+    long takeReadCount() {
+        return reads.sumThenReset();
+    }
+
+    public boolean isTicking() {
+        return ticking;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        if (tickingThreshold == 0) {
+            return cachedTimeMillis;
+        }
+        int[] count = threadReads.get();
+        if ((++count[0] & (READ_SAMPLE_COUNT - 1)) == 0) {
+            reads.add(READ_SAMPLE_COUNT);
+        }
+        return ticking ? cachedTimeMillis : System.currentTimeMillis();
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveClock{tickingThreshold=" + tickingThreshold + ", ticking=" + ticking + '}';
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.util.clock;
+
+/**
+ * Source of time used by Sentinel. All Sentinel internal time reads go through
+ * {@link com.alibaba.csp.sentinel.util.TimeUtil}, which delegates to a clock,
+ * so the clock can be replaced (e.g. with a {@link ManualClock} in tests).
+ *
+ * @since 1.5.0
+ */
+public interface Clock {
+
+    /**
+     * Get current wall-clock time in milliseconds.
+     *
+     * @return current time in milliseconds
+     */
+    long currentTimeMillis();
+
+    /**
+     * Get current value of the monotonic time source in nanoseconds. Like {@link System#nanoTime()},
+     * the value can only be used to measure elapsed time.
+     *
+     * @return current monotonic time in nanoseconds
+     */
+    long nanoTime();
+}
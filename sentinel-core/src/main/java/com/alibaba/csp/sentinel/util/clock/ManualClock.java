@@ -0,0 +1,107 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.util.clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A clock that only moves when told to, for tests of time-based logic without sleeping:</p>
+ *
+ * <pre>
+ * ManualClock clock = new ManualClock(1000);
+ * TimeUtil.setClock(clock);
+ * try {
+ *     // ...
+ *     clock.advance(500);
+ *     // ...
+ * } finally {
+ *     TimeUtil.resetClock();
+ * }
+ * </pre>
+ *
+ * @since 1.5.0
+ */
+public class ManualClock implements Clock {
+
+    private volatile long currentTimeMillis;
+    private volatile long nanoTime;
+
+    public ManualClock() {
+        this(0);
+    }
+
+    public ManualClock(long currentTimeMillis) {
+        this.currentTimeMillis = currentTimeMillis;
+        this.nanoTime = TimeUnit.MILLISECONDS.toNanos(currentTimeMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    /**
+     * Set current time. The monotonic time moves by the same amount, and never moves backwards.
+     *
+     * @param currentTimeMillis new time in milliseconds
+     * @return this clock
+     */
+    public synchronized ManualClock setCurrentTimeMillis(long currentTimeMillis) {
+        long delta = currentTimeMillis - this.currentTimeMillis;
+        this.currentTimeMillis = currentTimeMillis;
+        if (delta > 0) {
+            this.nanoTime += TimeUnit.MILLISECONDS.toNanos(delta);
+        }
+        return this;
+    }
+
+    /**
+     * Move the clock forward.
+     *
+     * @param millis time to move in milliseconds
+     * @return this clock
+     */
+    public ManualClock advance(long millis) {
+        return advanceNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Move the clock forward in nanoseconds. The millisecond time moves by whole milliseconds
+     * that the monotonic time has crossed.
+     *
+     * @param nanos time to move in nanoseconds
+     * @return this clock
+     */
+    public synchronized ManualClock advanceNanos(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Clock cannot move backwards: " + nanos);
+        }
+        long oldMillis = TimeUnit.NANOSECONDS.toMillis(nanoTime);
+        this.nanoTime += nanos;
+        this.currentTimeMillis += TimeUnit.NANOSECONDS.toMillis(nanoTime) - oldMillis;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ManualClock{currentTimeMillis=" + currentTimeMillis + ", nanoTime=" + nanoTime + '}';
+    }
+}
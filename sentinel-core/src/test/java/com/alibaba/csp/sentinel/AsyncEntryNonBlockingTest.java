@@ -0,0 +1,119 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import com.alibaba.csp.sentinel.context.ContextTestUtil;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowException;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRuleManager;
+import com.alibaba.csp.sentinel.slots.statistic.StatisticSlot;
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link AsyncEntry} in non-blocking mode.
+ */
+public class AsyncEntryNonBlockingTest extends AbstractTimeBasedTest {
+
+    @Before
+    public void setUp() {
+        // The rate limiter takes time 0 as never passed.
+        setCurrentMillis(3600 * 1000L);
+    }
+
+    @After
+    public void tearDown() {
+        FlowRuleManager.loadRules(new ArrayList<FlowRule>());
+        ContextTestUtil.cleanUpContext();
+    }
+
+    @Test
+    public void testRateLimiterDefersPermitWithoutBlocking() throws BlockException {
+        String resourceName = "testRateLimiterDefersPermitWithoutBlocking";
+        loadRateLimiterRule(resourceName, 10, 500);
+
+        long start = System.nanoTime();
+        for (int i = 0; i <= 5; i++) {
+            AsyncEntry entry = SphU.asyncEntryNonBlocking(resourceName, EntryType.OUT);
+            assertTrue(entry.isNonBlocking());
+            // One request per 100 ms, the clock does not move.
+            assertEquals(i * 100, entry.getPermitWaitMs());
+            entry.exit();
+        }
+        // Queueing time exceeds 500 ms.
+        try {
+            SphU.asyncEntryNonBlocking(resourceName, EntryType.OUT);
+            fail("Should be blocked");
+        } catch (FlowException ex) {
+            // Expected.
+        }
+        // Caller thread is never blocked.
+        assertTrue(System.nanoTime() - start < 400 * 1000 * 1000L);
+
+        sleep(250);
+        AsyncEntry entry = SphU.asyncEntryNonBlocking(resourceName, EntryType.OUT);
+        assertEquals(350, entry.getPermitWaitMs());
+        sleep(350);
+        assertEquals(0, entry.getPermitWaitMs());
+        entry.exit();
+    }
+
+    @Test
+    public void testResponseTimeExcludesPermitWait() throws BlockException {
+        String resourceName = "testResponseTimeExcludesPermitWait";
+        loadRateLimiterRule(resourceName, 10, 500);
+
+        SphU.asyncEntryNonBlocking(resourceName, EntryType.OUT).exit();
+        AsyncEntry entry = SphU.asyncEntryNonBlocking(resourceName, EntryType.OUT);
+        assertEquals(100, entry.getPermitWaitMs());
+        assertEquals(entry.getPermitTime(), entry.getCreateTime());
+        sleep(100);
+        // Processing after the permit is granted.
+        sleep(20);
+        assertEquals(20 * 1000, StatisticSlot.calculateRtMicros(entry));
+        entry.exit();
+    }
+
+    @Test
+    public void testDefaultAsyncEntryNotDeferred() throws BlockException {
+        String resourceName = "testDefaultAsyncEntryNotDeferred";
+        loadRateLimiterRule(resourceName, 1000, 500);
+
+        AsyncEntry entry = SphU.asyncEntry(resourceName);
+        assertFalse(entry.isNonBlocking());
+        assertEquals(0, entry.getPermitTime());
+        entry.exit();
+    }
+
+    private void loadRateLimiterRule(String resourceName, double count, int maxQueueingTimeMs) {
+        FlowRule rule = new FlowRule(resourceName)
+            .setCount(count)
+            .setGrade(RuleConstant.FLOW_GRADE_QPS)
+            .setControlBehavior(RuleConstant.CONTROL_BEHAVIOR_RATE_LIMITER)
+            .setMaxQueueingTimeMs(maxQueueingTimeMs);
+        FlowRuleManager.loadRules(Collections.singletonList(rule));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel;
+
+import java.util.Collections;
+
+import com.alibaba.csp.sentinel.context.Context;
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.node.Node;
+import com.alibaba.csp.sentinel.slotchain.AbstractLinkedProcessorSlot;
+import com.alibaba.csp.sentinel.slotchain.DefaultProcessorSlotChain;
+import com.alibaba.csp.sentinel.slotchain.ProcessorSlot;
+import com.alibaba.csp.sentinel.slotchain.ProcessorSlotChain;
+import com.alibaba.csp.sentinel.slotchain.ResourceWrapper;
+import com.alibaba.csp.sentinel.slotchain.StringResourceWrapper;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRuleManager;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link ResourceHandle}.
+ */
+public class ResourceHandleTest {
+
+    @After
+    public void tearDown() {
+        FlowRuleManager.loadRules(Collections.<FlowRule>emptyList());
+    }
+
+    @Test
+    public void testHandleEntrySharesNodeWithNamedEntry() throws BlockException {
+        String resourceName = "testHandleEntrySharesNode";
+        ResourceHandle handle = SphU.handle(resourceName, EntryType.IN);
+        assertEquals(resourceName, handle.getResourceWrapper().getName());
+        assertEquals(EntryType.IN, handle.getResourceWrapper().getType());
+        assertNull(handle.getClusterNode());
+
+        Entry e1 = SphU.entry(resourceName, EntryType.IN);
+        Node node = e1.getCurNode();
+        e1.exit();
+
+        Entry e2 = handle.entry();
+        assertSame(node, e2.getCurNode());
+        e2.exit();
+        // The node is cached after the first entry.
+        Entry e3 = handle.entry();
+        assertSame(node, e3.getCurNode());
+        e3.exit();
+
+        assertNotNull(handle.getClusterNode());
+        assertSame(((DefaultNode)node).getClusterNode(), handle.getClusterNode());
+        assertEquals(3, handle.getClusterNode().totalRequest());
+    }
+
+    @Test
+    public void testHandleEntryInDifferentContexts() throws BlockException {
+        ResourceHandle handle = SphU.handle("testHandleEntryInDifferentContexts");
+
+        ContextUtil.enter("testHandleContextA");
+        Entry a = handle.entry();
+        Node nodeA = a.getCurNode();
+        a.exit();
+        ContextUtil.exit();
+
+        ContextUtil.enter("testHandleContextB");
+        Entry b = handle.entry();
+        Node nodeB = b.getCurNode();
+        b.exit();
+        ContextUtil.exit();
+
+        ContextUtil.enter("testHandleContextA");
+        Entry a2 = handle.entry();
+        assertSame(nodeA, a2.getCurNode());
+        a2.exit();
+        ContextUtil.exit();
+
+        assertNotSame(nodeA, nodeB);
+        assertSame(((DefaultNode)nodeA).getClusterNode(), ((DefaultNode)nodeB).getClusterNode());
+    }
+
+    @Test
+    public void testHandleEntryBlocked() throws BlockException {
+        String resourceName = "testHandleEntryBlocked";
+        FlowRule rule = new FlowRule(resourceName);
+        rule.setGrade(RuleConstant.FLOW_GRADE_QPS);
+        rule.setCount(0);
+        FlowRuleManager.loadRules(Collections.singletonList(rule));
+
+        ResourceHandle handle = SphU.handle(resourceName);
+        try {
+            handle.entry();
+            fail("Should be blocked");
+        } catch (BlockException ex) {
+            assertEquals(resourceName, ex.getRule().getResource());
+        }
+        assertNull(handle.tryEntry());
+        assertNull(ContextUtil.getContext());
+        assertEquals(2, handle.getClusterNode().blockRequest());
+
+        FlowRuleManager.loadRules(Collections.<FlowRule>emptyList());
+        Entry entry = handle.tryEntry();
+        assertNotNull(entry);
+        entry.exit();
+    }
+
+    @Test
+    public void testFirstSlotReceivesNullObj() throws BlockException {
+        String resourceName = "testFirstSlotReceivesNullObj";
+        ObjRecordingSlot slot = new ObjRecordingSlot();
+        ProcessorSlotChain chain = new DefaultProcessorSlotChain();
+        chain.addLast(slot);
+        CtSph.getChainMap().put(new StringResourceWrapper(resourceName, EntryType.OUT), chain);
+        try {
+            ResourceHandle handle = SphU.handle(resourceName);
+            handle.entry().exit();
+            handle.entry().exit();
+            assertEquals(2, slot.entered);
+            assertEquals(0, slot.nonNullObj);
+        } finally {
+            CtSph.resetChainMap();
+        }
+    }
+
+    @Test
+    public void testChainLookedUpAgainAfterReset() throws BlockException {
+        String resourceName = "testChainLookedUpAgainAfterReset";
+        ResourceHandle handle = SphU.handle(resourceName);
+        Entry e1 = handle.entry();
+        ProcessorSlot<Object> oldChain = ((CtEntry)e1).chain;
+        e1.exit();
+
+        CtSph.resetChainMap();
+        Entry e2 = handle.entry();
+        ProcessorSlot<Object> newChain = ((CtEntry)e2).chain;
+        e2.exit();
+        assertNotSame(oldChain, newChain);
+        assertSame(CtSph.getChainMap().get(handle.getResourceWrapper()), newChain);
+    }
+
+    private static class ObjRecordingSlot extends AbstractLinkedProcessorSlot<Object> {
+        int entered = 0;
+        int nonNullObj = 0;
+
+        @Override
+        public void entry(Context context, ResourceWrapper resourceWrapper, Object obj, int count,
+                          boolean prioritized, Object... args) {
+            entered++;
+            if (obj != null) {
+                nonNullObj++;
+            }
+        }
+
+        @Override
+        public void exit(Context context, ResourceWrapper resourceWrapper, int count, Object... args) {
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.alibaba.csp.sentinel.context.Context;
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for the zero-garbage entry mode.
+ */
+public class ZeroGarbageEntryTest {
+
+    @Before
+    public void setUp() {
+        Constants.ZERO_GARBAGE = true;
+    }
+
+    @After
+    public void tearDown() {
+        Constants.ZERO_GARBAGE = false;
+    }
+
+    @Test
+    public void testResourceWrapperCached() {
+        assertSame(CtSph.stringResource("zeroGarbageRes", EntryType.IN),
+            CtSph.stringResource("zeroGarbageRes", EntryType.IN));
+        assertNotSame(CtSph.stringResource("zeroGarbageRes", EntryType.IN),
+            CtSph.stringResource("zeroGarbageRes", EntryType.OUT));
+
+        Constants.ZERO_GARBAGE = false;
+        assertNotSame(CtSph.stringResource("zeroGarbageRes", EntryType.IN),
+            CtSph.stringResource("zeroGarbageRes", EntryType.IN));
+    }
+
+    @Test
+    public void testResourceCacheBounded() throws Exception {
+        CtSph.resetChainMap();
+        final int threads = 8;
+        final int namesPerThread = Constants.MAX_SLOT_CHAIN_SIZE / threads + 100;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            futures.add(pool.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < namesPerThread; i++) {
+                        CtSph.stringResource("testResourceCacheBounded-" + id + "-" + i, EntryType.IN);
+                        // Same names from all threads.
+                        CtSph.stringResource("testResourceCacheBounded-" + i, EntryType.IN);
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        try {
+            assertEquals(Constants.MAX_SLOT_CHAIN_SIZE, CtSph.resourceCacheSize(EntryType.IN));
+        } finally {
+            CtSph.resetChainMap();
+        }
+    }
+
+    @Test
+    public void testDuplicateExitNotAffectNextEntry() throws BlockException {
+        Entry entry = SphU.entry("testDuplicateExitNotAffectNextEntry");
+        entry.exit();
+        Entry next = SphU.entry("testDuplicateExitNotAffectNextEntry");
+        assertNotSame(entry, next);
+        // Exiting a stale entry again has no effect on the entry in progress.
+        entry.exit();
+        Context context = ContextUtil.getContext();
+        assertNotNull(context);
+        assertSame(next, context.getCurEntry());
+        next.exit();
+        assertNull(ContextUtil.getContext());
+    }
+
+    @Test
+    public void testContextRecycled() throws BlockException {
+        String contextName = "testContextRecycled";
+        Context context = ContextUtil.enter(contextName, "appA");
+        Entry entry = SphU.entry("testContextRecycledRes");
+        entry.exit();
+        ContextUtil.exit();
+
+        Context next = ContextUtil.enter(contextName, "appB");
+        try {
+            assertSame(context, next);
+            assertEquals("appB", next.getOrigin());
+            assertNull(next.getCurEntry());
+        } finally {
+            ContextUtil.exit();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.cluster.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.alibaba.csp.sentinel.cluster.TokenResult;
+import com.alibaba.csp.sentinel.cluster.TokenResultStatus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link TokenResultFuture}.
+ */
+public class TokenResultFutureTest {
+
+    @Test
+    public void testCompleteOnlyOnce() throws Exception {
+        TokenResultFuture future = new TokenResultFuture();
+        assertFalse(future.isDone());
+        assertNull(future.getNow());
+
+        TokenResult ok = new TokenResult(TokenResultStatus.OK);
+        assertTrue(future.complete(ok));
+        assertFalse(future.complete(new TokenResult(TokenResultStatus.BLOCKED)));
+        assertTrue(future.isDone());
+        assertSame(ok, future.get());
+        assertSame(ok, future.getNow());
+    }
+
+    @Test
+    public void testListenerNotifiedOnCompletion() {
+        final AtomicReference<TokenResult> received = new AtomicReference<>();
+        TokenResultFuture.Listener listener = new TokenResultFuture.Listener() {
+            @Override
+            public void onComplete(TokenResult result) {
+                received.set(result);
+            }
+        };
+        TokenResultFuture future = new TokenResultFuture().addListener(listener);
+        assertNull(received.get());
+
+        TokenResult ok = new TokenResult(TokenResultStatus.OK);
+        future.complete(ok);
+        assertSame(ok, received.get());
+
+        // Added after completion: notified at once.
+        received.set(null);
+        future.addListener(listener);
+        assertSame(ok, received.get());
+    }
+
+    @Test
+    public void testGetWaitsForCompletion() throws Exception {
+        final TokenResultFuture future = new TokenResultFuture();
+        final TokenResult ok = new TokenResult(TokenResultStatus.OK);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                future.complete(ok);
+            }
+        }).start();
+        assertSame(ok, future.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testGetTimeout() throws Exception {
+        new TokenResultFuture().get(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testCompleted() {
+        TokenResult ok = new TokenResult(TokenResultStatus.OK);
+        TokenResultFuture future = TokenResultFuture.completed(ok);
+        assertTrue(future.isDone());
+        assertFalse(future.cancel(true));
+        assertSame(ok, future.getNow());
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.concurrent.timer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link HashedWheelTimer}.
+ */
+public class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        // A small wheel so that tasks of long delay will take multiple rounds.
+        timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testTasksExpireInOrder() throws Exception {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(3);
+        int[] delays = new int[] {120, 20, 60};
+        for (final int delay : delays) {
+            timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(delay);
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(3, order.size());
+        assertEquals(20, (int)order.get(0));
+        assertEquals(60, (int)order.get(1));
+        assertEquals(120, (int)order.get(2));
+        assertEquals(0, timer.getPendingTimeouts());
+        assertEquals(3, timer.getExpiredCount());
+    }
+
+    @Test
+    public void testTaskNotExpiredBeforeDeadline() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        // Beyond a round of the wheel (8 * 5 ms).
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        };
+        Timeout cancelled = timer.newTimeout(task, 30, TimeUnit.MILLISECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 80, TimeUnit.MILLISECONDS);
+
+        assertTrue(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertFalse(cancelled.cancel());
+        assertSame(task, cancelled.task());
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(0, counter.get());
+        assertFalse(cancelled.isExpired());
+        assertEquals(0, timer.getPendingTimeouts());
+        assertEquals(1, timer.getExpiredCount());
+    }
+
+    @Test
+    public void testCannotCancelExpiredTask() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Timeout timeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void testExceptionInTaskWillNotStopTimer() throws Exception {
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected");
+            }
+        }, 5, TimeUnit.MILLISECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentScheduling() throws Exception {
+        final int threadCount = 4;
+        final int tasksPerThread = 500;
+        final CountDownLatch done = new CountDownLatch(threadCount * tasksPerThread);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < tasksPerThread; j++) {
+                        timer.newTimeout(task, j % 100, TimeUnit.MILLISECONDS);
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(threadCount * tasksPerThread, timer.getExpiredCount());
+        assertEquals(0, timer.getPendingTimeouts());
+        assertTrue(timer.getMaxLagMillis() >= timer.getLastLagMillis());
+    }
+
+    @Test
+    public void testLagOfBlockedWorker() throws Exception {
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Block the worker so that the next task is late.
+                    Thread.sleep(100);
+                } catch (InterruptedException ignore) {
+                }
+            }
+        }, 5, TimeUnit.MILLISECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(timer.getLastLagMillis() >= 50);
+        assertTrue(timer.getMaxLagMillis() >= timer.getLastLagMillis());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testScheduleAfterStop() {
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        timer.stop();
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+    }
+}
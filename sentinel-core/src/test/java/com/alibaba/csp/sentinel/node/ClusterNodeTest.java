@@ -15,7 +15,10 @@
  */
 package com.alibaba.csp.sentinel.node;
 
+import com.alibaba.csp.sentinel.Constants;
 import com.alibaba.csp.sentinel.slots.block.flow.FlowException;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+import com.alibaba.csp.sentinel.util.clock.ManualClock;
 
 import org.junit.Test;
 
@@ -153,4 +156,73 @@ public class ClusterNodeTest {
         assertEquals(1, clusterNode.exceptionQps(), 0.01);
         assertEquals(1, clusterNode.totalException());
     }
+
+    @Test
+    public void testPercentileRt() {
+        ManualClock clock = new ManualClock(System.currentTimeMillis());
+        TimeUtil.setClock(clock);
+        try {
+            ClusterNode clusterNode = new ClusterNode();
+            if (!Constants.RT_HISTOGRAM) {
+                assertFalse(clusterNode.isRtHistogramEnabled());
+                clusterNode.recordRt(1000);
+                assertEquals(0, clusterNode.percentileRt(99), 0.001);
+            }
+            clusterNode.enableRtHistogram();
+            assertTrue(clusterNode.isRtHistogramEnabled());
+
+            // 98 fast calls (1 ms) and 2 slow calls (800 ms).
+            for (int i = 0; i < 98; i++) {
+                clusterNode.recordRt(1000);
+            }
+            clusterNode.recordRt(800000);
+            clusterNode.recordRt(800000);
+
+            assertEquals(1, clusterNode.percentileRt(50), 0.1);
+            assertEquals(1, clusterNode.percentileRt(98), 0.1);
+            assertEquals(800, clusterNode.percentileRt(99), 800 / 16.0);
+
+            // All windows become deprecated.
+            clock.advance(IntervalProperty.INTERVAL * 2);
+            assertEquals(0, clusterNode.percentileRt(99), 0.001);
+        } finally {
+            TimeUtil.resetClock();
+        }
+    }
+
+    @Test
+    public void testCountInFlight() {
+        ManualClock clock = new ManualClock(100000);
+        TimeUtil.setClock(clock);
+        try {
+            ClusterNode clusterNode = new ClusterNode();
+            clusterNode.increaseInFlight(100000);
+            assertEquals(0, clusterNode.countInFlight(0, 200000));
+
+            // Windows of 100 ms.
+            clusterNode.enableInFlightCount(2000);
+            clusterNode.increaseInFlight(100000);
+            clusterNode.increaseInFlight(100050);
+            clock.advance(100);
+            clusterNode.increaseInFlight(100100);
+            clock.advance(100);
+            assertEquals(3, clusterNode.countInFlight(100000, 100200));
+            // Only whole windows are counted.
+            assertEquals(2, clusterNode.countInFlight(100000, 100150));
+            assertEquals(1, clusterNode.countInFlight(100050, 100200));
+
+            clusterNode.decreaseInFlight(100050);
+            assertEquals(2, clusterNode.countInFlight(100000, 100200));
+
+            // Requests started out of the interval are given up.
+            clock.advance(3000);
+            clusterNode.decreaseInFlight(100000);
+            clusterNode.decreaseInFlight(100100);
+            assertEquals(0, clusterNode.countInFlight(0, 110000));
+            clusterNode.increaseInFlight(103200);
+            assertEquals(1, clusterNode.countInFlight(0, 110000));
+        } finally {
+            TimeUtil.resetClock();
+        }
+    }
 }
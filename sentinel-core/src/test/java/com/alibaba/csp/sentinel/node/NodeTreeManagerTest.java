@@ -0,0 +1,300 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node;
+
+import java.util.Collections;
+
+import com.alibaba.csp.sentinel.Constants;
+import com.alibaba.csp.sentinel.Entry;
+import com.alibaba.csp.sentinel.EntryType;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.context.Context;
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.context.NullContext;
+import com.alibaba.csp.sentinel.slotchain.StringResourceWrapper;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowException;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRuleManager;
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link NodeTreeManager}.
+ */
+public class NodeTreeManagerTest extends AbstractTimeBasedTest {
+
+    @Before
+    public void setUp() {
+        setCurrentMillis(3600 * 1000L);
+        NodeTreeManager.resetPressureSweepTime();
+    }
+
+    @After
+    public void tearDown() {
+        NodeTreeManager.setMaxBytes(SentinelConfig.statisticNodeMaxBytes());
+        NodeTreeManager.setIdleTimeoutMs(SentinelConfig.statisticNodeIdleTimeout());
+        ContextUtil.exit();
+    }
+
+    @Test
+    public void testEvictIdleNodes() throws Exception {
+        String contextName = "testEvictIdleNodes_context";
+        String resourceName = "testEvictIdleNodes";
+        NodeTreeManager.setIdleTimeoutMs(1000);
+
+        DefaultNode node = enterOnce(contextName, resourceName);
+        EntranceNode entranceNode = findEntranceNode(contextName);
+        assertNotNull(entranceNode);
+        assertTrue(entranceNode.getChildList().contains(node));
+
+        // Not idle: requests in the last minute.
+        NodeTreeManager.evictIdleNodes();
+        sleep(1000);
+        NodeTreeManager.evictIdleNodes();
+        assertFalse(node.isEvicted());
+
+        // No requests in the last minute, the leaf goes first.
+        sleep(62 * 1000);
+        NodeTreeManager.evictIdleNodes();
+        sleep(1000);
+        NodeTreeManager.evictIdleNodes();
+        assertTrue(node.isEvicted());
+        assertFalse(entranceNode.isEvicted());
+        assertTrue(entranceNode.getChildList().isEmpty());
+
+        // Then the entrance node becomes an idle leaf, evicted after being idle for the timeout.
+        for (int i = 0; i < 2; i++) {
+            sleep(1000);
+            NodeTreeManager.evictIdleNodes();
+        }
+        assertTrue(entranceNode.isEvicted());
+        assertNull(findEntranceNode(contextName));
+
+        // Nodes are re-created on demand.
+        DefaultNode newNode = enterOnce(contextName, resourceName);
+        assertNotSame(node, newNode);
+        assertFalse(newNode.isEvicted());
+        EntranceNode newEntranceNode = findEntranceNode(contextName);
+        assertNotSame(entranceNode, newEntranceNode);
+        assertTrue(newEntranceNode.getChildList().contains(newNode));
+    }
+
+    @Test
+    public void testEvictNodeOfTwoParents() {
+        NodeTreeManager.setIdleTimeoutMs(1000);
+        DefaultNode parent1 = new DefaultNode(new StringResourceWrapper("testEvictNodeOfTwoParents_1", EntryType.OUT),
+            null);
+        DefaultNode parent2 = new DefaultNode(new StringResourceWrapper("testEvictNodeOfTwoParents_2", EntryType.OUT),
+            null);
+        DefaultNode node = new DefaultNode(new StringResourceWrapper("testEvictNodeOfTwoParents", EntryType.OUT),
+            null);
+        final int[] evictedTimes = new int[1];
+        assertTrue(NodeTreeManager.tryAdd(node, parent1, "testEvictNodeOfTwoParents_context",
+            new NodeTreeManager.EvictionHandler() {
+                @Override
+                public void onEvicted(String key, DefaultNode node) {
+                    evictedTimes[0]++;
+                }
+            }));
+        NodeTreeManager.addChild(parent1, node);
+        // The same node reached from another parent in the same context.
+        NodeTreeManager.addChild(parent2, node);
+        assertTrue(parent1.getChildList().contains(node));
+        assertTrue(parent2.getChildList().contains(node));
+
+        sleep(62 * 1000);
+        NodeTreeManager.evictIdleNodes();
+        sleep(1000);
+        NodeTreeManager.evictIdleNodes();
+        assertTrue(node.isEvicted());
+        assertEquals(1, evictedTimes[0]);
+        assertFalse(parent1.getChildList().contains(node));
+        assertFalse(parent2.getChildList().contains(node));
+
+        // Adding an evicted node to a parent takes no effect.
+        DefaultNode parent3 = new DefaultNode(new StringResourceWrapper("testEvictNodeOfTwoParents_3", EntryType.OUT),
+            null);
+        NodeTreeManager.addChild(parent3, node);
+        assertFalse(parent3.getChildList().contains(node));
+    }
+
+    @Test
+    public void testActiveNodeNotEvicted() throws Exception {
+        String resourceName = "testActiveNodeNotEvicted";
+        NodeTreeManager.setIdleTimeoutMs(1000);
+
+        ContextUtil.enter("testActiveNodeNotEvicted_context");
+        Entry entry = SphU.entry(resourceName);
+        DefaultNode node = (DefaultNode)entry.getCurNode();
+        sleep(62 * 1000);
+        NodeTreeManager.evictIdleNodes();
+        sleep(1000);
+        NodeTreeManager.evictIdleNodes();
+        assertFalse(node.isEvicted());
+        entry.exit();
+    }
+
+    @Test
+    public void testRejectWhenBudgetExceeded() throws Exception {
+        String resourceName = "testRejectWhenBudgetExceeded";
+        NodeTreeManager.setIdleTimeoutMs(0);
+        NodeTreeManager.setMaxBytes(1);
+        int treeNodeCount = NodeTreeManager.getTreeNodeCount();
+
+        // New context is bound to the overflow entrance node out of the budget.
+        Context context = ContextUtil.enter("testRejectWhenBudgetExceeded_context");
+        assertFalse(context instanceof NullContext);
+        assertTrue(ContextUtil.isOverflowContext(context));
+        assertEquals("testRejectWhenBudgetExceeded_context", context.getName());
+        assertNull(findEntranceNode("testRejectWhenBudgetExceeded_context"));
+        ContextUtil.exit();
+
+        // Node of the default context falls back to the overflow node out of the tree.
+        Entry entry = SphU.entry(resourceName);
+        Node node = entry.getCurNode();
+        entry.exit();
+        assertNotNull(node);
+        assertFalse(findEntranceNode(Constants.CONTEXT_DEFAULT_NAME).getChildList().contains(node));
+        assertEquals(1, ((DefaultNode)node).getClusterNode().totalSuccess());
+        assertEquals(treeNodeCount, NodeTreeManager.getTreeNodeCount());
+    }
+
+    @Test
+    public void testOverflowContextNameCached() {
+        String contextName = "testOverflowContextNameCached_context";
+        NodeTreeManager.setIdleTimeoutMs(1000);
+        NodeTreeManager.setMaxBytes(1);
+        assertTrue(ContextUtil.isOverflowContext(ContextUtil.enter(contextName)));
+        ContextUtil.exit();
+
+        // The name stays bound to the overflow entrance node without trying to add a new entrance node,
+        // even if the budget is available again.
+        NodeTreeManager.setMaxBytes(SentinelConfig.statisticNodeMaxBytes());
+        assertTrue(ContextUtil.isOverflowContext(ContextUtil.enter(contextName)));
+        ContextUtil.exit();
+        assertNull(findEntranceNode(contextName));
+
+        // Until nodes are evicted.
+        DefaultNode parent = new DefaultNode(new StringResourceWrapper(contextName + "_parent", EntryType.OUT), null);
+        DefaultNode node = new DefaultNode(new StringResourceWrapper(contextName + "_node", EntryType.OUT), null);
+        assertTrue(NodeTreeManager.tryAdd(node, parent, contextName, new NodeTreeManager.EvictionHandler() {
+            @Override
+            public void onEvicted(String key, DefaultNode node) {
+            }
+        }));
+        sleep(62 * 1000);
+        NodeTreeManager.evictIdleNodes();
+        sleep(1000);
+        NodeTreeManager.evictIdleNodes();
+        assertTrue(node.isEvicted());
+        assertFalse(ContextUtil.isOverflowContext(ContextUtil.enter(contextName)));
+        ContextUtil.exit();
+        assertNotNull(findEntranceNode(contextName));
+    }
+
+    @Test
+    public void testRecycledOverflowContextKeepsName() {
+        NodeTreeManager.setIdleTimeoutMs(0);
+        NodeTreeManager.setMaxBytes(1);
+        Constants.ZERO_GARBAGE = true;
+        try {
+            Context context1 = ContextUtil.enter("testRecycledOverflowContextKeepsName_context1");
+            assertTrue(ContextUtil.isOverflowContext(context1));
+            ContextUtil.exit();
+
+            // Both contexts share the overflow entrance node, but the recycled context has another name.
+            Context context2 = ContextUtil.enter("testRecycledOverflowContextKeepsName_context2");
+            assertTrue(ContextUtil.isOverflowContext(context2));
+            assertNotSame(context1, context2);
+            assertEquals("testRecycledOverflowContextKeepsName_context2", context2.getName());
+            ContextUtil.exit();
+
+            Context context3 = ContextUtil.enter("testRecycledOverflowContextKeepsName_context2");
+            assertSame(context2, context3);
+            ContextUtil.exit();
+        } finally {
+            Constants.ZERO_GARBAGE = false;
+        }
+    }
+
+    @Test
+    public void testRulesTakeEffectWhenBudgetExceeded() throws Exception {
+        String contextName = "testRulesTakeEffectWhenBudgetExceeded_context";
+        String resourceName = "testRulesTakeEffectWhenBudgetExceeded";
+        NodeTreeManager.setIdleTimeoutMs(0);
+        NodeTreeManager.setMaxBytes(1);
+        FlowRuleManager.loadRules(Collections.singletonList(new FlowRule(resourceName).setCount(1)));
+        try {
+            ContextUtil.enter(contextName);
+            Entry entry = SphU.entry(resourceName);
+            DefaultNode node = (DefaultNode)entry.getCurNode();
+            entry.exit();
+            assertNull(findEntranceNode(contextName));
+            assertFalse(node.isEvicted());
+
+            try {
+                SphU.entry(resourceName);
+                fail("The flow rule should take effect in the overflow context");
+            } catch (FlowException ex) {
+                // Expected.
+            }
+            ContextUtil.exit();
+        } finally {
+            FlowRuleManager.loadRules(null);
+        }
+    }
+
+    @Test
+    public void testEvictIdleNodesUnderPressure() throws Exception {
+        NodeTreeManager.setIdleTimeoutMs(0);
+        enterOnce("testEvictIdleNodesUnderPressure_context", "testEvictIdleNodesUnderPressure");
+        long evictedCount = NodeTreeManager.getEvictedCount();
+
+        sleep(62 * 1000);
+        // Full: no more nodes could be added without eviction.
+        NodeTreeManager.setMaxBytes(NodeTreeManager.estimateMemoryBytes());
+        DefaultNode node = enterOnce("testEvictIdleNodesUnderPressure_context2", "testEvictIdleNodesUnderPressure");
+
+        assertNotNull(findEntranceNode("testEvictIdleNodesUnderPressure_context2"));
+        assertFalse(node.isEvicted());
+        assertTrue(NodeTreeManager.getEvictedCount() > evictedCount);
+    }
+
+    private DefaultNode enterOnce(String contextName, String resourceName) throws Exception {
+        ContextUtil.enter(contextName);
+        Entry entry = SphU.entry(resourceName);
+        DefaultNode node = (DefaultNode)entry.getCurNode();
+        entry.exit();
+        ContextUtil.exit();
+        return node;
+    }
+
+    private EntranceNode findEntranceNode(String contextName) {
+        for (Node node : Constants.ROOT.getChildList()) {
+            EntranceNode entranceNode = (EntranceNode)node;
+            if (entranceNode.getId().getName().equals(contextName)) {
+                return entranceNode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.alibaba.csp.sentinel.Entry;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.context.Context;
+import com.alibaba.csp.sentinel.context.ContextUtil;
+import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link OriginRegistry}.
+ */
+public class OriginRegistryTest extends AbstractTimeBasedTest {
+
+    @Before
+    public void setUp() {
+        OriginRegistry.resetForTest(3);
+    }
+
+    @After
+    public void tearDown() {
+        OriginRegistry.resetForTest(SentinelConfig.statisticMaxOrigin());
+    }
+
+    @Test
+    public void testInternDenseIds() {
+        OriginRegistry.Origin a = OriginRegistry.intern("appA");
+        OriginRegistry.Origin b = OriginRegistry.intern("appB");
+        assertEquals(0, a.getId());
+        assertEquals(1, b.getId());
+        assertSame(a, OriginRegistry.intern(new String("appA")));
+        assertSame(b, OriginRegistry.get(1));
+        assertNull(OriginRegistry.get(2));
+        assertEquals(2, OriginRegistry.size());
+    }
+
+    @Test
+    public void testEvictIdleOriginsWhenFull() {
+        OriginRegistry.Origin a = OriginRegistry.intern("appA");
+        OriginRegistry.intern("appB");
+        OriginRegistry.intern("appC");
+        // Full, and no origin is idle.
+        assertNull(OriginRegistry.intern("appD"));
+
+        sleep(OriginRegistry.IDLE_EVICT_MS);
+        // appA is still active.
+        assertSame(a, OriginRegistry.intern("appA"));
+        OriginRegistry.Origin d = OriginRegistry.intern("appD");
+        assertNotNull(d);
+        assertFalse(a.isEvicted());
+        assertEquals(2, OriginRegistry.size());
+        assertTrue(d.getId() == 1 || d.getId() == 2);
+        assertSame(d, OriginRegistry.get(d.getId()));
+        assertNotNull(OriginRegistry.intern("appE"));
+        assertEquals(3, OriginRegistry.size());
+    }
+
+    @Test
+    public void testFullUntilNextEvictScan() {
+        setCurrentMillis(1000);
+        OriginRegistry.intern("appA");
+        OriginRegistry.intern("appB");
+        OriginRegistry.intern("appC");
+        sleep(OriginRegistry.IDLE_EVICT_MS - 500);
+        assertNull(OriginRegistry.intern("appD"));
+
+        // Idle now, but the registry is known to be full until the next scan.
+        sleep(600);
+        assertNull(OriginRegistry.intern("appD"));
+        sleep(500);
+        assertNotNull(OriginRegistry.intern("appD"));
+        // IDs have been freed.
+        assertNotNull(OriginRegistry.intern("appE"));
+    }
+
+    @Test
+    public void testEvictionRemovesOriginNodes() throws Exception {
+        String resourceName = "testEvictionRemovesOriginNodes";
+        ContextUtil.enter("testEvictionRemovesOriginNodes", "appA");
+        Entry entry = SphU.entry(resourceName);
+        entry.exit();
+        ContextUtil.exit();
+        ClusterNode clusterNode = ClusterBuilderSlot.getClusterNode(resourceName);
+        assertEquals(1, clusterNode.getOriginNodeCount());
+        OriginRegistry.intern("appB");
+        OriginRegistry.intern("appC");
+
+        sleep(OriginRegistry.IDLE_EVICT_MS);
+        OriginRegistry.intern("appB");
+        OriginRegistry.intern("appC");
+        assertNotNull(OriginRegistry.intern("appD"));
+        assertNull(OriginRegistry.lookup("appA"));
+        // Removed at once, not until the ID is reused by this resource.
+        assertEquals(0, clusterNode.getOriginNodeCount());
+    }
+
+    @Test
+    public void testClusterNodeReplacesNodeOfEvictedOrigin() {
+        ClusterNode clusterNode = new ClusterNode();
+        OriginRegistry.Origin a = OriginRegistry.intern("appA");
+        Node nodeA = clusterNode.getOrCreateOriginNode(a);
+        assertSame(nodeA, clusterNode.getOrCreateOriginNode("appA"));
+        OriginRegistry.intern("appB");
+        OriginRegistry.intern("appC");
+
+        sleep(OriginRegistry.IDLE_EVICT_MS);
+        OriginRegistry.intern("appB");
+        OriginRegistry.intern("appC");
+        OriginRegistry.Origin d = OriginRegistry.intern("appD");
+        assertTrue(a.isEvicted());
+        assertEquals(a.getId(), d.getId());
+
+        Node nodeD = clusterNode.getOrCreateOriginNode(d);
+        assertNotSame(nodeA, nodeD);
+        assertEquals(1, clusterNode.getOriginNodeCount());
+        assertTrue(clusterNode.getOriginCountMap().containsKey("appD"));
+        assertFalse(clusterNode.getOriginCountMap().containsKey("appA"));
+
+        // The evicted origin cannot be interned again for now, so it goes to the overflow node.
+        Node newNodeA = clusterNode.getOrCreateOriginNode(a);
+        assertSame(clusterNode.getOrCreateOverflowOriginNode(), newNodeA);
+        sleep(OriginRegistry.IDLE_EVICT_MS);
+        OriginRegistry.intern("appD");
+        assertNotNull(clusterNode.getOrCreateOriginNode(a));
+        assertEquals(2, clusterNode.getOriginNodeCount());
+    }
+
+    @Test
+    public void testOverflowOriginsShareNode() {
+        ClusterNode clusterNode = new ClusterNode();
+        clusterNode.getOrCreateOriginNode("appA");
+        clusterNode.getOrCreateOriginNode("appB");
+        clusterNode.getOrCreateOriginNode("appC");
+
+        Node nodeD = clusterNode.getOrCreateOriginNode("appD");
+        Node nodeE = clusterNode.getOrCreateOriginNode("appE");
+        assertNotNull(nodeD);
+        assertSame(nodeD, nodeE);
+        assertSame(clusterNode.getOrCreateOverflowOriginNode(), nodeD);
+        assertEquals(3, clusterNode.getOriginNodeCount());
+    }
+
+    @Test
+    public void testPinnedOriginsNeverEvicted() {
+        OriginRegistry.intern("appA");
+        OriginRegistry.intern("appB");
+        OriginRegistry.intern("appC");
+        // Pinned beyond the capacity.
+        OriginRegistry.pinOrigins(Arrays.asList("appB", "appD"));
+        OriginRegistry.Origin b = OriginRegistry.lookup("appB");
+        OriginRegistry.Origin d = OriginRegistry.lookup("appD");
+        assertNotNull(d);
+        assertTrue(b.isPinned());
+        assertTrue(d.isPinned());
+        assertEquals(3, d.getId());
+        assertSame(d, OriginRegistry.get(3));
+        ClusterNode clusterNode = new ClusterNode();
+        assertNotSame(clusterNode.getOrCreateOverflowOriginNode(), clusterNode.getOrCreateOriginNode("appD"));
+
+        sleep(OriginRegistry.IDLE_EVICT_MS);
+        assertNotNull(OriginRegistry.intern("appE"));
+        assertNotNull(OriginRegistry.intern("appF"));
+        assertFalse(b.isEvicted());
+        assertFalse(d.isEvicted());
+        assertNull(OriginRegistry.lookup("appA"));
+
+        // No longer pinned.
+        OriginRegistry.pinOrigins(Collections.singletonList("appD"));
+        assertFalse(b.isPinned());
+        sleep(OriginRegistry.IDLE_EVICT_MS);
+        assertNotNull(OriginRegistry.intern("appG"));
+        assertTrue(b.isEvicted());
+        assertFalse(d.isEvicted());
+    }
+
+    @Test
+    public void testLookupDoesNotIntern() {
+        assertNull(OriginRegistry.lookup("appA"));
+        assertEquals(0, OriginRegistry.size());
+        OriginRegistry.Origin a = OriginRegistry.intern("appA");
+        assertSame(a, OriginRegistry.lookup("appA"));
+    }
+
+    @Test
+    public void testContextInternsOrigin() {
+        Context context = new Context(null, "testContextInternsOrigin");
+        assertNull(context.getInternedOrigin());
+        context.setOrigin(new String("appA"));
+        OriginRegistry.Origin origin = context.getInternedOrigin();
+        assertNotNull(origin);
+        assertSame(origin.getName(), context.getOrigin());
+        context.setOrigin("");
+        assertNull(context.getInternedOrigin());
+    }
+
+    @Test
+    public void testEstimateOriginMemory() {
+        ClusterNode clusterNode = new ClusterNode();
+        long empty = clusterNode.estimateOriginMemoryBytes();
+        clusterNode.getOrCreateOriginNode("appA");
+        clusterNode.getOrCreateOriginNode("appB");
+        assertEquals(2, clusterNode.getOriginNodeCount());
+        assertTrue(clusterNode.estimateOriginMemoryBytes() - empty >= 2 * new StatisticNode(true).estimateMemoryBytes());
+    }
+}
@@ -16,7 +16,9 @@
 package com.alibaba.csp.sentinel.node;
 
 import com.alibaba.csp.sentinel.Constants;
+import com.alibaba.csp.sentinel.node.metric.MetricNode;
 import com.alibaba.csp.sentinel.util.TimeUtil;
+import com.alibaba.csp.sentinel.util.clock.ManualClock;
 import org.junit.Test;
 
 import java.text.SimpleDateFormat;
@@ -30,6 +32,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -180,6 +183,124 @@ public class StatisticNodeTest {
         }
     }
 
+    @Test
+    public void testHourMetrics() {
+        ManualClock clock = new ManualClock(3600 * 1000L);
+        TimeUtil.setClock(clock);
+        try {
+            StatisticNode node = new StatisticNode();
+            assertTrue(node.hourMetrics().isEmpty());
+
+            node.addPassRequest(2);
+            clock.advance(30 * 1000);
+            node.increaseBlockQps(1);
+            clock.advance(60 * 1000);
+            node.addPassRequest(1);
+
+            List<MetricNode> metrics = node.hourMetrics();
+            assertEquals(2, metrics.size());
+            assertEquals(3, metrics.get(0).getPassQps() + metrics.get(1).getPassQps());
+            assertEquals(1, metrics.get(0).getBlockQps() + metrics.get(1).getBlockQps());
+            // The minute level only keeps the last 60 seconds.
+            assertEquals(1, node.totalRequest());
+        } finally {
+            TimeUtil.resetClock();
+        }
+    }
+
+    @Test
+    public void testLazyMinuteMetric() {
+        ManualClock clock = new ManualClock(System.currentTimeMillis());
+        TimeUtil.setClock(clock);
+        try {
+            StatisticNode node = new StatisticNode(true);
+            assertFalse(node.hasRecentRequest());
+
+            node.addPassRequest(1);
+            node.increaseBlockQps(1);
+            assertFalse(node.hasMinuteMetric());
+            assertTrue(node.hasRecentRequest());
+            assertEquals(1, node.passQps(), 0.01);
+
+            // Minute-level statistics are only kept after the first read, in addition to the
+            // second-level buckets which have not been rolled up yet.
+            assertEquals(2, node.totalRequest());
+            assertTrue(node.hasMinuteMetric());
+            node.addPassRequest(2);
+            node.addRtAndSuccess(5, 2);
+            assertEquals(3, node.totalPass());
+            assertEquals(2, node.totalSuccess());
+
+            clock.advance(62 * 1000);
+            assertFalse(node.hasRecentRequest());
+            assertEquals(0, node.totalRequest());
+        } finally {
+            TimeUtil.resetClock();
+        }
+    }
+
+    @Test
+    public void testRecentRequestWithoutMinuteMetric() {
+        ManualClock clock = new ManualClock(System.currentTimeMillis());
+        TimeUtil.setClock(clock);
+        try {
+            StatisticNode node = new StatisticNode(true);
+            node.addPassRequest(1);
+            clock.advance(59 * 1000);
+            assertTrue(node.hasRecentRequest());
+            clock.advance(3 * 1000);
+            assertFalse(node.hasRecentRequest());
+            assertFalse(node.hasMinuteMetric());
+        } finally {
+            TimeUtil.resetClock();
+        }
+    }
+
+    @Test
+    public void testPreviousPassQpsOnFirstReadOfLazyNode() {
+        ManualClock clock = new ManualClock(3600 * 1000L);
+        TimeUtil.setClock(clock);
+        try {
+            StatisticNode node = new StatisticNode(true);
+            node.addPassRequest(3);
+            clock.advance(500);
+            node.addPassRequest(4);
+            clock.advance(500);
+            node.addPassRequest(1);
+            clock.advance(500);
+            node.addPassRequest(1);
+            assertFalse(node.hasMinuteMetric());
+
+            // The previous second is still in the second-level buckets which are not rolled up yet.
+            assertEquals(7, node.previousPassQps(), 0.01);
+        } finally {
+            TimeUtil.resetClock();
+        }
+    }
+
+    @Test
+    public void testEstimateMemoryBytes() {
+        ManualClock clock = new ManualClock(3600 * 1000L);
+        TimeUtil.setClock(clock);
+        try {
+            StatisticNode lazyNode = new StatisticNode(true);
+            StatisticNode eagerNode = new StatisticNode(false);
+            for (int i = 0; i < 60; i++) {
+                lazyNode.addPassRequest(1);
+                eagerNode.addPassRequest(1);
+                clock.advance(1000);
+            }
+            long lazyBytes = lazyNode.estimateMemoryBytes();
+            assertTrue(lazyBytes * 10 < eagerNode.estimateMemoryBytes());
+
+            // The minute-level metric is created on first read.
+            lazyNode.totalRequest();
+            assertTrue(lazyNode.estimateMemoryBytes() > lazyBytes);
+        } finally {
+            TimeUtil.resetClock();
+        }
+    }
+
     private static void sleep(long ms) {
         try {
             TimeUnit.MILLISECONDS.sleep(ms);
@@ -0,0 +1,157 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.util.PidUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link AsyncMetricWriter}.
+ *
+ * @since 1.5.0
+ */
+public class AsyncMetricWriterTest {
+
+    private File baseDir;
+    private long begin;
+
+    @Before
+    public void setUp() throws Exception {
+        baseDir = File.createTempFile("sentinel-async-metric", "");
+        assertTrue(baseDir.delete());
+        assertTrue(baseDir.mkdirs());
+        // The writer ignores metrics earlier than its creation.
+        begin = (System.currentTimeMillis() / 1000 + 1) * 1000;
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = baseDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        baseDir.delete();
+    }
+
+    @Test
+    public void testWriteAsync() throws Exception {
+        MetricWriter writer = new MetricWriter(baseDir.getAbsolutePath(), 1024 * 1024, 6);
+        AsyncMetricWriter asyncWriter = new AsyncMetricWriter(writer, 8, 1);
+        try {
+            for (int s = 0; s < 5; s++) {
+                MetricBatch batch = asyncWriter.borrowBatch(begin + s * 1000);
+                assertNotNull(batch);
+                batch.add("res-a", s, 0, s, 0, 1, 0);
+                batch.add("res-b", s, 1, s, 0, 2, 0);
+                asyncWriter.submit(batch);
+            }
+            asyncWriter.awaitWritten();
+        } finally {
+            asyncWriter.shutdown();
+        }
+        assertEquals(0, asyncWriter.getDroppedCount());
+
+        MetricSearcher searcher = new MetricSearcher(baseDir.getAbsolutePath(),
+            MetricWriter.formMetricFileName(SentinelConfig.getAppName(), PidUtil.getPid()));
+        List<MetricNode> list = searcher.findByTimeAndResource(begin, begin + 4999, null);
+        assertEquals(10, list.size());
+        list = searcher.findByTimeAndResource(begin, begin + 4999, "res-b");
+        assertEquals(5, list.size());
+        for (int s = 0; s < 5; s++) {
+            assertEquals(begin + s * 1000, list.get(s).getTimestamp());
+            assertEquals(s, list.get(s).getPassQps());
+            assertEquals(2, list.get(s).getRt());
+        }
+    }
+
+    @Test
+    public void testFailedSecondNotCommitted() throws Exception {
+        MetricWriter writer = new MetricWriter(baseDir.getAbsolutePath(), 1024 * 1024, 6);
+        AsyncMetricWriter asyncWriter = new AsyncMetricWriter(writer, 8, 0);
+        try {
+            for (int s = 0; s < 3; s++) {
+                MetricBatch batch = asyncWriter.borrowBatch(begin + s * 1000);
+                batch.add("res-a", s, 0, s, 0, 1, 0);
+                // The append fails after the first line of the second is encoded.
+                batch.add(s == 1 ? null : "res-b", s, 1, s, 0, 2, 0);
+                asyncWriter.submit(batch);
+            }
+            asyncWriter.awaitWritten();
+        } finally {
+            asyncWriter.shutdown();
+        }
+        assertEquals(1, asyncWriter.getDroppedCount());
+
+        MetricSearcher searcher = new MetricSearcher(baseDir.getAbsolutePath(),
+            MetricWriter.formMetricFileName(SentinelConfig.getAppName(), PidUtil.getPid()));
+        List<MetricNode> list = searcher.findByTimeAndResource(begin, begin + 2999, null);
+        assertEquals(4, list.size());
+        for (MetricNode node : list) {
+            assertNotEquals(begin + 1000, node.getTimestamp());
+        }
+        list = searcher.findByTimeAndResource(begin, begin + 2999, "res-a");
+        assertEquals(2, list.size());
+        assertEquals(begin + 2000, list.get(1).getTimestamp());
+        assertEquals(2, list.get(1).getPassQps());
+    }
+
+    @Test
+    public void testDropWhenFallingBehind() throws Exception {
+        final CountDownLatch appending = new CountDownLatch(1);
+        final CountDownLatch slowDisk = new CountDownLatch(1);
+        final List<Long> written = new ArrayList<Long>();
+        MetricWriter writer = new MetricWriter(baseDir.getAbsolutePath(), 1024 * 1024, 6) {
+            @Override
+            synchronized void append(MetricBatch batch) throws Exception {
+                appending.countDown();
+                slowDisk.await();
+                written.add(batch.getTime());
+            }
+        };
+        AsyncMetricWriter asyncWriter = new AsyncMetricWriter(writer, 2, 0);
+        try {
+            asyncWriter.submit(asyncWriter.borrowBatch(begin));
+            appending.await();
+            // The writer thread is blocked with the first batch, so only one more batch can be queued.
+            asyncWriter.submit(asyncWriter.borrowBatch(begin + 1000));
+            assertNull(asyncWriter.borrowBatch(begin + 2000));
+            assertNull(asyncWriter.borrowBatch(begin + 3000));
+            assertEquals(2, asyncWriter.getDroppedCount());
+
+            slowDisk.countDown();
+            asyncWriter.awaitWritten();
+            asyncWriter.submit(asyncWriter.borrowBatch(begin + 4000));
+            asyncWriter.awaitWritten();
+        } finally {
+            asyncWriter.shutdown();
+        }
+        assertEquals(3, written.size());
+        assertEquals(begin + 4000, (long)written.get(2));
+    }
+}
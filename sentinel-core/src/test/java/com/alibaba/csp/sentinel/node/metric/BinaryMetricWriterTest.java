@@ -0,0 +1,200 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.util.PidUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link BinaryMetricWriter} and {@link BinaryMetricSearcher}.
+ *
+ * @since 1.5.0
+ */
+public class BinaryMetricWriterTest {
+
+    private static final long BEGIN = 1546300800000L + 12 * 3600 * 1000;
+
+    private File baseDir;
+    private String baseFileName;
+
+    @Before
+    public void setUp() throws Exception {
+        baseDir = File.createTempFile("sentinel-binary-metric", "");
+        assertTrue(baseDir.delete());
+        assertTrue(baseDir.mkdirs());
+        baseFileName = BinaryMetricWriter.formBinaryMetricFileName(SentinelConfig.getAppName(), PidUtil.getPid());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = baseDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        baseDir.delete();
+    }
+
+    @Test
+    public void testWriteAndFind() throws Exception {
+        BinaryMetricWriter writer = new BinaryMetricWriter(baseDir.getAbsolutePath(), 64 * 1024 * 1024, 6);
+        for (int s = 0; s < 10; s++) {
+            writer.write(BEGIN + s * 1000, nodes(3, s));
+        }
+        writer.close();
+
+        BinaryMetricSearcher searcher = new BinaryMetricSearcher(baseDir.getAbsolutePath(), baseFileName);
+        List<MetricNode> list = searcher.findByTimeAndResource(BEGIN + 2000, BEGIN + 4999, null);
+        assertEquals(9, list.size());
+        assertEquals(BEGIN + 2000, list.get(0).getTimestamp());
+        assertEquals("res-0", list.get(0).getResource());
+        assertEquals(BEGIN + 4000, list.get(8).getTimestamp());
+
+        list = searcher.findByTimeAndResource(BEGIN + 5000, BEGIN + 20000, "res-1");
+        assertEquals(5, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            MetricNode node = list.get(i);
+            assertEquals("res-1", node.getResource());
+            assertEquals(BEGIN + (5 + i) * 1000, node.getTimestamp());
+            assertEquals(5 + i, node.getPassQps());
+            assertEquals(1, node.getBlockQps());
+            assertEquals(2, node.getSuccessQps());
+            assertEquals(3, node.getExceptionQps());
+            assertEquals(4, node.getRt());
+            assertEquals(5, node.getOccupiedPassQps());
+        }
+        assertTrue(searcher.findByTimeAndResource(BEGIN, BEGIN + 20000, "absent").isEmpty());
+
+        // Metrics of one second are not split.
+        list = searcher.find(BEGIN + 8000, 4);
+        assertEquals(6, list.size());
+        assertEquals(BEGIN + 9000, list.get(5).getTimestamp());
+        assertNull(searcher.find(BEGIN + 10000, 4));
+    }
+
+    @Test
+    public void testSearchWhileWriting() throws Exception {
+        BinaryMetricWriter writer = new BinaryMetricWriter(baseDir.getAbsolutePath(), 64 * 1024 * 1024, 6);
+        BinaryMetricSearcher searcher = new BinaryMetricSearcher(baseDir.getAbsolutePath(), baseFileName);
+        try {
+            for (int s = 0; s < 3; s++) {
+                writer.write(BEGIN + s * 1000, nodes(2, s));
+            }
+            List<MetricNode> list = searcher.findByTimeAndResource(BEGIN, BEGIN + 9999, null);
+            assertEquals(6, list.size());
+            assertTrue(searcher.findByTimeAndResource(BEGIN, BEGIN + 9999, "res-2").isEmpty());
+
+            // Records (and resources) appended to the same file are visible to the mapped file of the searcher.
+            for (int s = 3; s < 6; s++) {
+                writer.write(BEGIN + s * 1000, nodes(3, s));
+            }
+            list = searcher.findByTimeAndResource(BEGIN, BEGIN + 9999, null);
+            assertEquals(15, list.size());
+            assertEquals(BEGIN + 5000, list.get(14).getTimestamp());
+            list = searcher.findByTimeAndResource(BEGIN, BEGIN + 9999, "res-2");
+            assertEquals(3, list.size());
+            assertEquals("res-2", list.get(0).getResource());
+            assertEquals(3, list.get(0).getPassQps());
+            list = searcher.find(BEGIN + 4000, 1);
+            assertEquals(3, list.size());
+            assertEquals(BEGIN + 4000, list.get(2).getTimestamp());
+        } finally {
+            writer.close();
+        }
+        // Still readable after the writer unmaps the file.
+        assertEquals(15, searcher.findByTimeAndResource(BEGIN, BEGIN + 9999, null).size());
+    }
+
+    @Test
+    public void testWriteRings() throws Exception {
+        BinaryMetricWriter writer = new BinaryMetricWriter(baseDir.getAbsolutePath(), 64 * 1024 * 1024, 6);
+        List<String> resources = new ArrayList<String>();
+        List<MetricSnapshotRing> rings = new ArrayList<MetricSnapshotRing>();
+        for (int i = 0; i < 2; i++) {
+            resources.add("res-" + i);
+            rings.add(new MetricSnapshotRing());
+        }
+        rings.get(0).append(BEGIN, 10, 1, 2, 3, 4, 5);
+        rings.get(0).append(BEGIN + 1000, 11, 1, 2, 3, 4, 5);
+        rings.get(1).append(BEGIN + 1000, 20, 1, 2, 3, 4, 5);
+        writer.write(BEGIN, resources, rings);
+        writer.write(BEGIN + 1000, resources, rings);
+        writer.close();
+        assertTrue(rings.get(0).isEmpty());
+        assertTrue(rings.get(1).isEmpty());
+
+        BinaryMetricSearcher searcher = new BinaryMetricSearcher(baseDir.getAbsolutePath(), baseFileName);
+        List<MetricNode> list = searcher.findByTimeAndResource(BEGIN, BEGIN + 1000, null);
+        assertEquals(3, list.size());
+        assertEquals(10, list.get(0).getPassQps());
+        assertEquals("res-1", list.get(2).getResource());
+        assertEquals(20, list.get(2).getPassQps());
+    }
+
+    @Test
+    public void testRollFiles() throws Exception {
+        BinaryMetricWriter writer = new BinaryMetricWriter(baseDir.getAbsolutePath(),
+            BinaryMetricFile.MIN_FILE_SIZE, 3);
+        for (int s = 0; s < 60; s++) {
+            writer.write(BEGIN + s * 1000, nodes(5, s));
+        }
+        writer.close();
+
+        List<String> files = MetricWriter.listMetricFiles(baseDir.getAbsolutePath() + File.separator,
+            baseFileName);
+        assertEquals(3, files.size());
+
+        BinaryMetricSearcher searcher = new BinaryMetricSearcher(baseDir.getAbsolutePath(), baseFileName);
+        List<MetricNode> list = searcher.findByTimeAndResource(BEGIN, BEGIN + 60000, "res-4");
+        long last = -1;
+        for (MetricNode node : list) {
+            assertEquals("res-4", node.getResource());
+            assertEquals(node.getTimestamp(), BEGIN + node.getPassQps() * 1000);
+            assertTrue(node.getTimestamp() > last);
+            last = node.getTimestamp();
+        }
+        assertEquals(BEGIN + 59000, last);
+        // Files spanning the earliest seconds have been removed.
+        assertTrue(list.size() < 60);
+    }
+
+    private List<MetricNode> nodes(int count, long pass) {
+        List<MetricNode> nodes = new ArrayList<MetricNode>();
+        for (int i = 0; i < count; i++) {
+            MetricNode node = new MetricNode();
+            node.setResource("res-" + i);
+            node.setPassQps(pass);
+            node.setBlockQps(1);
+            node.setSuccessQps(2);
+            node.setExceptionQps(3);
+            node.setRt(4);
+            node.setOccupiedPassQps(5);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+}
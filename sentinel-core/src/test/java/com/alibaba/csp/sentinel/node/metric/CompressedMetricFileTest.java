@@ -0,0 +1,195 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.util.PidUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link CompressedMetricFile}.
+ *
+ * @since 1.5.0
+ */
+public class CompressedMetricFileTest {
+
+    private File baseDir;
+    private String baseFileName;
+    private long begin;
+
+    @Before
+    public void setUp() throws Exception {
+        baseDir = File.createTempFile("sentinel-compressed-metric", "");
+        assertTrue(baseDir.delete());
+        assertTrue(baseDir.mkdirs());
+        baseFileName = MetricWriter.formMetricFileName(SentinelConfig.getAppName(), PidUtil.getPid());
+        // The writer ignores metrics earlier than its creation.
+        begin = (System.currentTimeMillis() / 1000 + 1) * 1000;
+    }
+
+    @After
+    public void tearDown() {
+        SentinelConfig.setConfig(SentinelConfig.METRIC_FILE_COMPRESS, "false");
+        SentinelConfig.setConfig(SentinelConfig.METRIC_RETENTION_BYTES, "0");
+        SentinelConfig.setConfig(SentinelConfig.METRIC_RETENTION_AGE, "0");
+        File[] files = baseDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        baseDir.delete();
+    }
+
+    @Test
+    public void testSearchCompressedFiles() throws Exception {
+        // Several files, each of which spans several blocks.
+        MetricWriter writer = new MetricWriter(baseDir.getAbsolutePath(), 300 * 1024, 100);
+        for (int s = 0; s < 120; s++) {
+            writer.write(begin + s * 1000, nodes(100, s));
+        }
+        writer.close();
+        String dir = baseDir.getAbsolutePath();
+        List<String> fileNames = MetricWriter.listMetricFiles(dir + File.separator, baseFileName);
+        assertTrue(fileNames.size() > 2);
+
+        List<List<MetricNode>> expected = search(new MetricSearcher(dir, baseFileName));
+        for (String fileName : fileNames) {
+            assertTrue(CompressedMetricFile.compress(fileName));
+            assertFalse(new File(fileName).exists());
+        }
+        assertEquals(fileNames, MetricWriter.listMetricFiles(dir + File.separator, baseFileName));
+
+        List<List<MetricNode>> actual = search(new MetricSearcher(dir, baseFileName));
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertFalse(expected.get(i).isEmpty());
+            assertEquals(toFatStrings(expected.get(i)), toFatStrings(actual.get(i)));
+        }
+    }
+
+    @Test
+    public void testCompressInBackgroundWithRetentionBytes() throws Exception {
+        SentinelConfig.setConfig(SentinelConfig.METRIC_FILE_COMPRESS, "true");
+        SentinelConfig.setConfig(SentinelConfig.METRIC_RETENTION_BYTES, String.valueOf(4 * 1024 * 1024));
+        MetricWriter writer = new MetricWriter(baseDir.getAbsolutePath(), 64 * 1024, 1000);
+        for (int s = 0; s < 200; s++) {
+            writer.write(begin + s * 1000, nodes(50, s));
+        }
+        writer.close();
+
+        String dir = baseDir.getAbsolutePath();
+        List<String> fileNames = MetricWriter.listMetricFiles(dir + File.separator, baseFileName);
+        // Closed files are compressed eventually, except the last (current) one.
+        for (int i = 0; i < 500 && !allCompressed(fileNames.subList(0, fileNames.size() - 1)); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(allCompressed(fileNames.subList(0, fileNames.size() - 1)));
+        assertTrue(new File(fileNames.get(fileNames.size() - 1)).exists());
+
+        long totalBytes = 0;
+        for (File file : baseDir.listFiles()) {
+            totalBytes += file.length();
+        }
+        // Each file is kept with its resource index (of at least 1 MB), so old files are removed.
+        assertTrue(totalBytes < 4 * 1024 * 1024 + 2 * 1024 * 1024);
+        assertTrue(fileNames.size() < 200 * 50 * 40 / (64 * 1024));
+
+        MetricSearcher searcher = new MetricSearcher(dir, baseFileName);
+        List<MetricNode> list = searcher.findByTimeAndResource(begin + 190000, begin + 199999, "res-7");
+        assertEquals(10, list.size());
+        assertEquals(190, list.get(0).getPassQps());
+    }
+
+    @Test
+    public void testEnforceRetentionAgeWithoutRolling() throws Exception {
+        SentinelConfig.setConfig(SentinelConfig.METRIC_RETENTION_AGE, String.valueOf(60 * 60 * 1000));
+        MetricWriter writer = new MetricWriter(baseDir.getAbsolutePath(), 64 * 1024, 1000);
+        for (int s = 0; s < 120; s++) {
+            writer.write(begin + s * 1000, nodes(50, s));
+        }
+        String dir = baseDir.getAbsolutePath();
+        List<String> fileNames = MetricWriter.listMetricFiles(dir + File.separator, baseFileName);
+        assertTrue(fileNames.size() > 2);
+
+        // Nothing is expired yet.
+        writer.enforceRetention();
+        assertEquals(fileNames, MetricWriter.listMetricFiles(dir + File.separator, baseFileName));
+
+        // All files get expired while no new file is created.
+        long expired = System.currentTimeMillis() - 2 * 60 * 60 * 1000;
+        for (String fileName : fileNames) {
+            assertTrue(new File(MetricWriter.formIndexFileName(fileName)).setLastModified(expired));
+        }
+        writer.enforceRetention();
+        // The latest file being written is kept.
+        String latest = fileNames.get(fileNames.size() - 1);
+        assertEquals(Collections.singletonList(latest), MetricWriter.listMetricFiles(dir + File.separator, baseFileName));
+
+        writer.write(begin + 120 * 1000, nodes(50, 120));
+        writer.close();
+        assertTrue(new File(latest).length() > 0);
+    }
+
+    private boolean allCompressed(List<String> fileNames) {
+        for (String fileName : fileNames) {
+            if (new File(fileName).exists()
+                || !new File(CompressedMetricFile.formCompressedFileName(fileName)).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<List<MetricNode>> search(MetricSearcher searcher) throws Exception {
+        List<List<MetricNode>> results = new ArrayList<List<MetricNode>>();
+        results.add(searcher.findByTimeAndResource(begin, begin + 119999, null));
+        results.add(searcher.findByTimeAndResource(begin + 30000, begin + 89999, "res-42"));
+        results.add(searcher.findByTimeAndResource(begin + 100000, begin + 100999, null));
+        results.add(searcher.find(begin + 50000, 1000));
+        return results;
+    }
+
+    private List<String> toFatStrings(List<MetricNode> nodes) {
+        List<String> lines = new ArrayList<String>();
+        for (MetricNode node : nodes) {
+            lines.add(node.toFatString());
+        }
+        return lines;
+    }
+
+    private List<MetricNode> nodes(int count, long pass) {
+        List<MetricNode> nodes = new ArrayList<MetricNode>();
+        for (int i = 0; i < count; i++) {
+            MetricNode node = new MetricNode();
+            node.setResource("res-" + i);
+            node.setPassQps(pass);
+            node.setRt(i);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link MappedBuffers}.
+ */
+public class MappedBuffersTest {
+
+    @Test
+    public void testUnmap() throws Exception {
+        File file = File.createTempFile("sentinel-mapped-buffer", "");
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            MappedByteBuffer buffer;
+            try {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 4096);
+            } finally {
+                raf.close();
+            }
+            buffer.putLong(0, 42);
+            buffer.force();
+            assertTrue(MappedBuffers.unmap(buffer));
+            assertFalse(MappedBuffers.unmap(null));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.config.SentinelConfig;
+import com.alibaba.csp.sentinel.util.PidUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link MetricResourceIndex}.
+ *
+ * @since 1.5.0
+ */
+public class MetricResourceIndexTest {
+
+    private File baseDir;
+    private String baseFileName;
+    private long begin;
+
+    @Before
+    public void setUp() throws Exception {
+        baseDir = File.createTempFile("sentinel-metric-index", "");
+        assertTrue(baseDir.delete());
+        assertTrue(baseDir.mkdirs());
+        baseFileName = MetricWriter.formMetricFileName(SentinelConfig.getAppName(), PidUtil.getPid());
+        // The writer ignores metrics earlier than its creation.
+        begin = (System.currentTimeMillis() / 1000 + 1) * 1000;
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = baseDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        baseDir.delete();
+    }
+
+    @Test
+    public void testFindByResourceAcrossPages() throws Exception {
+        int seconds = MetricResourceIndex.ENTRIES_PER_PAGE * 3 + 5;
+        MetricWriter writer = new MetricWriter(baseDir.getAbsolutePath(), 1024 * 1024 * 1024, 6);
+        for (int s = 0; s < seconds; s++) {
+            // res-3 only appears in even seconds.
+            writer.write(begin + s * 1000, nodes(s % 2 == 0 ? 4 : 3, s));
+        }
+        writer.close();
+
+        String dir = baseDir.getAbsolutePath();
+        assertTrue(new File(MetricResourceIndex.formIndexFileName(
+            MetricWriter.listMetricFiles(dir + File.separator, baseFileName).get(0))).exists());
+        MetricSearcher searcher = new MetricSearcher(dir, baseFileName);
+        List<MetricNode> list = searcher.findByTimeAndResource(begin, begin + seconds * 1000, "res-1");
+        assertEquals(seconds, list.size());
+        for (int s = 0; s < seconds; s++) {
+            assertEquals("res-1", list.get(s).getResource());
+            assertEquals(begin + s * 1000, list.get(s).getTimestamp());
+            assertEquals(s, list.get(s).getPassQps());
+        }
+
+        // Searches moving forwards, starting in the middle of pages.
+        for (int from = 10; from + 60 < seconds; from += 37) {
+            list = searcher.findByTimeAndResource(begin + from * 1000, begin + (from + 59) * 1000 + 999, "res-3");
+            assertEquals(30, list.size());
+            assertEquals(begin + (from + from % 2) * 1000, list.get(0).getTimestamp());
+        }
+        // And backwards.
+        list = searcher.findByTimeAndResource(begin + 2000, begin + 2999, "res-0");
+        assertEquals(1, list.size());
+        assertEquals(2, list.get(0).getPassQps());
+
+        assertTrue(searcher.findByTimeAndResource(begin, begin + seconds * 1000, "absent").isEmpty());
+        assertTrue(searcher.findByTimeAndResource(begin + seconds * 1000, begin + seconds * 2000, "res-0")
+            .isEmpty());
+    }
+
+    @Test
+    public void testFindByResourceAcrossFiles() throws Exception {
+        MetricWriter writer = new MetricWriter(baseDir.getAbsolutePath(), 2048, 100);
+        for (int s = 0; s < 30; s++) {
+            writer.write(begin + s * 1000, nodes(5, s));
+        }
+        writer.close();
+
+        String dir = baseDir.getAbsolutePath();
+        assertTrue(MetricWriter.listMetricFiles(dir + File.separator, baseFileName).size() > 1);
+        MetricSearcher searcher = new MetricSearcher(dir, baseFileName);
+        List<MetricNode> list = searcher.findByTimeAndResource(begin + 5000, begin + 24999, "res-4");
+        assertEquals(20, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals("res-4", list.get(i).getResource());
+            assertEquals(5 + i, list.get(i).getPassQps());
+        }
+    }
+
+    private List<MetricNode> nodes(int count, long pass) {
+        List<MetricNode> nodes = new ArrayList<MetricNode>();
+        for (int i = 0; i < count; i++) {
+            MetricNode node = new MetricNode();
+            node.setResource("res-" + i);
+            node.setPassQps(pass);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+}
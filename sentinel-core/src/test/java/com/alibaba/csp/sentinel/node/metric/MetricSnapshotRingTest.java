@@ -0,0 +1,120 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.node.metric;
+
+import java.util.Map;
+
+import com.alibaba.csp.sentinel.node.StatisticNode;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link MetricSnapshotRing}.
+ */
+public class MetricSnapshotRingTest extends AbstractTimeBasedTest {
+
+    @Test
+    public void testAppendAndRemoveFirst() {
+        MetricSnapshotRing ring = new MetricSnapshotRing(3);
+        assertEquals(4, ring.capacity());
+        assertTrue(ring.isEmpty());
+        assertEquals(Long.MAX_VALUE, ring.firstTimestamp());
+
+        for (int i = 1; i <= 6; i++) {
+            ring.append(i * 1000, i, 2 * i, 3 * i, 4 * i, 5 * i, 6 * i);
+        }
+        // The oldest snapshots are overwritten.
+        assertEquals(4, ring.size());
+        assertEquals(3000, ring.firstTimestamp());
+        assertEquals(3, ring.firstPass());
+        assertEquals(6, ring.firstBlock());
+        assertEquals(9, ring.firstSuccess());
+        assertEquals(12, ring.firstException());
+        assertEquals(15, ring.firstRt());
+        assertEquals(18, ring.firstOccupiedPass());
+
+        ring.removeFirst();
+        assertEquals(4000, ring.firstTimestamp());
+        ring.clear();
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void testCollectMetricsOfCompletedSeconds() {
+        StatisticNode node = new StatisticNode();
+        long start = TimeUtil.currentTimeMillis();
+        for (int second = 0; second < 3; second++) {
+            node.addPassRequest(second + 1);
+            node.addRtAndSuccess(10 * (second + 1), second + 1);
+            if (second == 1) {
+                node.increaseBlockQps(1);
+                node.increaseExceptionQps(1);
+            }
+            sleep(1000);
+        }
+
+        MetricSnapshotRing ring = node.collectMetrics();
+        assertEquals(3, ring.size());
+        for (int second = 0; second < 3; second++) {
+            assertEquals(start + second * 1000, ring.firstTimestamp());
+            assertEquals(second + 1, ring.firstPass());
+            assertEquals(second + 1, ring.firstSuccess());
+            assertEquals(10, ring.firstRt());
+            assertEquals(second == 1 ? 1 : 0, ring.firstBlock());
+            assertEquals(second == 1 ? 1 : 0, ring.firstException());
+            ring.removeFirst();
+        }
+
+        // Seconds already collected won't be collected again.
+        assertTrue(node.collectMetrics().isEmpty());
+        sleep(1000);
+        assertTrue(node.collectMetrics().isEmpty());
+        node.addPassRequest(1);
+        sleep(1000);
+        assertEquals(1, node.collectMetrics().size());
+    }
+
+    @Test
+    public void testCollectMetricsConsistentWithMetrics() {
+        StatisticNode node1 = new StatisticNode();
+        StatisticNode node2 = new StatisticNode();
+        for (int second = 0; second < 5; second++) {
+            for (StatisticNode node : new StatisticNode[] {node1, node2}) {
+                node.addPassRequest(second);
+                node.addRtAndSuccess(7 * second, second);
+                node.addOccupiedPass(1);
+            }
+            sleep(1000);
+        }
+
+        Map<Long, MetricNode> metrics = node1.metrics();
+        MetricSnapshotRing ring = node2.collectMetrics();
+        assertEquals(metrics.size(), ring.size());
+        while (!ring.isEmpty()) {
+            MetricNode metricNode = metrics.get(ring.firstTimestamp());
+            assertNotNull(metricNode);
+            assertEquals(metricNode.getPassQps(), ring.firstPass());
+            assertEquals(metricNode.getSuccessQps(), ring.firstSuccess());
+            assertEquals(metricNode.getRt(), ring.firstRt());
+            assertEquals(metricNode.getOccupiedPassQps(), ring.firstOccupiedPass());
+            ring.removeFirst();
+        }
+    }
+}
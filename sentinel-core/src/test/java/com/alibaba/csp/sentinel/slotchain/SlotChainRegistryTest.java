@@ -0,0 +1,100 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slotchain;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.csp.sentinel.EntryType;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link SlotChainRegistry}.
+ */
+public class SlotChainRegistryTest {
+
+    @Test
+    public void testGetOrCreateSameResource() {
+        SlotChainRegistry registry = new SlotChainRegistry(10);
+        ProcessorSlotChain chain = registry.getOrCreate(new StringResourceWrapper("resA", EntryType.IN));
+        assertNotNull(chain);
+        assertSame(chain, registry.getOrCreate(new StringResourceWrapper("resA", EntryType.OUT)));
+        assertNotSame(chain, registry.getOrCreate(new StringResourceWrapper("resB", EntryType.IN)));
+        assertEquals(2, registry.size());
+
+        registry.clear();
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testMaxSizeExceeded() {
+        SlotChainRegistry registry = new SlotChainRegistry(2);
+        assertNotNull(registry.getOrCreate(new StringResourceWrapper("res1", EntryType.IN)));
+        assertNotNull(registry.getOrCreate(new StringResourceWrapper("res2", EntryType.IN)));
+        assertNull(registry.getOrCreate(new StringResourceWrapper("res3", EntryType.IN)));
+        // Existing resources are not affected.
+        assertNotNull(registry.getOrCreate(new StringResourceWrapper("res1", EntryType.IN)));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void testConcurrentRegisterNeverExceedsMaxSize() throws Exception {
+        final int maxSize = 100;
+        final int threads = 16;
+        final int resourcesPerThread = 50;
+        final SlotChainRegistry registry = new SlotChainRegistry(maxSize);
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger withdrawn = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            final int base = t * resourcesPerThread;
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < resourcesPerThread; i++) {
+                            ResourceWrapper resource = new StringResourceWrapper("concurrent-res-" + (base + i),
+                                EntryType.IN);
+                            ProcessorSlotChain chain = registry.getOrCreate(resource);
+                            if (chain != null) {
+                                created.incrementAndGet();
+                                // A chain handed out is never withdrawn.
+                                if (registry.asMap().get(resource) != chain) {
+                                    withdrawn.incrementAndGet();
+                                }
+                            }
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        pool.shutdownNow();
+
+        assertEquals(maxSize, registry.size());
+        assertEquals(maxSize, created.get());
+        assertEquals(0, withdrawn.get());
+    }
+}
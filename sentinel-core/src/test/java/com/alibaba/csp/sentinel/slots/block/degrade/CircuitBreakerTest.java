@@ -0,0 +1,177 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.degrade;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.Entry;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.Tracer;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for the circuit breaker state machine of {@link DegradeRule}.
+ */
+public class CircuitBreakerTest extends AbstractTimeBasedTest {
+
+    private static final double SLOW_RT_MS = 10;
+
+    private volatile DegradeRule currentRule;
+    private final List<String> transitions = Collections.synchronizedList(new ArrayList<String>());
+    private final CircuitBreakerStateChangeListener listener = new CircuitBreakerStateChangeListener() {
+        @Override
+        public void onStateChange(DegradeRule rule, CircuitBreakerState prevState, CircuitBreakerState newState) {
+            // Ignore pending transitions of rules in other cases.
+            if (rule == currentRule) {
+                transitions.add(prevState + "->" + newState);
+            }
+        }
+    };
+
+    @Before
+    public void setUp() {
+        DegradeRuleManager.addStateChangeListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        DegradeRuleManager.removeStateChangeListener(listener);
+        DegradeRuleManager.loadRules(new ArrayList<DegradeRule>());
+    }
+
+    @Test
+    public void testProbesSucceedThenClose() throws Exception {
+        String resource = "testProbesSucceedThenClose";
+        DegradeRule rule = tripToHalfOpen(resource, 2);
+
+        Entry probe1 = SphU.entry(resource);
+        Entry probe2 = SphU.entry(resource);
+        // No more probes permitted.
+        assertBlocked(resource);
+
+        probe2.exit();
+        assertEquals(CircuitBreakerState.HALF_OPEN, rule.getCircuitBreakerState());
+        probe1.exit();
+        assertEquals(CircuitBreakerState.CLOSED, rule.getCircuitBreakerState());
+
+        assertEquals(3, transitions.size());
+        assertEquals("CLOSED->OPEN", transitions.get(0));
+        assertEquals("OPEN->HALF_OPEN", transitions.get(1));
+        assertEquals("HALF_OPEN->CLOSED", transitions.get(2));
+
+        // Requests before the recovery won't trigger degradation again.
+        SphU.entry(resource).exit();
+        assertEquals(CircuitBreakerState.CLOSED, rule.getCircuitBreakerState());
+    }
+
+    @Test
+    public void testProbeExceptionReopens() throws Exception {
+        String resource = "testProbeExceptionReopens";
+        DegradeRule rule = tripToHalfOpen(resource, 1);
+
+        Entry probe = SphU.entry(resource);
+        Tracer.trace(new IllegalStateException("still sick"));
+        probe.exit();
+
+        assertEquals(CircuitBreakerState.OPEN, rule.getCircuitBreakerState());
+        assertEquals("HALF_OPEN->OPEN", transitions.get(transitions.size() - 1));
+        assertBlocked(resource);
+    }
+
+    @Test
+    public void testSlowProbeReopens() throws Exception {
+        String resource = "testSlowProbeReopens";
+        DegradeRule rule = tripToHalfOpen(resource, 1);
+
+        Entry probe = SphU.entry(resource);
+        sleep((long)SLOW_RT_MS * 2);
+        probe.exit();
+
+        assertEquals(CircuitBreakerState.OPEN, rule.getCircuitBreakerState());
+    }
+
+    @Test
+    public void testLostProbeStartsNewRound() throws Exception {
+        String resource = "testLostProbeStartsNewRound";
+        DegradeRule rule = tripToHalfOpen(resource, 1);
+
+        Entry lost = SphU.entry(resource);
+        assertBlocked(resource);
+
+        // The probe does not complete within a time window.
+        sleep(rule.getTimeWindow() * 1000L);
+        Entry probe = SphU.entry(resource);
+        probe.exit();
+        assertEquals(CircuitBreakerState.CLOSED, rule.getCircuitBreakerState());
+
+        // Outcome of the given-up probe is ignored.
+        lost.exit();
+        assertEquals(CircuitBreakerState.CLOSED, rule.getCircuitBreakerState());
+    }
+
+    @Test
+    public void testInvalidProbeCount() {
+        assertFalse(DegradeRuleManager.isValidRule(new DegradeRule("testInvalidProbeCount")
+            .setCount(10)
+            .setTimeWindow(1)
+            .setHalfOpenProbeCount(0)));
+    }
+
+    private DegradeRule tripToHalfOpen(String resource, int probeCount) throws Exception {
+        DegradeRule rule = new DegradeRule(resource)
+            .setGrade(RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO)
+            .setCount(SLOW_RT_MS)
+            .setSlowRatioThreshold(1)
+            .setMinRequestAmount(1)
+            .setHalfOpenProbeCount(probeCount)
+            .setTimeWindow(1);
+        currentRule = rule;
+        DegradeRuleManager.loadRules(Collections.singletonList(rule));
+
+        Entry entry = SphU.entry(resource);
+        sleep((long)SLOW_RT_MS * 2);
+        entry.exit();
+        assertBlocked(resource);
+        assertEquals(CircuitBreakerState.OPEN, rule.getCircuitBreakerState());
+
+        // The circuit breaker turns half-open after the time window (driven by the shared timer).
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!transitions.contains("OPEN->HALF_OPEN") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(CircuitBreakerState.HALF_OPEN, rule.getCircuitBreakerState());
+        return rule;
+    }
+
+    private void assertBlocked(String resource) {
+        try {
+            SphU.entry(resource).exit();
+            fail("Should be blocked");
+        } catch (BlockException ex) {
+            assertTrue(ex instanceof DegradeException);
+        }
+    }
+}
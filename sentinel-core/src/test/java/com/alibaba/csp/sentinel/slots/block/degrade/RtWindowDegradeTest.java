@@ -0,0 +1,266 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.degrade;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.alibaba.csp.sentinel.AsyncEntry;
+import com.alibaba.csp.sentinel.EntryType;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.node.ClusterNode;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.clusterbuilder.ClusterBuilderSlot;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Load tests of percentile RT and slow request ratio degrade grades.</p>
+ *
+ * <p>
+ * A service with 100 QPS and 2 ms RT is simulated with a manual clock. At some moment the downstream
+ * starts hanging: 3% of the requests (one in every 33) hang until the 1 second client timeout. The average RT
+ * (about 32 ms) hides the tail latency, while percentile and slow ratio grades should detect it
+ * as soon as the hanging requests run longer than the threshold, before they time out.
+ * </p>
+ */
+public class RtWindowDegradeTest extends AbstractTimeBasedTest {
+
+    private static final int INTERVAL_MS = 10;
+    private static final int FAST_RT_MS = 2;
+    private static final int TIMEOUT_MS = 1000;
+    private static final int HANG_EVERY_N = 33;
+
+    private static final long HANG_START_MS = 3000;
+    private static final long SIMULATION_MS = 8000;
+
+    @After
+    public void tearDown() {
+        DegradeRuleManager.loadRules(new ArrayList<DegradeRule>());
+    }
+
+    @Test
+    public void testAverageRtMissesTailLatency() {
+        String resource = "testAverageRtMissesTailLatency";
+        loadRule(new DegradeRule(resource)
+            .setGrade(RuleConstant.DEGRADE_GRADE_RT)
+            .setCount(100)
+            .setTimeWindow(10));
+        assertEquals(-1, simulate(resource));
+    }
+
+    @Test
+    public void testPercentileRtDetectsHanging() {
+        String resource = "testPercentileRtDetectsHanging";
+        loadRule(new DegradeRule(resource)
+            .setGrade(RuleConstant.DEGRADE_GRADE_RT_PERCENTILE)
+            .setPercentile(99)
+            .setCount(500)
+            .setStatIntervalMs(1000)
+            .setTimeWindow(10));
+        long detectionLatency = simulate(resource);
+        assertDetectionLatency(detectionLatency);
+    }
+
+    @Test
+    public void testSlowRequestRatioDetectsHanging() {
+        String resource = "testSlowRequestRatioDetectsHanging";
+        loadRule(new DegradeRule(resource)
+            .setGrade(RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO)
+            .setSlowRatioThreshold(0.02)
+            .setCount(500)
+            .setStatIntervalMs(1000)
+            .setTimeWindow(10));
+        long detectionLatency = simulate(resource);
+        assertDetectionLatency(detectionLatency);
+    }
+
+    @Test
+    public void testMinRequestAmount() {
+        String resource = "testRtWindowMinRequestAmount";
+        DegradeRule rule = new DegradeRule(resource)
+            .setGrade(RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO)
+            .setSlowRatioThreshold(0.5)
+            .setCount(10)
+            .setMinRequestAmount(3)
+            .setTimeWindow(10);
+        loadRule(rule);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(completeRequest(resource, 50));
+        }
+        // Only 2 slow requests, less than the min request amount.
+        assertTrue(completeRequest(resource, 50));
+        // The 3rd slow request has completed now.
+        assertFalse(completeRequest(resource, 1));
+    }
+
+    @Test
+    public void testHangingRequestsDetectedBeforeCompletion() throws BlockException {
+        String resource = "testHangingRequestsDetectedBeforeCompletion";
+        loadRule(new DegradeRule(resource)
+            .setGrade(RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO)
+            .setSlowRatioThreshold(0.5)
+            .setCount(100)
+            .setMinRequestAmount(3)
+            .setTimeWindow(10));
+        List<AsyncEntry> hanging = new ArrayList<AsyncEntry>();
+        for (int i = 0; i < 3; i++) {
+            hanging.add(SphU.asyncEntry(resource));
+        }
+        sleep(50);
+        // Not slow yet.
+        assertTrue(completeRequest(resource, 1));
+
+        // Requests in flight are counted by windows of 55 ms (1100 ms / 20), so one more window is needed.
+        sleep(110);
+        // None of the requests has completed, but they're slower than the threshold already.
+        assertFalse(completeRequest(resource, 1));
+        for (AsyncEntry entry : hanging) {
+            entry.exit();
+        }
+    }
+
+    @Test
+    public void testLatencyStatsEnabledWhenLoaded() throws BlockException {
+        String resource = "testLatencyStatsEnabledWhenLoaded";
+        String newResource = "testLatencyStatsEnabledWhenLoaded2";
+        SphU.entry(resource).exit();
+        ClusterNode clusterNode = ClusterBuilderSlot.getClusterNode(resource, EntryType.OUT);
+        assertNotNull(clusterNode);
+
+        DegradeRuleManager.loadRules(Arrays.asList(
+            new DegradeRule(resource)
+                .setGrade(RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO)
+                .setCount(100)
+                .setStatIntervalMs(5000)
+                .setTimeWindow(10),
+            new DegradeRule(newResource)
+                .setGrade(RuleConstant.DEGRADE_GRADE_RT_PERCENTILE)
+                .setCount(100)
+                .setTimeWindow(10)));
+        // Enabled for the existing cluster node at once.
+        assertTrue(clusterNode.isRtHistogramEnabled());
+        assertTrue(clusterNode.getRtHistogram().getIntervalInMs() >= 5100);
+
+        // Enabled as soon as the cluster node is created.
+        SphU.entry(newResource).exit();
+        assertTrue(ClusterBuilderSlot.getClusterNode(newResource, EntryType.OUT).isRtHistogramEnabled());
+    }
+
+    @Test
+    public void testInvalidRules() {
+        assertFalse(DegradeRuleManager.isValidRule(new DegradeRule("a").setCount(10).setTimeWindow(1)
+            .setGrade(RuleConstant.DEGRADE_GRADE_RT_PERCENTILE).setPercentile(101)));
+        assertFalse(DegradeRuleManager.isValidRule(new DegradeRule("a").setCount(10).setTimeWindow(1)
+            .setGrade(RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO).setSlowRatioThreshold(1.5)));
+        assertFalse(DegradeRuleManager.isValidRule(new DegradeRule("a").setCount(10).setTimeWindow(1)
+            .setGrade(RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO).setStatIntervalMs(0)));
+        assertTrue(DegradeRuleManager.isValidRule(new DegradeRule("a").setCount(10).setTimeWindow(1)
+            .setGrade(RuleConstant.DEGRADE_GRADE_RT_PERCENTILE).setPercentile(99.9)));
+    }
+
+    private void assertDetectionLatency(long detectionLatency) {
+        // Hanging requests are counted as slow once they run longer than the threshold (500 ms),
+        // so there is no need to wait for the timeout. The ratio of 2% may need two slow requests in the interval.
+        assertTrue("detection latency: " + detectionLatency, detectionLatency >= 500
+            && detectionLatency <= 500 + HANG_EVERY_N * INTERVAL_MS + 100);
+    }
+
+    private void loadRule(DegradeRule rule) {
+        DegradeRuleManager.loadRules(Collections.singletonList(rule));
+    }
+
+    private boolean completeRequest(String resource, int rtMs) {
+        try {
+            AsyncEntry entry = SphU.asyncEntry(resource);
+            sleep(rtMs);
+            entry.exit();
+            return true;
+        } catch (BlockException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Simulate the load, and return the detection latency (from the start of the first hanging request
+     * to the first blocked request) in milliseconds, or -1 if the resource is never degraded.
+     */
+    private long simulate(String resource) {
+        long start = TimeUtil.currentTimeMillis();
+        PriorityQueue<PendingExit> pendingExits = new PriorityQueue<PendingExit>();
+        long elapsed = 0;
+        int seq = 0;
+        long firstHangingTime = -1;
+        while (elapsed < SIMULATION_MS) {
+            long now = start + elapsed;
+            // Complete the requests which are due.
+            while (!pendingExits.isEmpty() && pendingExits.peek().exitTime <= now) {
+                PendingExit pending = pendingExits.poll();
+                setCurrentMillis(pending.exitTime);
+                pending.entry.exit();
+            }
+            setCurrentMillis(now);
+
+            try {
+                AsyncEntry entry = SphU.asyncEntry(resource);
+                boolean hanging = elapsed >= HANG_START_MS && ++seq % HANG_EVERY_N == 0;
+                if (hanging && firstHangingTime < 0) {
+                    firstHangingTime = elapsed;
+                }
+                pendingExits.add(new PendingExit(now + (hanging ? TIMEOUT_MS : FAST_RT_MS), entry));
+            } catch (BlockException ex) {
+                assertTrue("Should not be degraded before hanging", firstHangingTime >= 0);
+                drain(pendingExits);
+                return elapsed - firstHangingTime;
+            }
+            elapsed += INTERVAL_MS;
+        }
+        drain(pendingExits);
+        return -1;
+    }
+
+    private void drain(PriorityQueue<PendingExit> pendingExits) {
+        while (!pendingExits.isEmpty()) {
+            PendingExit pending = pendingExits.poll();
+            setCurrentMillis(Math.max(pending.exitTime, TimeUtil.currentTimeMillis()));
+            pending.entry.exit();
+        }
+    }
+
+    private static final class PendingExit implements Comparable<PendingExit> {
+        private final long exitTime;
+        private final AsyncEntry entry;
+
+        PendingExit(long exitTime, AsyncEntry entry) {
+            this.exitTime = exitTime;
+            this.entry = entry;
+        }
+
+        @Override
+        public int compareTo(PendingExit o) {
+            return Long.compare(exitTime, o.exitTime);
+        }
+    }
+}
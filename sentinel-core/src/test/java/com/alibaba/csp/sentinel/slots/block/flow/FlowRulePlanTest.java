@@ -0,0 +1,152 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.alibaba.csp.sentinel.context.Context;
+import com.alibaba.csp.sentinel.node.ClusterNode;
+import com.alibaba.csp.sentinel.node.DefaultNode;
+import com.alibaba.csp.sentinel.node.OriginRegistry;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test cases for {@link FlowRulePlan}.
+ */
+public class FlowRulePlanTest {
+
+    @After
+    public void tearDown() {
+        FlowRuleManager.loadRules(new ArrayList<FlowRule>());
+    }
+
+    @Test
+    public void testSameSelectionAsChecker() {
+        String resource = "testSameSelectionAsChecker";
+        List<FlowRule> rules = Arrays.asList(
+            new FlowRule(resource).setCount(10),
+            new FlowRule(resource).setCount(20).setLimitApp("appA").as(FlowRule.class),
+            new FlowRule(resource).setCount(30).setLimitApp(RuleConstant.LIMIT_APP_OTHER).as(FlowRule.class),
+            new FlowRule(resource).setCount(40).setStrategy(RuleConstant.STRATEGY_CHAIN).setRefResource("entrance1"),
+            new FlowRule(resource).setCount(50).setStrategy(RuleConstant.STRATEGY_RELATE).setLimitApp("appB")
+                .as(FlowRule.class),
+            // Never takes effect with unknown strategy.
+            new FlowRule(resource).setCount(60).setStrategy(3).setRefResource("entrance1")
+        );
+        FlowRuleManager.loadRules(rules);
+        FlowRulePlan plan = FlowRuleManager.getFlowRulePlans().get(resource);
+        assertNotNull(plan);
+        List<FlowRule> sortedRules = FlowRuleManager.getFlowRuleMap().get(resource);
+
+        DefaultNode node = mock(DefaultNode.class);
+        ClusterNode cn = mock(ClusterNode.class);
+        when(node.getClusterNode()).thenReturn(cn);
+        DefaultNode originNode = mock(DefaultNode.class);
+
+        for (String origin : new String[] {"", "appA", "appB", "appC", RuleConstant.LIMIT_APP_DEFAULT,
+            RuleConstant.LIMIT_APP_OTHER}) {
+            for (String contextName : new String[] {"entrance1", "entrance2"}) {
+                Context context = mock(Context.class);
+                when(context.getOrigin()).thenReturn(origin);
+                when(context.getName()).thenReturn(contextName);
+                when(context.getOriginNode()).thenReturn(originNode);
+
+                List<FlowRule> expected = new ArrayList<FlowRule>();
+                for (FlowRule rule : sortedRules) {
+                    if (FlowRuleChecker.selectNodeByRequesterAndStrategy(rule, context, node) != null) {
+                        expected.add(rule);
+                    }
+                }
+                List<FlowRule> actual = new ArrayList<FlowRule>();
+                for (FlowRulePlan.Step step : plan.stepsFor(origin)) {
+                    if (step.selectNode(context, node) != null) {
+                        assertSame(FlowRuleChecker.selectNodeByRequesterAndStrategy(step.getRule(), context, node),
+                            step.selectNode(context, node));
+                        actual.add(step.getRule());
+                    }
+                }
+                assertEquals("origin: " + origin + ", context: " + contextName, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testUselessRuleLeftOut() {
+        String resource = "testUselessRuleLeftOut";
+        FlowRule rule = new FlowRule(resource).setCount(1).setStrategy(3).setRefResource("entrance1");
+        FlowRulePlan plan = FlowRulePlan.compile(FlowRuleUtil.buildFlowRuleMap(Arrays.asList(rule)).get(resource));
+        assertEquals(0, plan.stepsFor("").length);
+        assertEquals(0, plan.stepsFor("appA").length);
+    }
+
+    @Test
+    public void testClusterRulesApplyToAllOrigins() {
+        String resource = "testClusterRulesApplyToAllOrigins";
+        FlowRule clusterRule = new FlowRule(resource).setCount(10).setLimitApp("appA").as(FlowRule.class)
+            .setClusterMode(true).setClusterConfig(new ClusterFlowConfig().setFlowId(100L));
+        FlowRule chainRule = new FlowRule(resource).setCount(20).setStrategy(3).setRefResource("entrance1")
+            .setClusterMode(true).setClusterConfig(new ClusterFlowConfig().setFlowId(101L));
+        FlowRulePlan plan = FlowRulePlan.compile(Arrays.asList(clusterRule, chainRule));
+
+        for (String origin : new String[] {"", "appA", "appB", RuleConstant.LIMIT_APP_DEFAULT,
+            RuleConstant.LIMIT_APP_OTHER}) {
+            FlowRulePlan.Step[] steps = plan.stepsFor(origin);
+            assertEquals("origin: " + origin, 2, steps.length);
+            assertSame(clusterRule, steps[0].getRule());
+            assertSame(chainRule, steps[1].getRule());
+        }
+    }
+
+    @Test
+    public void testPlansReplacedOnLoad() {
+        String resource = "testPlansReplacedOnLoad";
+        FlowRuleManager.loadRules(Arrays.asList(new FlowRule(resource).setCount(1)));
+        FlowRulePlan plan = FlowRuleManager.getFlowRulePlans().get(resource);
+        assertEquals(1, plan.stepsFor("appA").length);
+
+        FlowRuleManager.loadRules(Arrays.asList(new FlowRule(resource).setCount(1).setLimitApp("appB")
+            .as(FlowRule.class)));
+        FlowRulePlan newPlan = FlowRuleManager.getFlowRulePlans().get(resource);
+        assertNotSame(plan, newPlan);
+        assertEquals(0, newPlan.stepsFor("appA").length);
+        assertEquals(1, newPlan.stepsFor("appB").length);
+
+        FlowRuleManager.loadRules(new ArrayList<FlowRule>());
+        assertNull(FlowRuleManager.getFlowRulePlans().get(resource));
+    }
+
+    @Test
+    public void testLimitAppsPinnedOnLoad() {
+        String resource = "testLimitAppsPinnedOnLoad";
+        String limitApp = "testLimitAppsPinnedOnLoadApp";
+        FlowRuleManager.loadRules(Arrays.asList(new FlowRule(resource).setCount(1).setLimitApp(limitApp)
+            .as(FlowRule.class)));
+        OriginRegistry.Origin origin = OriginRegistry.lookup(limitApp);
+        assertNotNull(origin);
+        assertTrue(origin.isPinned());
+
+        FlowRuleManager.loadRules(new ArrayList<FlowRule>());
+        assertFalse(origin.isPinned());
+    }
+}
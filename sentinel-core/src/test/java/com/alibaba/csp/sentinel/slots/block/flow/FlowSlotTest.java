@@ -27,6 +27,7 @@ import com.alibaba.csp.sentinel.slotchain.StringResourceWrapper;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentMatcher;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -63,9 +64,9 @@ public class FlowSlotTest {
         // Here we only load rules for resA.
         FlowRuleManager.loadRules(Collections.singletonList(rule1));
 
-        when(flowSlot.canPassCheck(eq(rule1), any(Context.class), any(DefaultNode.class), anyInt(), anyBoolean()))
+        when(flowSlot.canPassCheck(stepOf(rule1), any(Context.class), any(DefaultNode.class), anyInt(), anyBoolean()))
             .thenReturn(true);
-        when(flowSlot.canPassCheck(eq(rule2), any(Context.class), any(DefaultNode.class), anyInt(), anyBoolean()))
+        when(flowSlot.canPassCheck(stepOf(rule2), any(Context.class), any(DefaultNode.class), anyInt(), anyBoolean()))
             .thenReturn(false);
 
         flowSlot.checkFlow(new StringResourceWrapper(resA, EntryType.IN), context, node, 1, false);
@@ -84,9 +85,18 @@ public class FlowSlotTest {
         FlowRule rule = new FlowRule(resA).setCount(10);
         FlowRuleManager.loadRules(Collections.singletonList(rule));
 
-        when(flowSlot.canPassCheck(any(FlowRule.class), any(Context.class), any(DefaultNode.class), anyInt(), anyBoolean()))
-            .thenReturn(false);
+        when(flowSlot.canPassCheck(any(FlowRulePlan.Step.class), any(Context.class), any(DefaultNode.class), anyInt(),
+            anyBoolean())).thenReturn(false);
 
         flowSlot.checkFlow(new StringResourceWrapper(resA, EntryType.IN), context, node, 1, false);
     }
+
+    private static FlowRulePlan.Step stepOf(final FlowRule rule) {
+        return argThat(new ArgumentMatcher<FlowRulePlan.Step>() {
+            @Override
+            public boolean matches(FlowRulePlan.Step step) {
+                return step != null && step.getRule() == rule;
+            }
+        });
+    }
 }
\ No newline at end of file
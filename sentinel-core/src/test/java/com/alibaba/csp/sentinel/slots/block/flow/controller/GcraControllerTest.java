@@ -0,0 +1,182 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.block.flow.controller;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.csp.sentinel.node.Node;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowRuleUtil;
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test cases for {@link GcraController}.
+ */
+public class GcraControllerTest extends AbstractTimeBasedTest {
+
+    private final Node node = mock(Node.class);
+
+    @Test
+    public void testBurstThenSteadyRate() {
+        GcraController controller = new GcraController(10, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(controller.canPass(node, 1));
+        }
+        assertFalse(controller.canPass(node, 1));
+
+        sleep(99);
+        assertFalse(controller.canPass(node, 1));
+        sleep(1);
+        assertTrue(controller.canPass(node, 1));
+        assertFalse(controller.canPass(node, 1));
+
+        // The bucket is refilled up to the burst size only.
+        sleep(10000);
+        assertEquals(3, passUntilBlocked(controller, 1));
+    }
+
+    @Test
+    public void testAcquireCount() {
+        GcraController controller = new GcraController(10, 5);
+        assertTrue(controller.canPass(node, 3));
+        assertFalse(controller.canPass(node, 3));
+        assertTrue(controller.canPass(node, 2));
+        // Larger than the burst size, never permitted.
+        sleep(10000);
+        assertFalse(controller.canPass(node, 6));
+        assertTrue(controller.canPass(node, 0));
+    }
+
+    @Test
+    public void testExactAboveThousandQps() {
+        GcraController controller = new GcraController(3000000, 100);
+        assertEquals(100, passUntilBlocked(controller, 1));
+        // 3000 requests per millisecond, no less no more (the idle time is within the burst).
+        int passed = 0;
+        for (int i = 0; i < 100; i++) {
+            sleepNanos(10 * 1000);
+            passed += passUntilBlocked(controller, 1);
+        }
+        assertEquals(3000, passed);
+        sleepNanos(1000);
+        assertEquals(3, passUntilBlocked(controller, 1));
+    }
+
+    @Test
+    public void testExactUnderContention() throws Exception {
+        GcraController controller = new GcraController(2000000, 1000);
+        assertEquals(1000, passConcurrently(controller, 64, 2000));
+        for (int i = 0; i < 5; i++) {
+            sleepNanos(500 * 1000);
+            assertEquals(1000, passConcurrently(controller, 64, 2000));
+        }
+    }
+
+    @Test
+    public void testNeverExceedBurstPlusRateWhileTimeMoves() throws Exception {
+        // One request per microsecond.
+        final int burstSize = 100;
+        final GcraController controller = new GcraController(1000000, burstSize);
+        final AtomicInteger passed = new AtomicInteger();
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        int threads = 64;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!stopped.get()) {
+                        if (controller.canPass(node, 1)) {
+                            passed.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        int maxExceeded = 0;
+        int ticks = 5000;
+        for (int i = 0; i < ticks; i++) {
+            // Requests passed so far were admitted no later than now.
+            maxExceeded = Math.max(maxExceeded, passed.get() - (burstSize + i));
+            sleepNanos(1000);
+        }
+        stopped.set(true);
+        done.await();
+        assertTrue("exceeded by " + maxExceeded, maxExceeded <= 0);
+        assertTrue(passed.get() <= burstSize + ticks);
+    }
+
+    @Test
+    public void testNoCountRejectsAll() {
+        assertFalse(new GcraController(0, 10).canPass(node, 1));
+    }
+
+    @Test
+    public void testRuleValidation() {
+        FlowRule rule = new FlowRule("testGcraRule");
+        rule.setCount(100);
+        rule.setControlBehavior(RuleConstant.CONTROL_BEHAVIOR_GCRA);
+        assertTrue(FlowRuleUtil.isValidRule(rule));
+        assertFalse(FlowRuleUtil.isValidRule(rule.setBurstSize(0)));
+        rule.setBurstSize(10).setGrade(RuleConstant.FLOW_GRADE_THREAD);
+        assertFalse(FlowRuleUtil.isValidRule(rule));
+    }
+
+    private int passConcurrently(final GcraController controller, int threads, final int attempts)
+        throws InterruptedException {
+        final AtomicInteger passed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < attempts; j++) {
+                            if (controller.canPass(node, 1)) {
+                                passed.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException ignore) {
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        return passed.get();
+    }
+
+    private int passUntilBlocked(GcraController controller, int acquireCount) {
+        int passed = 0;
+        while (controller.canPass(node, acquireCount)) {
+            passed++;
+        }
+        return passed;
+    }
+}
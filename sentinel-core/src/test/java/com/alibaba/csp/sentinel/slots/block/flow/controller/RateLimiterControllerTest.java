@@ -15,6 +15,7 @@
  */
 package com.alibaba.csp.sentinel.slots.block.flow.controller;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -24,7 +25,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
+import com.alibaba.csp.sentinel.slots.block.flow.NonBlockingTrafficShapingController;
 import com.alibaba.csp.sentinel.util.TimeUtil;
+import com.alibaba.csp.sentinel.util.clock.ManualClock;
 import com.alibaba.csp.sentinel.node.Node;
 
 /**
@@ -85,6 +88,27 @@ public class RateLimiterControllerTest {
 
     }
 
+    @Test
+    public void testPaceController_tryAcquire() {
+        ManualClock clock = new ManualClock(System.currentTimeMillis());
+        TimeUtil.setClock(clock);
+        try {
+            RateLimiterController paceController = new RateLimiterController(500, 10d);
+            Node node = mock(Node.class);
+
+            // Wait time is returned instead of sleeping.
+            for (int i = 0; i <= 5; i++) {
+                assertEquals(i * 100, paceController.tryAcquire(node, 1, false));
+            }
+            assertEquals(NonBlockingTrafficShapingController.NOT_PERMITTED, paceController.tryAcquire(node, 1, false));
+
+            clock.advance(600);
+            assertEquals(0, paceController.tryAcquire(node, 1, false));
+        } finally {
+            TimeUtil.resetClock();
+        }
+    }
+
     @Test
     public void testPaceController_zeroattack() throws InterruptedException {
         RateLimiterController paceController = new RateLimiterController(500, 0d);
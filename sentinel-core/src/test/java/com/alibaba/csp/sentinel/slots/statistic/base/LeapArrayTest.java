@@ -15,6 +15,7 @@
  */
 package com.alibaba.csp.sentinel.slots.statistic.base;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
@@ -62,4 +63,115 @@ public class LeapArrayTest extends AbstractTimeBasedTest {
         assertSame(expected2, leapArray.getValidHead());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testRotateDeprecatedBucketConcurrently() throws Exception {
+        final int windowLengthInMs = 100;
+        final LeapArray<AtomicInteger> leapArray = newAtomicIntegerLeapArray(10, 1000);
+        final long time = 1000L;
+        final long nextTime = time + 1000L;
+        WindowWrap<AtomicInteger> deprecated = leapArray.currentWindow(time);
+        deprecated.value().set(100);
+
+        final int nThreads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(nThreads);
+        for (int i = 0; i < nThreads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        leapArray.currentWindow(nextTime).value().incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        WindowWrap<AtomicInteger> current = leapArray.currentWindow(nextTime);
+        assertNotSame(deprecated, current);
+        assertEquals(nextTime, current.windowStart());
+        assertEquals(windowLengthInMs, current.windowLength());
+        assertEquals(nThreads, current.value().get());
+    }
+
+    @Test
+    public void testRecycleDeprecatedBucket() {
+        LeapArray<AtomicInteger> leapArray = newAtomicIntegerLeapArray(2, 200);
+        WindowWrap<AtomicInteger> first = leapArray.currentWindow(1000L);
+        first.value().set(1);
+        leapArray.currentWindow(1100L).value().set(2);
+
+        // The first deprecated bucket is replaced by the standby of the slot, and becomes the standby.
+        WindowWrap<AtomicInteger> third = leapArray.currentWindow(1200L);
+        assertNotSame(first, third);
+        assertEquals(0, third.value().get());
+        assertEquals(1, first.value().get());
+        third.value().set(3);
+
+        // Then it is reset in place and swapped in again, for the same slot only.
+        assertNotSame(first, leapArray.currentWindow(1300L));
+        WindowWrap<AtomicInteger> fifth = leapArray.currentWindow(1450L);
+        assertSame(first, fifth);
+        assertEquals(1400L, fifth.windowStart());
+        assertEquals(0, fifth.value().get());
+        assertSame(fifth, leapArray.currentWindow(1499L));
+        assertEquals(3, third.value().get());
+    }
+
+    @Test
+    public void testRetiredBucketKeptBySubclass() {
+        LeapArray<AtomicInteger> leapArray = new LeapArray<AtomicInteger>(2, 200) {
+            @Override
+            public AtomicInteger newEmptyBucket(long time) {
+                return new AtomicInteger(0);
+            }
+
+            @Override
+            protected WindowWrap<AtomicInteger> resetWindowTo(WindowWrap<AtomicInteger> windowWrap, long startTime) {
+                windowWrap.resetTo(startTime);
+                windowWrap.value().set(0);
+                return windowWrap;
+            }
+
+            @Override
+            protected boolean onWindowRetired(WindowWrap<AtomicInteger> windowWrap) {
+                return false;
+            }
+        };
+        WindowWrap<AtomicInteger> first = leapArray.currentWindow(1000L);
+        first.value().set(1);
+        // Rotate the slot of the first bucket several times.
+        for (long time = 1200L; time <= 2000L; time += 200) {
+            WindowWrap<AtomicInteger> current = leapArray.currentWindow(time);
+            assertNotSame(first, current);
+            assertEquals(time, current.windowStart());
+            assertEquals(0, current.value().get());
+            current.value().set((int)time);
+        }
+        // The retired bucket is never reset.
+        assertEquals(1000L, first.windowStart());
+        assertEquals(1, first.value().get());
+    }
+
+    private LeapArray<AtomicInteger> newAtomicIntegerLeapArray(int sampleCount, int intervalInMs) {
+        return new LeapArray<AtomicInteger>(sampleCount, intervalInMs) {
+            @Override
+            public AtomicInteger newEmptyBucket(long time) {
+                return new AtomicInteger(0);
+            }
+
+            @Override
+            protected WindowWrap<AtomicInteger> resetWindowTo(WindowWrap<AtomicInteger> windowWrap, long startTime) {
+                windowWrap.resetTo(startTime);
+                windowWrap.value().set(0);
+                return windowWrap;
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.data;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBoundaries() {
+        long previousHighest = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lowest = LatencyHistogram.lowestEquivalentValue(i);
+            long highest = LatencyHistogram.highestEquivalentValue(i);
+            // Buckets are continuous.
+            assertEquals(previousHighest + 1, lowest);
+            assertEquals(i, LatencyHistogram.indexFor(lowest));
+            assertEquals(i, LatencyHistogram.indexFor(highest));
+            // Relative error is no more than 1/16.
+            assertTrue(highest - lowest <= lowest / 16);
+            previousHighest = highest;
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE - 1, previousHighest);
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.indexFor(Long.MAX_VALUE));
+        assertEquals(0, LatencyHistogram.indexFor(-5));
+    }
+
+    @Test
+    public void testValueAtPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.valueAtPercentile(99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(500, histogram.valueAtPercentile(50), 500 / 16);
+        assertEquals(990, histogram.valueAtPercentile(99), 990 / 16);
+        assertEquals(1000, histogram.valueAtPercentile(100), 1000 / 16);
+        assertEquals(1, histogram.valueAtPercentile(0.1));
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+    }
+
+    @Test
+    public void testValueAtPercentileOfMultipleHistograms() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            fast.record(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            slow.record(5000);
+        }
+        assertEquals(10, LatencyHistogram.valueAtPercentile(Arrays.asList(fast, slow), 90));
+        assertEquals(5000, LatencyHistogram.valueAtPercentile(Arrays.asList(fast, slow), 91), 5000 / 16);
+    }
+
+    @Test
+    public void testCountAtOrAbove() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(2000);
+        }
+        histogram.record(500000);
+        histogram.record(1000000);
+        assertEquals(100, histogram.countAtOrAbove(0));
+        assertEquals(2, histogram.countAtOrAbove(500000));
+        assertEquals(1, histogram.countAtOrAbove(600000));
+        assertEquals(0, histogram.countAtOrAbove(LatencyHistogram.MAX_VALUE));
+        // The value at p99 is no less than 500 ms if and only if enough values are no less than 500 ms.
+        assertTrue(histogram.valueAtPercentile(99) >= 500000);
+        assertTrue(histogram.countAtOrAbove(500000) > 100 - LatencyHistogram.rankOf(99, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalPercentile() {
+        new LatencyHistogram().valueAtPercentile(0);
+    }
+
+    @Test
+    public void testConcurrentRecord() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threadCount = 8;
+        final int times = 10000;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < times; j++) {
+                        histogram.record(j);
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        assertEquals(threadCount * times, histogram.count());
+    }
+}
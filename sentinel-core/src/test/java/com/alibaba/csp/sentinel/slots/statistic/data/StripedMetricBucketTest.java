@@ -0,0 +1,108 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.data;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.alibaba.csp.sentinel.Constants;
+import com.alibaba.csp.sentinel.slots.statistic.MetricEvent;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link StripedMetricBucket}.
+ */
+public class StripedMetricBucketTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalStripes() {
+        new StripedMetricBucket(3);
+    }
+
+    @Test
+    public void testStrideAvoidsSharedCacheLine() {
+        int eventCount = MetricEvent.values().length;
+        int stride = StripedMetricBucket.strideFor(eventCount);
+        assertEquals(0, stride & (stride - 1));
+        // Gap between two stripes should be no less than one cache line (8 longs).
+        assertTrue(stride - eventCount >= 8);
+    }
+
+    @Test
+    public void testAddAndGet() {
+        MetricBucket bucket = new StripedMetricBucket(4);
+        bucket.addPass(3);
+        bucket.addBlock(2);
+        bucket.addException(1);
+        bucket.addSuccess(5);
+        bucket.addOccupiedPass(7);
+        bucket.addRT(20);
+        bucket.addRT(10);
+
+        assertEquals(3, bucket.pass());
+        assertEquals(2, bucket.block());
+        assertEquals(1, bucket.exception());
+        assertEquals(5, bucket.success());
+        assertEquals(7, bucket.occupiedPass());
+        assertEquals(30, bucket.rt());
+        assertEquals(10, bucket.minRt());
+
+        bucket.reset();
+        for (MetricEvent event : MetricEvent.values()) {
+            assertEquals(0, bucket.get(event));
+        }
+        assertEquals(Constants.TIME_DROP_VALVE, bucket.minRt());
+    }
+
+    @Test
+    public void testResetWithBucket() {
+        MetricBucket source = new MetricBucket();
+        source.addPass(4);
+        source.addBlock(1);
+        MetricBucket bucket = new StripedMetricBucket(2);
+        bucket.addPass(100);
+
+        bucket.reset(source);
+        assertEquals(4, bucket.pass());
+        assertEquals(1, bucket.block());
+        assertEquals(0, bucket.success());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final MetricBucket bucket = new StripedMetricBucket(8);
+        final int threadCount = 16;
+        final int times = 10000;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < times; j++) {
+                        bucket.addPass(1);
+                        bucket.addRT(2);
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        assertEquals(threadCount * times, bucket.pass());
+        assertEquals(threadCount * times * 2L, bucket.rt());
+    }
+}
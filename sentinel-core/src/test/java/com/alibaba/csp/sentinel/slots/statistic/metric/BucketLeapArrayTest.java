@@ -23,8 +23,10 @@ import java.util.concurrent.CountDownLatch;
 
 import com.alibaba.csp.sentinel.slots.statistic.base.WindowWrap;
 import com.alibaba.csp.sentinel.slots.statistic.data.MetricBucket;
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
 import com.alibaba.csp.sentinel.util.TimeUtil;
 
+import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -34,13 +36,18 @@ import static org.junit.Assert.*;
  *
  * @author Eric Zhao
  */
-public class BucketLeapArrayTest {
+public class BucketLeapArrayTest extends AbstractTimeBasedTest {
 
     private final int windowLengthInMs = 1000;
     private final int intervalInSec = 2;
     private final int intervalInMs = intervalInSec * 1000;
     private final int sampleCount = intervalInMs / windowLengthInMs;
 
+    @Before
+    public void setUp() {
+        setCurrentMillis(System.currentTimeMillis());
+    }
+
     @Test
     public void testNewWindow() {
         BucketLeapArray leapArray = new BucketLeapArray(sampleCount, intervalInMs);
@@ -179,7 +186,7 @@ public class BucketLeapArrayTest {
             assertTrue(windowWraps.contains(wrap));
         }
 
-        Thread.sleep(windowLengthInMs + intervalInMs);
+        sleep(windowLengthInMs + intervalInMs);
 
         // This will replace the deprecated bucket, so all deprecated buckets will be reset.
         leapArray.currentWindow(time + windowLengthInMs + intervalInMs).value().addPass(1);
@@ -202,7 +209,7 @@ public class BucketLeapArrayTest {
         windowWraps.add(leapArray.currentWindow(time));
         windowWraps.add(leapArray.currentWindow(time + windowLengthInMs));
 
-        Thread.sleep(intervalInMs + windowLengthInMs * 3);
+        sleep(intervalInMs + windowLengthInMs * 3);
 
         List<WindowWrap<MetricBucket>> list = leapArray.list();
         for (WindowWrap<MetricBucket> wrap : list) {
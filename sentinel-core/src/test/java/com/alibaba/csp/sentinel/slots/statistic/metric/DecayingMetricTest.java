@@ -0,0 +1,86 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.metric;
+
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link DecayingMetric}.
+ */
+public class DecayingMetricTest extends AbstractTimeBasedTest {
+
+    @Test
+    public void testSteadyRate() {
+        setCurrentMillis(1000);
+        DecayingMetric metric = new DecayingMetric(2, 1000);
+        // 100 requests per second for 10 seconds.
+        for (int i = 0; i < 1000; i++) {
+            metric.addPass(1);
+            metric.addSuccess(1);
+            metric.addRT(10);
+            sleep(10);
+        }
+        assertEquals(100, metric.pass(), 10);
+        assertEquals(100, metric.success(), 10);
+        assertEquals(10, metric.rt() / metric.success());
+        assertEquals(10, metric.minRt());
+        assertEquals(metric.pass(), metric.previousWindowPass());
+        // About 1 - exp(-0.5) of the count decays in a window of 500 ms.
+        assertEquals(39, metric.getWindowPass(0), 5);
+        assertEquals(1, metric.details().size());
+        assertEquals(0, metric.windows().length);
+    }
+
+    @Test
+    public void testNoDropAtBucketBoundary() {
+        setCurrentMillis(1000);
+        DecayingMetric decaying = new DecayingMetric(2, 1000);
+        ArrayMetric window = new ArrayMetric(2, 1000);
+        for (int i = 0; i < 100; i++) {
+            decaying.addPass(1);
+            window.addPass(1);
+            sleep(5);
+        }
+        // 500 ms later, the sliding window drops all the requests at once.
+        setCurrentMillis(2000);
+        assertEquals(0, window.pass());
+        long beforeBoundary = decaying.pass();
+        assertTrue(beforeBoundary > 30);
+        setCurrentMillis(2010);
+        assertTrue(decaying.pass() <= beforeBoundary);
+        assertTrue(decaying.pass() > beforeBoundary * 0.8);
+
+        // All decayed after a long time.
+        sleep(60 * 1000);
+        assertEquals(0, decaying.pass());
+    }
+
+    @Test
+    public void testWaiting() {
+        setCurrentMillis(1000);
+        DecayingMetric metric = new DecayingMetric(2, 1000);
+        metric.addWaiting(1500, 3);
+        assertEquals(3, metric.waiting());
+        // Occupied tokens are counted as passed requests.
+        assertEquals(3, metric.pass());
+        setCurrentMillis(3000);
+        assertEquals(0, metric.waiting());
+    }
+}
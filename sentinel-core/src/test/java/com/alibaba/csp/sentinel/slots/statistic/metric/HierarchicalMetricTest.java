@@ -0,0 +1,157 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.slots.statistic.metric;
+
+import java.util.List;
+
+import com.alibaba.csp.sentinel.node.metric.MetricNode;
+import com.alibaba.csp.sentinel.node.metric.MetricSnapshotRing;
+import com.alibaba.csp.sentinel.slots.statistic.data.MetricBucket;
+import com.alibaba.csp.sentinel.test.AbstractTimeBasedTest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link HierarchicalMetric}.
+ */
+public class HierarchicalMetricTest extends AbstractTimeBasedTest {
+
+    private static final long BASE = 3600 * 1000L;
+
+    @Test
+    public void testRollupIntoCoarserLevels() {
+        setCurrentMillis(BASE);
+        HierarchicalMetric metric = new HierarchicalMetric(2, 1000, true);
+        WindowSnapshotMetric minute = metric.minuteLevel();
+        Metric hour = metric.hourLevel();
+
+        metric.addPass(3);
+        metric.addBlock(1);
+        sleep(600);
+        metric.addPass(2);
+        metric.addSuccess(2);
+        metric.addRT(20);
+        // Buckets of the finest window are merged on read before they are rolled up.
+        assertEquals(5, minute.pass());
+        assertEquals(1, minute.block());
+        assertEquals(5, hour.pass());
+
+        // The bucket at BASE is retired and rolled up.
+        sleep(500);
+        metric.addPass(1);
+        sleep(500);
+        metric.addPass(1);
+        assertEquals(2, metric.pass());
+        assertEquals(7, minute.pass());
+        assertEquals(7, hour.pass());
+        assertEquals(1, hour.block());
+        assertEquals(5, minute.getWindowPass(BASE));
+        assertEquals(5, minute.previousWindowPass());
+        assertEquals(20, minute.minRt());
+
+        MetricSnapshotRing ring = new MetricSnapshotRing();
+        assertTrue(minute.snapshotWindow(BASE, ring));
+        assertEquals(1, ring.size());
+        assertEquals(BASE, ring.firstTimestamp());
+        assertEquals(5, ring.firstPass());
+        assertEquals(10, ring.firstRt());
+
+        List<MetricNode> details = minute.details();
+        assertEquals(2, details.size());
+        List<MetricNode> hourDetails = hour.details();
+        assertEquals(1, hourDetails.size());
+        assertEquals(BASE, hourDetails.get(0).getTimestamp());
+        assertEquals(7, hourDetails.get(0).getPassQps());
+
+        // Beyond one minute, only the hour level keeps the statistics.
+        sleep(60 * 1000);
+        assertEquals(0, minute.pass());
+        assertEquals(7, hour.pass());
+    }
+
+    @Test
+    public void testLazyCoarserLevel() {
+        setCurrentMillis(BASE);
+        HierarchicalMetric metric = new HierarchicalMetric(2, 1000, false);
+        assertFalse(metric.hasMinuteLevel());
+        metric.addPass(1);
+        sleep(1000);
+        metric.addPass(2);
+        sleep(1000);
+        metric.addPass(4);
+        // The bucket rolled up before the level is created is not counted.
+        assertEquals(6, metric.minuteLevel().pass());
+        assertTrue(metric.hasMinuteLevel());
+    }
+
+    @Test
+    public void testLateWritesToRetiredBucketRolledUp() {
+        setCurrentMillis(BASE);
+        HierarchicalMetric metric = new HierarchicalMetric(2, 1000, true);
+        Metric minute = metric.minuteLevel();
+        metric.addPass(1);
+        // A thread got the bucket at BASE before it is retired.
+        MetricBucket bucket = metric.windows()[0];
+
+        sleep(1000);
+        metric.addPass(1);
+        bucket.addPass(5);
+        assertEquals(7, minute.pass());
+
+        // The bucket at BASE is rolled up when the next bucket retires, including the late writes.
+        sleep(1000);
+        metric.addPass(1);
+        assertEquals(8, minute.pass());
+        assertEquals(6, minute.getWindowPass(BASE));
+        assertEquals(3, minute.windows().length);
+        assertEquals(3, minute.details().size());
+    }
+
+    @Test
+    public void testWriteThroughWhenWindowNotDividingSecond() {
+        setCurrentMillis(BASE);
+        HierarchicalMetric metric = new HierarchicalMetric(2, 3000, true);
+        Metric minute = metric.minuteLevel();
+        metric.addPass(2);
+        metric.addException(1);
+        sleep(4500);
+        metric.addPass(1);
+        assertEquals(1, metric.pass());
+        assertEquals(3, minute.pass());
+        assertEquals(1, minute.exception());
+        assertEquals(1, minute.getWindowPass(BASE + 4500));
+    }
+
+    @Test
+    public void testResetFinestWindow() {
+        setCurrentMillis(BASE);
+        HierarchicalMetric metric = new HierarchicalMetric(2, 1000, true);
+        Metric minute = metric.minuteLevel();
+        metric.addPass(3);
+        metric.reset(4, 1000);
+        assertEquals(0, metric.pass());
+        assertEquals(4, metric.getSampleCount());
+        assertEquals(3, minute.pass());
+
+        metric.addPass(1);
+        sleep(250);
+        metric.addPass(1);
+        assertEquals(2, metric.pass());
+        assertEquals(5, minute.pass());
+    }
+}
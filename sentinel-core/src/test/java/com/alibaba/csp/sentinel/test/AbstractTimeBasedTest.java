@@ -15,36 +15,42 @@
  */
 package com.alibaba.csp.sentinel.test;
 
-import org.junit.runner.RunWith;
-import org.powermock.api.mockito.PowerMockito;
-import org.powermock.core.classloader.annotations.PrepareForTest;
-import org.powermock.modules.junit4.PowerMockRunner;
+import org.junit.After;
+import org.junit.Before;
 
 import com.alibaba.csp.sentinel.util.TimeUtil;
+import com.alibaba.csp.sentinel.util.clock.ManualClock;
 
 /**
- * Mock support for {@link TimeUtil}
+ * Mock support for {@link TimeUtil}. A {@link ManualClock} is installed before each test,
+ * so time only moves when the test says so.
  * 
  * @author jason
  *
  */
-@RunWith(PowerMockRunner.class)
-@PrepareForTest({ TimeUtil.class })
 public abstract class AbstractTimeBasedTest {
-    private long currentMillis = 0;
-    
-    {
-        PowerMockito.mockStatic(TimeUtil.class);
-        PowerMockito.when(TimeUtil.currentTimeMillis()).thenReturn(currentMillis);
+
+    private final ManualClock clock = new ManualClock(0);
+
+    @Before
+    public void installManualClock() {
+        TimeUtil.setClock(clock);
+    }
+
+    @After
+    public void resetClock() {
+        TimeUtil.resetClock();
     }
     
     protected final void setCurrentMillis(long cur) {
-        currentMillis = cur;
-        PowerMockito.when(TimeUtil.currentTimeMillis()).thenReturn(currentMillis);
+        clock.setCurrentTimeMillis(cur);
     }
     
-    protected final void sleep(int t) {
-        currentMillis += t;
-        PowerMockito.when(TimeUtil.currentTimeMillis()).thenReturn(currentMillis);
+    protected final void sleep(long t) {
+        clock.advance(t);
+    }
+
+    protected final void sleepNanos(long nanos) {
+        clock.advanceNanos(nanos);
     }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.util.clock;
+
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link AdaptiveClock} and {@link ManualClock}.
+ */
+public class ClockTest {
+
+    @After
+    public void tearDown() {
+        TimeUtil.resetClock();
+    }
+
+    @Test
+    public void testAdaptiveClockSwitchMode() {
+        AdaptiveClock clock = new AdaptiveClock(1000);
+        assertFalse(clock.isTicking());
+        long before = System.currentTimeMillis();
+        assertTrue(clock.currentTimeMillis() >= before);
+
+        // 600 reads in 500 ms: 1200/s.
+        clock.updateMode(600, 500);
+        assertTrue(clock.isTicking());
+        // 300 reads in 500 ms: 600/s, still above half of the threshold.
+        clock.updateMode(300, 500);
+        assertTrue(clock.isTicking());
+        // 200 reads in 500 ms: 400/s.
+        clock.updateMode(200, 500);
+        assertFalse(clock.isTicking());
+    }
+
+    @Test
+    public void testAdaptiveClockSampleReads() throws Exception {
+        final AdaptiveClock clock = new AdaptiveClock(1000);
+        for (int i = 0; i < AdaptiveClock.READ_SAMPLE_COUNT - 1; i++) {
+            clock.currentTimeMillis();
+        }
+        assertEquals(0, clock.takeReadCount());
+        clock.currentTimeMillis();
+        assertEquals(AdaptiveClock.READ_SAMPLE_COUNT, clock.takeReadCount());
+
+        // Reads are counted per thread.
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < AdaptiveClock.READ_SAMPLE_COUNT * 3 - 1; i++) {
+                    clock.currentTimeMillis();
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        clock.currentTimeMillis();
+        assertEquals(AdaptiveClock.READ_SAMPLE_COUNT * 2, clock.takeReadCount());
+    }
+
+    @Test
+    public void testAdaptiveClockAlwaysTicking() {
+        AdaptiveClock clock = new AdaptiveClock(0);
+        assertTrue(clock.isTicking());
+        clock.updateMode(0, 500);
+        assertTrue(clock.isTicking());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdaptiveClockIllegalThreshold() {
+        new AdaptiveClock(-1);
+    }
+
+    @Test
+    public void testManualClock() {
+        ManualClock clock = new ManualClock(1000);
+        long nano = clock.nanoTime();
+        clock.advance(20);
+        assertEquals(1020, clock.currentTimeMillis());
+        assertEquals(nano + 20000000L, clock.nanoTime());
+
+        clock.advanceNanos(400000);
+        assertEquals(1020, clock.currentTimeMillis());
+        clock.advanceNanos(600000);
+        assertEquals(1021, clock.currentTimeMillis());
+        assertEquals(nano + 21000000L, clock.nanoTime());
+
+        // Monotonic time never moves backwards.
+        clock.setCurrentTimeMillis(500);
+        assertEquals(500, clock.currentTimeMillis());
+        assertEquals(nano + 21000000L, clock.nanoTime());
+    }
+
+    @Test
+    public void testReplaceClockOfTimeUtil() {
+        Clock defaultClock = TimeUtil.getClock();
+        ManualClock clock = new ManualClock(123);
+        TimeUtil.setClock(clock);
+        assertEquals(123, TimeUtil.currentTimeMillis());
+        clock.advance(7);
+        assertEquals(130, TimeUtil.currentTimeMillis());
+        assertEquals(clock.nanoTime(), TimeUtil.nanoTime());
+
+        TimeUtil.resetClock();
+        assertSame(defaultClock, TimeUtil.getClock());
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.demo.degrade;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.csp.sentinel.Entry;
+import com.alibaba.csp.sentinel.SphU;
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.alibaba.csp.sentinel.slots.block.RuleConstant;
+import com.alibaba.csp.sentinel.slots.block.degrade.DegradeRule;
+import com.alibaba.csp.sentinel.slots.block.degrade.DegradeRuleManager;
+import com.alibaba.csp.sentinel.util.TimeUtil;
+
+/**
+ * <p>
+ * Percentile RT ('DegradeRule.Grade=RuleConstant.DEGRADE_GRADE_RT_PERCENTILE'): When the response time
+ * at the given percentile (p99 here) of requests completed in the recent 'statIntervalMs' exceeds
+ * the threshold ('count', ms), the resource will be downgraded in the next time window.
+ * Slow request ratio ('DegradeRule.Grade=RuleConstant.DEGRADE_GRADE_SLOW_REQUEST_RATIO') works in the same way,
+ * but on the ratio of requests slower than 'count'.
+ * </p>
+ * <p>
+ * This demo runs a load of about 2000 QPS with 5 ms RT. After 10 seconds, the downstream starts hanging:
+ * 2% of the requests hang until the 1 second timeout. The average RT is only about 25 ms, so average RT
+ * rules with a threshold of 100 ms never trip, while the p99 rule trips shortly after the first hanging
+ * requests time out. The detection latency will be printed, like:
+ * </p>
+ *
+ * <pre>
+ * 1554200001000, total:1962, pass:1978, block:0
+ * 1554200002000, total:1934, pass:1922, block:0
+ * downstream starts hanging
+ * 1554200003000, total:1965, pass:1974, block:0
+ * 1554200004000, total:759, pass:763, block:0
+ * degraded, detection latency: 1109 ms
+ * 1554200005000, total:2520, pass:28, block:2473
+ * 1554200006000, total:3907, pass:0, block:3907
+ * </pre>
+ */
+public class PercentileRtDegradeDemo {
+
+    private static final String KEY = "percentile";
+
+    private static final int THREAD_COUNT = 20;
+    private static final int NORMAL_RT_MS = 5;
+    private static final int TIMEOUT_MS = 1000;
+    private static final double HANG_RATIO = 0.02;
+    private static final int HANG_AFTER_SECONDS = 10;
+
+    private static AtomicInteger pass = new AtomicInteger();
+    private static AtomicInteger block = new AtomicInteger();
+    private static AtomicInteger total = new AtomicInteger();
+
+    private static volatile boolean stop = false;
+    private static volatile long hangStartTime = -1;
+    private static final AtomicLong firstBlockTime = new AtomicLong(-1);
+    private static int seconds = 40;
+
+    public static void main(String[] args) {
+        tick();
+        initDegradeRule();
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            Thread entryThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        Entry entry = null;
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(5);
+                            entry = SphU.entry(KEY);
+                            pass.incrementAndGet();
+                            boolean hanging = hangStartTime > 0
+                                && ThreadLocalRandom.current().nextDouble() < HANG_RATIO;
+                            TimeUnit.MILLISECONDS.sleep(hanging ? TIMEOUT_MS : NORMAL_RT_MS);
+                        } catch (BlockException e) {
+                            block.incrementAndGet();
+                            if (hangStartTime > 0 && firstBlockTime.compareAndSet(-1, TimeUtil.currentTimeMillis())) {
+                                System.out.println("degraded, detection latency: "
+                                    + (firstBlockTime.get() - hangStartTime) + " ms");
+                            }
+                        } catch (InterruptedException e) {
+                            // Ignore.
+                        } finally {
+                            total.incrementAndGet();
+                            if (entry != null) {
+                                entry.exit();
+                            }
+                        }
+                    }
+                }
+            });
+            entryThread.setName("working-thread");
+            entryThread.start();
+        }
+    }
+
+    private static void initDegradeRule() {
+        List<DegradeRule> rules = new ArrayList<DegradeRule>();
+        DegradeRule rule = new DegradeRule(KEY)
+            .setGrade(RuleConstant.DEGRADE_GRADE_RT_PERCENTILE)
+            // p99 RT threshold: 500 ms
+            .setPercentile(99)
+            .setCount(500)
+            .setStatIntervalMs(1000)
+            .setMinRequestAmount(20)
+            .setTimeWindow(10);
+        rules.add(rule);
+        DegradeRuleManager.loadRules(rules);
+    }
+
+    private static void tick() {
+        Thread timer = new Thread(new TimerTask());
+        timer.setName("sentinel-timer-task");
+        timer.start();
+    }
+
+    static class TimerTask implements Runnable {
+
+        @Override
+        public void run() {
+            long oldTotal = 0;
+            long oldPass = 0;
+            long oldBlock = 0;
+            int elapsedSeconds = 0;
+
+            while (!stop) {
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                }
+                if (++elapsedSeconds == HANG_AFTER_SECONDS) {
+                    hangStartTime = TimeUtil.currentTimeMillis();
+                    System.out.println("downstream starts hanging");
+                }
+
+                long globalTotal = total.get();
+                long oneSecondTotal = globalTotal - oldTotal;
+                oldTotal = globalTotal;
+
+                long globalPass = pass.get();
+                long oneSecondPass = globalPass - oldPass;
+                oldPass = globalPass;
+
+                long globalBlock = block.get();
+                long oneSecondBlock = globalBlock - oldBlock;
+                oldBlock = globalBlock;
+
+                System.out.println(TimeUtil.currentTimeMillis() + ", total:" + oneSecondTotal
+                    + ", pass:" + oneSecondPass + ", block:" + oneSecondBlock);
+
+                if (seconds-- <= 0) {
+                    stop = true;
+                }
+            }
+            System.exit(0);
+        }
+    }
+}
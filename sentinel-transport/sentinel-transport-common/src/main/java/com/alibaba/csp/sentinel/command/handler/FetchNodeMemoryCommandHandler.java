@@ -0,0 +1,49 @@
+/*
+ * Copyright 1999-2018 Alibaba Group Holding Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.csp.sentinel.command.handler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.alibaba.csp.sentinel.command.CommandHandler;
+import com.alibaba.csp.sentinel.command.CommandRequest;
+import com.alibaba.csp.sentinel.command.CommandResponse;
+import com.alibaba.csp.sentinel.command.annotation.CommandMapping;
+import com.alibaba.csp.sentinel.node.NodeTreeManager;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * Fetch the node count and estimated memory of the invocation tree.
+ *
+ * @since 1.5.0
+ */
+@CommandMapping(name = "nodeMemory", desc = "get node count and estimated memory of the invocation tree")
+public class FetchNodeMemoryCommandHandler implements CommandHandler<String> {
+
+    @Override
+    public CommandResponse<String> handle(CommandRequest request) {
+        Map<String, Object> status = new HashMap<String, Object>();
+
+        status.put("treeNodeCount", NodeTreeManager.getTreeNodeCount());
+        status.put("entranceNodeCount", NodeTreeManager.getEntranceNodeCount());
+        status.put("evictedCount", NodeTreeManager.getEvictedCount());
+        status.put("estimatedBytes", NodeTreeManager.estimateMemoryBytes());
+        status.put("maxBytes", NodeTreeManager.getMaxBytes());
+        status.put("idleTimeoutMs", NodeTreeManager.getIdleTimeoutMs());
+
+        return CommandResponse.ofSuccess(JSONObject.toJSONString(status));
+    }
+}
@@ -24,6 +24,8 @@ import com.alibaba.csp.sentinel.command.annotation.CommandMapping;
 import com.alibaba.csp.sentinel.util.PidUtil;
 import com.alibaba.csp.sentinel.config.SentinelConfig;
 import com.alibaba.csp.sentinel.util.StringUtil;
+import com.alibaba.csp.sentinel.node.metric.BinaryMetricSearcher;
+import com.alibaba.csp.sentinel.node.metric.BinaryMetricWriter;
 import com.alibaba.csp.sentinel.node.metric.MetricNode;
 import com.alibaba.csp.sentinel.node.metric.MetricSearcher;
 import com.alibaba.csp.sentinel.node.metric.MetricWriter;
@@ -51,8 +53,13 @@ public class SendMetricCommandHandler implements CommandHandler<String> {
                     appName = "";
                 }
                 if (searcher == null) {
-                    searcher = new MetricSearcher(MetricWriter.METRIC_BASE_DIR,
-                        MetricWriter.formMetricFileName(appName, PidUtil.getPid()));
+                    if (SentinelConfig.METRIC_FILE_FORMAT_BINARY.equals(SentinelConfig.metricFileFormat())) {
+                        searcher = new BinaryMetricSearcher(MetricWriter.METRIC_BASE_DIR,
+                            BinaryMetricWriter.formBinaryMetricFileName(appName, PidUtil.getPid()));
+                    } else {
+                        searcher = new MetricSearcher(MetricWriter.METRIC_BASE_DIR,
+                            MetricWriter.formMetricFileName(appName, PidUtil.getPid()));
+                    }
                 }
             }
         }